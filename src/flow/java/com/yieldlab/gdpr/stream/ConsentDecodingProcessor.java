@@ -0,0 +1,413 @@
+package com.yieldlab.gdpr.stream;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import com.yieldlab.gdpr.ParseLimits;
+import com.yieldlab.gdpr.VendorConsent;
+
+/**
+ * A {@link Flow.Processor} decoding a stream of consent strings into {@link VendorConsent}s. Only available on Java 9
+ * and later, from the jar with the classifier flow.
+ *
+ * Consent strings are decoded in batches on an executor, several batches at a time. Batches are as large as the
+ * consent strings that arrived while the previous batches were decoded, up to the batch size, so a slow stream is
+ * decoded string by string and a fast one in large batches.
+ *
+ * <ul>
+ * <li>Consents are emitted in the order of their consent strings.</li>
+ * <li>At most {@code batchSize * maxBatchesInFlight} consent strings are requested from upstream and not yet emitted
+ * downstream, so a slow subscriber slows down the publisher instead of filling memory.</li>
+ * <li>Consent strings that cannot be decoded are passed to the failure handler, in order, and skipped. An error of
+ * the upstream publisher is passed on after the consents decoded before it.</li>
+ * </ul>
+ *
+ * A processor can be subscribed to one publisher and subscribed by one subscriber.
+ */
+public class ConsentDecodingProcessor implements Flow.Processor<String, VendorConsent> {
+    private final Executor executor;
+    private final int batchSize;
+    private final int maxBatchesInFlight;
+    private final int bufferSize;
+    private final Function<String, VendorConsent> decoder;
+    private final BiConsumer<String, RuntimeException> failureHandler;
+
+    // guarded by lock
+    private final Object lock = new Object();
+    private final ArrayDeque<String> pending = new ArrayDeque<>();
+    private final Map<Long, Batch> completed = new HashMap<>();
+    private Flow.Subscription upstream;
+    private Flow.Subscriber<? super VendorConsent> downstream;
+    private long nextBatch;
+    private int batchesInFlight;
+    // requested from upstream and not received yet
+    private long upstreamRequested;
+    // received from upstream and not emitted or routed to the failure handler yet
+    private int buffered;
+    private boolean upstreamDone;
+    private Throwable upstreamError;
+
+    // only touched by the thread in drain()
+    private final AtomicInteger wip = new AtomicInteger();
+    private Batch current;
+    private int currentIndex;
+    private long nextDelivery;
+    private boolean terminated;
+
+    private final AtomicLong demand = new AtomicLong();
+    private volatile boolean cancelled;
+
+    private ConsentDecodingProcessor(Builder builder) {
+        this.executor = builder.executor;
+        this.batchSize = builder.batchSize;
+        this.maxBatchesInFlight = builder.maxBatchesInFlight;
+        this.bufferSize = batchSize * maxBatchesInFlight;
+        this.failureHandler = builder.failureHandler;
+        ParseLimits limits = builder.limits;
+        Function<String, VendorConsent> decoder = consentString -> VendorConsent.fromBase64String(consentString,
+                limits);
+        Map<String, VendorConsent> cache = builder.cache;
+        if (cache != null) {
+            decoder = consentString -> {
+                VendorConsent consent = cache.get(consentString);
+                if (consent == null) {
+                    consent = VendorConsent.fromBase64String(consentString, limits);
+                    cache.put(consentString, consent);
+                }
+                return consent;
+            };
+        }
+        this.decoder = decoder;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super VendorConsent> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        synchronized (lock) {
+            if (downstream != null) {
+                subscriber.onSubscribe(NoopSubscription.INSTANCE);
+                subscriber.onError(new IllegalStateException("ConsentDecodingProcessor allows one subscriber"));
+                return;
+            }
+            downstream = subscriber;
+        }
+        subscriber.onSubscribe(new DownstreamSubscription());
+        requestUpstream();
+        drain();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        Objects.requireNonNull(subscription, "subscription");
+        synchronized (lock) {
+            if (upstream != null) {
+                subscription.cancel();
+                return;
+            }
+            upstream = subscription;
+        }
+        if (cancelled) {
+            subscription.cancel();
+            return;
+        }
+        requestUpstream();
+    }
+
+    @Override
+    public void onNext(String consentString) {
+        Objects.requireNonNull(consentString, "consentString");
+        synchronized (lock) {
+            upstreamRequested--;
+            buffered++;
+            pending.add(consentString);
+        }
+        dispatch();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        Objects.requireNonNull(throwable, "throwable");
+        synchronized (lock) {
+            upstreamError = throwable;
+            upstreamDone = true;
+        }
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        synchronized (lock) {
+            upstreamDone = true;
+        }
+        drain();
+    }
+
+    private void dispatch() {
+        while (true) {
+            Batch batch;
+            synchronized (lock) {
+                if (batchesInFlight == maxBatchesInFlight || pending.isEmpty() || cancelled) {
+                    return;
+                }
+                String[] inputs = new String[Math.min(batchSize, pending.size())];
+                for (int i = 0; i < inputs.length; i++) {
+                    inputs[i] = pending.poll();
+                }
+                batch = new Batch(nextBatch++, inputs);
+                batchesInFlight++;
+            }
+            try {
+                executor.execute(() -> decode(batch));
+            } catch (RejectedExecutionException e) {
+                decode(batch);
+            }
+        }
+    }
+
+    private void decode(Batch batch) {
+        for (int i = 0; i < batch.inputs.length && !cancelled; i++) {
+            try {
+                batch.outputs[i] = decoder.apply(batch.inputs[i]);
+            } catch (RuntimeException e) {
+                batch.outputs[i] = e;
+            }
+        }
+        synchronized (lock) {
+            completed.put(batch.sequence, batch);
+            batchesInFlight--;
+        }
+        dispatch();
+        drain();
+    }
+
+    // emits decoded consents in order while there is demand, one thread at a time
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            int released = 0;
+            while (true) {
+                if (cancelled) {
+                    current = null;
+                    break;
+                }
+                if (current == null) {
+                    synchronized (lock) {
+                        current = completed.remove(nextDelivery);
+                    }
+                    if (current == null) {
+                        completeIfDone();
+                        break;
+                    }
+                    nextDelivery++;
+                    currentIndex = 0;
+                }
+                while (currentIndex < current.outputs.length) {
+                    Object output = current.outputs[currentIndex];
+                    if (output instanceof RuntimeException) {
+                        failureHandler.accept(current.inputs[currentIndex], (RuntimeException) output);
+                    } else {
+                        if (demand.get() == 0) {
+                            break;
+                        }
+                        if (demand.get() != Long.MAX_VALUE) {
+                            demand.decrementAndGet();
+                        }
+                        downstream.onNext((VendorConsent) output);
+                    }
+                    currentIndex++;
+                    released++;
+                }
+                if (currentIndex < current.outputs.length) {
+                    break;
+                }
+                current = null;
+            }
+            if (released > 0) {
+                synchronized (lock) {
+                    buffered -= released;
+                }
+                requestUpstream();
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void completeIfDone() {
+        Throwable error;
+        synchronized (lock) {
+            if (terminated || !upstreamDone || !pending.isEmpty() || batchesInFlight > 0 || !completed.isEmpty()
+                    || downstream == null) {
+                return;
+            }
+            error = upstreamError;
+        }
+        terminated = true;
+        if (error != null) {
+            downstream.onError(error);
+        } else {
+            downstream.onComplete();
+        }
+    }
+
+    private void requestUpstream() {
+        Flow.Subscription subscription;
+        long n;
+        synchronized (lock) {
+            if (upstream == null || downstream == null || upstreamDone || cancelled) {
+                return;
+            }
+            n = bufferSize - buffered - upstreamRequested;
+            // request in batch sized steps unless nothing is outstanding
+            if (n <= 0 || (n < batchSize && upstreamRequested > 0)) {
+                return;
+            }
+            upstreamRequested += n;
+            subscription = upstream;
+        }
+        subscription.request(n);
+    }
+
+    private final class DownstreamSubscription implements Flow.Subscription {
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                cancel();
+                downstream.onError(new IllegalArgumentException("non-positive request " + n));
+                return;
+            }
+            demand.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            Flow.Subscription subscription;
+            synchronized (lock) {
+                subscription = upstream;
+                pending.clear();
+                completed.clear();
+            }
+            if (subscription != null) {
+                subscription.cancel();
+            }
+        }
+    }
+
+    private enum NoopSubscription implements Flow.Subscription {
+        INSTANCE;
+
+        @Override
+        public void request(long n) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+    }
+
+    private static final class Batch {
+        final long sequence;
+        final String[] inputs;
+        // a VendorConsent or the RuntimeException decoding failed with
+        final Object[] outputs;
+
+        Batch(long sequence, String[] inputs) {
+            this.sequence = sequence;
+            this.inputs = inputs;
+            this.outputs = new Object[inputs.length];
+        }
+    }
+
+    public static class Builder {
+        private Executor executor = ForkJoinPool.commonPool();
+        private int batchSize = 64;
+        private int maxBatchesInFlight = Math.max(1, Runtime.getRuntime().availableProcessors());
+        private BiConsumer<String, RuntimeException> failureHandler = (consentString, e) -> {
+        };
+        private ParseLimits limits = ParseLimits.DEFAULT;
+        private Map<String, VendorConsent> cache;
+
+        /**
+         * @param executor:
+         *            decodes the batches, the common fork join pool by default. Batches it rejects are decoded on the
+         *            calling thread.
+         */
+        public Builder withExecutor(Executor executor) {
+            this.executor = Objects.requireNonNull(executor, "executor");
+            return this;
+        }
+
+        /**
+         * @param batchSize:
+         *            the most consent strings decoded by one task, 64 by default
+         */
+        public Builder withBatchSize(int batchSize) {
+            if (batchSize < 1) {
+                throw new IllegalArgumentException("batch size must be positive: " + batchSize);
+            }
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * @param maxBatchesInFlight:
+         *            the most batches decoded at the same time, the number of processors by default
+         */
+        public Builder withMaxBatchesInFlight(int maxBatchesInFlight) {
+            if (maxBatchesInFlight < 1) {
+                throw new IllegalArgumentException("max batches in flight must be positive: " + maxBatchesInFlight);
+            }
+            this.maxBatchesInFlight = maxBatchesInFlight;
+            return this;
+        }
+
+        /**
+         * @param failureHandler:
+         *            called with each consent string that cannot be decoded and the exception decoding failed with, in
+         *            stream order. Failures are dropped by default.
+         */
+        public Builder withFailureHandler(BiConsumer<String, RuntimeException> failureHandler) {
+            this.failureHandler = Objects.requireNonNull(failureHandler, "failureHandler");
+            return this;
+        }
+
+        public Builder withLimits(ParseLimits limits) {
+            this.limits = Objects.requireNonNull(limits, "limits");
+            return this;
+        }
+
+        /**
+         * @param cache:
+         *            looked up before decoding a consent string and filled with the decoded consent. Is called from
+         *            several threads, so it has to be thread safe. The processor does not bound its size.
+         */
+        public Builder withCache(Map<String, VendorConsent> cache) {
+            this.cache = cache;
+            return this;
+        }
+
+        public ConsentDecodingProcessor build() {
+            if ((long) batchSize * maxBatchesInFlight > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("batch size times max batches in flight is too large");
+            }
+            return new ConsentDecodingProcessor(this);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.yieldlab.gdpr;
+
+import static com.yieldlab.gdpr.GdprConstants.VENDOR_BITFIELD_OFFSET;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.yieldlab.gdpr.util.BitWords;
+
+/**
+ * Compares the Java 8 scalar bit access with the variant the running JVM loaded from the multi-release jar. On Java 8
+ * both are the same implementation; on Java 9 and later {@code BitAccess} reads through a VarHandle long view.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BitsBenchmark {
+    private static final int MAX_VENDOR_ID = 650;
+
+    private byte[] bytes;
+    private Bits bits;
+    private long[] words;
+    private int[] offsets;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(30);
+        bytes = new byte[(VENDOR_BITFIELD_OFFSET + MAX_VENDOR_ID) / 8 + 1];
+        random.nextBytes(bytes);
+        bits = new Bits(bytes);
+        words = new long[BitWords.wordsFor(MAX_VENDOR_ID)];
+        offsets = new int[64];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = random.nextInt(VENDOR_BITFIELD_OFFSET);
+        }
+    }
+
+    @Benchmark
+    public long readHeaderFieldsBitByBit() {
+        long sum = 0;
+        for (int offset : offsets) {
+            long value = 0;
+            for (int i = 0; i < 36; i++) {
+                value = value << 1 | (bits.getBit(offset + i) ? 1 : 0);
+            }
+            sum += value;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long readHeaderFieldsScalar() {
+        long sum = 0;
+        for (int offset : offsets) {
+            sum += ScalarBitAccess.read(bytes, offset, 36);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long readHeaderFields() {
+        long sum = 0;
+        for (int offset : offsets) {
+            sum += BitAccess.read(bytes, offset, 36);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long[] copyVendorBitFieldBitByBit() {
+        for (int i = 0; i < words.length; i++) {
+            words[i] = 0L;
+        }
+        for (int vendorId = 1; vendorId <= MAX_VENDOR_ID; vendorId++) {
+            if (bits.getBit(VENDOR_BITFIELD_OFFSET + vendorId - 1)) {
+                BitWords.set(words, vendorId);
+            }
+        }
+        return words;
+    }
+
+    @Benchmark
+    public long[] copyVendorBitFieldScalar() {
+        for (int i = 0; i < words.length; i++) {
+            words[i] = 0L;
+        }
+        ScalarBitAccess.copyToWords(bytes, VENDOR_BITFIELD_OFFSET, MAX_VENDOR_ID, words, 1);
+        return words;
+    }
+
+    @Benchmark
+    public long[] copyVendorBitField() {
+        for (int i = 0; i < words.length; i++) {
+            words[i] = 0L;
+        }
+        BitAccess.copyToWords(bytes, VENDOR_BITFIELD_OFFSET, MAX_VENDOR_ID, words, 1);
+        return words;
+    }
+}
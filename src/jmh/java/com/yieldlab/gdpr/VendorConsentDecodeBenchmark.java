@@ -0,0 +1,48 @@
+package com.yieldlab.gdpr;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.yieldlab.gdpr.corpus.ConsentCorpusGenerator;
+
+/**
+ * Decodes a generated corpus of consent strings with a production like mix of encodings.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class VendorConsentDecodeBenchmark {
+    private static final int CORPUS_SIZE = 10_000;
+
+    @Param({ "0.3" })
+    public double rangeEncodingShare;
+
+    private List<String> corpus;
+
+    @Setup
+    public void setUp() {
+        corpus = new ConsentCorpusGenerator.Builder().withSeed(29)
+                .withRangeEncodingShare(rangeEncodingShare)
+                .build()
+                .generate(CORPUS_SIZE);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CORPUS_SIZE)
+    public void fromBase64String(Blackhole blackhole) {
+        for (String consentString : corpus) {
+            blackhole.consume(VendorConsent.fromBase64String(consentString));
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.yieldlab.gdpr.evaluation;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.yieldlab.gdpr.VendorConsent;
+import com.yieldlab.gdpr.vendor.Vendor;
+import com.yieldlab.gdpr.vendor.VendorList;
+
+/**
+ * Compares the compiled evaluator with a vendor by vendor loop over a global vendor list sized vendor list.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConsentEvaluatorBenchmark {
+    private static final int VENDOR_COUNT = 650;
+
+    private VendorList vendorList;
+    private VendorConsent bitFieldConsent;
+    private VendorConsent rangeConsent;
+    private ConsentEvaluation evaluation;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(27);
+        List<Vendor> vendors = new ArrayList<>();
+        for (int id = 1; id <= VENDOR_COUNT; id++) {
+            Vendor vendor = new Vendor();
+            vendor.setId(id);
+            List<Integer> purposeIds = new ArrayList<>();
+            List<Integer> legIntPurposeIds = new ArrayList<>();
+            for (int purposeId = 1; purposeId <= 5; purposeId++) {
+                int choice = random.nextInt(4);
+                if (choice == 0) {
+                    purposeIds.add(purposeId);
+                } else if (choice == 1) {
+                    legIntPurposeIds.add(purposeId);
+                }
+            }
+            vendor.setPurposeIds(purposeIds);
+            vendor.setLegIntPurposeIds(legIntPurposeIds);
+            vendors.add(vendor);
+        }
+        vendorList = new VendorList();
+        vendorList.setVendorListVersion(150);
+        vendorList.setVendors(vendors);
+
+        List<Integer> bitField = new ArrayList<>();
+        List<VendorConsent.RangeEntry> rangeEntries = new ArrayList<>();
+        for (int vendorIndex = 0; vendorIndex < VENDOR_COUNT; vendorIndex++) {
+            if (random.nextInt(10) < 8) {
+                bitField.add(vendorIndex);
+            }
+        }
+        for (int vendorId = 1; vendorId < VENDOR_COUNT; vendorId += 40) {
+            rangeEntries.add(new VendorConsent.RangeEntry(vendorId, Math.min(vendorId + 20, VENDOR_COUNT)));
+        }
+        bitFieldConsent = consent().withVendorEncodingType(0).withBitField(bitField).build();
+        rangeConsent = consent().withVendorEncodingType(1).withDefaultConsent(true).withRangeEntries(rangeEntries)
+                .build();
+
+        evaluation = ConsentEvaluator.compile(vendorList).newEvaluation();
+    }
+
+    private static VendorConsent.Builder consent() {
+        return new VendorConsent.Builder().withVersion(1)
+                .withConsentRecordCreatedOn(Instant.ofEpochSecond(1525000000))
+                .withConsentRecordLastUpdatedOn(Instant.ofEpochSecond(1525000000))
+                .withCmpID(10)
+                .withCmpVersion(1)
+                .withConsentLanguage("EN")
+                .withVendorListVersion(150)
+                .withAllowedPurposesBits(0b1111_0000_0000_0000_0000_0000)
+                .withMaxVendorId(VENDOR_COUNT);
+    }
+
+    @Benchmark
+    public int compiledBitField() {
+        return evaluation.evaluate(bitFieldConsent).cardinality();
+    }
+
+    @Benchmark
+    public int compiledRange() {
+        return evaluation.evaluate(rangeConsent).cardinality();
+    }
+
+    @Benchmark
+    public int perVendorBitField() {
+        return perVendor(bitFieldConsent);
+    }
+
+    @Benchmark
+    public int perVendorRange() {
+        return perVendor(rangeConsent);
+    }
+
+    private int perVendor(VendorConsent consent) {
+        int allowed = 0;
+        for (Vendor vendor : vendorList.getVendors()) {
+            if (vendor.getPurposeIds().isEmpty() && !vendor.getLegIntPurposeIds().isEmpty()
+                    || consent.isVendorAllowed(vendor.getId()) && consent.arePurposesAllowed(vendor.getPurposeIds())) {
+                allowed++;
+            }
+        }
+        return allowed;
+    }
+}
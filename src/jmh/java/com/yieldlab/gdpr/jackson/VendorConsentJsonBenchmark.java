@@ -0,0 +1,80 @@
+package com.yieldlab.gdpr.jackson;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.yieldlab.gdpr.VendorConsent;
+import com.yieldlab.gdpr.corpus.ConsentCorpusGenerator;
+
+/**
+ * Reads bid request like JSON documents holding a consent string, decoding the consent with
+ * {@link VendorConsentModule} versus reading a String and calling {@link VendorConsent#fromBase64String(String)}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class VendorConsentJsonBenchmark {
+    private static final int CORPUS_SIZE = 1_000;
+
+    public static class DecodedRequest {
+        public String id;
+        public VendorConsent consent;
+    }
+
+    public static class StringRequest {
+        public String id;
+        public String consent;
+    }
+
+    private List<byte[]> documents;
+    private ObjectReader moduleReader;
+    private ObjectReader stringReader;
+
+    @Setup
+    public void setUp() {
+        List<String> corpus = new ConsentCorpusGenerator.Builder().withSeed(40)
+                .withRangeEncodingShare(0.3)
+                .build()
+                .generate(CORPUS_SIZE);
+        documents = new ArrayList<>();
+        for (int i = 0; i < corpus.size(); i++) {
+            documents.add(("{\"id\":\"request-" + i + "\",\"consent\":\"" + corpus.get(i) + "\"}")
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+        moduleReader = new ObjectMapper().registerModule(new VendorConsentModule()).readerFor(DecodedRequest.class);
+        stringReader = new ObjectMapper().readerFor(StringRequest.class);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CORPUS_SIZE)
+    public void module(Blackhole blackhole) throws IOException {
+        for (byte[] document : documents) {
+            DecodedRequest request = moduleReader.readValue(document);
+            blackhole.consume(request.consent);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CORPUS_SIZE)
+    public void string(Blackhole blackhole) throws IOException {
+        for (byte[] document : documents) {
+            StringRequest request = stringReader.readValue(document);
+            blackhole.consume(VendorConsent.fromBase64String(request.consent));
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.yieldlab.gdpr.migration;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.yieldlab.gdpr.VendorConsent;
+import com.yieldlab.gdpr.corpus.ConsentCorpusGenerator;
+import com.yieldlab.gdpr.vendor.Vendor;
+import com.yieldlab.gdpr.vendor.VendorList;
+
+/**
+ * Compares migrating 10000 consent strings in bulk with a decode, vendor by vendor rebuild and encode per record.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ConsentMigrationBenchmark {
+    private List<String> consentStrings;
+    private VendorList vendorList;
+    private Set<Integer> listed;
+    private ConsentMigration migration;
+
+    @Setup
+    public void setUp() {
+        consentStrings = new ConsentCorpusGenerator.Builder().withSeed(46)
+                .withMaxVendorIdBetween(100, 600)
+                .build()
+                .generate(10_000);
+        List<Vendor> vendors = new ArrayList<>();
+        listed = new HashSet<>();
+        for (int id = 1; id <= 700; id++) {
+            if (id % 13 != 0) {
+                Vendor vendor = new Vendor();
+                vendor.setId(id);
+                vendors.add(vendor);
+                listed.add(id);
+            }
+        }
+        vendorList = new VendorList();
+        vendorList.setVendorListVersion(300);
+        vendorList.setVendors(vendors);
+        migration = new ConsentMigration.Builder().withVendorList(vendorList).build();
+    }
+
+    @Benchmark
+    public List<String> bulk() {
+        return migration.migrateAll(consentStrings);
+    }
+
+    @Benchmark
+    public List<String> singleThreadedMigrator() {
+        ConsentMigrator migrator = migration.newMigrator();
+        List<String> migrated = new ArrayList<>(consentStrings.size());
+        for (String consentString : consentStrings) {
+            migrated.add(migrator.migrate(consentString));
+        }
+        return migrated;
+    }
+
+    @Benchmark
+    public List<String> recordByRecord() {
+        List<String> migrated = new ArrayList<>(consentStrings.size());
+        for (String consentString : consentStrings) {
+            VendorConsent consent = VendorConsent.fromBase64String(consentString);
+            List<Integer> bitField = new ArrayList<>();
+            for (int vendorId = 1; vendorId <= consent.getMaxVendorId(); vendorId++) {
+                if (consent.isVendorAllowed(vendorId) && listed.contains(vendorId)) {
+                    bitField.add(vendorId - 1);
+                }
+            }
+            migrated.add(new VendorConsent.Builder().withVersion(consent.getVersion())
+                    .withConsentRecordCreatedOn(consent.getConsentRecordCreated())
+                    .withConsentRecordLastUpdatedOn(consent.getConsentRecordLastUpdated())
+                    .withCmpID(consent.getCmpId())
+                    .withCmpVersion(consent.getCmpVersion())
+                    .withConsentScreenID(consent.getConsentScreen())
+                    .withConsentLanguage(consent.getConsentLanguage())
+                    .withVendorListVersion(vendorList.getVendorListVersion())
+                    .withAllowedPurposesBits(consent.getAllowedPurposesBits())
+                    .withMaxVendorId(700)
+                    .withVendorEncodingType(0)
+                    .withBitField(bitField)
+                    .build()
+                    .getConsentString());
+        }
+        return migrated;
+    }
+}
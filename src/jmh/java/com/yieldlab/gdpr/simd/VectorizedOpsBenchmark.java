@@ -0,0 +1,113 @@
+package com.yieldlab.gdpr.simd;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.yieldlab.gdpr.corpus.ConsentCorpusGenerator;
+import com.yieldlab.gdpr.util.BitWords;
+
+/**
+ * Compares the backend picked by {@link VectorizedOps} with the scalar backend and java.util.Base64. Run on Java 17
+ * with {@code --add-modules jdk.incubator.vector} to measure the Vector API backend.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class VectorizedOpsBenchmark {
+    private static final int CORPUS_SIZE = 1_000;
+    private static final int BIT_SETS = 1_000;
+
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private byte[][] asciiCorpus;
+    private byte[] decoded;
+    private long[][] bitSets;
+    private long[] accumulator;
+
+    @Setup
+    public void setUp() {
+        List<String> corpus = new ConsentCorpusGenerator.Builder().withSeed(31)
+                .withAcceptAllRejectAllShares(0, 0)
+                .withRangeEncodingShare(0)
+                .build()
+                .generate(CORPUS_SIZE);
+        asciiCorpus = new byte[CORPUS_SIZE][];
+        for (int i = 0; i < CORPUS_SIZE; i++) {
+            asciiCorpus[i] = corpus.get(i).getBytes(StandardCharsets.ISO_8859_1);
+        }
+        decoded = new byte[4096];
+
+        Random random = new Random(31);
+        int words = BitWords.wordsFor(700);
+        bitSets = new long[BIT_SETS][words];
+        for (long[] bitSet : bitSets) {
+            for (int w = 0; w < words; w++) {
+                bitSet[w] = random.nextLong();
+            }
+        }
+        accumulator = new long[words];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CORPUS_SIZE)
+    public void decodeJavaUtilBase64(Blackhole blackhole) {
+        for (byte[] ascii : asciiCorpus) {
+            blackhole.consume(DECODER.decode(ascii));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CORPUS_SIZE)
+    public int decodeScalar() {
+        int total = 0;
+        for (byte[] ascii : asciiCorpus) {
+            total += ScalarBackend.INSTANCE.decodeBase64Url(ascii, 0, ascii.length, decoded, 0);
+        }
+        return total;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CORPUS_SIZE)
+    public int decode() {
+        int total = 0;
+        for (byte[] ascii : asciiCorpus) {
+            total += VectorizedOps.decodeBase64Url(ascii, 0, ascii.length, decoded, 0);
+        }
+        return total;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BIT_SETS)
+    public long orAndCountScalar() {
+        long count = 0;
+        for (long[] bitSet : bitSets) {
+            ScalarBackend.INSTANCE.or(accumulator, bitSet, accumulator.length);
+            count += ScalarBackend.INSTANCE.andCardinality(accumulator, bitSet, accumulator.length);
+        }
+        return count;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BIT_SETS)
+    public long orAndCount() {
+        long count = 0;
+        for (long[] bitSet : bitSets) {
+            VectorizedOps.or(accumulator, bitSet);
+            count += VectorizedOps.andCardinality(accumulator, bitSet);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,79 @@
+package com.yieldlab.gdpr.template;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.yieldlab.gdpr.VendorConsent;
+import com.yieldlab.gdpr.corpus.ConsentCorpusGenerator;
+import com.yieldlab.gdpr.util.BitWords;
+
+/**
+ * Mints consent strings for a fixed vendor and purpose choice, through the builder and through a template.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ConsentTemplateBenchmark {
+    private VendorConsent prototype;
+    private ConsentTemplate.Minter minter;
+    private byte[] buffer;
+    private long now = System.currentTimeMillis();
+
+    @Setup
+    public void setUp() {
+        prototype = new ConsentCorpusGenerator.Builder().withSeed(37)
+                .withMaxVendorIdBetween(600, 600)
+                .withRangeEncodingShare(0)
+                .build()
+                .nextConsent();
+        ConsentTemplate template = ConsentTemplate.of(prototype);
+        minter = template.newMinter();
+        buffer = new byte[template.length()];
+    }
+
+    @Benchmark
+    public String builder() {
+        now += 100;
+        Instant timestamp = Instant.ofEpochMilli(now);
+        return new VendorConsent.Builder().withVersion(prototype.getVersion())
+                .withConsentRecordCreatedOn(timestamp)
+                .withConsentRecordLastUpdatedOn(timestamp)
+                .withCmpID(prototype.getCmpId())
+                .withCmpVersion(prototype.getCmpVersion())
+                .withConsentScreenID(prototype.getConsentScreen())
+                .withConsentLanguage(prototype.getConsentLanguage())
+                .withVendorListVersion(prototype.getVendorListVersion())
+                .withAllowedPurposesBits(prototype.getAllowedPurposesBits())
+                .withMaxVendorId(prototype.getMaxVendorId())
+                .withVendorBits(vendorBits())
+                .build()
+                .getConsentString();
+    }
+
+    @Benchmark
+    public String mint() {
+        now += 100;
+        return minter.mint(now, now);
+    }
+
+    @Benchmark
+    public byte[] mintToBuffer() {
+        now += 100;
+        minter.mintTo(now, now, buffer, 0);
+        return buffer;
+    }
+
+    private long[] vendorBits() {
+        long[] words = new long[BitWords.wordsFor(prototype.getMaxVendorId())];
+        prototype.copyVendorBits(words);
+        return words;
+    }
+}
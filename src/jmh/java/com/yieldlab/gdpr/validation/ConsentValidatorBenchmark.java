@@ -0,0 +1,142 @@
+package com.yieldlab.gdpr.validation;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.yieldlab.gdpr.VendorConsent;
+import com.yieldlab.gdpr.vendor.Purpose;
+import com.yieldlab.gdpr.vendor.Vendor;
+import com.yieldlab.gdpr.vendor.VendorList;
+
+/**
+ * Compares the compiled validator with nested loops over the vendors and purposes of a global vendor list sized list.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ConsentValidatorBenchmark {
+    private static final int VENDOR_COUNT = 650;
+
+    private VendorList vendorList;
+    private ConsentValidator validator;
+    private VendorConsent bitFieldConsent;
+    private VendorConsent rangeConsent;
+
+    @Setup
+    public void setUp() {
+        List<Vendor> vendors = new ArrayList<>();
+        for (int id = 1; id <= VENDOR_COUNT; id++) {
+            // a few vendors left the list
+            if (id % 50 != 0) {
+                Vendor vendor = new Vendor();
+                vendor.setId(id);
+                vendors.add(vendor);
+            }
+        }
+        List<Purpose> purposes = new ArrayList<>();
+        for (int id = 1; id <= 5; id++) {
+            Purpose purpose = new Purpose();
+            purpose.setId(id);
+            purposes.add(purpose);
+        }
+        vendorList = new VendorList();
+        vendorList.setVendorListVersion(150);
+        vendorList.setVendors(vendors);
+        vendorList.setPurposes(purposes);
+        validator = new ConsentValidator.Builder().withVendorList(vendorList).build();
+
+        List<Integer> bitField = new ArrayList<>();
+        List<VendorConsent.RangeEntry> rangeEntries = new ArrayList<>();
+        for (Vendor vendor : vendors) {
+            bitField.add(vendor.getId() - 1);
+        }
+        for (int vendorId = 50; vendorId <= VENDOR_COUNT; vendorId += 50) {
+            rangeEntries.add(new VendorConsent.RangeEntry(vendorId));
+        }
+        bitFieldConsent = consent().withVendorEncodingType(0).withBitField(bitField).build();
+        rangeConsent = consent().withVendorEncodingType(1).withDefaultConsent(true).withRangeEntries(rangeEntries)
+                .build();
+    }
+
+    private static VendorConsent.Builder consent() {
+        return new VendorConsent.Builder().withVersion(1)
+                .withConsentRecordCreatedOn(Instant.ofEpochSecond(1525000000))
+                .withConsentRecordLastUpdatedOn(Instant.ofEpochSecond(1525000000))
+                .withCmpID(10)
+                .withCmpVersion(1)
+                .withConsentLanguage("EN")
+                .withVendorListVersion(150)
+                .withAllowedPurposesBits(0b1111_1000_0000_0000_0000_0000)
+                .withMaxVendorId(VENDOR_COUNT);
+    }
+
+    @Benchmark
+    public boolean compiledBitField() {
+        return validator.isValid(bitFieldConsent);
+    }
+
+    @Benchmark
+    public boolean compiledRange() {
+        return validator.isValid(rangeConsent);
+    }
+
+    @Benchmark
+    public boolean nestedLoopsBitField() {
+        return nestedLoops(bitFieldConsent);
+    }
+
+    @Benchmark
+    public boolean nestedLoopsRange() {
+        return nestedLoops(rangeConsent);
+    }
+
+    private boolean nestedLoops(VendorConsent consent) {
+        if (consent.getVendorListVersion() != vendorList.getVendorListVersion()) {
+            return false;
+        }
+        int maxVendorId = 0;
+        for (Vendor vendor : vendorList.getVendors()) {
+            maxVendorId = Math.max(maxVendorId, vendor.getId());
+        }
+        if (consent.getMaxVendorId() > maxVendorId) {
+            return false;
+        }
+        for (int vendorId = 1; vendorId <= consent.getMaxVendorId(); vendorId++) {
+            if (consent.isVendorAllowed(vendorId)) {
+                boolean listed = false;
+                for (Vendor vendor : vendorList.getVendors()) {
+                    if (vendor.getId() == vendorId) {
+                        listed = true;
+                        break;
+                    }
+                }
+                if (!listed) {
+                    return false;
+                }
+            }
+        }
+        for (Integer purposeId : consent.getAllowedPurposes()) {
+            boolean defined = false;
+            for (Purpose purpose : vendorList.getPurposes()) {
+                if (purpose.getId() == purposeId) {
+                    defined = true;
+                    break;
+                }
+            }
+            if (!defined) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,18 @@
+package com.yieldlab.gdpr;
+
+/*
+ * Bit extraction primitives used by Bits. This is the Java 8 variant; the multi-release jar replaces it on Java 9
+ * and later with a variant in src/main/java9 that reads eight bytes at a time through a VarHandle.
+ */
+final class BitAccess {
+    private BitAccess() {
+    }
+
+    static long read(byte[] bytes, int startInclusive, int size) {
+        return ScalarBitAccess.read(bytes, startInclusive, size);
+    }
+
+    static void copyToWords(byte[] bytes, int startInclusive, int size, long[] words, int toBit) {
+        ScalarBitAccess.copyToWords(bytes, startInclusive, size, words, toBit);
+    }
+}
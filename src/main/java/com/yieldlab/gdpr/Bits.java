@@ -1,10 +1,12 @@
 package com.yieldlab.gdpr;
 
 import java.time.Instant;
+import java.util.Arrays;
 
 import com.yieldlab.gdpr.exception.VendorConsentCreateException;
 import com.yieldlab.gdpr.exception.VendorConsentException;
 import com.yieldlab.gdpr.exception.VendorConsentParseException;
+import com.yieldlab.gdpr.util.Fingerprints;
 
 
 /*
@@ -15,9 +17,33 @@ public class Bits {
     // big endian
     private static final byte[] bytePows = { -128, 64, 32, 16, 8, 4, 2, 1 };
     private final byte[] bytes;
+    // bit string starts at this byte of the array
+    private final int offset;
+    private final int bitLength;
 
     public Bits(byte[] b) {
         this.bytes = b;
+        this.offset = 0;
+        this.bitLength = b.length * 8;
+    }
+
+    /**
+     * A bit string backed by a range of the given array. The array is not copied.
+     *
+     * @param b:
+     *            the backing array
+     * @param offset:
+     *            the first byte of the bit string
+     * @param length:
+     *            the number of bytes of the bit string
+     */
+    public Bits(byte[] b, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > b.length - length) {
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + length + ", size " + b.length);
+        }
+        this.bytes = b;
+        this.offset = offset;
+        this.bitLength = length * 8;
     }
 
     /**
@@ -27,7 +53,8 @@ public class Bits {
      * @return boolean bit, true if the bit is switched to 1, false otherwise
      */
     public boolean getBit(int index) {
-        int byteIndex = index / 8;
+        checkRange(index, 1);
+        int byteIndex = offset + index / 8;
         int bitExact = index % 8;
         byte b = bytes[byteIndex];
         return (b & bytePows[bitExact]) != 0;
@@ -39,9 +66,10 @@ public class Bits {
      *            set the nth number bit from the bit string
      */
     public void setBit(int index) {
+        checkRange(index, 1);
         int byteIndex = index / 8;
         int shift = (byteIndex + 1) * 8 - index - 1;
-        bytes[byteIndex] |= 1 << shift;
+        bytes[offset + byteIndex] |= 1 << shift;
     }
 
     /**
@@ -50,9 +78,10 @@ public class Bits {
      *            unset the nth number bit from the bit string
      */
     public void unsetBit(int index) {
+        checkRange(index, 1);
         int byteIndex = index / 8;
         int shift = (byteIndex + 1) * 8 - index - 1;
-        bytes[byteIndex] &= ~(1 << shift);
+        bytes[offset + byteIndex] &= ~(1 << shift);
     }
 
     /**
@@ -70,17 +99,8 @@ public class Bits {
         if (size > Integer.SIZE) {
             throw new VendorConsentParseException("can't fit bit range in int " + size);
         }
-        int val = 0;
-        int sigMask = 1;
-        int sigIndex = size - 1;
-
-        for (int i = 0; i < size; i++) {
-            if (getBit(startInclusive + i)) {
-                val += (sigMask << sigIndex);
-            }
-            sigIndex--;
-        }
-        return val;
+        checkRange(startInclusive, size);
+        return (int) BitAccess.read(bytes, offset * 8 + startInclusive, size);
     }
 
     /**
@@ -119,17 +139,27 @@ public class Bits {
         if (size > Long.SIZE) {
             throw new VendorConsentParseException("can't fit bit range in long: " + size);
         }
-        long val = 0;
-        long sigMask = 1;
-        int sigIndex = size - 1;
+        checkRange(startInclusive, size);
+        return BitAccess.read(bytes, offset * 8 + startInclusive, size);
+    }
 
-        for (int i = 0; i < size; i++) {
-            if (getBit(startInclusive + i)) {
-                val += (sigMask << sigIndex);
-            }
-            sigIndex--;
-        }
-        return val;
+    /**
+     * Copies n bits into a word based bit set as described in {@link com.yieldlab.gdpr.util.BitWords}. The bit at
+     * startInclusive becomes bit toBit of the target, the following bits the higher ones. Bits are ORed into the
+     * target.
+     *
+     * @param startInclusive:
+     *            the nth bit to begin copying from
+     * @param size:
+     *            the number of bits to copy
+     * @param words:
+     *            the target bit set, large enough to hold bit toBit + size - 1
+     * @param toBit:
+     *            the target bit of the first copied bit
+     */
+    public void copyToWords(int startInclusive, int size, long[] words, int toBit) {
+        checkRange(startInclusive, size);
+        BitAccess.copyToWords(bytes, offset * 8 + startInclusive, size, words, toBit);
     }
 
     /**
@@ -180,7 +210,7 @@ public class Bits {
      *
      */
     public int length() {
-        return bytes.length * 8;
+        return bitLength;
     }
 
     /**
@@ -250,16 +280,46 @@ public class Bits {
         return s.toString();
     }
 
+    /**
+     * @return the bytes of the bit string. This is the backing array itself unless the bit string is backed by a range
+     *         of a larger array.
+     */
     public byte[] toByteArray() {
-        return bytes;
+        if (offset == 0 && bitLength == bytes.length * 8) {
+            return bytes;
+        }
+        return Arrays.copyOfRange(bytes, offset, offset + bitLength / 8);
+    }
+
+    /**
+     * @return the {@link com.yieldlab.gdpr.util.Fingerprints fingerprint} of the bytes of the bit string, hashed in
+     *         place
+     */
+    public long fingerprint() {
+        return Fingerprints.of(bytes, offset, bitLength / 8);
+    }
+
+    /**
+     * Copies the bytes of the bit string into the given array.
+     */
+    public void copyBytes(byte[] target, int targetOffset) {
+        System.arraycopy(bytes, offset, target, targetOffset, bitLength / 8);
+    }
+
+    private void checkRange(int startInclusive, int size) {
+        if (startInclusive < 0 || size < 0 || startInclusive > bitLength - size) {
+            throw new VendorConsentParseException(
+                    "bit range " + startInclusive + " to " + (startInclusive + size) + " exceeds length " + bitLength);
+        }
     }
 
     private void setNumber(int startInclusive, int size, long to) {
+        checkRange(startInclusive, size);
         for (int i = size - 1; i >= 0; i--) {
             int index = startInclusive + i;
             int byteIndex = index / 8;
             int shift = (byteIndex + 1) * 8 - index - 1;
-            bytes[byteIndex] |= (to % 2) << shift;
+            bytes[offset + byteIndex] |= (to % 2) << shift;
             to /= 2;
         }
     }
@@ -0,0 +1,130 @@
+package com.yieldlab.gdpr;
+
+import static com.yieldlab.gdpr.GdprConstants.MAX_VENDOR_ID_SIZE;
+import static com.yieldlab.gdpr.GdprConstants.NUM_ENTRIES_SIZE;
+import static com.yieldlab.gdpr.GdprConstants.RANGE_ENTRY_OFFSET;
+import static com.yieldlab.gdpr.GdprConstants.VENDOR_ID_SIZE;
+
+import java.util.Objects;
+
+/**
+ * Upper bounds for parsing consent strings. Parsing rejects input exceeding them before decoding the affected
+ * section, so the cost of a crafted consent string is bounded by the limits instead of by what its header claims.
+ *
+ * {@link #DEFAULT} allows everything the consent string format can express.
+ */
+public final class ParseLimits {
+    private static final int FORMAT_MAX_VENDOR_ID = (1 << MAX_VENDOR_ID_SIZE) - 1;
+    private static final int FORMAT_MAX_RANGE_ENTRIES = (1 << NUM_ENTRIES_SIZE) - 1;
+    // a range section with the most entries, each a start and end vendor id
+    private static final int FORMAT_MAX_INPUT_LENGTH = (RANGE_ENTRY_OFFSET
+            + FORMAT_MAX_RANGE_ENTRIES * (1 + 2 * VENDOR_ID_SIZE) + 7) / 8;
+
+    public static final ParseLimits DEFAULT = new Builder().build();
+
+    private final int maxVendorId;
+    private final int maxRangeEntries;
+    private final int maxInputLength;
+
+    private ParseLimits(Builder builder) {
+        this.maxVendorId = builder.maxVendorId;
+        this.maxRangeEntries = builder.maxRangeEntries;
+        this.maxInputLength = builder.maxInputLength;
+    }
+
+    /**
+     * @return the highest accepted max vendor id
+     */
+    public int getMaxVendorId() {
+        return maxVendorId;
+    }
+
+    /**
+     * @return the highest accepted number of range entries
+     */
+    public int getMaxRangeEntries() {
+        return maxRangeEntries;
+    }
+
+    /**
+     * @return the highest accepted length of the binary consent in bytes
+     */
+    public int getMaxInputLength() {
+        return maxInputLength;
+    }
+
+    /**
+     * @return the highest accepted length of a base64 consent string in characters, without padding
+     */
+    public int getMaxBase64Length() {
+        return (int) (((long) maxInputLength * 8 + 5) / 6);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (o == null || getClass() != o.getClass())
+            return false;
+        ParseLimits limits = (ParseLimits) o;
+        return maxVendorId == limits.maxVendorId && maxRangeEntries == limits.maxRangeEntries
+                && maxInputLength == limits.maxInputLength;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(maxVendorId, maxRangeEntries, maxInputLength);
+    }
+
+    @Override
+    public String toString() {
+        return "ParseLimits{" + "maxVendorId=" + maxVendorId + ", maxRangeEntries=" + maxRangeEntries
+                + ", maxInputLength=" + maxInputLength + '}';
+    }
+
+    public static class Builder {
+        private int maxVendorId = FORMAT_MAX_VENDOR_ID;
+        private int maxRangeEntries = FORMAT_MAX_RANGE_ENTRIES;
+        private int maxInputLength = FORMAT_MAX_INPUT_LENGTH;
+
+        /**
+         * @param maxVendorId:
+         *            consents with a higher max vendor id are rejected. Bounds the bit field section and the memory of
+         *            the parsed consent.
+         */
+        public Builder withMaxVendorId(int maxVendorId) {
+            this.maxVendorId = check("max vendor id", maxVendorId, FORMAT_MAX_VENDOR_ID);
+            return this;
+        }
+
+        /**
+         * @param maxRangeEntries:
+         *            range consents with more entries are rejected
+         */
+        public Builder withMaxRangeEntries(int maxRangeEntries) {
+            this.maxRangeEntries = check("max range entries", maxRangeEntries, FORMAT_MAX_RANGE_ENTRIES);
+            return this;
+        }
+
+        /**
+         * @param maxInputLength:
+         *            binary consents longer than this many bytes, and base64 consent strings that would decode to
+         *            more, are rejected without being decoded
+         */
+        public Builder withMaxInputLength(int maxInputLength) {
+            this.maxInputLength = check("max input length", maxInputLength, FORMAT_MAX_INPUT_LENGTH);
+            return this;
+        }
+
+        private static int check(String name, int value, int formatMaximum) {
+            if (value < 0 || value > formatMaximum) {
+                throw new IllegalArgumentException(name + " must be within 0 and " + formatMaximum + ": " + value);
+            }
+            return value;
+        }
+
+        public ParseLimits build() {
+            return new ParseLimits(this);
+        }
+    }
+}
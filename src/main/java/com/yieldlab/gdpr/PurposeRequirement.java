@@ -0,0 +1,134 @@
+package com.yieldlab.gdpr;
+
+import static com.yieldlab.gdpr.GdprConstants.PURPOSES_SIZE;
+
+import java.util.List;
+
+/**
+ * An immutable set of purpose ids compiled into the same 24 bit layout as the purposes field of the consent string.
+ * Once created it can be checked against any number of consents with a single AND and compare.
+ */
+public final class PurposeRequirement {
+    public static final PurposeRequirement NONE = new PurposeRequirement(0);
+    private static final int ALL_PURPOSES = (1 << PURPOSES_SIZE) - 1;
+
+    private final int mask;
+
+    private PurposeRequirement(int mask) {
+        this.mask = mask;
+    }
+
+    /**
+     * @param purposeIds
+     *            the purpose ids to require, each between 1 and 24
+     * @throws IllegalArgumentException
+     *             if a purpose id is out of range
+     */
+    public static PurposeRequirement of(int... purposeIds) {
+        int mask = 0;
+        for (int purposeId : purposeIds) {
+            mask |= checkedPurposeBit(purposeId);
+        }
+        return new PurposeRequirement(mask);
+    }
+
+    /**
+     * @param purposeIds
+     *            the purpose ids to require, each between 1 and 24
+     * @throws IllegalArgumentException
+     *             if a purpose id is out of range
+     */
+    public static PurposeRequirement of(List<Integer> purposeIds) {
+        int mask = 0;
+        for (int purposeId : purposeIds) {
+            mask |= checkedPurposeBit(purposeId);
+        }
+        return new PurposeRequirement(mask);
+    }
+
+    /**
+     * @param mask
+     *            a purposes bit mask as returned by {@link VendorConsent#getAllowedPurposesBits()}
+     */
+    public static PurposeRequirement fromMask(int mask) {
+        if ((mask & ~ALL_PURPOSES) != 0) {
+            throw new IllegalArgumentException("purpose mask must fit in " + PURPOSES_SIZE + " bits: " + mask);
+        }
+        return new PurposeRequirement(mask);
+    }
+
+    /**
+     * @return the bit of the given purpose id in the purposes field. Purpose #1 is the most significant bit.
+     */
+    static int purposeBit(int purposeId) {
+        return 1 << (PURPOSES_SIZE - purposeId);
+    }
+
+    private static int checkedPurposeBit(int purposeId) {
+        if (purposeId < 1 || purposeId > PURPOSES_SIZE) {
+            throw new IllegalArgumentException("purpose id must be between 1 and " + PURPOSES_SIZE + ": " + purposeId);
+        }
+        return purposeBit(purposeId);
+    }
+
+    public int getMask() {
+        return mask;
+    }
+
+    public boolean isEmpty() {
+        return mask == 0;
+    }
+
+    /**
+     * @return true if every required purpose is set in the given purposes bits. An empty requirement is always
+     *         satisfied.
+     */
+    public boolean isAllOf(int allowedPurposesBits) {
+        return (allowedPurposesBits & mask) == mask;
+    }
+
+    /**
+     * @return true if at least one required purpose is set in the given purposes bits
+     */
+    public boolean isAnyOf(int allowedPurposesBits) {
+        return (allowedPurposesBits & mask) != 0;
+    }
+
+    /**
+     * @return true if none of the required purposes is set in the given purposes bits
+     */
+    public boolean isNoneOf(int allowedPurposesBits) {
+        return (allowedPurposesBits & mask) == 0;
+    }
+
+    public boolean isAllOf(VendorConsent consent) {
+        return isAllOf(consent.getAllowedPurposesBits());
+    }
+
+    public boolean isAnyOf(VendorConsent consent) {
+        return isAnyOf(consent.getAllowedPurposesBits());
+    }
+
+    public boolean isNoneOf(VendorConsent consent) {
+        return isNoneOf(consent.getAllowedPurposesBits());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (o == null || getClass() != o.getClass())
+            return false;
+        return mask == ((PurposeRequirement) o).mask;
+    }
+
+    @Override
+    public int hashCode() {
+        return mask;
+    }
+
+    @Override
+    public String toString() {
+        return "PurposeRequirement{" + "mask=" + Integer.toBinaryString(mask) + '}';
+    }
+}
@@ -0,0 +1,59 @@
+package com.yieldlab.gdpr;
+
+/*
+ * Java 8 implementation of the bit extraction primitives behind Bits. Reads whole bytes instead of single bits.
+ * Always present, so benchmarks can compare it with the BitAccess variant the running JVM picked from the
+ * multi-release jar.
+ */
+final class ScalarBitAccess {
+    private ScalarBitAccess() {
+    }
+
+    /**
+     * Interprets size bits starting at bit startInclusive of the big endian byte array as an unsigned number.
+     *
+     * @param size
+     *            0 to 64
+     * @throws ArrayIndexOutOfBoundsException
+     *             if the bits are not within the array
+     */
+    static long read(byte[] bytes, int startInclusive, int size) {
+        if (size == 0) {
+            return 0L;
+        }
+        int lastBit = startInclusive + size - 1;
+        int firstByte = startInclusive >>> 3;
+        int lastByte = lastBit >>> 3;
+        if (lastByte - firstByte >= Long.BYTES) {
+            // an unaligned 64 bit value spans nine bytes
+            return read(bytes, startInclusive, size - 32) << 32 | read(bytes, lastBit - 31, 32);
+        }
+        long value = 0L;
+        for (int i = firstByte; i <= lastByte; i++) {
+            value = value << 8 | (bytes[i] & 0xff);
+        }
+        value >>>= 7 - (lastBit & 7);
+        return size == Long.SIZE ? value : value & ((1L << size) - 1);
+    }
+
+    /**
+     * Copies size bits starting at bit startInclusive into words, using the layout of
+     * {@link com.yieldlab.gdpr.util.BitWords}, where the first copied bit becomes bit toBit. Bits are ORed into the
+     * target, which is expected to be cleared.
+     */
+    static void copyToWords(byte[] bytes, int startInclusive, int size, long[] words, int toBit) {
+        int src = startInclusive;
+        int dst = toBit;
+        int remaining = size;
+        while (remaining > 0) {
+            int bitInWord = dst & 63;
+            int n = Math.min(Long.SIZE - bitInWord, remaining);
+            // the first source bit is the most significant one, it has to become the lowest target bit
+            long reversed = Long.reverse(read(bytes, src, n)) >>> (Long.SIZE - n);
+            words[dst >>> 6] |= reversed << bitInWord;
+            src += n;
+            dst += n;
+            remaining -= n;
+        }
+    }
+}
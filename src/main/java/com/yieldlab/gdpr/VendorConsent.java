@@ -31,20 +31,31 @@ import static com.yieldlab.gdpr.GdprConstants.VENDOR_LIST_VERSION_SIZE;
 import static com.yieldlab.gdpr.GdprConstants.VERSION_BIT_OFFSET;
 import static com.yieldlab.gdpr.GdprConstants.VERSION_BIT_SIZE;
 
+import java.nio.ByteBuffer;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.Base64.Decoder;
 import java.util.Base64.Encoder;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.IntConsumer;
 import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
 
 import com.yieldlab.gdpr.exception.GdprException;
 import com.yieldlab.gdpr.exception.VendorConsentCreateException;
 import com.yieldlab.gdpr.exception.VendorConsentException;
 import com.yieldlab.gdpr.exception.VendorConsentParseException;
+import com.yieldlab.gdpr.jfr.ConsentEvents;
+import com.yieldlab.gdpr.util.BitWords;
 import com.yieldlab.gdpr.util.ConsentStringParser;
+import com.yieldlab.gdpr.util.Fingerprints;
 
 /**
  * This class implements a builder and a factory method for the IAB consent as specified in
@@ -57,7 +68,20 @@ public class VendorConsent {
     private static Decoder decoder = Base64.getUrlDecoder();
     // As per the GDPR framework guidelines padding should be ommitted
     private static Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+    // the value of each url safe base64 character, -1 for other ASCII characters
+    private static final byte[] BASE64_VALUES = new byte[128];
+    static {
+        Arrays.fill(BASE64_VALUES, (byte) -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+        for (int i = 0; i < alphabet.length(); i++) {
+            BASE64_VALUES[alphabet.charAt(i)] = (byte) i;
+        }
+    }
+    // null for consents sharing an interned vendor section, these encode their bits when the bytes are needed
     private final Bits bits;
+    // of the encoded form, kept instead of it by consents without bits
+    private final long fingerprint;
+    private final int byteLength;
     // fields contained in the consent string
     private final int version;
     private final Instant consentRecordCreated;
@@ -69,12 +93,11 @@ public class VendorConsent {
     private final int vendorListVersion;
     private final int maxVendorId;
     private final int vendorEncodingType;
-    private final List<Boolean> allowedPurposes;
-    // only used when bitfield is enabled
-    private List<Boolean> bitfield;
-    // only used when range entry is enabled
-    private boolean defaultConsent;
-    private List<RangeEntry> rangeEntries;
+    // purpose #1 is the most significant of the 24 bits, as in the consent string
+    private final int allowedPurposesBits;
+    // may be shared with other consents, see VendorSectionPool
+    private final VendorSection vendors;
+    // encoded on first use, consents read from binary storage often never need it
     private String consentString;
     private List<Integer> integerPurposes;
 
@@ -89,43 +112,91 @@ public class VendorConsent {
         this.vendorListVersion = builder.vendorListVersion;
         this.maxVendorId = builder.maxVendorId;
         this.vendorEncodingType = builder.vendorEncodingType;
-        this.allowedPurposes = builder.allowedPurposes;
+        this.allowedPurposesBits = builder.allowedPurposesBits;
 
         if (this.vendorEncodingType == VENDOR_ENCODING_RANGE) {
-            this.defaultConsent = builder.defaultConsent;
             if (builder.rangeEntries.stream().anyMatch(rangeEntry -> rangeEntry.endVendorId > maxVendorId)) {
                 throw new VendorConsentCreateException("VendorId in range entry is greater than Max VendorId");
             }
-            this.rangeEntries = builder.rangeEntries;
+            this.vendors = new VendorSection(maxVendorId, vendorEncodingType, null, builder.defaultConsent,
+                    builder.rangeEntries, mergeRanges(builder.rangeEntries, maxVendorId));
         } else {
-            this.bitfield = new ArrayList<>(this.maxVendorId);
-            IntStream.range(0, this.maxVendorId).forEach(i -> this.bitfield.add(false));
-            for (int vendorId : builder.vendorsBitField) {
-                if (vendorId > maxVendorId) {
-                    throw new VendorConsentCreateException("VendorId in bit field is greater than Max VendorId");
+            long[] vendorBits = new long[BitWords.wordsFor(this.maxVendorId)];
+            if (builder.vendorBits != null) {
+                long[] source = builder.vendorBits;
+                for (int w = 0; w < source.length; w++) {
+                    if (source[w] == 0) {
+                        continue;
+                    }
+                    int highestVendorId = (w << 6) + 63 - Long.numberOfLeadingZeros(source[w]);
+                    if (highestVendorId > maxVendorId || (w == 0 && (source[0] & 1L) != 0)) {
+                        throw new VendorConsentCreateException("VendorId in bit field is greater than Max VendorId");
+                    }
                 }
-                this.bitfield.set(vendorId, true);
+                System.arraycopy(source, 0, vendorBits, 0, Math.min(source.length, vendorBits.length));
             }
+            if (builder.vendorsBitField != null) {
+                for (int vendorIndex : builder.vendorsBitField) {
+                    if (vendorIndex < 0 || vendorIndex >= maxVendorId) {
+                        throw new VendorConsentCreateException("VendorId in bit field is greater than Max VendorId");
+                    }
+                    BitWords.set(vendorBits, vendorIndex + 1);
+                }
+            }
+            this.vendors = new VendorSection(maxVendorId, vendorEncodingType, vendorBits, false, null, null);
         }
 
-        this.integerPurposes = builder.integerPurposes;
+        this.bits = encode();
+        this.fingerprint = 0L;
+        this.byteLength = 0;
+    }
+
+    // a copy of the consent using the given vendor section, which has to be equal to its own
+    private VendorConsent(VendorConsent consent, VendorSection vendors) {
+        this.version = consent.version;
+        this.consentRecordCreated = consent.consentRecordCreated;
+        this.consentRecordLastUpdated = consent.consentRecordLastUpdated;
+        this.cmpID = consent.cmpID;
+        this.cmpVersion = consent.cmpVersion;
+        this.consentScreenID = consent.consentScreenID;
+        this.consentLanguage = consent.consentLanguage;
+        this.vendorListVersion = consent.vendorListVersion;
+        this.maxVendorId = consent.maxVendorId;
+        this.vendorEncodingType = consent.vendorEncodingType;
+        this.allowedPurposesBits = consent.allowedPurposesBits;
+        this.consentString = consent.consentString;
+        this.vendors = vendors;
+        this.bits = null;
+        this.fingerprint = consent.getFingerprint();
+        this.byteLength = consent.getByteLength();
+    }
+
+    private Bits bits() {
+        return bits != null ? bits : encode();
+    }
 
+    private Bits encode() {
+        Bits bits;
+        long[] vendorBits = vendors.vendorBits;
+        boolean defaultConsent = vendors.defaultConsent;
+        List<RangeEntry> rangeEntries = vendors.rangeEntries;
         if (this.vendorEncodingType == VENDOR_ENCODING_RANGE) {
             int rangeEntrySize = 0;
             for (RangeEntry entry : rangeEntries) {
+                // one bit for the single/range flag
                 if (entry.endVendorId == entry.startVendorId) {
-                    rangeEntrySize += VENDOR_ID_SIZE;
+                    rangeEntrySize += 1 + VENDOR_ID_SIZE;
                 } else {
-                    rangeEntrySize += VENDOR_ID_SIZE * 2;
+                    rangeEntrySize += 1 + VENDOR_ID_SIZE * 2;
                 }
             }
             int bitSize = RANGE_ENTRY_OFFSET + rangeEntrySize;
             boolean bitsFit = (bitSize % 8) == 0;
-            this.bits = new Bits(new byte[bitSize / 8 + (bitsFit ? 0 : 1)]);
+            bits = new Bits(new byte[bitSize / 8 + (bitsFit ? 0 : 1)]);
         } else {
-            int bitSize = VENDOR_BITFIELD_OFFSET + this.maxVendorId - 1;
+            int bitSize = VENDOR_BITFIELD_OFFSET + this.maxVendorId;
             boolean bitsFit = (bitSize % 8) == 0;
-            this.bits = new Bits(new byte[(bitSize / 8 + (bitsFit ? 0 : 1))]);
+            bits = new Bits(new byte[(bitSize / 8 + (bitsFit ? 0 : 1))]);
         }
 
         bits.setInt(VERSION_BIT_OFFSET, VERSION_BIT_SIZE, this.version);
@@ -143,14 +214,7 @@ public class VendorConsent {
         bits.setInt(VENDOR_LIST_VERSION_OFFSET, VENDOR_LIST_VERSION_SIZE,
                 this.vendorListVersion);
 
-        int i = 0;
-        for (boolean purpose : allowedPurposes) {
-            if (purpose) {
-                bits.setBit(PURPOSES_OFFSET + i++);
-            } else {
-                bits.unsetBit(PURPOSES_OFFSET + i++);
-            }
-        }
+        bits.setInt(PURPOSES_OFFSET, PURPOSES_SIZE, this.allowedPurposesBits);
 
         bits.setInt(MAX_VENDOR_ID_OFFSET, MAX_VENDOR_ID_SIZE, this.maxVendorId);
         bits.setInt(ENCODING_TYPE_OFFSET, ENCODING_TYPE_SIZE, this.vendorEncodingType);
@@ -179,15 +243,13 @@ public class VendorConsent {
                 }
             }
         } else {
-            int bitfieldOffset = VENDOR_BITFIELD_OFFSET;
-            for (boolean vendorBit : bitfield) {
-                if (vendorBit) {
-                    bits.setBit(bitfieldOffset);
+            for (int vendorId = 1; vendorId <= maxVendorId; vendorId++) {
+                if (BitWords.get(vendorBits, vendorId)) {
+                    bits.setBit(VENDOR_BITFIELD_OFFSET + vendorId - 1);
                 }
-                ++bitfieldOffset;
             }
         }
-        this.consentString = encoder.encodeToString(bits.toByteArray());
+        return bits;
     }
 
     /**
@@ -200,25 +262,284 @@ public class VendorConsent {
      *             if the consent string cannot be parsed
      */
     public static VendorConsent fromBase64String(String consentString) throws GdprException {
+        return fromBase64String(consentString, ParseLimits.DEFAULT);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param consentString
+     *            (required). The binary user consent data encoded as url and filename safe base64 string
+     * @param limits
+     *            (required). Consent strings exceeding the limits are rejected, overlong ones before base64 decoding
+     *
+     * @throws GdprException
+     *             if the consent string cannot be parsed or exceeds the limits
+     */
+    public static VendorConsent fromBase64String(String consentString, ParseLimits limits) throws GdprException {
+        Object event = ConsentEvents.beginDecode();
+        VendorConsent consent = null;
+        RuntimeException failure = null;
+        try {
+            consent = decodeBase64String(consentString, limits);
+            return consent;
+        } catch (RuntimeException e) {
+            failure = e;
+            throw e;
+        } finally {
+            ConsentEvents.endDecode(event, consent, consentString == null ? 0 : consentString.length(), failure);
+        }
+    }
+
+    private static VendorConsent decodeBase64String(String consentString, ParseLimits limits) {
         try {
             if (isNullOrEmpty(consentString)) {
                 throw new VendorConsentParseException("Consent String is empty or null");
             } else {
+                int length = consentString.length();
+                while (length > 0 && consentString.charAt(length - 1) == '=') {
+                    length--;
+                }
+                if (length > limits.getMaxBase64Length()) {
+                    throw new VendorConsentParseException("Consent String of " + consentString.length()
+                            + " characters exceeds the limit of " + limits.getMaxBase64Length());
+                }
                 byte[] consentAsBytes = decoder.decode(consentString);
-                ConsentStringParser parser = new ConsentStringParser(consentAsBytes);
+                ConsentStringParser parser = new ConsentStringParser(new Bits(consentAsBytes), limits);
                 return parser.parse();
             }
         } catch (VendorConsentException e) {
-            throw new GdprException("Error parsing IAB Consent String", e.getCause());
+            throw new GdprException("Error parsing IAB Consent String", e);
         }
     }
 
     /**
-     * @return the string passes in the constructor.
+     * Parses a consent string held in a range of a char array, e.g. the text buffer of a JSON parser, without
+     * creating a String. The array is neither modified nor kept by the returned consent.
+     *
+     * @param chars
+     *            (required). The array holding the url and filename safe base64 consent string
+     * @param offset
+     *            the first character of the consent string
+     * @param length
+     *            the number of characters of the consent string, including padding
+     * @param limits
+     *            (required). Consent strings exceeding the limits are rejected, overlong ones before base64 decoding
+     *
+     * @throws GdprException
+     *             if the consent string cannot be parsed or exceeds the limits
+     */
+    public static VendorConsent fromBase64Chars(char[] chars, int offset, int length, ParseLimits limits)
+            throws GdprException {
+        Object event = ConsentEvents.beginDecode();
+        VendorConsent consent = null;
+        GdprException failure = null;
+        try {
+            byte[] consentAsBytes = decodeBase64Chars(chars, offset, length, limits);
+            consent = new ConsentStringParser(new Bits(consentAsBytes), limits).parse();
+            return consent;
+        } catch (VendorConsentException e) {
+            failure = new GdprException("Error parsing IAB Consent String", e);
+            throw failure;
+        } finally {
+            ConsentEvents.endDecode(event, consent, length, failure);
+        }
+    }
+
+    // decodes like the url decoder of java.util.Base64, but from chars
+    private static byte[] decodeBase64Chars(char[] chars, int offset, int length, ParseLimits limits) {
+        if (offset < 0 || length < 0 || offset > chars.length - length) {
+            throw new IndexOutOfBoundsException("range " + offset + "+" + length + " of " + chars.length + " chars");
+        }
+        int end = offset + length;
+        while (end > offset && chars[end - 1] == '=') {
+            end--;
+        }
+        int count = end - offset;
+        if (count == 0) {
+            throw new VendorConsentParseException("Consent String is empty or null");
+        }
+        if (count > limits.getMaxBase64Length()) {
+            throw new VendorConsentParseException("Consent String of " + length
+                    + " characters exceeds the limit of " + limits.getMaxBase64Length());
+        }
+        if (count % 4 == 1 || end + 2 < offset + length) {
+            throw new VendorConsentParseException("Consent String is not valid base64");
+        }
+        byte[] bytes = new byte[count * 6 / 8];
+        int buffer = 0;
+        int bufferedBits = 0;
+        int next = 0;
+        for (int i = offset; i < end; i++) {
+            int value = base64Value(chars[i]);
+            if (value < 0) {
+                throw new VendorConsentParseException(
+                        "Illegal base64 character " + (int) chars[i] + " in Consent String");
+            }
+            buffer = buffer << 6 | value;
+            bufferedBits += 6;
+            if (bufferedBits >= 8) {
+                bufferedBits -= 8;
+                bytes[next++] = (byte) (buffer >>> bufferedBits);
+            }
+        }
+        return bytes;
+    }
+
+    private static int base64Value(char c) {
+        return c < BASE64_VALUES.length ? BASE64_VALUES[c] : -1;
+    }
+
+    /**
+     * Parses the raw binary form of a consent, as returned by {@link #toBytes()}.
+     *
+     * @param consentBytes
+     *            (required). The binary user consent data
+     *
+     * @throws GdprException
+     *             if the bytes cannot be parsed
+     */
+    public static VendorConsent fromBytes(byte[] consentBytes) throws GdprException {
+        return fromBytes(consentBytes, 0, consentBytes.length);
+    }
+
+    /**
+     * Parses the raw binary form of a consent stored in a range of an array. The array is read in place, neither
+     * copied nor kept by the returned consent.
+     *
+     * @param consentBytes
+     *            (required). The array holding the binary user consent data
+     * @param offset
+     *            the first byte of the consent
+     * @param length
+     *            the number of bytes available to the consent
+     *
+     * @throws GdprException
+     *             if the bytes cannot be parsed
+     */
+    public static VendorConsent fromBytes(byte[] consentBytes, int offset, int length) throws GdprException {
+        return fromBytes(consentBytes, offset, length, ParseLimits.DEFAULT);
+    }
+
+    /**
+     * Parses the raw binary form of a consent stored in a range of an array, like
+     * {@link #fromBytes(byte[], int, int)}.
+     *
+     * @param limits
+     *            (required). Consents exceeding the limits are rejected
+     *
+     * @throws GdprException
+     *             if the bytes cannot be parsed or exceed the limits
+     */
+    public static VendorConsent fromBytes(byte[] consentBytes, int offset, int length, ParseLimits limits)
+            throws GdprException {
+        return fromBytes(consentBytes, offset, length, limits, null);
+    }
+
+    // advances the buffer, if any, by the number of bytes the parser read
+    private static VendorConsent fromBytes(byte[] consentBytes, int offset, int length, ParseLimits limits,
+            ByteBuffer buffer) throws GdprException {
+        Object event = ConsentEvents.beginDecode();
+        VendorConsent consent = null;
+        GdprException failure = null;
+        try {
+            if (length == 0) {
+                throw new VendorConsentParseException("Consent bytes are empty");
+            }
+            ConsentStringParser parser = new ConsentStringParser(new Bits(consentBytes, offset, length), limits);
+            consent = parser.parse();
+            if (buffer != null) {
+                buffer.position(buffer.position() + (parser.getParsedBitLength() + 7) / 8);
+            }
+            return consent;
+        } catch (VendorConsentException | IndexOutOfBoundsException e) {
+            failure = new GdprException("Error parsing IAB Consent bytes", e);
+            throw failure;
+        } finally {
+            ConsentEvents.endDecode(event, consent, length, failure);
+        }
+    }
+
+    /**
+     * Parses the raw binary form of a consent starting at the position of the buffer, which is advanced by the number
+     * of bytes read. That is {@link #getByteLength()} of the returned consent unless the bytes encode it in a longer
+     * form than this library would. Heap buffers are read in place, direct buffers are copied once.
+     *
+     * @param buffer
+     *            (required). The buffer holding the binary user consent data between its position and limit
+     *
+     * @throws GdprException
+     *             if the bytes cannot be parsed
+     */
+    public static VendorConsent fromByteBuffer(ByteBuffer buffer) throws GdprException {
+        return fromByteBuffer(buffer, ParseLimits.DEFAULT);
+    }
+
+    /**
+     * Parses the raw binary form of a consent starting at the position of the buffer, like
+     * {@link #fromByteBuffer(ByteBuffer)}. At most {@link ParseLimits#getMaxInputLength()} bytes of the buffer are
+     * looked at, so further data may follow the consent.
+     *
+     * @param limits
+     *            (required). Consents exceeding the limits are rejected
+     *
+     * @throws GdprException
+     *             if the bytes cannot be parsed or exceed the limits
+     */
+    public static VendorConsent fromByteBuffer(ByteBuffer buffer, ParseLimits limits) throws GdprException {
+        int length = Math.min(buffer.remaining(), limits.getMaxInputLength());
+        if (buffer.hasArray()) {
+            return fromBytes(buffer.array(), buffer.arrayOffset() + buffer.position(), length, limits, buffer);
+        }
+        byte[] copy = new byte[length];
+        buffer.duplicate().get(copy);
+        return fromBytes(copy, 0, length, limits, buffer);
+    }
+
+    /**
+     * @return the consent as url and filename safe base64 string without padding
      *
      */
     public String getConsentString() {
-        return consentString;
+        String encoded = consentString;
+        if (encoded == null) {
+            encoded = encoder.encodeToString(bits().toByteArray());
+            consentString = encoded;
+        }
+        return encoded;
+    }
+
+    /**
+     * @return the raw binary form of the consent, the bytes encoded by {@link #getConsentString()}. The returned array
+     *         is a copy.
+     */
+    public byte[] toBytes() {
+        return bits != null ? bits.toByteArray().clone() : encode().toByteArray();
+    }
+
+    /**
+     * Writes the raw binary form of the consent at the position of the buffer and advances it.
+     *
+     * @throws java.nio.BufferOverflowException
+     *             if fewer than {@link #getByteLength()} bytes remain in the buffer
+     */
+    public void writeTo(ByteBuffer buffer) {
+        buffer.put(bits().toByteArray());
+    }
+
+    /**
+     * @return the size of the raw binary form of the consent in bytes
+     */
+    public int getByteLength() {
+        return bits != null ? bits.length() / 8 : byteLength;
+    }
+
+    /**
+     * @return a 64 bit hash of the raw binary form of the consent. Consents with the same consent string have the
+     *         same fingerprint.
+     */
+    public long getFingerprint() {
+        return bits != null ? bits.fingerprint() : fingerprint;
     }
 
     /**
@@ -279,7 +600,7 @@ public class VendorConsent {
     }
 
     public boolean isDefaultConsent() {
-        return defaultConsent;
+        return vendors.defaultConsent;
     }
 
     public int getVendorEncodingType() {
@@ -287,11 +608,11 @@ public class VendorConsent {
     }
 
     public List<RangeEntry> getRangeEntries() {
-        return rangeEntries;
+        return vendors.rangeEntries;
     }
 
     public String getBinaryString() {
-        return bits.getBinaryString();
+        return bits().getBinaryString();
     }
 
     /**
@@ -302,15 +623,23 @@ public class VendorConsent {
         if (integerPurposes != null) {
             return integerPurposes;
         }
-        List<Integer> purposes = new ArrayList<>();
-        for (int i = 1, ii = allowedPurposes.size(); i <= ii; i++) {
+        List<Integer> purposes = new ArrayList<>(Integer.bitCount(allowedPurposesBits));
+        for (int i = 1; i <= PURPOSES_SIZE; i++) {
             if (isPurposeAllowed(i)) {
                 purposes.add(i);
             }
         }
         integerPurposes = purposes;
         return purposes;
+    }
 
+    /**
+     *
+     * @return the raw 24 bit purposes field. Purpose #1 maps to the most significant bit (1 &lt;&lt; 23), purpose #24
+     *         to the least significant bit.
+     */
+    public int getAllowedPurposesBits() {
+        return allowedPurposesBits;
     }
 
     /**
@@ -325,27 +654,81 @@ public class VendorConsent {
      * @return a boolean describing the user consent status for a particular purpose. The lowest purpose ID is 1.
      */
     public boolean isPurposeAllowed(int purposeId) {
-        if (purposeId < 1 || purposeId > allowedPurposes.size()) {
+        if (purposeId < 1 || purposeId > PURPOSES_SIZE) {
             return false;
         }
-        return allowedPurposes.get(purposeId - 1);
+        return (allowedPurposesBits & PurposeRequirement.purposeBit(purposeId)) != 0;
     }
 
     public boolean arePurposesAllowed(List<Integer> purposeIds) {
-        boolean allow = true;
         for (int purposeId : purposeIds) {
-            allow = allow && isPurposeAllowed(purposeId);
+            if (!isPurposeAllowed(purposeId)) {
+                return false;
+            }
         }
-        return allow;
+        return true;
+    }
+
+    /**
+     * @return true if every purpose of the given requirement is allowed. Prefer this over
+     *         {@link #arePurposesAllowed(List)} when the same set of purposes is checked repeatedly.
+     */
+    public boolean arePurposesAllowed(PurposeRequirement requirement) {
+        return requirement.isAllOf(allowedPurposesBits);
     }
 
     private boolean findVendorIdInRange(int vendorId) {
-        for (RangeEntry entry : rangeEntries) {
-            if (entry.containsVendorId(vendorId)) {
-                return true;
+        // the run with the highest start not above vendorId
+        int low = 0;
+        int high = vendors.vendorRuns.length / 2 - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (vendors.vendorRuns[2 * mid] <= vendorId) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high >= 0 && vendorId <= vendors.vendorRuns[2 * high + 1];
+    }
+
+    private static int[] mergeRanges(List<RangeEntry> entries, int maxVendorId) {
+        int[] runs = new int[entries.size() * 2];
+        int n = 0;
+        boolean sorted = true;
+        for (RangeEntry entry : entries) {
+            int start = Math.max(1, entry.startVendorId);
+            int end = Math.min(maxVendorId, entry.endVendorId);
+            if (start > end) {
+                continue;
+            }
+            if (n > 0 && start < runs[n - 2]) {
+                sorted = false;
             }
+            runs[n++] = start;
+            runs[n++] = end;
         }
-        return false;
+        if (!sorted) {
+            long[] packed = new long[n / 2];
+            for (int i = 0; i < packed.length; i++) {
+                packed[i] = (long) runs[2 * i] << 32 | runs[2 * i + 1];
+            }
+            Arrays.sort(packed);
+            for (int i = 0; i < packed.length; i++) {
+                runs[2 * i] = (int) (packed[i] >>> 32);
+                runs[2 * i + 1] = (int) packed[i];
+            }
+        }
+        int merged = 0;
+        for (int i = 0; i < n; i += 2) {
+            if (merged > 0 && runs[i] <= runs[merged - 1] + 1) {
+                runs[merged - 1] = Math.max(runs[merged - 1], runs[i + 1]);
+            } else {
+                runs[merged++] = runs[i];
+                runs[merged++] = runs[i + 1];
+            }
+        }
+        return Arrays.copyOf(runs, merged);
     }
 
     /**
@@ -355,14 +738,139 @@ public class VendorConsent {
      *         action by a given vendor.
      */
     public boolean isVendorAllowed(int vendorId) {
+        if (vendorId < 1 || vendorId > maxVendorId) {
+            return false;
+        }
         if (vendorEncodingType == VENDOR_ENCODING_RANGE) {
             boolean present = findVendorIdInRange(vendorId);
-            return present != defaultConsent;
+            return present != vendors.defaultConsent;
         } else {
-            if (vendorId > 0 && vendorId <= maxVendorId) {
-                return bitfield.get(vendorId - 1);
+            return BitWords.get(vendors.vendorBits, vendorId);
+        }
+    }
+
+    /**
+     * @return the ids of the allowed vendors in ascending order. The stream is lazy, see
+     *         {@link #allowedVendorsIterator()}.
+     */
+    public IntStream allowedVendors() {
+        return StreamSupport.intStream(Spliterators.spliteratorUnknownSize(allowedVendorsIterator(),
+                Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * @return an iterator over the ids of the allowed vendors in ascending order. Bit fields are walked set bit by set
+     *         bit, range entries run by run, and for a default consent the gaps between the ranges are produced one at
+     *         a time, so nothing is allocated per vendor.
+     */
+    public PrimitiveIterator.OfInt allowedVendorsIterator() {
+        if (vendorEncodingType == VENDOR_ENCODING_RANGE) {
+            return new RunIterator(vendors.vendorRuns, vendors.defaultConsent, maxVendorId);
+        }
+        return new BitWordsIterator(vendors.vendorBits);
+    }
+
+    /**
+     * Calls the action with the id of each allowed vendor, in ascending order.
+     */
+    public void forEachAllowedVendor(IntConsumer action) {
+        if (vendorEncodingType == VENDOR_ENCODING_RANGE) {
+            int from = 1;
+            for (int i = 0; i < vendors.vendorRuns.length; i += 2) {
+                if (vendors.defaultConsent) {
+                    for (int vendorId = from; vendorId < vendors.vendorRuns[i]; vendorId++) {
+                        action.accept(vendorId);
+                    }
+                    from = vendors.vendorRuns[i + 1] + 1;
+                } else {
+                    for (int vendorId = vendors.vendorRuns[i]; vendorId <= vendors.vendorRuns[i + 1]; vendorId++) {
+                        action.accept(vendorId);
+                    }
+                }
             }
-            return false;
+            if (vendors.defaultConsent) {
+                for (int vendorId = from; vendorId <= maxVendorId; vendorId++) {
+                    action.accept(vendorId);
+                }
+            }
+        } else {
+            for (int w = 0; w < vendors.vendorBits.length; w++) {
+                long word = vendors.vendorBits[w];
+                while (word != 0) {
+                    action.accept(w << 6 | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds an allowed vendor that is missing from a set of vendors, without allocating. Bit fields are compared word
+     * by word, range entries run by run.
+     *
+     * @param words
+     *            the vendor set, using the layout described in {@link BitWords}
+     * @return the lowest allowed vendor id whose bit is not set in words, 0 if all allowed vendors are set
+     */
+    public int firstAllowedVendorNotIn(long[] words) {
+        if (vendorEncodingType == VENDOR_ENCODING_RANGE) {
+            int[] runs = vendors.vendorRuns;
+            int from = 1;
+            for (int i = 0; i < runs.length; i += 2) {
+                int missing = vendors.defaultConsent ? BitWords.nextClearBit(words, from, runs[i] - 1)
+                        : BitWords.nextClearBit(words, runs[i], runs[i + 1]);
+                if (missing >= 0) {
+                    return missing;
+                }
+                from = runs[i + 1] + 1;
+            }
+            if (vendors.defaultConsent) {
+                int missing = BitWords.nextClearBit(words, from, maxVendorId);
+                if (missing >= 0) {
+                    return missing;
+                }
+            }
+            return 0;
+        }
+        long[] vendorBits = vendors.vendorBits;
+        for (int w = 0; w < vendorBits.length; w++) {
+            long missing = vendorBits[w] & ~(w < words.length ? words[w] : 0L);
+            if (missing != 0) {
+                return w << 6 | Long.numberOfTrailingZeros(missing);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Writes the vendor consent of this consent string into the given words, using the layout described in
+     * {@link BitWords}: bit n is set if vendor n is allowed. Words beyond the max vendor id are cleared, vendors that
+     * do not fit into the given array are skipped.
+     *
+     * @param words
+     *            the target bit set, usually of size {@code BitWords.wordsFor(maxVendorId)}
+     */
+    public void copyVendorBits(long[] words) {
+        if (vendorEncodingType == VENDOR_ENCODING_RANGE) {
+            Arrays.fill(words, 0L);
+            if (vendors.defaultConsent) {
+                BitWords.setRange(words, 1, maxVendorId);
+                for (RangeEntry entry : vendors.rangeEntries) {
+                    BitWords.clearRange(words, entry.startVendorId, entry.endVendorId);
+                }
+            } else {
+                for (RangeEntry entry : vendors.rangeEntries) {
+                    BitWords.setRange(words, entry.startVendorId, entry.endVendorId);
+                }
+            }
+            if (words.length > 0) {
+                // range entries may start at vendor id 0
+                words[0] &= ~1L;
+            }
+        } else {
+            int length = Math.min(words.length, vendors.vendorBits.length);
+            System.arraycopy(vendors.vendorBits, 0, words, 0, length);
+            Arrays.fill(words, length, words.length, 0L);
         }
     }
 
@@ -376,36 +884,126 @@ public class VendorConsent {
         return version == consent.version && cmpID == consent.cmpID && cmpVersion == consent.cmpVersion
                 && consentScreenID == consent.consentScreenID && vendorListVersion == consent.vendorListVersion
                 && maxVendorId == consent.maxVendorId && vendorEncodingType == consent.vendorEncodingType
-                && defaultConsent == consent.defaultConsent && Objects.equals(bits, consent.bits)
+                && vendors.defaultConsent == consent.vendors.defaultConsent
                 && Objects.equals(consentRecordCreated, consent.consentRecordCreated)
                 && Objects.equals(consentRecordLastUpdated, consent.consentRecordLastUpdated)
                 && Objects.equals(consentLanguage, consent.consentLanguage)
-                && Objects.equals(allowedPurposes, consent.allowedPurposes)
-                && Objects.equals(consentString, consent.consentString)
-                && Objects.equals(rangeEntries, consent.rangeEntries)
-                && Objects.equals(integerPurposes, consent.integerPurposes);
+                && allowedPurposesBits == consent.allowedPurposesBits
+                && Objects.equals(getConsentString(), consent.getConsentString());
     }
 
     @Override
     public int hashCode() {
 
-        return Objects.hash(bits, version, consentRecordCreated, consentRecordLastUpdated, cmpID, cmpVersion,
-                consentScreenID, consentLanguage, vendorListVersion, maxVendorId, vendorEncodingType, allowedPurposes,
-                consentString, rangeEntries, defaultConsent, integerPurposes);
+        return Objects.hash(version, consentRecordCreated, consentRecordLastUpdated, cmpID, cmpVersion,
+                consentScreenID, consentLanguage, vendorListVersion, maxVendorId, vendorEncodingType,
+                allowedPurposesBits, getConsentString(), vendors.defaultConsent);
     }
 
     @Override
     public String toString() {
-        return "VendorConsent{" + "bits=" + bits + ", version=" + version + ", consentRecordCreated="
+        return "VendorConsent{" + "bits=" + bits() + ", version=" + version + ", consentRecordCreated="
                 + consentRecordCreated + ", consentRecordLastUpdated=" + consentRecordLastUpdated + ", cmpID=" + cmpID
                 + ", cmpVersion=" + cmpVersion + ", consentScreenID=" + consentScreenID + ", consentLanguage='"
                 + consentLanguage + '\'' + ", vendorListVersion=" + vendorListVersion + ", maxVendorId=" + maxVendorId
-                + ", vendorEncodingType=" + vendorEncodingType + ", allowedPurposes=" + allowedPurposes
-                + ", consentString='" + consentString + '\'' + ", rangeEntries=" + rangeEntries + ", defaultConsent="
-                + defaultConsent + ", integerPurposes=" + integerPurposes + '}';
+                + ", vendorEncodingType=" + vendorEncodingType + ", allowedPurposes=" + getAllowedPurposes()
+                + ", consentString='" + getConsentString() + '\'' + ", rangeEntries=" + vendors.rangeEntries
+                + ", defaultConsent=" + vendors.defaultConsent + '}';
+    }
+
+    VendorSection getVendorSection() {
+        return vendors;
+    }
+
+    /**
+     * @return a copy of this consent sharing the given vendor section, which has to be equal to the own one. The
+     *         copy does not keep the encoded consent.
+     */
+    VendorConsent withVendorSection(VendorSection vendors) {
+        if (vendors == this.vendors && bits == null) {
+            return this;
+        }
+        return new VendorConsent(this, vendors);
     }
 
     // static classes
+    private static final class BitWordsIterator implements PrimitiveIterator.OfInt {
+        private final long[] words;
+        private int wordIndex;
+        // the bits of the current word not returned yet
+        private long word;
+
+        BitWordsIterator(long[] words) {
+            this.words = words;
+            this.word = words.length > 0 ? words[0] : 0L;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (word == 0) {
+                if (wordIndex + 1 >= words.length) {
+                    return false;
+                }
+                word = words[++wordIndex];
+            }
+            return true;
+        }
+
+        @Override
+        public int nextInt() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int vendorId = wordIndex << 6 | Long.numberOfTrailingZeros(word);
+            word &= word - 1;
+            return vendorId;
+        }
+    }
+
+    // iterates the vendor ids of the runs, or of the gaps between them within 1..maxVendorId if complement is set
+    private static final class RunIterator implements PrimitiveIterator.OfInt {
+        private final int[] runs;
+        private final boolean complement;
+        private final int maxVendorId;
+        private final int runCount;
+        private int run;
+        private int next = 1;
+        private int end;
+
+        RunIterator(int[] runs, boolean complement, int maxVendorId) {
+            this.runs = runs;
+            this.complement = complement;
+            this.maxVendorId = maxVendorId;
+            this.runCount = complement ? runs.length / 2 + 1 : runs.length / 2;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next > end) {
+                if (run == runCount) {
+                    return false;
+                }
+                if (complement) {
+                    next = run == 0 ? 1 : runs[2 * run - 1] + 1;
+                    end = run == runCount - 1 ? maxVendorId : runs[2 * run] - 1;
+                } else {
+                    next = runs[2 * run];
+                    end = runs[2 * run + 1];
+                }
+                run++;
+            }
+            return true;
+        }
+
+        @Override
+        public int nextInt() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return next++;
+        }
+    }
+
     public static class RangeEntry {
         /**
          * This class corresponds to the RangeEntry field given in the consent string specification.
@@ -440,6 +1038,73 @@ public class VendorConsent {
         }
     }
 
+    /**
+     * The vendor consents of a consent: max vendor id, encoding type and either the bit field or the range entries.
+     * Immutable, so consents with equal vendor sections can share one, see {@link VendorSectionPool}.
+     */
+    static final class VendorSection {
+        final int maxVendorId;
+        final int encodingType;
+        // only used when bitfield is enabled, bit n is set if vendor n has consent (see BitWords)
+        final long[] vendorBits;
+        // only used when range entry is enabled
+        final boolean defaultConsent;
+        final List<RangeEntry> rangeEntries;
+        // sorted, disjoint and non adjacent start and end vendor ids of the range entries, limited to 1..maxVendorId
+        final int[] vendorRuns;
+
+        VendorSection(int maxVendorId, int encodingType, long[] vendorBits, boolean defaultConsent,
+                List<RangeEntry> rangeEntries, int[] vendorRuns) {
+            this.maxVendorId = maxVendorId;
+            this.encodingType = encodingType;
+            this.vendorBits = vendorBits;
+            this.defaultConsent = defaultConsent;
+            this.rangeEntries = rangeEntries;
+            this.vendorRuns = vendorRuns;
+        }
+
+        /**
+         * @return a hash of the bits of the vendor section. Equal sections have equal fingerprints.
+         */
+        long fingerprint() {
+            long hash = Fingerprints.mix((long) maxVendorId << 2 | encodingType << 1 | (defaultConsent ? 1 : 0));
+            if (encodingType == VENDOR_ENCODING_RANGE) {
+                for (RangeEntry entry : rangeEntries) {
+                    hash = Fingerprints.mix(hash ^ ((long) entry.startVendorId << 32 | entry.endVendorId));
+                }
+            } else {
+                for (long word : vendorBits) {
+                    hash = Fingerprints.mix(hash ^ word);
+                }
+            }
+            return hash;
+        }
+
+        /**
+         * @return true if the other section encodes to the same bits
+         */
+        boolean sameAs(VendorSection other) {
+            if (maxVendorId != other.maxVendorId || encodingType != other.encodingType
+                    || defaultConsent != other.defaultConsent) {
+                return false;
+            }
+            if (encodingType != VENDOR_ENCODING_RANGE) {
+                return Arrays.equals(vendorBits, other.vendorBits);
+            }
+            if (rangeEntries.size() != other.rangeEntries.size()) {
+                return false;
+            }
+            for (int i = 0; i < rangeEntries.size(); i++) {
+                RangeEntry entry = rangeEntries.get(i);
+                RangeEntry otherEntry = other.rangeEntries.get(i);
+                if (entry.startVendorId != otherEntry.startVendorId || entry.endVendorId != otherEntry.endVendorId) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
     public static class Builder {
         private int version;
         private Instant consentRecordCreated;
@@ -451,13 +1116,13 @@ public class VendorConsent {
         private int vendorListVersion;
         private int maxVendorId;
         private int vendorEncodingType;
-        private List<Boolean> allowedPurposes = new ArrayList<>(PURPOSES_SIZE);
+        private int allowedPurposesBits;
         // only used when bitfield is enabled
         private List<Integer> vendorsBitField;
+        private long[] vendorBits;
         // only used when range entry is enabled
         private List<RangeEntry> rangeEntries;
         private boolean defaultConsent;
-        private List<Integer> integerPurposes = null;
 
         /**
          * @param version
@@ -541,13 +1206,24 @@ public class VendorConsent {
          *            last (least significant) bit.
          */
         public Builder withAllowedPurposes(List<Integer> allowedPurposes) {
-            this.integerPurposes = allowedPurposes;
-            for (int i = 0; i < PURPOSES_SIZE; i++) {
-                this.allowedPurposes.add(false);
-            }
+            int purposesBits = 0;
             for (int purpose : allowedPurposes) {
-                this.allowedPurposes.set(purpose - 1, true);
+                if (purpose < 1 || purpose > PURPOSES_SIZE) {
+                    throw new VendorConsentCreateException("Purpose id must be between 1 and " + PURPOSES_SIZE);
+                }
+                purposesBits |= PurposeRequirement.purposeBit(purpose);
             }
+            this.allowedPurposesBits = purposesBits;
+            return this;
+        }
+
+        /**
+         * @param allowedPurposesBits
+         *            The raw 24 bit purposes field as returned by {@link VendorConsent#getAllowedPurposesBits()}.
+         *            Purpose #1 maps to the most significant bit (1 &lt;&lt; 23).
+         */
+        public Builder withAllowedPurposesBits(int allowedPurposesBits) {
+            this.allowedPurposesBits = allowedPurposesBits;
             return this;
         }
 
@@ -578,6 +1254,16 @@ public class VendorConsent {
             return this;
         }
 
+        /**
+         * @param vendorBits
+         *            Bit set of the vendors which have consent, bit n is set if vendor n has consent (see
+         *            {@link BitWords}). Can be combined with {@link #withBitField(List)}.
+         */
+        public Builder withVendorBits(long[] vendorBits) {
+            this.vendorBits = vendorBits;
+            return this;
+        }
+
         /**
          * @param rangeEntries
          *            List of VendorIds or a range of VendorIds for which the vendors have consent
@@ -597,7 +1283,28 @@ public class VendorConsent {
         }
 
         public VendorConsent build() {
+            Object event = ConsentEvents.beginEncode();
+            VendorConsent consent = null;
+            RuntimeException failure = null;
+            try {
+                consent = buildDecoded();
+                return consent;
+            } catch (RuntimeException e) {
+                failure = e;
+                throw e;
+            } finally {
+                ConsentEvents.endEncode(event, vendorEncodingType, maxVendorId,
+                        rangeEntries == null ? 0 : rangeEntries.size(), consent == null ? 0 : consent.getByteLength(),
+                        failure);
+            }
+        }
+
+        /**
+         * Builds the consent like {@link #build()}, but without emitting an encode event. For
+         * {@link ConsentStringParser}, whose callers emit a decode event instead.
+         */
+        public VendorConsent buildDecoded() {
             return new VendorConsent(this);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,50 @@
+package com.yieldlab.gdpr;
+
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.collect.MapMaker;
+import com.yieldlab.gdpr.VendorConsent.VendorSection;
+
+/**
+ * Interns the vendor sections of consents. Consent strings of many users differ only in their timestamps, interned
+ * consents with the same vendor bit field or range entries share one vendor section instead of holding a copy each:
+ *
+ * <pre>
+ * VendorSectionPool pool = new VendorSectionPool();
+ * VendorConsent consent = pool.intern(VendorConsent.fromBase64String(consentString));
+ * </pre>
+ *
+ * Interned consents do not keep their encoded form either, only its fingerprint and length. This trades CPU for heap:
+ * {@link VendorConsent#toBytes()}, {@link VendorConsent#writeTo(java.nio.ByteBuffer)} and
+ * {@link VendorConsent#getBinaryString()} encode the consent again on each call, and
+ * {@link VendorConsent#getConsentString()} on its first call. Intern consents that are mostly evaluated, not ones
+ * written back to storage. Sections are held weakly and dropped from the pool when no consent uses them anymore.
+ *
+ * Thread safe.
+ */
+public final class VendorSectionPool {
+    // keyed by the fingerprint of the section, colliding sections are not interned
+    private final ConcurrentMap<Long, VendorSection> sections = new MapMaker().weakValues().makeMap();
+
+    /**
+     * @return a consent equal to the given one, sharing the vendor section with the consents interned before
+     */
+    public VendorConsent intern(VendorConsent consent) {
+        VendorSection section = consent.getVendorSection();
+        VendorSection pooled = sections.putIfAbsent(section.fingerprint(), section);
+        if (pooled == null) {
+            return consent.withVendorSection(section);
+        }
+        if (pooled != section && !pooled.sameAs(section)) {
+            return consent;
+        }
+        return consent.withVendorSection(pooled);
+    }
+
+    /**
+     * @return the number of pooled vendor sections, including ones not collected yet
+     */
+    public int size() {
+        return sections.size();
+    }
+}
@@ -0,0 +1,34 @@
+package com.yieldlab.gdpr.cache;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The shared second tier of a {@link TwoTierConsentCache}, e.g. a remote key value store. Stores entries written by
+ * the cache, each holding a consent string with the raw binary form of its consent, as returned by
+ * {@link com.yieldlab.gdpr.VendorConsent#toBytes()}, keyed by the fingerprint of the consent string.
+ *
+ * Implementations have to be thread safe. The cache calls them without holding locks and never blocks on the returned
+ * futures.
+ */
+public interface ConsentStore {
+    /**
+     * Looks up several consents at once.
+     *
+     * @param fingerprints:
+     *            the fingerprints of the consent strings to look up
+     * @return a future completing with the stored entries of the fingerprints found. Fingerprints not found are missing
+     *         from the map. A failed future makes the cache decode the consent strings itself.
+     */
+    CompletableFuture<Map<Long, byte[]>> getAll(long[] fingerprints);
+
+    /**
+     * Stores the entry of a consent. The cache does not wait for the returned future and ignores its failures.
+     *
+     * @param fingerprint:
+     *            the fingerprint of the consent string
+     * @param entry:
+     *            the consent string and the raw binary form of its consent, not modified after the call
+     */
+    CompletableFuture<Void> put(long fingerprint, byte[] entry);
+}
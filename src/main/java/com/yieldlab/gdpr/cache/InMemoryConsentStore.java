@@ -0,0 +1,72 @@
+package com.yieldlab.gdpr.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-process {@link ConsentStore} standing in for a shared store in tests and single node setups. Unbounded.
+ *
+ * Completes its futures on the given executor, so callers see the asynchronous behaviour of a remote store, or on the
+ * calling thread when constructed without one.
+ */
+public class InMemoryConsentStore implements ConsentStore {
+    private final ConcurrentMap<Long, byte[]> consents = new ConcurrentHashMap<>();
+    private final Executor executor;
+    private final AtomicLong getAllCount = new AtomicLong();
+    private final AtomicLong putCount = new AtomicLong();
+
+    public InMemoryConsentStore() {
+        this(Runnable::run);
+    }
+
+    public InMemoryConsentStore(Executor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<Map<Long, byte[]>> getAll(long[] fingerprints) {
+        getAllCount.incrementAndGet();
+        return CompletableFuture.supplyAsync(() -> {
+            Map<Long, byte[]> found = new HashMap<>();
+            for (long fingerprint : fingerprints) {
+                byte[] entry = consents.get(fingerprint);
+                if (entry != null) {
+                    found.put(fingerprint, entry);
+                }
+            }
+            return found;
+        }, executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> put(long fingerprint, byte[] entry) {
+        putCount.incrementAndGet();
+        return CompletableFuture.runAsync(() -> consents.put(fingerprint, entry), executor);
+    }
+
+    /**
+     * @return the number of stored consents
+     */
+    public int size() {
+        return consents.size();
+    }
+
+    /**
+     * @return the number of {@link #getAll(long[])} calls, i.e. of batches looked up
+     */
+    public long getGetAllCount() {
+        return getAllCount.get();
+    }
+
+    /**
+     * @return the number of {@link #put(long, byte[])} calls
+     */
+    public long getPutCount() {
+        return putCount.get();
+    }
+}
@@ -0,0 +1,425 @@
+package com.yieldlab.gdpr.cache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.yieldlab.gdpr.ParseLimits;
+import com.yieldlab.gdpr.VendorConsent;
+import com.yieldlab.gdpr.exception.GdprException;
+import com.yieldlab.gdpr.jfr.ConsentEvents;
+import com.yieldlab.gdpr.util.Fingerprints;
+
+/**
+ * A cache of decoded consents in two tiers: a bounded near cache of {@link VendorConsent} objects in front of a
+ * shared {@link ConsentStore} holding their binary form.
+ *
+ * A consent string missing from the near cache is looked up in the store, together with the other consent strings
+ * missed meanwhile: while {@code maxConcurrentBatches} lookups are outstanding, misses queue up and are sent as
+ * batches of up to {@code batchSize} fingerprints. Consents found in the store are parsed from their bytes, the others
+ * are decoded from the consent string and written to the store. Concurrent lookups of the same consent string share
+ * one load, so each consent string is decoded once.
+ *
+ * Consent strings the store cannot be asked for, because it failed, are decoded locally. Consent strings that fail to
+ * decode are not cached.
+ *
+ * The store is keyed by 64 bit fingerprints of the consent strings without padding. Its entries hold the consent
+ * string together with the binary form of the consent, and an entry is only used for the consent string it was
+ * written for. A consent string whose fingerprint collides with that of a stored one is decoded locally and does not
+ * replace the stored entry, so a crafted colliding consent string cannot change the consents other nodes read.
+ *
+ * Thread safe.
+ */
+public class TwoTierConsentCache {
+    static final String NEAR_CACHE = "near";
+    static final String STORE = "store";
+
+    private final Cache<String, NearEntry> nearCache;
+    private final ConsentStore store;
+    private final int batchSize;
+    private final int maxConcurrentBatches;
+    private final ParseLimits limits;
+
+    private final ConcurrentMap<String, Load> loads = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Load> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger batchesInFlight = new AtomicInteger();
+
+    private final AtomicLong nearCacheHits = new AtomicLong();
+    private final AtomicLong storeHits = new AtomicLong();
+    private final AtomicLong decodes = new AtomicLong();
+    private final AtomicLong collisions = new AtomicLong();
+
+    private TwoTierConsentCache(Builder builder) {
+        this.nearCache = CacheBuilder.newBuilder()
+                .maximumSize(builder.nearCacheSize)
+                .<String, NearEntry> build();
+        this.store = builder.store;
+        this.batchSize = builder.batchSize;
+        this.maxConcurrentBatches = builder.maxConcurrentBatches;
+        this.limits = builder.limits;
+    }
+
+    /**
+     * @return the decoded consent, waiting for the store if it is not in the near cache
+     * @throws GdprException
+     *             if the consent string cannot be parsed
+     */
+    public VendorConsent get(String consentString) throws GdprException {
+        try {
+            return getAsync(consentString).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return a future of the decoded consent, already completed if it is in the near cache. Fails with the exception
+     *         of {@link VendorConsent#fromBase64String(String, ParseLimits)} if the consent string cannot be parsed.
+     */
+    public CompletableFuture<VendorConsent> getAsync(String consentString) {
+        Objects.requireNonNull(consentString, "consentString");
+        Object event = ConsentEvents.beginCacheLookup();
+        NearEntry entry = nearCache.getIfPresent(consentString);
+        ConsentEvents.endCacheLookup(event, NEAR_CACHE, entry != null);
+        if (entry != null) {
+            nearCacheHits.incrementAndGet();
+            entry.hits++;
+            return CompletableFuture.completedFuture(entry.consent);
+        }
+
+        Load load = new Load(consentString);
+        Load running = loads.putIfAbsent(consentString, load);
+        if (running != null) {
+            return running.future.thenApply(Function.identity());
+        }
+        // a load finishing since the lookup above put its consent into the near cache before removing itself
+        entry = nearCache.getIfPresent(consentString);
+        if (entry != null) {
+            nearCacheHits.incrementAndGet();
+            complete(load, entry.consent);
+        } else {
+            pending.add(load);
+            flush();
+        }
+        return load.future.thenApply(Function.identity());
+    }
+
+    private void flush() {
+        while (!pending.isEmpty()) {
+            int inFlight = batchesInFlight.get();
+            if (inFlight >= maxConcurrentBatches) {
+                // the running batches flush again when they complete
+                return;
+            }
+            if (!batchesInFlight.compareAndSet(inFlight, inFlight + 1)) {
+                continue;
+            }
+            List<Load> batch = new ArrayList<>(batchSize);
+            Load load;
+            while (batch.size() < batchSize && (load = pending.poll()) != null) {
+                batch.add(load);
+            }
+            if (batch.isEmpty()) {
+                batchesInFlight.decrementAndGet();
+            } else {
+                lookUp(batch);
+            }
+        }
+    }
+
+    private void lookUp(List<Load> batch) {
+        long[] fingerprints = new long[batch.size()];
+        for (int i = 0; i < fingerprints.length; i++) {
+            fingerprints[i] = batch.get(i).fingerprint;
+        }
+        Object event = ConsentEvents.beginCacheLookup();
+        CompletableFuture<Map<Long, byte[]>> lookup;
+        try {
+            lookup = store.getAll(fingerprints);
+        } catch (RuntimeException e) {
+            lookup = new CompletableFuture<>();
+            lookup.completeExceptionally(e);
+        }
+        lookup.whenComplete((found, failure) -> {
+            ConsentEvents.endCacheLookup(event, STORE, found != null && found.size() == fingerprints.length);
+            batchesInFlight.decrementAndGet();
+            for (Load load : batch) {
+                resolve(load, found == null ? null : found.get(load.fingerprint));
+            }
+            flush();
+        });
+    }
+
+    private void resolve(Load load, byte[] entry) {
+        VendorConsent consent = null;
+        boolean collision = false;
+        if (entry != null) {
+            int consentOffset = consentOffset(entry, load.consentString);
+            if (consentOffset < 0) {
+                collision = true;
+            } else {
+                try {
+                    consent = VendorConsent.fromBytes(entry, consentOffset, entry.length - consentOffset, limits);
+                    storeHits.incrementAndGet();
+                } catch (GdprException e) {
+                    // a corrupt entry, replaced below
+                }
+            }
+        }
+        if (consent == null) {
+            try {
+                consent = VendorConsent.fromBase64String(load.consentString, limits);
+                decodes.incrementAndGet();
+            } catch (RuntimeException e) {
+                loads.remove(load.consentString, load);
+                load.future.completeExceptionally(e);
+                return;
+            }
+            if (collision) {
+                collisions.incrementAndGet();
+            } else {
+                try {
+                    store.put(load.fingerprint, entry(load.consentString, consent));
+                } catch (RuntimeException e) {
+                    // the store is best effort, the consent is decoded again next time
+                }
+            }
+        }
+        complete(load, consent);
+    }
+
+    /**
+     * @return the store entry of a consent: the length of the consent string without padding as four bytes, its
+     *         characters as one byte each, then the binary form of the consent
+     */
+    static byte[] entry(String consentString, VendorConsent consent) {
+        int length = unpaddedLength(consentString);
+        byte[] entry = new byte[4 + length + consent.getByteLength()];
+        entry[0] = (byte) (length >>> 24);
+        entry[1] = (byte) (length >>> 16);
+        entry[2] = (byte) (length >>> 8);
+        entry[3] = (byte) length;
+        for (int i = 0; i < length; i++) {
+            entry[4 + i] = (byte) consentString.charAt(i);
+        }
+        consent.writeTo(ByteBuffer.wrap(entry, 4 + length, entry.length - 4 - length));
+        return entry;
+    }
+
+    /**
+     * @return the offset of the binary form of the consent in the entry, -1 if the entry is not the one of the consent
+     *         string
+     */
+    static int consentOffset(byte[] entry, String consentString) {
+        int length = unpaddedLength(consentString);
+        if (entry.length < 4 + length) {
+            return -1;
+        }
+        int storedLength = (entry[0] & 0xff) << 24 | (entry[1] & 0xff) << 16 | (entry[2] & 0xff) << 8
+                | entry[3] & 0xff;
+        if (storedLength != length) {
+            return -1;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = consentString.charAt(i);
+            if (c > 0x7f || entry[4 + i] != (byte) c) {
+                return -1;
+            }
+        }
+        return 4 + length;
+    }
+
+    private void complete(Load load, VendorConsent consent) {
+        nearCache.put(load.consentString, new NearEntry(consent));
+        loads.remove(load.consentString, load);
+        load.future.complete(consent);
+    }
+
+    /**
+     * Puts a decoded consent into the near cache without asking or writing the store, e.g. when starting from a
+     * {@link WarmStartSnapshot}.
+     */
+    public void preload(String consentString, VendorConsent consent) {
+        nearCache.put(consentString, new NearEntry(consent));
+    }
+
+    /**
+     * @return up to limit consents of the near cache with their consent strings, the most often looked up first. The
+     *         counts are approximate.
+     */
+    public Map<String, VendorConsent> hottest(int limit) {
+        // the hit counts keep changing, sort a copy of them
+        List<Ranked> ranked = new ArrayList<>();
+        for (Map.Entry<String, NearEntry> entry : nearCache.asMap().entrySet()) {
+            ranked.add(new Ranked(entry.getKey(), entry.getValue().consent, entry.getValue().hits));
+        }
+        ranked.sort((a, b) -> Integer.compare(b.hits, a.hits));
+        Map<String, VendorConsent> hottest = new LinkedHashMap<>();
+        for (Ranked entry : ranked.subList(0, Math.min(limit, ranked.size()))) {
+            hottest.put(entry.consentString, entry.consent);
+        }
+        return hottest;
+    }
+
+    /**
+     * @return the fingerprint the store keys the consent string by, the fingerprint of its characters without padding
+     */
+    public static long fingerprint(CharSequence consentString) {
+        return Fingerprints.of(consentString, 0, unpaddedLength(consentString));
+    }
+
+    private static int unpaddedLength(CharSequence consentString) {
+        int length = consentString.length();
+        while (length > 0 && consentString.charAt(length - 1) == '=') {
+            length--;
+        }
+        return length;
+    }
+
+    /**
+     * @return the number of consents in the near cache
+     */
+    public long getNearCacheSize() {
+        return nearCache.size();
+    }
+
+    /**
+     * @return the number of lookups answered by the near cache
+     */
+    public long getNearCacheHitCount() {
+        return nearCacheHits.get();
+    }
+
+    /**
+     * @return the number of consents loaded from the store
+     */
+    public long getStoreHitCount() {
+        return storeHits.get();
+    }
+
+    /**
+     * @return the number of consent strings decoded because neither tier had them
+     */
+    public long getDecodeCount() {
+        return decodes.get();
+    }
+
+    /**
+     * @return the number of store entries found for a fingerprint but written for another consent string
+     */
+    public long getCollisionCount() {
+        return collisions.get();
+    }
+
+    private static final class NearEntry {
+        final VendorConsent consent;
+        // incremented without synchronization, lost updates only make the ranking of hottest() less exact
+        volatile int hits;
+
+        NearEntry(VendorConsent consent) {
+            this.consent = consent;
+        }
+    }
+
+    private static final class Ranked {
+        final String consentString;
+        final VendorConsent consent;
+        final int hits;
+
+        Ranked(String consentString, VendorConsent consent, int hits) {
+            this.consentString = consentString;
+            this.consent = consent;
+            this.hits = hits;
+        }
+    }
+
+    private static final class Load {
+        final String consentString;
+        final long fingerprint;
+        final CompletableFuture<VendorConsent> future = new CompletableFuture<>();
+
+        Load(String consentString) {
+            this.consentString = consentString;
+            this.fingerprint = fingerprint(consentString);
+        }
+    }
+
+    public static class Builder {
+        private ConsentStore store;
+        private long nearCacheSize = 10_000;
+        private int batchSize = 64;
+        private int maxConcurrentBatches = 4;
+        private ParseLimits limits = ParseLimits.DEFAULT;
+
+        /**
+         * @param store:
+         *            the shared second tier, required
+         */
+        public Builder withStore(ConsentStore store) {
+            this.store = store;
+            return this;
+        }
+
+        /**
+         * @param nearCacheSize:
+         *            the most consents kept in the near cache, 10000 by default
+         */
+        public Builder withNearCacheSize(long nearCacheSize) {
+            if (nearCacheSize < 0) {
+                throw new IllegalArgumentException("near cache size must not be negative: " + nearCacheSize);
+            }
+            this.nearCacheSize = nearCacheSize;
+            return this;
+        }
+
+        /**
+         * @param batchSize:
+         *            the most fingerprints looked up in the store at once, 64 by default
+         */
+        public Builder withBatchSize(int batchSize) {
+            if (batchSize < 1) {
+                throw new IllegalArgumentException("batch size must be positive: " + batchSize);
+            }
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * @param maxConcurrentBatches:
+         *            the most lookups outstanding at the store, 4 by default
+         */
+        public Builder withMaxConcurrentBatches(int maxConcurrentBatches) {
+            if (maxConcurrentBatches < 1) {
+                throw new IllegalArgumentException("max concurrent batches must be positive: " + maxConcurrentBatches);
+            }
+            this.maxConcurrentBatches = maxConcurrentBatches;
+            return this;
+        }
+
+        public Builder withLimits(ParseLimits limits) {
+            this.limits = Objects.requireNonNull(limits, "limits");
+            return this;
+        }
+
+        public TwoTierConsentCache build() {
+            Objects.requireNonNull(store, "store");
+            return new TwoTierConsentCache(this);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.yieldlab.gdpr.cache;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.yieldlab.gdpr.VendorConsent;
+import com.yieldlab.gdpr.corpus.ConsentCorpusGenerator;
+
+/**
+ * Starts a node warm: fills a {@link TwoTierConsentCache} from a {@link WarmStartSnapshot} of the consents that were
+ * hottest before the last shutdown, then decodes and encodes consent strings for a while so the JIT compiles the
+ * parser before real traffic arrives. {@link #isReady()} turns true once both are done, e.g. for a readiness probe:
+ *
+ * <pre>
+ * WarmStart warmStart = new WarmStart.Builder().withCache(cache).withSnapshot(path).build();
+ * warmStart.start(executor);
+ * warmStart.saveOnShutdown();
+ * </pre>
+ *
+ * Without a readable snapshot the warm-up uses generated consent strings instead.
+ */
+public class WarmStart {
+    private static final int GENERATED_WARM_UP_CONSENTS = 1000;
+
+    private final TwoTierConsentCache cache;
+    private final Path snapshot;
+    private final int snapshotSize;
+    private final Duration warmUpDuration;
+
+    private volatile boolean ready;
+    private volatile int preloadedCount;
+    private volatile IOException lastFailure;
+    // keeps the warm-up results alive, so the JIT cannot drop the warmed code as dead
+    private volatile long sink;
+
+    private WarmStart(Builder builder) {
+        this.cache = builder.cache;
+        this.snapshot = builder.snapshot;
+        this.snapshotSize = builder.snapshotSize;
+        this.warmUpDuration = builder.warmUpDuration;
+    }
+
+    /**
+     * Preloads the snapshot and warms up on the executor.
+     *
+     * @return a future completing when the node is ready
+     */
+    public CompletableFuture<Void> start(Executor executor) {
+        return CompletableFuture.runAsync(this::run, executor);
+    }
+
+    /**
+     * Preloads the snapshot and warms up on the calling thread.
+     */
+    public void run() {
+        List<String> consentStrings = new ArrayList<>();
+        if (Files.exists(snapshot)) {
+            try {
+                WarmStartSnapshot.read(snapshot, (consentString, consent) -> {
+                    cache.preload(consentString, consent);
+                    consentStrings.add(consentString);
+                });
+            } catch (IOException e) {
+                lastFailure = e;
+            }
+        }
+        preloadedCount = consentStrings.size();
+        if (consentStrings.isEmpty()) {
+            consentStrings.addAll(new ConsentCorpusGenerator.Builder().withSeed(GENERATED_WARM_UP_CONSENTS)
+                    .build()
+                    .generate(GENERATED_WARM_UP_CONSENTS));
+        }
+        warmUp(consentStrings);
+        ready = true;
+    }
+
+    private void warmUp(List<String> consentStrings) {
+        long deadline = System.nanoTime() + warmUpDuration.toNanos();
+        long result = 0;
+        do {
+            for (String consentString : consentStrings) {
+                try {
+                    VendorConsent consent = VendorConsent.fromBase64String(consentString);
+                    VendorConsent copy = VendorConsent.fromBytes(consent.toBytes());
+                    result += copy.getConsentString().length() + consent.getAllowedPurposesBits();
+                    if (consent.isVendorAllowed(1)) {
+                        result++;
+                    }
+                } catch (RuntimeException e) {
+                    // warms up the failure path just as well
+                    result--;
+                }
+            }
+        } while (System.nanoTime() < deadline);
+        sink = result;
+    }
+
+    /**
+     * @return true once the snapshot is preloaded and the warm-up is done
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * @return the number of consents preloaded from the snapshot
+     */
+    public int getPreloadedCount() {
+        return preloadedCount;
+    }
+
+    /**
+     * @return why the snapshot could not be read or written the last time, null if it could
+     */
+    public IOException getLastFailure() {
+        return lastFailure;
+    }
+
+    /**
+     * Writes the hottest consents of the cache to the snapshot.
+     *
+     * @return the number of consents written
+     */
+    public int save() throws IOException {
+        try {
+            int count = WarmStartSnapshot.write(snapshot, cache.hottest(snapshotSize));
+            lastFailure = null;
+            return count;
+        } catch (IOException e) {
+            lastFailure = e;
+            throw e;
+        }
+    }
+
+    /**
+     * Saves the snapshot periodically. A failed save keeps the previous snapshot and is reported by
+     * {@link #getLastFailure()}.
+     */
+    public ScheduledFuture<?> scheduleSaves(ScheduledExecutorService scheduler, long period, TimeUnit unit) {
+        return scheduler.scheduleAtFixedRate(this::trySave, period, period, unit);
+    }
+
+    /**
+     * Saves the snapshot when the JVM shuts down.
+     *
+     * @return the registered shutdown hook
+     */
+    public Thread saveOnShutdown() {
+        Thread hook = new Thread(this::trySave, "consent-warm-start-save");
+        Runtime.getRuntime().addShutdownHook(hook);
+        return hook;
+    }
+
+    private void trySave() {
+        try {
+            save();
+        } catch (IOException e) {
+            // kept in lastFailure
+        }
+    }
+
+    public static class Builder {
+        private TwoTierConsentCache cache;
+        private Path snapshot;
+        private int snapshotSize = 10_000;
+        private Duration warmUpDuration = Duration.ofSeconds(2);
+
+        /**
+         * @param cache:
+         *            the cache to preload and to take the hottest consents from, required
+         */
+        public Builder withCache(TwoTierConsentCache cache) {
+            this.cache = cache;
+            return this;
+        }
+
+        /**
+         * @param snapshot:
+         *            the snapshot file, required. Need not exist.
+         */
+        public Builder withSnapshot(Path snapshot) {
+            this.snapshot = snapshot;
+            return this;
+        }
+
+        /**
+         * @param snapshotSize:
+         *            the most consents saved to the snapshot, 10000 by default
+         */
+        public Builder withSnapshotSize(int snapshotSize) {
+            if (snapshotSize < 0) {
+                throw new IllegalArgumentException("snapshot size must not be negative: " + snapshotSize);
+            }
+            this.snapshotSize = snapshotSize;
+            return this;
+        }
+
+        /**
+         * @param warmUpDuration:
+         *            how long the parser is exercised after preloading, 2 seconds by default. The consent strings are
+         *            decoded at least once.
+         */
+        public Builder withWarmUpDuration(Duration warmUpDuration) {
+            this.warmUpDuration = Objects.requireNonNull(warmUpDuration, "warmUpDuration");
+            return this;
+        }
+
+        public WarmStart build() {
+            Objects.requireNonNull(cache, "cache");
+            Objects.requireNonNull(snapshot, "snapshot");
+            return new WarmStart(this);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.yieldlab.gdpr.cache;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import com.yieldlab.gdpr.VendorConsent;
+import com.yieldlab.gdpr.exception.GdprException;
+
+/**
+ * A file of consent strings with the binary form of their consents, for filling a {@link TwoTierConsentCache} when a
+ * node starts instead of decoding every consent string again.
+ *
+ * The file holds a header and one entry per consent: the length and ASCII characters of the consent string, then the
+ * length and bytes of {@link VendorConsent#toBytes()}.
+ */
+public final class WarmStartSnapshot {
+    private static final int FILE_MAGIC = 0x47435753;
+    private static final int FILE_VERSION = 1;
+    private static final int MAX_LENGTH = 0xffff;
+
+    private WarmStartSnapshot() {
+    }
+
+    /**
+     * Writes the consents to a file, in iteration order. The file is written next to the target and moved into place,
+     * so readers of the path never see a partial snapshot. Consent strings that are not ASCII are skipped.
+     *
+     * @return the number of consents written
+     */
+    public static int write(Path path, Map<String, VendorConsent> consents) throws IOException {
+        Path absolute = path.toAbsolutePath();
+        Path temp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        int count = 0;
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(FILE_MAGIC);
+                out.writeInt(FILE_VERSION);
+                for (Map.Entry<String, VendorConsent> entry : consents.entrySet()) {
+                    String consentString = entry.getKey();
+                    if (consentString.length() > MAX_LENGTH || !isAscii(consentString)) {
+                        continue;
+                    }
+                    byte[] consentBytes = entry.getValue().toBytes();
+                    out.writeShort(consentString.length());
+                    out.writeBytes(consentString);
+                    out.writeShort(consentBytes.length);
+                    out.write(consentBytes);
+                    count++;
+                }
+            }
+            Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return count;
+    }
+
+    /**
+     * Memory maps a snapshot and passes each consent with its consent string to the consumer, in file order. The
+     * consents are parsed from their binary form.
+     *
+     * @return the number of consents read
+     * @throws IOException
+     *             if the file cannot be read or is not a valid snapshot. The consumer may have been called for the
+     *             entries before the invalid one.
+     */
+    public static int read(Path path, BiConsumer<String, VendorConsent> consumer) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        try {
+            if (buffer.getInt() != FILE_MAGIC) {
+                throw new IOException(path + " is not a warm start snapshot");
+            }
+            int version = buffer.getInt();
+            if (version != FILE_VERSION) {
+                throw new IOException("unsupported warm start snapshot version " + version);
+            }
+            int count = 0;
+            byte[] chars = new byte[256];
+            while (buffer.hasRemaining()) {
+                int charLength = Short.toUnsignedInt(buffer.getShort());
+                if (chars.length < charLength) {
+                    chars = new byte[charLength];
+                }
+                buffer.get(chars, 0, charLength);
+                String consentString = new String(chars, 0, charLength, StandardCharsets.US_ASCII);
+                int byteLength = Short.toUnsignedInt(buffer.getShort());
+                if (byteLength > buffer.remaining()) {
+                    throw new BufferUnderflowException();
+                }
+                ByteBuffer consentBytes = buffer.slice();
+                consentBytes.limit(byteLength);
+                consumer.accept(consentString, VendorConsent.fromByteBuffer(consentBytes));
+                buffer.position(buffer.position() + byteLength);
+                count++;
+            }
+            return count;
+        } catch (BufferUnderflowException e) {
+            throw new IOException(path + " is truncated", e);
+        } catch (GdprException e) {
+            throw new IOException(path + " holds an invalid consent", e);
+        }
+    }
+
+    private static boolean isAscii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) > 0x7f) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
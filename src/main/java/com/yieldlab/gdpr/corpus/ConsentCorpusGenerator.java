@@ -0,0 +1,436 @@
+package com.yieldlab.gdpr.corpus;
+
+import static com.yieldlab.gdpr.GdprConstants.MAX_VENDOR_ID_SIZE;
+import static com.yieldlab.gdpr.GdprConstants.NUM_ENTRIES_SIZE;
+import static com.yieldlab.gdpr.GdprConstants.PURPOSES_SIZE;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+import com.yieldlab.gdpr.GdprConstants;
+import com.yieldlab.gdpr.VendorConsent;
+
+/**
+ * Generates synthetic consent strings through {@link VendorConsent.Builder} for load and regression tests. The same
+ * seed and settings always produce the same sequence of strings.
+ *
+ * Vendor consent is generated as alternating runs of consented and not consented vendor ids, so both the overall
+ * density and the typical run length can be tuned. A run list is encoded either as bit field or as range entries;
+ * range entries list the runs that differ from the default consent, which is chosen to keep the list short.
+ *
+ * Instances are not thread safe.
+ */
+public class ConsentCorpusGenerator {
+    private static final int MAX_RANGE_ENTRIES = (1 << NUM_ENTRIES_SIZE) - 1;
+
+    private final SplittableRandom random;
+    private final double rangeEncodingShare;
+    private final int minMaxVendorId;
+    private final int maxMaxVendorId;
+    private final double vendorDensity;
+    private final double meanRunLength;
+    private final double acceptAllShare;
+    private final double rejectAllShare;
+    private final int purposeCount;
+    private final double purposeDensity;
+    private final double malformedShare;
+    private final int minCmpId;
+    private final int maxCmpId;
+    private final int minVendorListVersion;
+    private final int maxVendorListVersion;
+    private final List<String> languages;
+    private final long createdFromDeciseconds;
+    private final long createdToDeciseconds;
+
+    private ConsentCorpusGenerator(Builder builder) {
+        this.random = new SplittableRandom(builder.seed);
+        this.rangeEncodingShare = builder.rangeEncodingShare;
+        this.minMaxVendorId = builder.minMaxVendorId;
+        this.maxMaxVendorId = builder.maxMaxVendorId;
+        this.vendorDensity = builder.vendorDensity;
+        this.meanRunLength = builder.meanRunLength;
+        this.acceptAllShare = builder.acceptAllShare;
+        this.rejectAllShare = builder.rejectAllShare;
+        this.purposeCount = builder.purposeCount;
+        this.purposeDensity = builder.purposeDensity;
+        this.malformedShare = builder.malformedShare;
+        this.minCmpId = builder.minCmpId;
+        this.maxCmpId = builder.maxCmpId;
+        this.minVendorListVersion = builder.minVendorListVersion;
+        this.maxVendorListVersion = builder.maxVendorListVersion;
+        this.languages = builder.languages;
+        this.createdFromDeciseconds = builder.createdFrom.toEpochMilli() / 100;
+        this.createdToDeciseconds = builder.createdTo.toEpochMilli() / 100;
+    }
+
+    /**
+     * @return the next consent string. With probability {@code malformedShare} it is truncated or contains an
+     *         invalid character.
+     */
+    public String next() {
+        String consentString = nextConsent().getConsentString();
+        if (random.nextDouble() < malformedShare) {
+            return malform(consentString);
+        }
+        return consentString;
+    }
+
+    /**
+     * @return the next well formed consent. Never malformed, but advances the same sequence as {@link #next()}.
+     */
+    public VendorConsent nextConsent() {
+        VendorConsent.Builder builder = new VendorConsent.Builder();
+        long created = between(createdFromDeciseconds, createdToDeciseconds);
+        long updated = between(created, createdToDeciseconds);
+        builder.withVersion(1)
+                .withConsentRecordCreatedOn(Instant.ofEpochMilli(created * 100))
+                .withConsentRecordLastUpdatedOn(Instant.ofEpochMilli(updated * 100))
+                .withCmpID(between(minCmpId, maxCmpId))
+                .withCmpVersion(random.nextInt(64))
+                .withConsentScreenID(random.nextInt(64))
+                .withConsentLanguage(languages.get(random.nextInt(languages.size())))
+                .withVendorListVersion(between(minVendorListVersion, maxVendorListVersion));
+
+        int maxVendorId = between(minMaxVendorId, maxMaxVendorId);
+        builder.withMaxVendorId(maxVendorId);
+
+        double choice = random.nextDouble();
+        if (choice < acceptAllShare) {
+            builder.withAllowedPurposes(purposes(1.0));
+            return builder.withVendorEncodingType(GdprConstants.VENDOR_ENCODING_RANGE)
+                    .withDefaultConsent(true)
+                    .withRangeEntries(Collections.emptyList())
+                    .build();
+        }
+        if (choice < acceptAllShare + rejectAllShare) {
+            builder.withAllowedPurposes(purposes(0.0));
+            return builder.withVendorEncodingType(GdprConstants.VENDOR_ENCODING_RANGE)
+                    .withDefaultConsent(false)
+                    .withRangeEntries(Collections.emptyList())
+                    .build();
+        }
+
+        builder.withAllowedPurposes(purposes(purposeDensity));
+        List<int[]> runs = consentedRuns(maxVendorId);
+        int consented = 0;
+        for (int[] run : runs) {
+            consented += run[1] - run[0] + 1;
+        }
+        boolean defaultConsent = consented * 2 > maxVendorId;
+        List<VendorConsent.RangeEntry> rangeEntries = rangeEntries(runs, maxVendorId, defaultConsent);
+        if (random.nextDouble() < rangeEncodingShare && rangeEntries.size() <= MAX_RANGE_ENTRIES) {
+            return builder.withVendorEncodingType(GdprConstants.VENDOR_ENCODING_RANGE)
+                    .withDefaultConsent(defaultConsent)
+                    .withRangeEntries(rangeEntries)
+                    .build();
+        }
+        // bit field entries are zero based
+        List<Integer> bitField = new ArrayList<>(consented);
+        for (int[] run : runs) {
+            for (int vendorId = run[0]; vendorId <= run[1]; vendorId++) {
+                bitField.add(vendorId - 1);
+            }
+        }
+        return builder.withVendorEncodingType(0).withBitField(bitField).build();
+    }
+
+    public List<String> generate(int count) {
+        List<String> corpus = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            corpus.add(next());
+        }
+        return corpus;
+    }
+
+    /**
+     * @return a sequential stream of the next {@code count} consent strings
+     */
+    public Stream<String> stream(long count) {
+        return Stream.generate(this::next).limit(count);
+    }
+
+    /**
+     * Writes the next {@code count} consent strings to the file, one per line.
+     */
+    public void writeTo(Path file, int count) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writeTo(writer, count);
+        }
+    }
+
+    /**
+     * Writes the next {@code count} consent strings to the writer, one per line.
+     */
+    public void writeTo(Writer writer, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            writer.write(next());
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    // alternating runs with geometric lengths, returns the consented runs as [first, last] vendor ids
+    private List<int[]> consentedRuns(int maxVendorId) {
+        List<int[]> runs = new ArrayList<>();
+        if (vendorDensity <= 0.0) {
+            return runs;
+        }
+        if (vendorDensity >= 1.0) {
+            runs.add(new int[] { 1, maxVendorId });
+            return runs;
+        }
+        double meanOff = meanRunLength * (1 - vendorDensity) / vendorDensity;
+        boolean on = random.nextDouble() < vendorDensity;
+        int vendorId = 1;
+        while (vendorId <= maxVendorId) {
+            int length = runLength(on ? meanRunLength : meanOff);
+            int last = (int) Math.min((long) vendorId + length - 1, maxVendorId);
+            if (on) {
+                runs.add(new int[] { vendorId, last });
+            }
+            vendorId = last + 1;
+            on = !on;
+        }
+        return runs;
+    }
+
+    private int runLength(double mean) {
+        if (mean <= 1.0) {
+            return 1;
+        }
+        double u = 1.0 - random.nextDouble();
+        return 1 + (int) Math.min(Math.log(u) / Math.log(1.0 - 1.0 / mean), Integer.MAX_VALUE - 1);
+    }
+
+    private static List<VendorConsent.RangeEntry> rangeEntries(List<int[]> runs, int maxVendorId,
+            boolean defaultConsent) {
+        List<VendorConsent.RangeEntry> entries = new ArrayList<>();
+        if (!defaultConsent) {
+            for (int[] run : runs) {
+                entries.add(rangeEntry(run[0], run[1]));
+            }
+            return entries;
+        }
+        int next = 1;
+        for (int[] run : runs) {
+            if (run[0] > next) {
+                entries.add(rangeEntry(next, run[0] - 1));
+            }
+            next = run[1] + 1;
+        }
+        if (next <= maxVendorId) {
+            entries.add(rangeEntry(next, maxVendorId));
+        }
+        return entries;
+    }
+
+    private static VendorConsent.RangeEntry rangeEntry(int first, int last) {
+        return first == last ? new VendorConsent.RangeEntry(first) : new VendorConsent.RangeEntry(first, last);
+    }
+
+    private List<Integer> purposes(double density) {
+        List<Integer> purposes = new ArrayList<>(purposeCount);
+        for (int purposeId = 1; purposeId <= purposeCount; purposeId++) {
+            if (density >= 1.0 || random.nextDouble() < density) {
+                purposes.add(purposeId);
+            }
+        }
+        return purposes;
+    }
+
+    private String malform(String consentString) {
+        if (random.nextBoolean()) {
+            // dropping two or more characters always loses bits the parser needs
+            return consentString.substring(0, random.nextInt(consentString.length() - 1));
+        }
+        char[] chars = consentString.toCharArray();
+        chars[random.nextInt(chars.length)] = '*';
+        return new String(chars);
+    }
+
+    private int between(int minInclusive, int maxInclusive) {
+        return minInclusive + random.nextInt(maxInclusive - minInclusive + 1);
+    }
+
+    private long between(long minInclusive, long maxInclusive) {
+        return minInclusive + (long) (random.nextDouble() * (maxInclusive - minInclusive + 1));
+    }
+
+    public static class Builder {
+        private long seed;
+        private double rangeEncodingShare = 0.3;
+        private int minMaxVendorId = 500;
+        private int maxMaxVendorId = 700;
+        private double vendorDensity = 0.8;
+        private double meanRunLength = 40;
+        private double acceptAllShare = 0.3;
+        private double rejectAllShare = 0.05;
+        private int purposeCount = 5;
+        private double purposeDensity = 0.8;
+        private double malformedShare = 0.0;
+        private int minCmpId = 1;
+        private int maxCmpId = 200;
+        private int minVendorListVersion = 100;
+        private int maxVendorListVersion = 180;
+        private List<String> languages = Arrays.asList("EN", "DE", "FR", "ES", "IT", "NL", "PL");
+        private Instant createdFrom = Instant.parse("2018-05-25T00:00:00Z");
+        private Instant createdTo = Instant.parse("2019-12-31T00:00:00Z");
+
+        /**
+         * @param seed
+         *            the seed of the pseudo random sequence
+         */
+        public Builder withSeed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * @param rangeEncodingShare
+         *            share of the non accept all / reject all consents that use range encoding, 0 to 1
+         */
+        public Builder withRangeEncodingShare(double rangeEncodingShare) {
+            this.rangeEncodingShare = share(rangeEncodingShare);
+            return this;
+        }
+
+        /**
+         * @param minMaxVendorId
+         *            smallest max vendor id
+         * @param maxMaxVendorId
+         *            largest max vendor id, at most 65535
+         */
+        public Builder withMaxVendorIdBetween(int minMaxVendorId, int maxMaxVendorId) {
+            if (minMaxVendorId < 1 || minMaxVendorId > maxMaxVendorId || maxMaxVendorId >= 1 << MAX_VENDOR_ID_SIZE) {
+                throw new IllegalArgumentException("invalid max vendor id range " + minMaxVendorId + " to "
+                        + maxMaxVendorId);
+            }
+            this.minMaxVendorId = minMaxVendorId;
+            this.maxMaxVendorId = maxMaxVendorId;
+            return this;
+        }
+
+        /**
+         * @param vendorDensity
+         *            expected share of consented vendors, 0 to 1
+         */
+        public Builder withVendorDensity(double vendorDensity) {
+            this.vendorDensity = share(vendorDensity);
+            return this;
+        }
+
+        /**
+         * @param meanRunLength
+         *            mean number of consecutive consented vendor ids, at least 1
+         */
+        public Builder withMeanRunLength(double meanRunLength) {
+            if (meanRunLength < 1.0) {
+                throw new IllegalArgumentException("mean run length must be at least 1: " + meanRunLength);
+            }
+            this.meanRunLength = meanRunLength;
+            return this;
+        }
+
+        /**
+         * @param acceptAllShare
+         *            share of consents that allow all vendors and purposes
+         * @param rejectAllShare
+         *            share of consents that allow no vendor and no purpose
+         */
+        public Builder withAcceptAllRejectAllShares(double acceptAllShare, double rejectAllShare) {
+            if (share(acceptAllShare) + share(rejectAllShare) > 1.0) {
+                throw new IllegalArgumentException("accept all and reject all shares must not exceed 1");
+            }
+            this.acceptAllShare = acceptAllShare;
+            this.rejectAllShare = rejectAllShare;
+            return this;
+        }
+
+        /**
+         * @param purposeCount
+         *            number of purposes defined by the vendor list, 0 to 24
+         * @param purposeDensity
+         *            probability that each of them is allowed
+         */
+        public Builder withPurposes(int purposeCount, double purposeDensity) {
+            if (purposeCount < 0 || purposeCount > PURPOSES_SIZE) {
+                throw new IllegalArgumentException("purpose count must be between 0 and " + PURPOSES_SIZE);
+            }
+            this.purposeCount = purposeCount;
+            this.purposeDensity = share(purposeDensity);
+            return this;
+        }
+
+        /**
+         * @param malformedShare
+         *            share of strings returned by {@link ConsentCorpusGenerator#next()} that are truncated or contain
+         *            an invalid character
+         */
+        public Builder withMalformedShare(double malformedShare) {
+            this.malformedShare = share(malformedShare);
+            return this;
+        }
+
+        public Builder withCmpIdBetween(int minCmpId, int maxCmpId) {
+            if (minCmpId < 0 || minCmpId > maxCmpId) {
+                throw new IllegalArgumentException("invalid cmp id range " + minCmpId + " to " + maxCmpId);
+            }
+            this.minCmpId = minCmpId;
+            this.maxCmpId = maxCmpId;
+            return this;
+        }
+
+        public Builder withVendorListVersionBetween(int minVendorListVersion, int maxVendorListVersion) {
+            if (minVendorListVersion < 0 || minVendorListVersion > maxVendorListVersion) {
+                throw new IllegalArgumentException(
+                        "invalid vendor list version range " + minVendorListVersion + " to " + maxVendorListVersion);
+            }
+            this.minVendorListVersion = minVendorListVersion;
+            this.maxVendorListVersion = maxVendorListVersion;
+            return this;
+        }
+
+        /**
+         * @param languages
+         *            two letter language codes to pick from
+         */
+        public Builder withLanguages(List<String> languages) {
+            if (languages.isEmpty()) {
+                throw new IllegalArgumentException("at least one language is required");
+            }
+            this.languages = new ArrayList<>(languages);
+            return this;
+        }
+
+        public Builder withCreatedBetween(Instant createdFrom, Instant createdTo) {
+            if (createdFrom.isAfter(createdTo)) {
+                throw new IllegalArgumentException("created from must not be after created to");
+            }
+            this.createdFrom = createdFrom;
+            this.createdTo = createdTo;
+            return this;
+        }
+
+        private static double share(double share) {
+            if (share < 0.0 || share > 1.0) {
+                throw new IllegalArgumentException("share must be between 0 and 1: " + share);
+            }
+            return share;
+        }
+
+        public ConsentCorpusGenerator build() {
+            return new ConsentCorpusGenerator(this);
+        }
+    }
+}
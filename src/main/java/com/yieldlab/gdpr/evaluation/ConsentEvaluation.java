@@ -0,0 +1,73 @@
+package com.yieldlab.gdpr.evaluation;
+
+import java.util.BitSet;
+import java.util.function.IntConsumer;
+
+import com.yieldlab.gdpr.VendorConsent;
+import com.yieldlab.gdpr.util.BitWords;
+
+/**
+ * The reusable result of a {@link ConsentEvaluator}. Each call to {@link #evaluate(VendorConsent)} overwrites the
+ * previous result without allocating. Instances are not thread safe.
+ */
+public final class ConsentEvaluation {
+    private final ConsentEvaluator evaluator;
+    private final long[] consentVendors;
+    private final long[] allowedVendors;
+
+    ConsentEvaluation(ConsentEvaluator evaluator) {
+        this.evaluator = evaluator;
+        this.consentVendors = new long[evaluator.getWordCount()];
+        this.allowedVendors = new long[evaluator.getWordCount()];
+    }
+
+    /**
+     * Replaces the current result with the vendors allowed by the given consent.
+     *
+     * @return this evaluation
+     */
+    public ConsentEvaluation evaluate(VendorConsent consent) {
+        evaluator.evaluate(consent, consentVendors, allowedVendors);
+        return this;
+    }
+
+    public boolean isVendorAllowed(int vendorId) {
+        return vendorId > 0 && BitWords.get(allowedVendors, vendorId);
+    }
+
+    /**
+     * @return the number of allowed vendors
+     */
+    public int cardinality() {
+        return BitWords.cardinality(allowedVendors);
+    }
+
+    public void forEachAllowedVendor(IntConsumer action) {
+        for (int w = 0; w < allowedVendors.length; w++) {
+            long word = allowedVendors[w];
+            while (word != 0) {
+                action.accept((w << 6) + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+    }
+
+    /**
+     * Copies the allowed vendors into {@code words}, using the layout described in {@link BitWords}.
+     */
+    public void copyTo(long[] words) {
+        int length = Math.min(words.length, allowedVendors.length);
+        System.arraycopy(allowedVendors, 0, words, 0, length);
+        for (int w = length; w < words.length; w++) {
+            words[w] = 0L;
+        }
+    }
+
+    public BitSet toBitSet() {
+        return BitSet.valueOf(allowedVendors);
+    }
+
+    public ConsentEvaluator getEvaluator() {
+        return evaluator;
+    }
+}
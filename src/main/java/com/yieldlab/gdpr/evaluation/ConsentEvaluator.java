@@ -0,0 +1,184 @@
+package com.yieldlab.gdpr.evaluation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.yieldlab.gdpr.PurposeRequirement;
+import com.yieldlab.gdpr.VendorConsent;
+import com.yieldlab.gdpr.util.BitWords;
+import com.yieldlab.gdpr.vendor.Vendor;
+import com.yieldlab.gdpr.vendor.VendorList;
+
+/**
+ * Compiles the vendors of a {@link VendorList} once and evaluates {@link VendorConsent}s into the set of vendors that
+ * have a legal basis to process data. A vendor has a legal basis if
+ * <ul>
+ * <li>its consent bit is set and all of its consent based purposes ({@code purposeIds}) are allowed, or</li>
+ * <li>it declares legitimate interest purposes only, i.e. {@code purposeIds} is empty and {@code legIntPurposeIds}
+ * is not.</li>
+ * </ul>
+ *
+ * Vendors are grouped by their consent purpose mask, so an evaluation costs one pass over the vendor words per
+ * distinct mask that the consent satisfies, independent of the number of vendors.
+ *
+ * Instances are immutable and thread safe. Use {@link #newEvaluation()} to get a reusable, single threaded result
+ * buffer.
+ */
+public final class ConsentEvaluator {
+    private final int vendorListVersion;
+    private final int maxVendorId;
+    private final int words;
+    // every compiled vendor
+    private final long[] vendors;
+    // vendors that are allowed without consent
+    private final long[] legIntOnlyVendors;
+    // consent based vendors grouped by the purposes they require
+    private final int[] groupPurposeMasks;
+    private final long[][] groupVendors;
+
+    private ConsentEvaluator(int vendorListVersion, List<Vendor> compiledVendors) {
+        this.vendorListVersion = vendorListVersion;
+        int max = 0;
+        for (Vendor vendor : compiledVendors) {
+            max = Math.max(max, vendor.getId());
+        }
+        this.maxVendorId = max;
+        this.words = BitWords.wordsFor(max);
+        this.vendors = new long[words];
+        this.legIntOnlyVendors = new long[words];
+
+        Map<Integer, long[]> groups = new LinkedHashMap<>();
+        for (Vendor vendor : compiledVendors) {
+            int vendorId = vendor.getId();
+            BitWords.set(vendors, vendorId);
+            if (vendor.getPurposeIds().isEmpty() && !vendor.getLegIntPurposeIds().isEmpty()) {
+                BitWords.set(legIntOnlyVendors, vendorId);
+            } else {
+                int purposeMask = PurposeRequirement.of(vendor.getPurposeIds()).getMask();
+                BitWords.set(groups.computeIfAbsent(purposeMask, mask -> new long[words]), vendorId);
+            }
+        }
+        this.groupPurposeMasks = new int[groups.size()];
+        this.groupVendors = new long[groups.size()][];
+        int i = 0;
+        for (Map.Entry<Integer, long[]> group : groups.entrySet()) {
+            groupPurposeMasks[i] = group.getKey();
+            groupVendors[i] = group.getValue();
+            i++;
+        }
+    }
+
+    /**
+     * Compiles all vendors of the given list.
+     *
+     * @throws IllegalArgumentException
+     *             if a vendor has an id below 1 or a purpose id outside of 1 to 24
+     */
+    public static ConsentEvaluator compile(VendorList vendorList) {
+        return new ConsentEvaluator(vendorList.getVendorListVersion(), checked(vendorList.getVendors()));
+    }
+
+    /**
+     * Compiles only the given vendors of the list. Vendor ids that are not part of the list are ignored.
+     *
+     * @throws IllegalArgumentException
+     *             if a vendor has an id below 1 or a purpose id outside of 1 to 24
+     */
+    public static ConsentEvaluator compile(VendorList vendorList, Collection<Integer> vendorIds) {
+        Set<Integer> wanted = new HashSet<>(vendorIds);
+        List<Vendor> selected = new ArrayList<>(wanted.size());
+        for (Vendor vendor : vendorList.getVendors()) {
+            if (wanted.contains(vendor.getId())) {
+                selected.add(vendor);
+            }
+        }
+        return new ConsentEvaluator(vendorList.getVendorListVersion(), checked(selected));
+    }
+
+    private static List<Vendor> checked(List<Vendor> vendors) {
+        for (Vendor vendor : vendors) {
+            if (vendor.getId() < 1) {
+                throw new IllegalArgumentException("vendor id must be positive: " + vendor.getId());
+            }
+        }
+        return vendors;
+    }
+
+    /**
+     * @return a new reusable evaluation buffer for this evaluator. Evaluations must not be shared between threads.
+     */
+    public ConsentEvaluation newEvaluation() {
+        return new ConsentEvaluation(this);
+    }
+
+    /**
+     * Evaluates the given consent into a fresh evaluation. Use {@link ConsentEvaluation#evaluate(VendorConsent)} on a
+     * reused instance in hot paths.
+     */
+    public ConsentEvaluation evaluate(VendorConsent consent) {
+        return newEvaluation().evaluate(consent);
+    }
+
+    /**
+     * Computes the allowed vendors into {@code out}.
+     *
+     * @param consentVendors
+     *            scratch buffer of {@link #getWordCount()} words, overwritten with the vendor bits of the consent
+     * @param out
+     *            buffer of {@link #getWordCount()} words, receives the allowed vendors
+     */
+    void evaluate(VendorConsent consent, long[] consentVendors, long[] out) {
+        consent.copyVendorBits(consentVendors);
+        int purposes = consent.getAllowedPurposesBits();
+
+        for (int w = 0; w < words; w++) {
+            out[w] = 0L;
+        }
+        for (int g = 0; g < groupPurposeMasks.length; g++) {
+            int mask = groupPurposeMasks[g];
+            if ((purposes & mask) == mask) {
+                long[] group = groupVendors[g];
+                for (int w = 0; w < words; w++) {
+                    out[w] |= group[w];
+                }
+            }
+        }
+        for (int w = 0; w < words; w++) {
+            out[w] = legIntOnlyVendors[w] | (out[w] & consentVendors[w]);
+        }
+    }
+
+    public int getVendorListVersion() {
+        return vendorListVersion;
+    }
+
+    /**
+     * @return the highest compiled vendor id
+     */
+    public int getMaxVendorId() {
+        return maxVendorId;
+    }
+
+    /**
+     * @return the size of the vendor bit sets produced by this evaluator
+     */
+    public int getWordCount() {
+        return words;
+    }
+
+    /**
+     * @return the number of distinct consent purpose masks among the compiled vendors
+     */
+    public int getPurposeGroupCount() {
+        return groupPurposeMasks.length;
+    }
+
+    public boolean isCompiled(int vendorId) {
+        return vendorId >= 0 && BitWords.get(vendors, vendorId);
+    }
+}
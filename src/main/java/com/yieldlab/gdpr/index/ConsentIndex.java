@@ -0,0 +1,316 @@
+package com.yieldlab.gdpr.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+import com.yieldlab.gdpr.GdprConstants;
+import com.yieldlab.gdpr.VendorConsent;
+import com.yieldlab.gdpr.util.BitWords;
+
+/**
+ * An inverted index over a population of consents, each identified by a non negative user ordinal. Keeps an
+ * {@link OrdinalBitmap} of users per vendor id and per purpose, so audience questions like "which users consented to
+ * vendor 8 and purpose 1" are answered by combining a few bitmaps instead of scanning the consents.
+ *
+ * Queries run concurrently, updates are exclusive.
+ */
+public class ConsentIndex {
+    private static final int FILE_MAGIC = 0x47434958;
+    private static final int FILE_VERSION = 1;
+    private static final OrdinalBitmap EMPTY = new OrdinalBitmap();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final OrdinalBitmap users;
+    // purpose n is at index n - 1
+    private final OrdinalBitmap[] purposes;
+    // vendor n is at index n, null while no user consented to it
+    private OrdinalBitmap[] vendors;
+    // only used while holding the write lock
+    private long[] vendorWords = new long[0];
+
+    public ConsentIndex() {
+        this(new OrdinalBitmap(), new OrdinalBitmap[GdprConstants.PURPOSES_SIZE], new OrdinalBitmap[0]);
+        for (int i = 0; i < purposes.length; i++) {
+            purposes[i] = new OrdinalBitmap();
+        }
+    }
+
+    private ConsentIndex(OrdinalBitmap users, OrdinalBitmap[] purposes, OrdinalBitmap[] vendors) {
+        this.users = users;
+        this.purposes = purposes;
+        this.vendors = vendors;
+    }
+
+    /**
+     * Adds the consent of a user.
+     *
+     * @throws IllegalArgumentException
+     *             if the user ordinal is negative or the user is already indexed
+     */
+    public void add(int userOrdinal, VendorConsent consent) {
+        lock.writeLock().lock();
+        try {
+            if (users.contains(userOrdinal)) {
+                throw new IllegalArgumentException("user " + userOrdinal + " is already indexed");
+            }
+            index(userOrdinal, consent);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds the consents of a stream of (user ordinal, consent) pairs under a single lock.
+     *
+     * @throws IllegalArgumentException
+     *             if a user ordinal is negative or a user is already indexed. The pairs before it stay indexed.
+     */
+    public void addAll(Stream<? extends Map.Entry<Integer, VendorConsent>> consents) {
+        lock.writeLock().lock();
+        try {
+            consents.sequential().forEach(entry -> {
+                int userOrdinal = entry.getKey();
+                if (users.contains(userOrdinal)) {
+                    throw new IllegalArgumentException("user " + userOrdinal + " is already indexed");
+                }
+                index(userOrdinal, entry.getValue());
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the consent of a user, or adds it if the user is not indexed yet.
+     *
+     * @throws IllegalArgumentException
+     *             if the user ordinal is negative
+     */
+    public void update(int userOrdinal, VendorConsent consent) {
+        lock.writeLock().lock();
+        try {
+            unindex(userOrdinal);
+            index(userOrdinal, consent);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the consent of a user. This visits every vendor bitmap, so it is slower than adding a consent.
+     *
+     * @return true if the user was indexed
+     */
+    public boolean remove(int userOrdinal) {
+        lock.writeLock().lock();
+        try {
+            return unindex(userOrdinal);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean contains(int userOrdinal) {
+        lock.readLock().lock();
+        try {
+            return users.contains(userOrdinal);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of indexed users
+     */
+    public long size() {
+        lock.readLock().lock();
+        try {
+            return users.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the users matching the query, as a new bitmap owned by the caller
+     */
+    public OrdinalBitmap evaluate(IndexQuery query) {
+        lock.readLock().lock();
+        try {
+            OrdinalBitmap result = resolve(query);
+            return query.isLeaf() ? result.copy() : result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of users matching the query. The last operand of an AND query is only counted, not
+     *         materialized.
+     */
+    public long count(IndexQuery query) {
+        lock.readLock().lock();
+        try {
+            if (query.getKind() != IndexQuery.Kind.AND) {
+                return resolve(query).cardinality();
+            }
+            IndexQuery[] operands = query.getOperands();
+            OrdinalBitmap result = resolve(operands[0]);
+            for (int i = 1; i < operands.length - 1; i++) {
+                result = OrdinalBitmap.and(result, resolve(operands[i]));
+            }
+            return OrdinalBitmap.andCardinality(result, resolve(operands[operands.length - 1]));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes the index to a file. The file is written next to the target and moved into place, so readers of the
+     * path never see a partial index.
+     */
+    public void save(Path path) throws IOException {
+        Path absolute = path.toAbsolutePath();
+        Path temp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        try {
+            lock.readLock().lock();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(FILE_MAGIC);
+                out.writeInt(FILE_VERSION);
+                users.writeTo(out);
+                for (OrdinalBitmap purpose : purposes) {
+                    purpose.writeTo(out);
+                }
+                out.writeInt(vendors.length);
+                for (int vendorId = 1; vendorId < vendors.length; vendorId++) {
+                    if (vendors[vendorId] != null) {
+                        out.writeInt(vendorId);
+                        vendors[vendorId].writeTo(out);
+                    }
+                }
+                out.writeInt(0);
+            } finally {
+                lock.readLock().unlock();
+            }
+            Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Reads an index written by {@link #save(Path)}.
+     *
+     * @throws IOException
+     *             if the file cannot be read or does not hold an index
+     */
+    public static ConsentIndex load(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != FILE_MAGIC) {
+                throw new IOException(path + " is not a consent index");
+            }
+            int version = in.readInt();
+            if (version != FILE_VERSION) {
+                throw new IOException("unsupported consent index version " + version);
+            }
+            OrdinalBitmap users = OrdinalBitmap.readFrom(in);
+            OrdinalBitmap[] purposes = new OrdinalBitmap[GdprConstants.PURPOSES_SIZE];
+            for (int i = 0; i < purposes.length; i++) {
+                purposes[i] = OrdinalBitmap.readFrom(in);
+            }
+            int vendorCount = in.readInt();
+            if (vendorCount < 0 || vendorCount > 1 << GdprConstants.VENDOR_ID_SIZE) {
+                throw new IOException("invalid vendor count " + vendorCount);
+            }
+            OrdinalBitmap[] vendors = new OrdinalBitmap[vendorCount];
+            for (int vendorId = in.readInt(); vendorId != 0; vendorId = in.readInt()) {
+                if (vendorId < 1 || vendorId >= vendorCount || vendors[vendorId] != null) {
+                    throw new IOException("invalid vendor id " + vendorId);
+                }
+                vendors[vendorId] = OrdinalBitmap.readFrom(in);
+            }
+            return new ConsentIndex(users, purposes, vendors);
+        }
+    }
+
+    private void index(int userOrdinal, VendorConsent consent) {
+        users.add(userOrdinal);
+        int purposeBits = consent.getAllowedPurposesBits();
+        while (purposeBits != 0) {
+            // purpose #1 is the most significant of the 24 bits
+            int bit = Integer.numberOfTrailingZeros(purposeBits);
+            purposes[GdprConstants.PURPOSES_SIZE - 1 - bit].add(userOrdinal);
+            purposeBits &= purposeBits - 1;
+        }
+        int maxVendorId = consent.getMaxVendorId();
+        int wordCount = BitWords.wordsFor(maxVendorId);
+        if (vendorWords.length < wordCount) {
+            vendorWords = new long[wordCount];
+        }
+        if (vendors.length <= maxVendorId) {
+            vendors = Arrays.copyOf(vendors, maxVendorId + 1);
+        }
+        consent.copyVendorBits(vendorWords);
+        for (int w = 0; w < wordCount; w++) {
+            long word = vendorWords[w];
+            while (word != 0) {
+                int vendorId = w << 6 | Long.numberOfTrailingZeros(word);
+                if (vendors[vendorId] == null) {
+                    vendors[vendorId] = new OrdinalBitmap();
+                }
+                vendors[vendorId].add(userOrdinal);
+                word &= word - 1;
+            }
+        }
+    }
+
+    private boolean unindex(int userOrdinal) {
+        if (!users.remove(userOrdinal)) {
+            return false;
+        }
+        for (OrdinalBitmap purpose : purposes) {
+            purpose.remove(userOrdinal);
+        }
+        for (int vendorId = 1; vendorId < vendors.length; vendorId++) {
+            OrdinalBitmap vendor = vendors[vendorId];
+            if (vendor != null && vendor.remove(userOrdinal) && vendor.isEmpty()) {
+                vendors[vendorId] = null;
+            }
+        }
+        return true;
+    }
+
+    // leaf queries return the indexed bitmap itself, combined queries a new one
+    private OrdinalBitmap resolve(IndexQuery query) {
+        switch (query.getKind()) {
+        case VENDOR:
+            OrdinalBitmap vendor = query.getId() < vendors.length ? vendors[query.getId()] : null;
+            return vendor == null ? EMPTY : vendor;
+        case PURPOSE:
+            return purposes[query.getId() - 1];
+        case AND:
+            OrdinalBitmap intersection = resolve(query.getOperands()[0]);
+            for (int i = 1; i < query.getOperands().length; i++) {
+                intersection = OrdinalBitmap.and(intersection, resolve(query.getOperands()[i]));
+            }
+            return intersection;
+        default:
+            OrdinalBitmap union = resolve(query.getOperands()[0]);
+            for (int i = 1; i < query.getOperands().length; i++) {
+                union = OrdinalBitmap.or(union, resolve(query.getOperands()[i]));
+            }
+            return union;
+        }
+    }
+}
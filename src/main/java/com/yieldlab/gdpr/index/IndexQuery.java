@@ -0,0 +1,140 @@
+package com.yieldlab.gdpr.index;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import com.yieldlab.gdpr.GdprConstants;
+
+/**
+ * A boolean query over a {@link ConsentIndex}: users that consented to a vendor or purpose, combined with AND and OR.
+ *
+ * <pre>
+ * IndexQuery query = IndexQuery.vendor(8).and(IndexQuery.purpose(1).or(IndexQuery.purpose(3)));
+ * long audience = index.count(query);
+ * </pre>
+ */
+public final class IndexQuery {
+    enum Kind {
+        VENDOR, PURPOSE, AND, OR
+    }
+
+    private final Kind kind;
+    // vendor or purpose id of a leaf query
+    private final int id;
+    private final IndexQuery[] operands;
+
+    private IndexQuery(Kind kind, int id, IndexQuery[] operands) {
+        this.kind = kind;
+        this.id = id;
+        this.operands = operands;
+    }
+
+    /**
+     * @return the users that consented to the vendor
+     * @throws IllegalArgumentException
+     *             if the vendor id is not positive
+     */
+    public static IndexQuery vendor(int vendorId) {
+        if (vendorId < 1) {
+            throw new IllegalArgumentException("invalid vendor id " + vendorId);
+        }
+        return new IndexQuery(Kind.VENDOR, vendorId, null);
+    }
+
+    /**
+     * @return the users that allowed the purpose
+     * @throws IllegalArgumentException
+     *             if the purpose id is not within 1 to 24
+     */
+    public static IndexQuery purpose(int purposeId) {
+        if (purposeId < 1 || purposeId > GdprConstants.PURPOSES_SIZE) {
+            throw new IllegalArgumentException("invalid purpose id " + purposeId);
+        }
+        return new IndexQuery(Kind.PURPOSE, purposeId, null);
+    }
+
+    /**
+     * @return the users matching all of the queries
+     */
+    public static IndexQuery allOf(IndexQuery... queries) {
+        return combine(Kind.AND, queries);
+    }
+
+    /**
+     * @return the users matching any of the queries
+     */
+    public static IndexQuery anyOf(IndexQuery... queries) {
+        return combine(Kind.OR, queries);
+    }
+
+    public IndexQuery and(IndexQuery other) {
+        return allOf(this, other);
+    }
+
+    public IndexQuery or(IndexQuery other) {
+        return anyOf(this, other);
+    }
+
+    private static IndexQuery combine(Kind kind, IndexQuery[] queries) {
+        if (queries.length == 0) {
+            throw new IllegalArgumentException("at least one query is required");
+        }
+        for (IndexQuery query : queries) {
+            Objects.requireNonNull(query, "query");
+        }
+        if (queries.length == 1) {
+            return queries[0];
+        }
+        return new IndexQuery(kind, 0, queries.clone());
+    }
+
+    Kind getKind() {
+        return kind;
+    }
+
+    int getId() {
+        return id;
+    }
+
+    IndexQuery[] getOperands() {
+        return operands;
+    }
+
+    boolean isLeaf() {
+        return operands == null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (o == null || getClass() != o.getClass())
+            return false;
+        IndexQuery query = (IndexQuery) o;
+        return kind == query.kind && id == query.id && Arrays.equals(operands, query.operands);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Objects.hash(kind, id) + Arrays.hashCode(operands);
+    }
+
+    @Override
+    public String toString() {
+        switch (kind) {
+        case VENDOR:
+            return "vendor(" + id + ")";
+        case PURPOSE:
+            return "purpose(" + id + ")";
+        default:
+            StringBuilder s = new StringBuilder("(");
+            for (int i = 0; i < operands.length; i++) {
+                if (i > 0) {
+                    s.append(' ').append(kind).append(' ');
+                }
+                s.append(operands[i]);
+            }
+            return s.append(')').toString();
+        }
+    }
+}
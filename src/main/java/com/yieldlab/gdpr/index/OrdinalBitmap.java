@@ -0,0 +1,592 @@
+package com.yieldlab.gdpr.index;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A compressed set of non negative int ordinals. The ordinals are split into chunks of 65536 values by their high 16
+ * bits; a chunk with up to 4096 values is kept as a sorted char array of the low 16 bits, a denser chunk as a bitmap
+ * of 1024 words. This is the layout of Roaring bitmaps, without run containers.
+ *
+ * Not thread safe.
+ */
+public final class OrdinalBitmap {
+    // a chunk is held as array if it has at most this many values, as bitmap otherwise
+    static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = 1024;
+
+    // sorted high 16 bits of the chunks
+    private char[] keys;
+    // char[] or long[] per chunk, see ARRAY_MAX
+    private Object[] containers;
+    private int[] cardinalities;
+    private int size;
+
+    public OrdinalBitmap() {
+        this(4);
+    }
+
+    private OrdinalBitmap(int capacity) {
+        keys = new char[capacity];
+        containers = new Object[capacity];
+        cardinalities = new int[capacity];
+    }
+
+    /**
+     * @return a bitmap holding the given ordinals
+     */
+    public static OrdinalBitmap of(int... ordinals) {
+        OrdinalBitmap bitmap = new OrdinalBitmap();
+        for (int ordinal : ordinals) {
+            bitmap.add(ordinal);
+        }
+        return bitmap;
+    }
+
+    /**
+     * @return true if the ordinal was not present before
+     * @throws IllegalArgumentException
+     *             if the ordinal is negative
+     */
+    public boolean add(int ordinal) {
+        if (ordinal < 0) {
+            throw new IllegalArgumentException("ordinal must not be negative: " + ordinal);
+        }
+        char low = (char) ordinal;
+        int i = chunkIndex((char) (ordinal >>> 16));
+        if (i < 0) {
+            insertChunk(-i - 1, (char) (ordinal >>> 16), new char[] { low, 0, 0, 0 }, 1);
+            return true;
+        }
+        int cardinality = cardinalities[i];
+        if (containers[i] instanceof long[]) {
+            long[] bitmap = (long[]) containers[i];
+            long mask = 1L << low;
+            if ((bitmap[low >>> 6] & mask) != 0) {
+                return false;
+            }
+            bitmap[low >>> 6] |= mask;
+        } else {
+            char[] array = (char[]) containers[i];
+            int position = Arrays.binarySearch(array, 0, cardinality, low);
+            if (position >= 0) {
+                return false;
+            }
+            position = -position - 1;
+            if (cardinality == ARRAY_MAX) {
+                long[] bitmap = toBitmap(array, cardinality);
+                bitmap[low >>> 6] |= 1L << low;
+                containers[i] = bitmap;
+            } else {
+                if (cardinality == array.length) {
+                    array = Arrays.copyOf(array, Math.min(ARRAY_MAX, cardinality * 2));
+                    containers[i] = array;
+                }
+                System.arraycopy(array, position, array, position + 1, cardinality - position);
+                array[position] = low;
+            }
+        }
+        cardinalities[i] = cardinality + 1;
+        return true;
+    }
+
+    /**
+     * @return true if the ordinal was present
+     */
+    public boolean remove(int ordinal) {
+        if (ordinal < 0) {
+            return false;
+        }
+        int i = chunkIndex((char) (ordinal >>> 16));
+        if (i < 0) {
+            return false;
+        }
+        char low = (char) ordinal;
+        int cardinality = cardinalities[i];
+        if (containers[i] instanceof long[]) {
+            long[] bitmap = (long[]) containers[i];
+            long mask = 1L << low;
+            if ((bitmap[low >>> 6] & mask) == 0) {
+                return false;
+            }
+            bitmap[low >>> 6] &= ~mask;
+            if (cardinality - 1 <= ARRAY_MAX) {
+                containers[i] = toArray(bitmap, cardinality - 1);
+            }
+        } else {
+            char[] array = (char[]) containers[i];
+            int position = Arrays.binarySearch(array, 0, cardinality, low);
+            if (position < 0) {
+                return false;
+            }
+            System.arraycopy(array, position + 1, array, position, cardinality - position - 1);
+        }
+        if (cardinality == 1) {
+            removeChunk(i);
+        } else {
+            cardinalities[i] = cardinality - 1;
+        }
+        return true;
+    }
+
+    public boolean contains(int ordinal) {
+        if (ordinal < 0) {
+            return false;
+        }
+        int i = chunkIndex((char) (ordinal >>> 16));
+        if (i < 0) {
+            return false;
+        }
+        char low = (char) ordinal;
+        if (containers[i] instanceof long[]) {
+            return (((long[]) containers[i])[low >>> 6] & (1L << low)) != 0;
+        }
+        return Arrays.binarySearch((char[]) containers[i], 0, cardinalities[i], low) >= 0;
+    }
+
+    /**
+     * @return the number of ordinals in the set
+     */
+    public long cardinality() {
+        long cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += cardinalities[i];
+        }
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Calls the consumer for each ordinal in ascending order.
+     */
+    public void forEach(IntConsumer consumer) {
+        for (int i = 0; i < size; i++) {
+            int base = keys[i] << 16;
+            if (containers[i] instanceof long[]) {
+                long[] bitmap = (long[]) containers[i];
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    long word = bitmap[w];
+                    while (word != 0) {
+                        consumer.accept(base | w << 6 | Long.numberOfTrailingZeros(word));
+                        word &= word - 1;
+                    }
+                }
+            } else {
+                char[] array = (char[]) containers[i];
+                for (int k = 0; k < cardinalities[i]; k++) {
+                    consumer.accept(base | array[k]);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the ordinals in ascending order
+     * @throws IllegalStateException
+     *             if the set holds more ordinals than fit into an array
+     */
+    public int[] toArray() {
+        long cardinality = cardinality();
+        if (cardinality > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("too many ordinals for an array: " + cardinality);
+        }
+        int[] ordinals = new int[(int) cardinality];
+        int[] next = new int[1];
+        forEach(ordinal -> ordinals[next[0]++] = ordinal);
+        return ordinals;
+    }
+
+    public OrdinalBitmap copy() {
+        OrdinalBitmap copy = new OrdinalBitmap(Math.max(size, 1));
+        for (int i = 0; i < size; i++) {
+            copy.appendChunk(keys[i], copyContainer(i), cardinalities[i]);
+        }
+        return copy;
+    }
+
+    /**
+     * @return a new set holding the ordinals present in both sets
+     */
+    public static OrdinalBitmap and(OrdinalBitmap a, OrdinalBitmap b) {
+        OrdinalBitmap result = new OrdinalBitmap(Math.max(Math.min(a.size, b.size), 1));
+        int i = 0;
+        int j = 0;
+        while (i < a.size && j < b.size) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                result.appendChunk(a.keys[i], andContainers(a, i, b, j));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of ordinals present in both sets, without building their intersection
+     */
+    public static long andCardinality(OrdinalBitmap a, OrdinalBitmap b) {
+        long cardinality = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.size && j < b.size) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                cardinality += andContainerCardinality(a, i, b, j);
+                i++;
+                j++;
+            }
+        }
+        return cardinality;
+    }
+
+    /**
+     * @return a new set holding the ordinals present in either set
+     */
+    public static OrdinalBitmap or(OrdinalBitmap a, OrdinalBitmap b) {
+        OrdinalBitmap result = new OrdinalBitmap(Math.max(a.size + b.size, 1));
+        int i = 0;
+        int j = 0;
+        while (i < a.size || j < b.size) {
+            if (j == b.size || (i < a.size && a.keys[i] < b.keys[j])) {
+                result.appendChunk(a.keys[i], a.copyContainer(i), a.cardinalities[i]);
+                i++;
+            } else if (i == a.size || a.keys[i] > b.keys[j]) {
+                result.appendChunk(b.keys[j], b.copyContainer(j), b.cardinalities[j]);
+                j++;
+            } else {
+                result.appendChunk(a.keys[i], orContainers(a, i, b, j));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes the set in a compact binary form readable by {@link #readFrom(DataInput)}.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeChar(keys[i]);
+            out.writeInt(cardinalities[i]);
+            if (containers[i] instanceof long[]) {
+                for (long word : (long[]) containers[i]) {
+                    out.writeLong(word);
+                }
+            } else {
+                char[] array = (char[]) containers[i];
+                for (int k = 0; k < cardinalities[i]; k++) {
+                    out.writeChar(array[k]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a set written by {@link #writeTo(DataOutput)}.
+     *
+     * @throws IOException
+     *             if the input cannot be read or does not hold a valid set
+     */
+    public static OrdinalBitmap readFrom(DataInput in) throws IOException {
+        int chunks = in.readInt();
+        if (chunks < 0 || chunks > 1 << 15) {
+            throw new IOException("invalid ordinal bitmap chunk count " + chunks);
+        }
+        OrdinalBitmap bitmap = new OrdinalBitmap(Math.max(chunks, 1));
+        for (int i = 0; i < chunks; i++) {
+            char key = in.readChar();
+            int cardinality = in.readInt();
+            if ((i > 0 && key <= bitmap.keys[i - 1]) || cardinality < 1 || cardinality > 1 << 16) {
+                throw new IOException("invalid ordinal bitmap chunk " + (int) key);
+            }
+            if (cardinality > ARRAY_MAX) {
+                long[] words = new long[BITMAP_WORDS];
+                int actual = 0;
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    words[w] = in.readLong();
+                    actual += Long.bitCount(words[w]);
+                }
+                if (actual != cardinality) {
+                    throw new IOException("invalid ordinal bitmap chunk " + (int) key);
+                }
+                bitmap.appendChunk(key, words, cardinality);
+            } else {
+                char[] array = new char[cardinality];
+                for (int k = 0; k < cardinality; k++) {
+                    array[k] = in.readChar();
+                    if (k > 0 && array[k] <= array[k - 1]) {
+                        throw new IOException("invalid ordinal bitmap chunk " + (int) key);
+                    }
+                }
+                bitmap.appendChunk(key, array, cardinality);
+            }
+        }
+        if (chunks > 0 && bitmap.keys[chunks - 1] > Short.MAX_VALUE) {
+            throw new IOException("negative ordinal in bitmap");
+        }
+        return bitmap;
+    }
+
+    private int chunkIndex(char key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void insertChunk(int index, char key, Object container, int cardinality) {
+        if (size == keys.length) {
+            int capacity = Math.max(4, size * 2);
+            keys = Arrays.copyOf(keys, capacity);
+            containers = Arrays.copyOf(containers, capacity);
+            cardinalities = Arrays.copyOf(cardinalities, capacity);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        System.arraycopy(cardinalities, index, cardinalities, index + 1, size - index);
+        keys[index] = key;
+        containers[index] = container;
+        cardinalities[index] = cardinality;
+        size++;
+    }
+
+    private void appendChunk(char key, Object container, int cardinality) {
+        insertChunk(size, key, container, cardinality);
+    }
+
+    // for containers built by the set operations: arrays are exactly sized, bitmaps are counted
+    private void appendChunk(char key, Object container) {
+        if (container instanceof long[]) {
+            long[] bitmap = (long[]) container;
+            int cardinality = 0;
+            for (long word : bitmap) {
+                cardinality += Long.bitCount(word);
+            }
+            if (cardinality > ARRAY_MAX) {
+                appendChunk(key, bitmap, cardinality);
+            } else if (cardinality > 0) {
+                appendChunk(key, toArray(bitmap, cardinality), cardinality);
+            }
+        } else {
+            char[] array = (char[]) container;
+            if (array.length > 0) {
+                appendChunk(key, array, array.length);
+            }
+        }
+    }
+
+    private void removeChunk(int index) {
+        System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+        System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+        System.arraycopy(cardinalities, index + 1, cardinalities, index, size - index - 1);
+        size--;
+        containers[size] = null;
+    }
+
+    private Object copyContainer(int i) {
+        if (containers[i] instanceof long[]) {
+            return ((long[]) containers[i]).clone();
+        }
+        return Arrays.copyOf((char[]) containers[i], cardinalities[i]);
+    }
+
+    private static Object andContainers(OrdinalBitmap a, int i, OrdinalBitmap b, int j) {
+        Object x = a.containers[i];
+        Object y = b.containers[j];
+        if (x instanceof long[] && y instanceof long[]) {
+            long[] left = (long[]) x;
+            long[] right = (long[]) y;
+            long[] result = new long[BITMAP_WORDS];
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                result[w] = left[w] & right[w];
+            }
+            return result;
+        }
+        if (x instanceof long[]) {
+            return filter((char[]) y, b.cardinalities[j], (long[]) x);
+        }
+        if (y instanceof long[]) {
+            return filter((char[]) x, a.cardinalities[i], (long[]) y);
+        }
+        char[] left = (char[]) x;
+        char[] right = (char[]) y;
+        int leftSize = a.cardinalities[i];
+        int rightSize = b.cardinalities[j];
+        char[] result = new char[Math.min(leftSize, rightSize)];
+        int n = 0;
+        int l = 0;
+        int r = 0;
+        while (l < leftSize && r < rightSize) {
+            if (left[l] < right[r]) {
+                l++;
+            } else if (left[l] > right[r]) {
+                r++;
+            } else {
+                result[n++] = left[l];
+                l++;
+                r++;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    private static int andContainerCardinality(OrdinalBitmap a, int i, OrdinalBitmap b, int j) {
+        Object x = a.containers[i];
+        Object y = b.containers[j];
+        if (x instanceof long[] && y instanceof long[]) {
+            long[] left = (long[]) x;
+            long[] right = (long[]) y;
+            int cardinality = 0;
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                cardinality += Long.bitCount(left[w] & right[w]);
+            }
+            return cardinality;
+        }
+        if (x instanceof long[] || y instanceof long[]) {
+            long[] bitmap = (long[]) (x instanceof long[] ? x : y);
+            char[] array = (char[]) (x instanceof long[] ? y : x);
+            int arraySize = x instanceof long[] ? b.cardinalities[j] : a.cardinalities[i];
+            int cardinality = 0;
+            for (int k = 0; k < arraySize; k++) {
+                if ((bitmap[array[k] >>> 6] & (1L << array[k])) != 0) {
+                    cardinality++;
+                }
+            }
+            return cardinality;
+        }
+        char[] left = (char[]) x;
+        char[] right = (char[]) y;
+        int leftSize = a.cardinalities[i];
+        int rightSize = b.cardinalities[j];
+        int cardinality = 0;
+        int l = 0;
+        int r = 0;
+        while (l < leftSize && r < rightSize) {
+            if (left[l] < right[r]) {
+                l++;
+            } else if (left[l] > right[r]) {
+                r++;
+            } else {
+                cardinality++;
+                l++;
+                r++;
+            }
+        }
+        return cardinality;
+    }
+
+    private static Object orContainers(OrdinalBitmap a, int i, OrdinalBitmap b, int j) {
+        Object x = a.containers[i];
+        Object y = b.containers[j];
+        if (x instanceof long[] || y instanceof long[]) {
+            long[] result = x instanceof long[] ? ((long[]) x).clone() : toBitmap((char[]) x, a.cardinalities[i]);
+            if (y instanceof long[]) {
+                long[] right = (long[]) y;
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    result[w] |= right[w];
+                }
+            } else {
+                char[] right = (char[]) y;
+                for (int k = 0; k < b.cardinalities[j]; k++) {
+                    result[right[k] >>> 6] |= 1L << right[k];
+                }
+            }
+            return result;
+        }
+        char[] left = (char[]) x;
+        char[] right = (char[]) y;
+        int leftSize = a.cardinalities[i];
+        int rightSize = b.cardinalities[j];
+        char[] result = new char[leftSize + rightSize];
+        int n = 0;
+        int l = 0;
+        int r = 0;
+        while (l < leftSize || r < rightSize) {
+            if (r == rightSize || (l < leftSize && left[l] < right[r])) {
+                result[n++] = left[l++];
+            } else if (l == leftSize || left[l] > right[r]) {
+                result[n++] = right[r++];
+            } else {
+                result[n++] = left[l];
+                l++;
+                r++;
+            }
+        }
+        return n > ARRAY_MAX ? toBitmap(result, n) : Arrays.copyOf(result, n);
+    }
+
+    private static char[] filter(char[] array, int arraySize, long[] bitmap) {
+        char[] result = new char[arraySize];
+        int n = 0;
+        for (int k = 0; k < arraySize; k++) {
+            if ((bitmap[array[k] >>> 6] & (1L << array[k])) != 0) {
+                result[n++] = array[k];
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    private static long[] toBitmap(char[] array, int cardinality) {
+        long[] bitmap = new long[BITMAP_WORDS];
+        for (int k = 0; k < cardinality; k++) {
+            bitmap[array[k] >>> 6] |= 1L << array[k];
+        }
+        return bitmap;
+    }
+
+    private static char[] toArray(long[] bitmap, int cardinality) {
+        char[] array = new char[cardinality];
+        int n = 0;
+        for (int w = 0; w < BITMAP_WORDS; w++) {
+            long word = bitmap[w];
+            while (word != 0) {
+                array[n++] = (char) (w << 6 | Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        return array;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (o == null || getClass() != o.getClass())
+            return false;
+        OrdinalBitmap bitmap = (OrdinalBitmap) o;
+        if (size != bitmap.size) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (keys[i] != bitmap.keys[i] || cardinalities[i] != bitmap.cardinalities[i]
+                    || andContainerCardinality(this, i, bitmap, i) != cardinalities[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int[] hash = { 1 };
+        forEach(ordinal -> hash[0] = 31 * hash[0] + ordinal);
+        return hash[0];
+    }
+
+    @Override
+    public String toString() {
+        return "OrdinalBitmap{" + "cardinality=" + cardinality() + ", chunks=" + size + '}';
+    }
+}
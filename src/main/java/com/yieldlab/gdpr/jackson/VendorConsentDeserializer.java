@@ -0,0 +1,47 @@
+package com.yieldlab.gdpr.jackson;
+
+import java.io.IOException;
+import java.util.Objects;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.deser.std.StdScalarDeserializer;
+import com.yieldlab.gdpr.ParseLimits;
+import com.yieldlab.gdpr.VendorConsent;
+import com.yieldlab.gdpr.exception.GdprException;
+
+/**
+ * Deserializes a consent string into a {@link VendorConsent}. Decodes the characters in the text buffer of the parser
+ * in place, so no String is created for the consent string.
+ */
+public class VendorConsentDeserializer extends StdScalarDeserializer<VendorConsent> {
+    private static final long serialVersionUID = 1L;
+    private static final int MESSAGE_PREFIX_LENGTH = 16;
+
+    private final ParseLimits limits;
+
+    public VendorConsentDeserializer(ParseLimits limits) {
+        super(VendorConsent.class);
+        this.limits = Objects.requireNonNull(limits, "limits");
+    }
+
+    @Override
+    public VendorConsent deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+        if (!p.hasToken(JsonToken.VALUE_STRING)) {
+            return (VendorConsent) ctxt.handleUnexpectedToken(VendorConsent.class, p);
+        }
+        char[] chars = p.getTextCharacters();
+        int offset = p.getTextOffset();
+        int length = p.getTextLength();
+        try {
+            return VendorConsent.fromBase64Chars(chars, offset, length, limits);
+        } catch (GdprException e) {
+            // the consent string may be huge, only a prefix goes into the message
+            String prefix = new String(chars, offset, Math.min(length, MESSAGE_PREFIX_LENGTH));
+            throw JsonMappingException.from(p, "Cannot deserialize VendorConsent from a consent string of " + length
+                    + " characters starting with \"" + prefix + "\"", e);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.yieldlab.gdpr.jackson;
+
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.yieldlab.gdpr.ParseLimits;
+import com.yieldlab.gdpr.VendorConsent;
+
+/**
+ * Jackson module reading and writing {@link VendorConsent} properties as consent strings:
+ *
+ * <pre>
+ * ObjectMapper mapper = new ObjectMapper().registerModule(new VendorConsentModule());
+ * </pre>
+ *
+ * Consent strings are decoded straight from the text buffer of the parser, without creating a String per consent.
+ */
+public class VendorConsentModule extends SimpleModule {
+    private static final long serialVersionUID = 1L;
+
+    public VendorConsentModule() {
+        this(ParseLimits.DEFAULT);
+    }
+
+    /**
+     * @param limits:
+     *            consent strings exceeding the limits fail deserialization
+     */
+    public VendorConsentModule(ParseLimits limits) {
+        super("VendorConsentModule");
+        addDeserializer(VendorConsent.class, new VendorConsentDeserializer(limits));
+        addSerializer(VendorConsent.class, new VendorConsentSerializer());
+    }
+}
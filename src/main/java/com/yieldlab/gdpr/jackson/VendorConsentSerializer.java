@@ -0,0 +1,25 @@
+package com.yieldlab.gdpr.jackson;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdScalarSerializer;
+import com.yieldlab.gdpr.VendorConsent;
+
+/**
+ * Serializes a {@link VendorConsent} as its consent string. The consent string is encoded once per consent and reused
+ * afterwards.
+ */
+public class VendorConsentSerializer extends StdScalarSerializer<VendorConsent> {
+    private static final long serialVersionUID = 1L;
+
+    public VendorConsentSerializer() {
+        super(VendorConsent.class);
+    }
+
+    @Override
+    public void serialize(VendorConsent value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeString(value.getConsentString());
+    }
+}
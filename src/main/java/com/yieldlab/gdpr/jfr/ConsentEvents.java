@@ -0,0 +1,59 @@
+package com.yieldlab.gdpr.jfr;
+
+import com.yieldlab.gdpr.VendorConsent;
+
+/**
+ * Hooks for JDK Flight Recorder events around decoding, encoding, cache lookups and vendor list reloads.
+ *
+ * This Java 8 variant does nothing. The multi-release jar replaces it on Java 11 and later with a variant in
+ * src/main/java11 that emits the events {@code com.yieldlab.gdpr.Decode}, {@code com.yieldlab.gdpr.Encode},
+ * {@code com.yieldlab.gdpr.CacheLookup} and {@code com.yieldlab.gdpr.VendorListReload}. They are disabled by default
+ * and only recorded above their threshold, enable them in the JFR settings, e.g.
+ * {@code -XX:StartFlightRecording:settings=my.jfc} with {@code com.yieldlab.gdpr.Decode#enabled=true}.
+ *
+ * Each begin method returns a token that has to be passed to the matching end method. The token is null while the
+ * event is disabled.
+ */
+public final class ConsentEvents {
+    private ConsentEvents() {
+    }
+
+    public static Object beginDecode() {
+        return null;
+    }
+
+    /**
+     * @param consent
+     *            the decoded consent, null if decoding failed
+     * @param inputLength
+     *            the length of the input in characters for consent strings, in bytes for binary consents
+     */
+    public static void endDecode(Object token, VendorConsent consent, int inputLength, Throwable failure) {
+    }
+
+    public static Object beginEncode() {
+        return null;
+    }
+
+    /**
+     * @param outputLength
+     *            the length of the encoded consent in bytes, 0 if encoding failed
+     */
+    public static void endEncode(Object token, int vendorEncodingType, int maxVendorId, int rangeEntryCount,
+            int outputLength, Throwable failure) {
+    }
+
+    public static Object beginCacheLookup() {
+        return null;
+    }
+
+    public static void endCacheLookup(Object token, String cache, boolean hit) {
+    }
+
+    public static Object beginVendorListReload() {
+        return null;
+    }
+
+    public static void endVendorListReload(Object token, int vendorListVersion, int vendorCount, Throwable failure) {
+    }
+}
@@ -0,0 +1,407 @@
+package com.yieldlab.gdpr.migration;
+
+import static com.yieldlab.gdpr.GdprConstants.NUM_ENTRIES_SIZE;
+import static com.yieldlab.gdpr.GdprConstants.RANGE_ENTRY_OFFSET;
+import static com.yieldlab.gdpr.GdprConstants.VENDOR_BITFIELD_OFFSET;
+import static com.yieldlab.gdpr.GdprConstants.VENDOR_ENCODING_RANGE;
+import static com.yieldlab.gdpr.GdprConstants.VENDOR_ID_SIZE;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import com.yieldlab.gdpr.ParseLimits;
+import com.yieldlab.gdpr.VendorConsent;
+import com.yieldlab.gdpr.util.BitWords;
+import com.yieldlab.gdpr.vendor.Vendor;
+import com.yieldlab.gdpr.vendor.VendorList;
+
+/**
+ * Rewrites stored consents for a new version of the vendor list, following a {@link MigrationPolicy}:
+ *
+ * <pre>
+ * ConsentMigration migration = new ConsentMigration.Builder().withVendorList(newVendorList).build();
+ * try (BufferedReader in = Files.newBufferedReader(source); Writer out = Files.newBufferedWriter(target)) {
+ *     migration.migrate(in, out);
+ * }
+ * </pre>
+ *
+ * The vendor section of each consent is rewritten word by word on a bit set of vendor ids: vendors past the old max
+ * vendor id are added if the policy allows them, vendors missing from the new list are cleared. The max vendor id
+ * becomes the highest vendor id of the new list, or of a remaining vendor above it. Each consent is then encoded as a
+ * bit field or as range entries, whichever is shorter.
+ *
+ * Bulk migrations run in chunks on an executor, each chunk with a pooled {@link ConsentMigrator}, and write their
+ * results in input order. Consent strings that cannot be parsed are passed to the failure handler, in order, and
+ * written unchanged so that the output lines up with the input.
+ *
+ * Instances are immutable and thread safe.
+ */
+public final class ConsentMigration {
+    private static final int MAX_RANGE_ENTRIES = (1 << NUM_ENTRIES_SIZE) - 1;
+
+    private final int vendorListVersion;
+    private final int maxVendorId;
+    private final long[] vendors;
+    private final MigrationPolicy policy;
+    private final ParseLimits limits;
+    private final Executor executor;
+    private final int chunkSize;
+    private final int maxChunksInFlight;
+    private final BiConsumer<String, RuntimeException> failureHandler;
+    private final ConcurrentLinkedQueue<ConsentMigrator> idleMigrators = new ConcurrentLinkedQueue<>();
+
+    private ConsentMigration(Builder builder) {
+        VendorList vendorList = builder.vendorList;
+        int max = 0;
+        for (Vendor vendor : vendorList.getVendors()) {
+            if (vendor.getId() < 1) {
+                throw new IllegalArgumentException("vendor id must be positive: " + vendor.getId());
+            }
+            max = Math.max(max, vendor.getId());
+        }
+        this.vendorListVersion = vendorList.getVendorListVersion();
+        this.maxVendorId = max;
+        this.vendors = new long[BitWords.wordsFor(max)];
+        for (Vendor vendor : vendorList.getVendors()) {
+            BitWords.set(vendors, vendor.getId());
+        }
+        this.policy = builder.policy;
+        this.limits = builder.limits;
+        this.executor = builder.executor;
+        this.chunkSize = builder.chunkSize;
+        this.maxChunksInFlight = builder.maxChunksInFlight;
+        this.failureHandler = builder.failureHandler;
+    }
+
+    /**
+     * @return a new migrator for migrating consents one by one on a single thread
+     */
+    public ConsentMigrator newMigrator() {
+        return new ConsentMigrator(this);
+    }
+
+    /**
+     * Migrates the consent strings in order.
+     *
+     * @return the migrated consent strings, the unparseable ones unchanged
+     */
+    public List<String> migrateAll(List<String> consentStrings) {
+        List<String> migrated = new ArrayList<>(consentStrings.size());
+        migrate(consentStrings.iterator(), migrated::add);
+        return migrated;
+    }
+
+    /**
+     * Migrates a file of consent strings, one per line, into another.
+     *
+     * @return the number of lines written
+     */
+    public long migrate(BufferedReader in, Writer out) throws IOException {
+        try {
+            return migrate(in.lines().iterator(), consentString -> {
+                try {
+                    out.write(consentString);
+                    out.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Migrates the consent strings and passes the results to out, in order, on the calling thread.
+     *
+     * @return the number of consent strings passed to out
+     */
+    public long migrate(Iterator<String> consentStrings, Consumer<String> out) {
+        ArrayDeque<CompletableFuture<Chunk>> inFlight = new ArrayDeque<>();
+        long count = 0;
+        while (consentStrings.hasNext()) {
+            String[] chunk = new String[chunkSize];
+            int size = 0;
+            while (size < chunkSize && consentStrings.hasNext()) {
+                chunk[size++] = consentStrings.next();
+            }
+            Chunk task = new Chunk(chunk, size);
+            inFlight.add(CompletableFuture.supplyAsync(task::run, executor));
+            if (inFlight.size() >= maxChunksInFlight) {
+                count += write(inFlight.poll(), out);
+            }
+        }
+        while (!inFlight.isEmpty()) {
+            count += write(inFlight.poll(), out);
+        }
+        return count;
+    }
+
+    private int write(CompletableFuture<Chunk> future, Consumer<String> out) {
+        Chunk chunk;
+        try {
+            chunk = future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        for (int i = 0; i < chunk.size; i++) {
+            if (chunk.failures != null && chunk.failures[i] != null) {
+                failureHandler.accept(chunk.consentStrings[i], chunk.failures[i]);
+                out.accept(chunk.consentStrings[i]);
+            } else {
+                out.accept(chunk.migrated[i]);
+            }
+        }
+        return chunk.size;
+    }
+
+    VendorConsent decode(String consentString) {
+        return VendorConsent.fromBase64String(consentString, limits);
+    }
+
+    /**
+     * Migrates one consent.
+     *
+     * @param words
+     *            scratch buffer holding at least the max vendor id of the consent and of the target list, overwritten
+     */
+    VendorConsent migrate(VendorConsent consent, long[] words) {
+        consent.copyVendorBits(words);
+        if (policy.isNewVendorsAllowed()) {
+            int from = consent.getMaxVendorId() + 1;
+            for (int w = from >>> 6; w < vendors.length; w++) {
+                words[w] |= w == from >>> 6 ? vendors[w] & (-1L << from) : vendors[w];
+            }
+        }
+        if (policy.isRemovedVendorsDropped()) {
+            for (int w = 0; w < words.length; w++) {
+                words[w] &= w < vendors.length ? vendors[w] : 0L;
+            }
+        }
+        int newMaxVendorId = Math.max(maxVendorId, BitWords.highestSetBit(words));
+
+        VendorConsent.Builder builder = new VendorConsent.Builder().withVersion(consent.getVersion())
+                .withConsentRecordCreatedOn(consent.getConsentRecordCreated())
+                .withConsentRecordLastUpdatedOn(policy.getConsentRecordLastUpdated() != null
+                        ? policy.getConsentRecordLastUpdated() : consent.getConsentRecordLastUpdated())
+                .withCmpID(consent.getCmpId())
+                .withCmpVersion(consent.getCmpVersion())
+                .withConsentScreenID(consent.getConsentScreen())
+                .withConsentLanguage(consent.getConsentLanguage())
+                .withVendorListVersion(policy.isVendorListVersionBumped() ? vendorListVersion
+                        : consent.getVendorListVersion())
+                .withAllowedPurposesBits(consent.getAllowedPurposesBits())
+                .withMaxVendorId(newMaxVendorId);
+
+        int bitFieldBytes = bytes(VENDOR_BITFIELD_OFFSET + newMaxVendorId);
+        int allowedRangeBytes = bytes(rangeBits(words, newMaxVendorId, false));
+        int deniedRangeBytes = bytes(rangeBits(words, newMaxVendorId, true));
+        if (bitFieldBytes <= allowedRangeBytes && bitFieldBytes <= deniedRangeBytes) {
+            return builder.withVendorEncodingType(0).withVendorBits(words).build();
+        }
+        boolean defaultConsent = deniedRangeBytes < allowedRangeBytes;
+        return builder.withVendorEncodingType(VENDOR_ENCODING_RANGE)
+                .withDefaultConsent(defaultConsent)
+                .withRangeEntries(rangeEntries(words, newMaxVendorId, defaultConsent))
+                .build();
+    }
+
+    private static int bytes(int bits) {
+        return (bits + 7) / 8;
+    }
+
+    /**
+     * @return the size of the consent with the vendors encoded as range entries, Integer.MAX_VALUE - 7 if there would
+     *         be too many entries. With a default consent the entries list the vendors whose bit is clear, otherwise
+     *         those whose bit is set.
+     */
+    private static int rangeBits(long[] words, int maxVendorId, boolean defaultConsent) {
+        int bits = RANGE_ENTRY_OFFSET;
+        int entries = 0;
+        int from = 1;
+        while (from <= maxVendorId) {
+            int start = defaultConsent ? BitWords.nextClearBit(words, from, maxVendorId)
+                    : BitWords.nextSetBit(words, from, maxVendorId);
+            if (start < 0) {
+                break;
+            }
+            int next = defaultConsent ? BitWords.nextSetBit(words, start, maxVendorId)
+                    : BitWords.nextClearBit(words, start, maxVendorId);
+            int end = next < 0 ? maxVendorId : next - 1;
+            if (++entries > MAX_RANGE_ENTRIES) {
+                return Integer.MAX_VALUE - 7;
+            }
+            // one bit for the single/range flag
+            bits += start == end ? 1 + VENDOR_ID_SIZE : 1 + 2 * VENDOR_ID_SIZE;
+            from = end + 2;
+        }
+        return bits;
+    }
+
+    private static List<VendorConsent.RangeEntry> rangeEntries(long[] words, int maxVendorId,
+            boolean defaultConsent) {
+        List<VendorConsent.RangeEntry> entries = new ArrayList<>();
+        int from = 1;
+        while (from <= maxVendorId) {
+            int start = defaultConsent ? BitWords.nextClearBit(words, from, maxVendorId)
+                    : BitWords.nextSetBit(words, from, maxVendorId);
+            if (start < 0) {
+                break;
+            }
+            int next = defaultConsent ? BitWords.nextSetBit(words, start, maxVendorId)
+                    : BitWords.nextClearBit(words, start, maxVendorId);
+            int end = next < 0 ? maxVendorId : next - 1;
+            entries.add(start == end ? new VendorConsent.RangeEntry(start) : new VendorConsent.RangeEntry(start, end));
+            from = end + 2;
+        }
+        return entries;
+    }
+
+    public int getVendorListVersion() {
+        return vendorListVersion;
+    }
+
+    /**
+     * @return the highest vendor id of the target vendor list
+     */
+    public int getMaxVendorId() {
+        return maxVendorId;
+    }
+
+    public MigrationPolicy getPolicy() {
+        return policy;
+    }
+
+    private final class Chunk {
+        final String[] consentStrings;
+        final int size;
+        final String[] migrated;
+        RuntimeException[] failures;
+
+        Chunk(String[] consentStrings, int size) {
+            this.consentStrings = consentStrings;
+            this.size = size;
+            this.migrated = new String[size];
+        }
+
+        Chunk run() {
+            ConsentMigrator migrator = idleMigrators.poll();
+            if (migrator == null) {
+                migrator = newMigrator();
+            }
+            try {
+                for (int i = 0; i < size; i++) {
+                    try {
+                        migrated[i] = migrator.migrate(consentStrings[i]);
+                    } catch (RuntimeException e) {
+                        if (failures == null) {
+                            failures = new RuntimeException[size];
+                        }
+                        failures[i] = e;
+                    }
+                }
+            } finally {
+                idleMigrators.offer(migrator);
+            }
+            return this;
+        }
+    }
+
+    public static class Builder {
+        private VendorList vendorList;
+        private MigrationPolicy policy = MigrationPolicy.DEFAULT;
+        private ParseLimits limits = ParseLimits.DEFAULT;
+        private Executor executor = ForkJoinPool.commonPool();
+        private int chunkSize = 256;
+        private int maxChunksInFlight = 2 * Runtime.getRuntime().availableProcessors();
+        private BiConsumer<String, RuntimeException> failureHandler = (consentString, e) -> {
+        };
+
+        /**
+         * @param vendorList:
+         *            the vendor list to migrate to, required
+         */
+        public Builder withVendorList(VendorList vendorList) {
+            this.vendorList = vendorList;
+            return this;
+        }
+
+        public Builder withPolicy(MigrationPolicy policy) {
+            this.policy = Objects.requireNonNull(policy, "policy");
+            return this;
+        }
+
+        public Builder withLimits(ParseLimits limits) {
+            this.limits = Objects.requireNonNull(limits, "limits");
+            return this;
+        }
+
+        /**
+         * @param executor:
+         *            runs the chunks of bulk migrations, the common fork join pool by default
+         */
+        public Builder withExecutor(Executor executor) {
+            this.executor = Objects.requireNonNull(executor, "executor");
+            return this;
+        }
+
+        /**
+         * @param chunkSize:
+         *            the consent strings migrated per task, 256 by default
+         */
+        public Builder withChunkSize(int chunkSize) {
+            if (chunkSize < 1) {
+                throw new IllegalArgumentException("chunk size must be positive: " + chunkSize);
+            }
+            this.chunkSize = chunkSize;
+            return this;
+        }
+
+        /**
+         * @param maxChunksInFlight:
+         *            the most chunks read ahead of the one written next, twice the number of processors by default
+         */
+        public Builder withMaxChunksInFlight(int maxChunksInFlight) {
+            if (maxChunksInFlight < 1) {
+                throw new IllegalArgumentException("max chunks in flight must be positive: " + maxChunksInFlight);
+            }
+            this.maxChunksInFlight = maxChunksInFlight;
+            return this;
+        }
+
+        /**
+         * @param failureHandler:
+         *            called on the writing thread, in order, with each consent string that cannot be parsed
+         */
+        public Builder withFailureHandler(BiConsumer<String, RuntimeException> failureHandler) {
+            this.failureHandler = Objects.requireNonNull(failureHandler, "failureHandler");
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException
+         *             if a vendor of the list has an id below 1
+         */
+        public ConsentMigration build() {
+            Objects.requireNonNull(vendorList, "vendorList");
+            return new ConsentMigration(this);
+        }
+    }
+}
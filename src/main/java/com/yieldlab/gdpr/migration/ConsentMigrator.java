@@ -0,0 +1,39 @@
+package com.yieldlab.gdpr.migration;
+
+import com.yieldlab.gdpr.VendorConsent;
+import com.yieldlab.gdpr.exception.GdprException;
+import com.yieldlab.gdpr.util.BitWords;
+
+/**
+ * Migrates consents one at a time for a {@link ConsentMigration}, reusing its vendor bit buffer for every consent.
+ * Instances are not thread safe, use one per thread.
+ */
+public final class ConsentMigrator {
+    private final ConsentMigration migration;
+    private long[] vendorWords;
+
+    ConsentMigrator(ConsentMigration migration) {
+        this.migration = migration;
+        this.vendorWords = new long[BitWords.wordsFor(migration.getMaxVendorId())];
+    }
+
+    /**
+     * @return the consent rewritten for the target vendor list, encoded in its smallest form
+     */
+    public VendorConsent migrate(VendorConsent consent) {
+        int words = BitWords.wordsFor(Math.max(consent.getMaxVendorId(), migration.getMaxVendorId()));
+        if (vendorWords.length < words) {
+            vendorWords = new long[words];
+        }
+        return migration.migrate(consent, vendorWords);
+    }
+
+    /**
+     * @return the consent string rewritten for the target vendor list
+     * @throws GdprException
+     *             if the consent string cannot be parsed
+     */
+    public String migrate(String consentString) throws GdprException {
+        return migrate(migration.decode(consentString)).getConsentString();
+    }
+}
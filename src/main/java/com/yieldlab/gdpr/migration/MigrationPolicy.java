@@ -0,0 +1,105 @@
+package com.yieldlab.gdpr.migration;
+
+import java.time.Instant;
+
+/**
+ * Describes how a {@link ConsentMigration} rewrites consents for a new vendor list version. Immutable.
+ */
+public final class MigrationPolicy {
+    public static final MigrationPolicy DEFAULT = new Builder().build();
+
+    private final boolean newVendorsAllowed;
+    private final boolean removedVendorsDropped;
+    private final boolean vendorListVersionBumped;
+    private final Instant consentRecordLastUpdated;
+
+    private MigrationPolicy(Builder builder) {
+        this.newVendorsAllowed = builder.newVendorsAllowed;
+        this.removedVendorsDropped = builder.removedVendorsDropped;
+        this.vendorListVersionBumped = builder.vendorListVersionBumped;
+        this.consentRecordLastUpdated = builder.consentRecordLastUpdated;
+    }
+
+    /**
+     * @return true if the vendors of the new list above the consent's max vendor id are allowed, false if they are
+     *         not
+     */
+    public boolean isNewVendorsAllowed() {
+        return newVendorsAllowed;
+    }
+
+    /**
+     * @return true if vendors missing from the new list lose their consent
+     */
+    public boolean isRemovedVendorsDropped() {
+        return removedVendorsDropped;
+    }
+
+    /**
+     * @return true if the consent's vendor list version is set to the version of the new list
+     */
+    public boolean isVendorListVersionBumped() {
+        return vendorListVersionBumped;
+    }
+
+    /**
+     * @return the last updated timestamp set on migrated consents, null to keep theirs
+     */
+    public Instant getConsentRecordLastUpdated() {
+        return consentRecordLastUpdated;
+    }
+
+    @Override
+    public String toString() {
+        return "MigrationPolicy{" + "newVendorsAllowed=" + newVendorsAllowed + ", removedVendorsDropped="
+                + removedVendorsDropped + ", vendorListVersionBumped=" + vendorListVersionBumped
+                + ", consentRecordLastUpdated=" + consentRecordLastUpdated + '}';
+    }
+
+    public static class Builder {
+        private boolean newVendorsAllowed = false;
+        private boolean removedVendorsDropped = true;
+        private boolean vendorListVersionBumped = true;
+        private Instant consentRecordLastUpdated;
+
+        /**
+         * @param newVendorsAllowed:
+         *            the consent for vendors added past the old max vendor id, false by default
+         */
+        public Builder withNewVendorsAllowed(boolean newVendorsAllowed) {
+            this.newVendorsAllowed = newVendorsAllowed;
+            return this;
+        }
+
+        /**
+         * @param removedVendorsDropped:
+         *            whether vendors missing from the new list lose their consent, true by default
+         */
+        public Builder withRemovedVendorsDropped(boolean removedVendorsDropped) {
+            this.removedVendorsDropped = removedVendorsDropped;
+            return this;
+        }
+
+        /**
+         * @param vendorListVersionBumped:
+         *            whether the vendor list version is set to the new list's, true by default
+         */
+        public Builder withVendorListVersionBumped(boolean vendorListVersionBumped) {
+            this.vendorListVersionBumped = vendorListVersionBumped;
+            return this;
+        }
+
+        /**
+         * @param consentRecordLastUpdated:
+         *            the last updated timestamp of migrated consents, null by default to keep theirs
+         */
+        public Builder withConsentRecordLastUpdated(Instant consentRecordLastUpdated) {
+            this.consentRecordLastUpdated = consentRecordLastUpdated;
+            return this;
+        }
+
+        public MigrationPolicy build() {
+            return new MigrationPolicy(this);
+        }
+    }
+}
@@ -0,0 +1,578 @@
+package com.yieldlab.gdpr.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.yieldlab.gdpr.ParseLimits;
+import com.yieldlab.gdpr.VendorConsent;
+import com.yieldlab.gdpr.exception.GdprException;
+
+/**
+ * A small HTTP service answering consent decisions for clients that cannot use this library directly. It runs on the
+ * JDK's built-in {@code com.sun.net.httpserver} and needs no further dependencies.
+ *
+ * {@code POST /decisions} takes a JSON array of decision requests and answers with an array of decisions in the same
+ * order:
+ *
+ * <pre>
+ * [{"consent":"BONZt-1ONZt-1AHABBENAO-AAAAHCAEAASABmADYAOAAeA","vendorIds":[1,2],"purposeIds":[1,3]}]
+ * [{"vendors":[true,false],"purposes":[true,false]}]
+ * </pre>
+ *
+ * A consent string that cannot be parsed is answered with {@code {"error":"..."}} in its place, a malformed body with
+ * status 400. Bodies larger than the configured limit are rejected with status 413, batches with too many decision
+ * requests or ids with status 400, and consent strings exceeding the {@link ParseLimits} are answered with an error
+ * before a String is created for them. Decoded consents are kept in a bounded cache. {@code GET /stats} returns the counters of the server.
+ *
+ * Run the JVM with {@code -Dsun.net.httpserver.nodelay=true}. Otherwise the JDK server sends the response headers and
+ * body in separate packets without {@code TCP_NODELAY}, and clients with delayed acknowledgements wait about 40 ms for
+ * each response on a kept alive connection.
+ */
+public class ConsentDecisionServer {
+    static final String DECISIONS_PATH = "/decisions";
+    static final String STATS_PATH = "/stats";
+    static final String NODELAY_PROPERTY = "sun.net.httpserver.nodelay";
+    private static final String JSON = "application/json";
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final Cache<String, VendorConsent> cache;
+    private final ParseLimits limits;
+    private final int maxBatchSize;
+    private final int maxIdsPerRequest;
+    private final long maxRequestBytes;
+    private final HttpServer server;
+    // created by the server when no executor was given, shut down by stop()
+    private final ExecutorService ownExecutor;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder badRequests = new LongAdder();
+    private final LongAdder decisions = new LongAdder();
+    private final LongAdder failedDecisions = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder decodes = new LongAdder();
+    private final LongAdder latencyNanos = new LongAdder();
+    private final LongAccumulator maxLatencyNanos = new LongAccumulator(Long::max, 0L);
+
+    private ConsentDecisionServer(Builder builder) throws IOException {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(builder.cacheSize)
+                .<String, VendorConsent> build();
+        this.limits = builder.limits;
+        this.maxBatchSize = builder.maxBatchSize;
+        this.maxIdsPerRequest = builder.maxIdsPerRequest;
+        this.maxRequestBytes = builder.maxRequestBytes;
+        this.server = HttpServer.create(new InetSocketAddress(builder.address, builder.port), builder.backlog);
+        if (builder.executor != null) {
+            this.ownExecutor = null;
+            server.setExecutor(builder.executor);
+        } else {
+            this.ownExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+            server.setExecutor(ownExecutor);
+        }
+        server.createContext(DECISIONS_PATH, this::handleDecisions);
+        server.createContext(STATS_PATH, this::handleStats);
+    }
+
+    /**
+     * Starts accepting requests.
+     */
+    public ConsentDecisionServer start() {
+        server.start();
+        return this;
+    }
+
+    /**
+     * Stops the server, waiting up to delaySeconds for running exchanges to finish.
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        if (ownExecutor != null) {
+            ownExecutor.shutdown();
+        }
+    }
+
+    /**
+     * @return the address the server listens on, with the actual port if it was started on port 0
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    private void handleDecisions(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        try {
+            requests.increment();
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                badRequests.increment();
+                sendError(exchange, 405, "use POST");
+                return;
+            }
+            byte[] response;
+            try (InputStream in = new LimitedInputStream(exchange.getRequestBody(), maxRequestBytes)) {
+                checkContentLength(exchange);
+                response = decide(in);
+            } catch (JsonParseException e) {
+                badRequests.increment();
+                sendError(exchange, 400, e.getMessage());
+                return;
+            } catch (BadRequestException e) {
+                badRequests.increment();
+                sendError(exchange, e.status, e.getMessage());
+                return;
+            }
+            send(exchange, 200, response);
+        } finally {
+            exchange.close();
+            long latency = System.nanoTime() - start;
+            latencyNanos.add(latency);
+            maxLatencyNanos.accumulate(latency);
+        }
+    }
+
+    // rejects a declared oversized body before reading it, chunked bodies are cut off by the LimitedInputStream
+    private void checkContentLength(HttpExchange exchange) {
+        String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (contentLength != null) {
+            long length;
+            try {
+                length = Long.parseLong(contentLength.trim());
+            } catch (NumberFormatException e) {
+                throw new BadRequestException("invalid Content-Length: " + contentLength);
+            }
+            if (length > maxRequestBytes) {
+                throw new BadRequestException(413, "request body exceeds " + maxRequestBytes + " bytes");
+            }
+        }
+    }
+
+    private byte[] decide(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        int batchSize = 0;
+        IntList vendorIds = new IntList();
+        IntList purposeIds = new IntList();
+        try (JsonParser parser = jsonFactory.createParser(in);
+                JsonGenerator generator = jsonFactory.createGenerator(out)) {
+            expect(parser.nextToken(), JsonToken.START_ARRAY, "a JSON array of decision requests");
+            generator.writeStartArray();
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                expect(token, JsonToken.START_OBJECT, "a decision request object");
+                if (++batchSize > maxBatchSize) {
+                    throw new BadRequestException("more than " + maxBatchSize + " decision requests");
+                }
+                boolean hasConsent = false;
+                VendorConsent consent = null;
+                String error = null;
+                vendorIds.clear();
+                purposeIds.clear();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    JsonToken value = parser.nextToken();
+                    if ("consent".equals(field)) {
+                        expect(value, JsonToken.VALUE_STRING, "a consent string");
+                        hasConsent = true;
+                        try {
+                            consent = consent(parser);
+                            error = null;
+                        } catch (GdprException e) {
+                            consent = null;
+                            error = e.getMessage();
+                        }
+                    } else if ("vendorIds".equals(field)) {
+                        readIds(parser, value, vendorIds);
+                    } else if ("purposeIds".equals(field)) {
+                        readIds(parser, value, purposeIds);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                if (!hasConsent) {
+                    throw new BadRequestException("decision request without consent");
+                }
+                writeDecision(generator, consent, error, vendorIds, purposeIds);
+            }
+            generator.writeEndArray();
+        }
+        return out.toByteArray();
+    }
+
+    private void writeDecision(JsonGenerator generator, VendorConsent consent, String error, IntList vendorIds,
+            IntList purposeIds) throws IOException {
+        decisions.increment();
+        generator.writeStartObject();
+        if (consent == null) {
+            failedDecisions.increment();
+            generator.writeStringField("error", error);
+            generator.writeEndObject();
+            return;
+        }
+        generator.writeArrayFieldStart("vendors");
+        for (int i = 0; i < vendorIds.size; i++) {
+            generator.writeBoolean(consent.isVendorAllowed(vendorIds.values[i]));
+        }
+        generator.writeEndArray();
+        generator.writeArrayFieldStart("purposes");
+        for (int i = 0; i < purposeIds.size; i++) {
+            generator.writeBoolean(consent.isPurposeAllowed(purposeIds.values[i]));
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+
+    // decodes from the text buffer of the parser, the String key of the cache is only created within the limits
+    private VendorConsent consent(JsonParser parser) throws IOException {
+        char[] chars = parser.getTextCharacters();
+        int offset = parser.getTextOffset();
+        int length = parser.getTextLength();
+        if (length > limits.getMaxBase64Length() + 2) {
+            // longer than the limit even with padding, rejected by fromBase64Chars before decoding
+            return VendorConsent.fromBase64Chars(chars, offset, length, limits);
+        }
+        String consentString = new String(chars, offset, length);
+        VendorConsent consent = cache.getIfPresent(consentString);
+        if (consent != null) {
+            cacheHits.increment();
+            return consent;
+        }
+        consent = VendorConsent.fromBase64Chars(chars, offset, length, limits);
+        decodes.increment();
+        cache.put(consentString, consent);
+        return consent;
+    }
+
+    private void readIds(JsonParser parser, JsonToken token, IntList ids) throws IOException {
+        expect(token, JsonToken.START_ARRAY, "an array of ids");
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            expect(token, JsonToken.VALUE_NUMBER_INT, "an id");
+            if (ids.size == maxIdsPerRequest) {
+                throw new BadRequestException("more than " + maxIdsPerRequest + " ids in a decision request");
+            }
+            ids.add(parser.getIntValue());
+        }
+    }
+
+    private static void expect(JsonToken token, JsonToken expected, String description) {
+        if (token != expected) {
+            throw new BadRequestException("expected " + description + " but got " + token);
+        }
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+            try (JsonGenerator generator = jsonFactory.createGenerator(out)) {
+                generator.writeStartObject();
+                generator.writeNumberField("requests", getRequestCount());
+                generator.writeNumberField("badRequests", getBadRequestCount());
+                generator.writeNumberField("decisions", getDecisionCount());
+                generator.writeNumberField("failedDecisions", getFailedDecisionCount());
+                generator.writeNumberField("cacheHits", getCacheHitCount());
+                generator.writeNumberField("decodes", getDecodeCount());
+                generator.writeNumberField("cacheSize", cache.size());
+                generator.writeNumberField("totalLatencyNanos", getTotalLatencyNanos());
+                generator.writeNumberField("maxLatencyNanos", getMaxLatencyNanos());
+                generator.writeEndObject();
+            }
+            send(exchange, 200, out.toByteArray());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+        try (JsonGenerator generator = jsonFactory.createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeStringField("error", message);
+            generator.writeEndObject();
+        }
+        send(exchange, status, out.toByteArray());
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", JSON);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * @return the number of requests to the decisions endpoint
+     */
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    /**
+     * @return the number of requests rejected for their method, a malformed body or exceeding a limit
+     */
+    public long getBadRequestCount() {
+        return badRequests.sum();
+    }
+
+    /**
+     * @return the number of decisions made, including those for unparseable consent strings
+     */
+    public long getDecisionCount() {
+        return decisions.sum();
+    }
+
+    /**
+     * @return the number of decisions answered with an error, because the consent string could not be parsed
+     */
+    public long getFailedDecisionCount() {
+        return failedDecisions.sum();
+    }
+
+    /**
+     * @return the number of consent strings found in the decode cache
+     */
+    public long getCacheHitCount() {
+        return cacheHits.sum();
+    }
+
+    /**
+     * @return the number of consent strings decoded
+     */
+    public long getDecodeCount() {
+        return decodes.sum();
+    }
+
+    /**
+     * @return the time spent handling requests to the decisions endpoint, from receiving to having sent the response
+     */
+    public long getTotalLatencyNanos() {
+        return latencyNanos.sum();
+    }
+
+    /**
+     * @return the longest time spent handling a request to the decisions endpoint
+     */
+    public long getMaxLatencyNanos() {
+        return maxLatencyNanos.get();
+    }
+
+    private static final class IntList {
+        int[] values = new int[16];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void clear() {
+            size = 0;
+        }
+    }
+
+    // counts the bytes read and fails once more than maxBytes were read
+    private static final class LimitedInputStream extends FilterInputStream {
+        private final long maxBytes;
+        private long count;
+
+        LimitedInputStream(InputStream in, long maxBytes) {
+            super(in);
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            // reads at most one byte beyond the limit
+            int n = super.read(b, off, (int) Math.min(len, maxBytes - count + 1));
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, maxBytes - count + 1));
+            count(skipped);
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void count(long n) {
+            count += n;
+            if (count > maxBytes) {
+                throw new BadRequestException(413, "request body exceeds " + maxBytes + " bytes");
+            }
+        }
+    }
+
+    private static final class BadRequestException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        BadRequestException(String message) {
+            this(400, message);
+        }
+
+        BadRequestException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    public static class Builder {
+        private InetAddress address = InetAddress.getLoopbackAddress();
+        private int port = 8080;
+        private int backlog = 0;
+        private Executor executor;
+        private long cacheSize = 10_000;
+        private int maxBatchSize = 1000;
+        private int maxIdsPerRequest = 4096;
+        private long maxRequestBytes = 1 << 20;
+        private ParseLimits limits = ParseLimits.DEFAULT;
+
+        /**
+         * @param address:
+         *            the address to listen on, the loopback address by default
+         */
+        public Builder withAddress(InetAddress address) {
+            this.address = Objects.requireNonNull(address, "address");
+            return this;
+        }
+
+        /**
+         * @param port:
+         *            the port to listen on, 8080 by default. 0 picks a free port, see
+         *            {@link ConsentDecisionServer#getAddress()}.
+         */
+        public Builder withPort(int port) {
+            if (port < 0 || port > 0xffff) {
+                throw new IllegalArgumentException("invalid port: " + port);
+            }
+            this.port = port;
+            return this;
+        }
+
+        /**
+         * @param backlog:
+         *            the most connections queued for accepting, 0 for the system default
+         */
+        public Builder withBacklog(int backlog) {
+            this.backlog = backlog;
+            return this;
+        }
+
+        /**
+         * @param executor:
+         *            runs the request handlers. By default the server uses a fixed pool with one thread per processor
+         *            and shuts it down when stopped; a given executor is left running.
+         */
+        public Builder withExecutor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * @param cacheSize:
+         *            the most decoded consents kept, 10000 by default
+         */
+        public Builder withCacheSize(long cacheSize) {
+            if (cacheSize < 0) {
+                throw new IllegalArgumentException("cache size must not be negative: " + cacheSize);
+            }
+            this.cacheSize = cacheSize;
+            return this;
+        }
+
+        /**
+         * @param maxBatchSize:
+         *            the most decision requests accepted in one request body, 1000 by default
+         */
+        public Builder withMaxBatchSize(int maxBatchSize) {
+            if (maxBatchSize < 1) {
+                throw new IllegalArgumentException("max batch size must be positive: " + maxBatchSize);
+            }
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /**
+         * @param maxIdsPerRequest:
+         *            the most vendor ids and the most purpose ids accepted in one decision request, 4096 by default
+         */
+        public Builder withMaxIdsPerRequest(int maxIdsPerRequest) {
+            if (maxIdsPerRequest < 0) {
+                throw new IllegalArgumentException("max ids per request must not be negative: " + maxIdsPerRequest);
+            }
+            this.maxIdsPerRequest = maxIdsPerRequest;
+            return this;
+        }
+
+        /**
+         * @param maxRequestBytes:
+         *            the largest request body accepted, 1 MiB by default. Larger bodies are rejected with status 413
+         *            once the limit is read.
+         */
+        public Builder withMaxRequestBytes(long maxRequestBytes) {
+            if (maxRequestBytes < 1) {
+                throw new IllegalArgumentException("max request bytes must be positive: " + maxRequestBytes);
+            }
+            this.maxRequestBytes = maxRequestBytes;
+            return this;
+        }
+
+        /**
+         * @param limits:
+         *            the limits consent strings are parsed with, {@link ParseLimits#DEFAULT} by default. Consent
+         *            strings exceeding them are answered with an error.
+         */
+        public Builder withLimits(ParseLimits limits) {
+            this.limits = Objects.requireNonNull(limits, "limits");
+            return this;
+        }
+
+        /**
+         * Creates and binds the server. Call {@link ConsentDecisionServer#start()} to accept requests.
+         *
+         * @throws IOException
+         *             if the address cannot be bound
+         */
+        public ConsentDecisionServer build() throws IOException {
+            return new ConsentDecisionServer(this);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.yieldlab.gdpr.simd;
+
+import java.util.Arrays;
+
+/*
+ * Plain Java implementation, used on Java 8 and whenever the Vector API is not available. Also decodes the tails the
+ * vector implementation leaves over.
+ */
+final class ScalarBackend implements SimdBackend {
+    static final ScalarBackend INSTANCE = new ScalarBackend();
+
+    // indexed by the unsigned character, -1 for illegal characters
+    private static final byte[] BASE64_URL = new byte[256];
+
+    static {
+        Arrays.fill(BASE64_URL, (byte) -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+        for (int i = 0; i < alphabet.length(); i++) {
+            BASE64_URL[alphabet.charAt(i)] = (byte) i;
+        }
+    }
+
+    private ScalarBackend() {
+    }
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+
+    @Override
+    public int decodeBase64Url(byte[] src, int off, int len, byte[] dst, int dstOff) {
+        int o = dstOff;
+        int i = off;
+        int end = off + len;
+        int fullEnd = off + (len & ~3);
+        while (i < fullEnd) {
+            int a = BASE64_URL[src[i] & 0xff];
+            int b = BASE64_URL[src[i + 1] & 0xff];
+            int c = BASE64_URL[src[i + 2] & 0xff];
+            int d = BASE64_URL[src[i + 3] & 0xff];
+            if ((a | b | c | d) < 0) {
+                // report the first illegal character
+                sextet(src, i);
+                sextet(src, i + 1);
+                sextet(src, i + 2);
+                sextet(src, i + 3);
+            }
+            int bits = a << 18 | b << 12 | c << 6 | d;
+            dst[o++] = (byte) (bits >>> 16);
+            dst[o++] = (byte) (bits >>> 8);
+            dst[o++] = (byte) bits;
+            i += 4;
+        }
+        int remaining = end - i;
+        if (remaining == 1) {
+            throw new IllegalArgumentException("Last unit does not have enough valid bits");
+        } else if (remaining == 2) {
+            int bits = sextet(src, i) << 18 | sextet(src, i + 1) << 12;
+            dst[o++] = (byte) (bits >>> 16);
+        } else if (remaining == 3) {
+            int bits = sextet(src, i) << 18 | sextet(src, i + 1) << 12 | sextet(src, i + 2) << 6;
+            dst[o++] = (byte) (bits >>> 16);
+            dst[o++] = (byte) (bits >>> 8);
+        }
+        return o - dstOff;
+    }
+
+    static int sextet(byte[] src, int index) {
+        int value = BASE64_URL[src[index] & 0xff];
+        if (value < 0) {
+            throw new IllegalArgumentException("Illegal base64url character " + Integer.toString(src[index] & 0xff, 16));
+        }
+        return value;
+    }
+
+    @Override
+    public void or(long[] accumulator, long[] words, int length) {
+        for (int i = 0; i < length; i++) {
+            accumulator[i] |= words[i];
+        }
+    }
+
+    @Override
+    public void and(long[] accumulator, long[] words, int length) {
+        for (int i = 0; i < length; i++) {
+            accumulator[i] &= words[i];
+        }
+    }
+
+    @Override
+    public long cardinality(long[] words, int length) {
+        long count = 0;
+        for (int i = 0; i < length; i++) {
+            count += Long.bitCount(words[i]);
+        }
+        return count;
+    }
+
+    @Override
+    public long andCardinality(long[] a, long[] b, int length) {
+        long count = 0;
+        for (int i = 0; i < length; i++) {
+            count += Long.bitCount(a[i] & b[i]);
+        }
+        return count;
+    }
+}
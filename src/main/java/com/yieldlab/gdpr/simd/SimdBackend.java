@@ -0,0 +1,25 @@
+package com.yieldlab.gdpr.simd;
+
+/*
+ * Operations that VectorizedOps forwards to the fastest implementation available on the running JVM.
+ */
+interface SimdBackend {
+    String name();
+
+    /**
+     * Decodes len base64url characters, given as ASCII bytes, to dst. Trailing padding must be stripped by the caller.
+     *
+     * @return the number of bytes written
+     * @throws IllegalArgumentException
+     *             if an illegal character is found
+     */
+    int decodeBase64Url(byte[] src, int off, int len, byte[] dst, int dstOff);
+
+    void or(long[] accumulator, long[] words, int length);
+
+    void and(long[] accumulator, long[] words, int length);
+
+    long cardinality(long[] words, int length);
+
+    long andCardinality(long[] a, long[] b, int length);
+}
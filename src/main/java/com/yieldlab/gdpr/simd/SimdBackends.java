@@ -0,0 +1,14 @@
+package com.yieldlab.gdpr.simd;
+
+/*
+ * Picks the backend of VectorizedOps. This Java 8 variant always uses the scalar backend; the Java 17 variant of the
+ * multi-release jar uses the Vector API when the jdk.incubator.vector module is present.
+ */
+final class SimdBackends {
+    private SimdBackends() {
+    }
+
+    static SimdBackend load() {
+        return ScalarBackend.INSTANCE;
+    }
+}
@@ -0,0 +1,138 @@
+package com.yieldlab.gdpr.simd;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Bulk operations for decoding and aggregating consents. On Java 17 and later, when the JVM runs with
+ * {@code --add-modules jdk.incubator.vector}, they use the Vector API; otherwise, or when the system property
+ * {@value #DISABLE_PROPERTY} is {@code true}, they fall back to plain Java loops with identical results.
+ *
+ * The base64url decoder accepts the same input as {@code Base64.getUrlDecoder()}, which stays the reference used by
+ * {@link com.yieldlab.gdpr.VendorConsent#fromBase64String(String)}. Decoded bytes can be parsed with
+ * {@link com.yieldlab.gdpr.util.ConsentStringParser}.
+ *
+ * Bit set operations use the layout of {@link com.yieldlab.gdpr.util.BitWords}.
+ */
+public final class VectorizedOps {
+    public static final String DISABLE_PROPERTY = "com.yieldlab.gdpr.simd.disable";
+
+    private static final SimdBackend BACKEND = Boolean.getBoolean(DISABLE_PROPERTY) ? ScalarBackend.INSTANCE
+            : SimdBackends.load();
+
+    private VectorizedOps() {
+    }
+
+    /**
+     * @return true if the Vector API backend is in use
+     */
+    public static boolean isAccelerated() {
+        return BACKEND != ScalarBackend.INSTANCE;
+    }
+
+    /**
+     * @return the name of the backend in use
+     */
+    public static String backendName() {
+        return BACKEND.name();
+    }
+
+    /**
+     * @return the decoded bytes of the base64url encoded string, with or without padding
+     * @throws IllegalArgumentException
+     *             if the string is not valid base64url
+     */
+    public static byte[] decodeBase64Url(String base64) {
+        byte[] ascii = base64.getBytes(StandardCharsets.ISO_8859_1);
+        byte[] decoded = new byte[decodedLength(ascii, 0, ascii.length)];
+        decodeBase64Url(ascii, 0, ascii.length, decoded, 0);
+        return decoded;
+    }
+
+    /**
+     * Decodes base64url characters given as ASCII bytes, with or without padding.
+     *
+     * @return the number of bytes written to dst, see {@link #decodedLength(byte[], int, int)}
+     * @throws IllegalArgumentException
+     *             if the input is not valid base64url
+     */
+    public static int decodeBase64Url(byte[] src, int off, int len, byte[] dst, int dstOff) {
+        return BACKEND.decodeBase64Url(src, off, unpaddedLength(src, off, len), dst, dstOff);
+    }
+
+    /**
+     * @return the number of bytes the given base64url characters decode to
+     * @throws IllegalArgumentException
+     *             if the length of the input is not valid base64url
+     */
+    public static int decodedLength(byte[] src, int off, int len) {
+        int unpadded = unpaddedLength(src, off, len);
+        if ((unpadded & 3) == 1) {
+            throw new IllegalArgumentException("Last unit does not have enough valid bits");
+        }
+        return unpadded / 4 * 3 + Math.max(0, (unpadded & 3) - 1);
+    }
+
+    private static int unpaddedLength(byte[] src, int off, int len) {
+        int unpadded = len;
+        if (unpadded > 0 && src[off + unpadded - 1] == '=') {
+            unpadded--;
+            if (unpadded > 0 && src[off + unpadded - 1] == '=') {
+                unpadded--;
+            }
+            if ((len & 3) != 0) {
+                throw new IllegalArgumentException("Input byte array has incorrect ending byte at " + unpadded);
+            }
+        }
+        return unpadded;
+    }
+
+    /**
+     * ORs words into the accumulator, up to the shorter of both arrays.
+     */
+    public static void or(long[] accumulator, long[] words) {
+        BACKEND.or(accumulator, words, Math.min(accumulator.length, words.length));
+    }
+
+    /**
+     * ANDs words into the accumulator. Accumulator words beyond the end of words are cleared.
+     */
+    public static void and(long[] accumulator, long[] words) {
+        int length = Math.min(accumulator.length, words.length);
+        BACKEND.and(accumulator, words, length);
+        for (int i = length; i < accumulator.length; i++) {
+            accumulator[i] = 0L;
+        }
+    }
+
+    /**
+     * ORs all bit sets into the accumulator.
+     */
+    public static void orAll(long[] accumulator, Iterable<long[]> bitSets) {
+        for (long[] words : bitSets) {
+            or(accumulator, words);
+        }
+    }
+
+    /**
+     * ANDs all bit sets into the accumulator.
+     */
+    public static void andAll(long[] accumulator, Iterable<long[]> bitSets) {
+        for (long[] words : bitSets) {
+            and(accumulator, words);
+        }
+    }
+
+    /**
+     * @return the number of set bits
+     */
+    public static long cardinality(long[] words) {
+        return BACKEND.cardinality(words, words.length);
+    }
+
+    /**
+     * @return the number of bits set in both bit sets, without materializing the intersection
+     */
+    public static long andCardinality(long[] a, long[] b) {
+        return BACKEND.andCardinality(a, b, Math.min(a.length, b.length));
+    }
+}
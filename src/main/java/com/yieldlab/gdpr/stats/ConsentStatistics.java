@@ -0,0 +1,457 @@
+package com.yieldlab.gdpr.stats;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.yieldlab.gdpr.GdprConstants;
+import com.yieldlab.gdpr.VendorConsent;
+import com.yieldlab.gdpr.util.BitWords;
+
+/**
+ * Aggregated statistics over a stream of consents: the number of consents, consent counts per vendor and purpose,
+ * histograms of CMP ids and vendor list versions, and a HyperLogLog estimate of the number of distinct consents, by
+ * {@link VendorConsent#getFingerprint()}.
+ *
+ * Memory is fixed at construction, see {@link Builder}. Consents can be added from several threads without locking.
+ * Statistics built on different nodes are combined with {@link #merge(ConsentStatistics)}, which is associative and
+ * commutative: merging partial statistics gives the same result as adding all consents to one instance.
+ */
+public class ConsentStatistics {
+    private static final int MAGIC = 0x47435354;
+    private static final byte FORMAT_VERSION = 1;
+    private static final int MIN_PRECISION = 4;
+    private static final int MAX_PRECISION = 16;
+    private static final int REGISTERS_PER_WORD = 8;
+    private static final ThreadLocal<long[]> VENDOR_WORDS = ThreadLocal.withInitial(() -> new long[0]);
+
+    private final int maxVendorId;
+    private final int precision;
+    private final AtomicLong consentCount = new AtomicLong();
+    // vendor n is at index n
+    private final AtomicLongArray vendorCounts;
+    // purpose n is at index n - 1
+    private final AtomicLongArray purposeCounts = new AtomicLongArray(GdprConstants.PURPOSES_SIZE);
+    private final AtomicLongArray cmpIdCounts = new AtomicLongArray(1 << GdprConstants.CMP_ID_SIZE);
+    private final AtomicLongArray vendorListVersionCounts = new AtomicLongArray(
+            1 << GdprConstants.VENDOR_LIST_VERSION_SIZE);
+    // HyperLogLog registers, one byte each
+    private final AtomicLongArray registers;
+
+    private ConsentStatistics(Builder builder) {
+        this.maxVendorId = builder.maxVendorId;
+        this.precision = builder.precision;
+        this.vendorCounts = new AtomicLongArray(maxVendorId + 1);
+        this.registers = new AtomicLongArray((1 << precision) / REGISTERS_PER_WORD);
+    }
+
+    /**
+     * Adds a consent to the statistics. Vendors above {@link #getMaxVendorId()} are not counted.
+     */
+    public void add(VendorConsent consent) {
+        consentCount.incrementAndGet();
+        int purposeBits = consent.getAllowedPurposesBits();
+        while (purposeBits != 0) {
+            // purpose #1 is the most significant of the 24 bits
+            int bit = Integer.numberOfTrailingZeros(purposeBits);
+            purposeCounts.incrementAndGet(GdprConstants.PURPOSES_SIZE - 1 - bit);
+            purposeBits &= purposeBits - 1;
+        }
+        increment(cmpIdCounts, consent.getCmpId());
+        increment(vendorListVersionCounts, consent.getVendorListVersion());
+
+        int wordCount = BitWords.wordsFor(Math.min(maxVendorId, consent.getMaxVendorId()));
+        long[] words = VENDOR_WORDS.get();
+        if (words.length < wordCount) {
+            words = new long[BitWords.wordsFor(maxVendorId)];
+            VENDOR_WORDS.set(words);
+        }
+        consent.copyVendorBits(words);
+        for (int w = 0; w < wordCount; w++) {
+            long word = words[w];
+            while (word != 0) {
+                int vendorId = w << 6 | Long.numberOfTrailingZeros(word);
+                if (vendorId > maxVendorId) {
+                    break;
+                }
+                vendorCounts.incrementAndGet(vendorId);
+                word &= word - 1;
+            }
+        }
+
+        addFingerprint(consent.getFingerprint());
+    }
+
+    void addFingerprint(long fingerprint) {
+        int register = (int) (fingerprint >>> (Long.SIZE - precision));
+        // position of the first set bit after the index bits, capped by the guard bit
+        int rank = Long.numberOfLeadingZeros(fingerprint << precision | 1L << (precision - 1)) + 1;
+        raiseRegister(register, rank);
+    }
+
+    private void raiseRegister(int register, int rank) {
+        int word = register / REGISTERS_PER_WORD;
+        int shift = (register % REGISTERS_PER_WORD) * 8;
+        long current = registers.get(word);
+        while ((int) (current >>> shift & 0xff) < rank) {
+            long updated = current & ~(0xffL << shift) | (long) rank << shift;
+            if (registers.compareAndSet(word, current, updated)) {
+                return;
+            }
+            current = registers.get(word);
+        }
+    }
+
+    private int getRegister(int register) {
+        return (int) (registers.get(register / REGISTERS_PER_WORD) >>> (register % REGISTERS_PER_WORD) * 8 & 0xff);
+    }
+
+    private static void increment(AtomicLongArray counts, int index) {
+        if (index >= 0 && index < counts.length()) {
+            counts.incrementAndGet(index);
+        }
+    }
+
+    /**
+     * Adds the statistics of other to this instance. Both must have been built with the same max vendor id and
+     * precision. Other may be updated concurrently, the merge then includes some of its concurrent updates.
+     *
+     * @return this instance
+     * @throws IllegalArgumentException
+     *             if the statistics were built with different settings
+     */
+    public ConsentStatistics merge(ConsentStatistics other) {
+        if (other.maxVendorId != maxVendorId || other.precision != precision) {
+            throw new IllegalArgumentException("cannot merge statistics with max vendor id " + other.maxVendorId
+                    + " and precision " + other.precision + " into " + maxVendorId + " and " + precision);
+        }
+        consentCount.addAndGet(other.consentCount.get());
+        addAll(vendorCounts, other.vendorCounts);
+        addAll(purposeCounts, other.purposeCounts);
+        addAll(cmpIdCounts, other.cmpIdCounts);
+        addAll(vendorListVersionCounts, other.vendorListVersionCounts);
+        for (int register = 0; register < 1 << precision; register++) {
+            int rank = other.getRegister(register);
+            if (rank > 0) {
+                raiseRegister(register, rank);
+            }
+        }
+        return this;
+    }
+
+    private static void addAll(AtomicLongArray target, AtomicLongArray source) {
+        for (int i = 0; i < target.length(); i++) {
+            long count = source.get(i);
+            if (count != 0) {
+                target.addAndGet(i, count);
+            }
+        }
+    }
+
+    public long getConsentCount() {
+        return consentCount.get();
+    }
+
+    /**
+     * @return the number of consents allowing the vendor, 0 for vendors above {@link #getMaxVendorId()}
+     */
+    public long getVendorCount(int vendorId) {
+        return vendorId >= 0 && vendorId <= maxVendorId ? vendorCounts.get(vendorId) : 0;
+    }
+
+    /**
+     * @return the number of consents allowing the purpose
+     * @throws IllegalArgumentException
+     *             if the purpose id is not within 1 to 24
+     */
+    public long getPurposeCount(int purposeId) {
+        if (purposeId < 1 || purposeId > GdprConstants.PURPOSES_SIZE) {
+            throw new IllegalArgumentException("invalid purpose id " + purposeId);
+        }
+        return purposeCounts.get(purposeId - 1);
+    }
+
+    /**
+     * @return the number of consents created by the CMP
+     */
+    public long getCmpIdCount(int cmpId) {
+        return cmpId >= 0 && cmpId < cmpIdCounts.length() ? cmpIdCounts.get(cmpId) : 0;
+    }
+
+    /**
+     * @return the number of consents with the vendor list version
+     */
+    public long getVendorListVersionCount(int vendorListVersion) {
+        return vendorListVersion >= 0 && vendorListVersion < vendorListVersionCounts.length()
+                ? vendorListVersionCounts.get(vendorListVersion) : 0;
+    }
+
+    /**
+     * @return the estimated number of distinct consents. The standard error is about {@code 1.04 / sqrt(2^precision)}.
+     */
+    public long estimateDistinctConsents() {
+        int m = 1 << precision;
+        double sum = 0;
+        int zeros = 0;
+        for (int register = 0; register < m; register++) {
+            int rank = getRegister(register);
+            sum += 1.0 / (1L << rank);
+            if (rank == 0) {
+                zeros++;
+            }
+        }
+        double alpha = m == 16 ? 0.673 : m == 32 ? 0.697 : m == 64 ? 0.709 : 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            // linear counting is more accurate for small cardinalities
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    public int getMaxVendorId() {
+        return maxVendorId;
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Encodes the statistics. Zero counts are skipped and counts are written as variable length integers, so the
+     * encoding is usually much smaller than the in-memory form. Updates running concurrently may or may not be
+     * included.
+     */
+    public byte[] toBytes() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeInt(out, MAGIC);
+        out.write(FORMAT_VERSION);
+        out.write(precision);
+        writeVarLong(out, maxVendorId);
+        writeVarLong(out, consentCount.get());
+        writeCounts(out, vendorCounts);
+        writeCounts(out, purposeCounts);
+        writeCounts(out, cmpIdCounts);
+        writeCounts(out, vendorListVersionCounts);
+        int m = 1 << precision;
+        int used = 0;
+        for (int register = 0; register < m; register++) {
+            if (getRegister(register) != 0) {
+                used++;
+            }
+        }
+        writeVarLong(out, used);
+        if (used * 2 < m) {
+            int previous = -1;
+            for (int register = 0; register < m; register++) {
+                int rank = getRegister(register);
+                if (rank != 0) {
+                    writeVarLong(out, register - previous);
+                    out.write(rank);
+                    previous = register;
+                }
+            }
+        } else {
+            for (int register = 0; register < m; register++) {
+                out.write(getRegister(register));
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes statistics encoded by {@link #toBytes()}.
+     *
+     * @throws IllegalArgumentException
+     *             if the bytes are not valid encoded statistics
+     */
+    public static ConsentStatistics fromBytes(byte[] bytes) {
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        try {
+            if (in.getInt() != MAGIC || in.get() != FORMAT_VERSION) {
+                throw new IllegalArgumentException("not encoded consent statistics");
+            }
+            int precision = in.get();
+            long maxVendorId = readVarLong(in);
+            if (maxVendorId < 1 || maxVendorId >= 1 << GdprConstants.VENDOR_ID_SIZE) {
+                throw new IllegalArgumentException("invalid max vendor id " + maxVendorId);
+            }
+            ConsentStatistics statistics = new Builder().withMaxVendorId((int) maxVendorId)
+                    .withPrecision(precision)
+                    .build();
+            statistics.consentCount.set(readVarLong(in));
+            readCounts(in, statistics.vendorCounts);
+            readCounts(in, statistics.purposeCounts);
+            readCounts(in, statistics.cmpIdCounts);
+            readCounts(in, statistics.vendorListVersionCounts);
+            int m = 1 << precision;
+            long used = readVarLong(in);
+            if (used < 0 || used > m) {
+                throw new IllegalArgumentException("invalid register count " + used);
+            }
+            if (used * 2 < m) {
+                int register = -1;
+                for (int i = 0; i < used; i++) {
+                    register += readIndexDelta(in, m - register - 1);
+                    statistics.raiseRegister(register, readRank(in, precision));
+                }
+            } else {
+                for (int register = 0; register < m; register++) {
+                    int rank = in.get();
+                    if (rank != 0) {
+                        checkRank(rank, precision);
+                        statistics.raiseRegister(register, rank);
+                    }
+                }
+            }
+            if (in.hasRemaining()) {
+                throw new IllegalArgumentException("trailing bytes after consent statistics");
+            }
+            return statistics;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("truncated consent statistics", e);
+        }
+    }
+
+    private static int readRank(ByteBuffer in, int precision) {
+        int rank = in.get();
+        checkRank(rank, precision);
+        return rank;
+    }
+
+    private static void checkRank(int rank, int precision) {
+        if (rank < 1 || rank > Long.SIZE - precision + 1) {
+            throw new IllegalArgumentException("invalid register value " + rank);
+        }
+    }
+
+    // sparse list of (index delta, count) pairs of the non zero counts
+    private static void writeCounts(ByteArrayOutputStream out, AtomicLongArray counts) {
+        long[] snapshot = new long[counts.length()];
+        int used = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = counts.get(i);
+            if (snapshot[i] != 0) {
+                used++;
+            }
+        }
+        writeVarLong(out, used);
+        int previous = -1;
+        for (int i = 0; i < snapshot.length && used > 0; i++) {
+            if (snapshot[i] != 0) {
+                writeVarLong(out, i - previous);
+                writeVarLong(out, snapshot[i]);
+                previous = i;
+                used--;
+            }
+        }
+    }
+
+    private static void readCounts(ByteBuffer in, AtomicLongArray counts) {
+        long used = readVarLong(in);
+        if (used < 0 || used > counts.length()) {
+            throw new IllegalArgumentException("invalid count entries " + used);
+        }
+        int index = -1;
+        for (int i = 0; i < used; i++) {
+            index += readIndexDelta(in, counts.length() - index - 1);
+            counts.set(index, readVarLong(in));
+        }
+    }
+
+    private static int readIndexDelta(ByteBuffer in, int maxDelta) {
+        long delta = readVarLong(in);
+        if (delta < 1 || delta > maxDelta) {
+            throw new IllegalArgumentException("invalid index delta " + delta);
+        }
+        return (int) delta;
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7fL) != 0) {
+            out.write((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("variable length integer too long");
+    }
+
+    /**
+     * Two statistics are equal if they have the same settings and counts, i.e. the same encoding.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (o == null || getClass() != o.getClass())
+            return false;
+        return Arrays.equals(toBytes(), ((ConsentStatistics) o).toBytes());
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(toBytes());
+    }
+
+    @Override
+    public String toString() {
+        return "ConsentStatistics{" + "consentCount=" + consentCount + ", distinctConsents="
+                + estimateDistinctConsents() + ", maxVendorId=" + maxVendorId + ", precision=" + precision + '}';
+    }
+
+    public static class Builder {
+        private int maxVendorId = 4095;
+        private int precision = 12;
+
+        /**
+         * @param maxVendorId:
+         *            the highest vendor id to count, 4095 by default. Memory grows by 8 bytes per vendor.
+         */
+        public Builder withMaxVendorId(int maxVendorId) {
+            if (maxVendorId < 1 || maxVendorId >= 1 << GdprConstants.VENDOR_ID_SIZE) {
+                throw new IllegalArgumentException("invalid max vendor id " + maxVendorId);
+            }
+            this.maxVendorId = maxVendorId;
+            return this;
+        }
+
+        /**
+         * @param precision:
+         *            4 to 16, the distinct consent estimate uses {@code 2^precision} one byte registers. 12 by default,
+         *            for a standard error of about 1.6%.
+         */
+        public Builder withPrecision(int precision) {
+            if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+                throw new IllegalArgumentException("precision must be within " + MIN_PRECISION + " and "
+                        + MAX_PRECISION + ": " + precision);
+            }
+            this.precision = precision;
+            return this;
+        }
+
+        public ConsentStatistics build() {
+            return new ConsentStatistics(this);
+        }
+    }
+}
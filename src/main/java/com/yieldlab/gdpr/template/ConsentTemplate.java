@@ -0,0 +1,166 @@
+package com.yieldlab.gdpr.template;
+
+import static com.yieldlab.gdpr.GdprConstants.CMP_ID_OFFSET;
+import static com.yieldlab.gdpr.GdprConstants.CMP_ID_SIZE;
+import static com.yieldlab.gdpr.GdprConstants.CMP_VERSION_OFFSET;
+import static com.yieldlab.gdpr.GdprConstants.CMP_VERSION_SIZE;
+import static com.yieldlab.gdpr.GdprConstants.CONSENT_SCREEN_SIZE;
+import static com.yieldlab.gdpr.GdprConstants.CONSENT_SCREEN_SIZE_OFFSET;
+import static com.yieldlab.gdpr.GdprConstants.CREATED_BIT_OFFSET;
+import static com.yieldlab.gdpr.GdprConstants.CREATED_BIT_SIZE;
+import static com.yieldlab.gdpr.GdprConstants.UPDATED_BIT_OFFSET;
+import static com.yieldlab.gdpr.GdprConstants.UPDATED_BIT_SIZE;
+
+import java.time.Instant;
+
+import com.yieldlab.gdpr.VendorConsent;
+import com.yieldlab.gdpr.exception.VendorConsentCreateException;
+
+/**
+ * A consent string precompiled from a prototype consent, for minting many consents that differ only in their
+ * timestamps, CMP id, CMP version or consent screen.
+ *
+ * Every header field of the consent string starts and ends on a six bit boundary, so each one maps to whole base64
+ * characters. The purposes and vendor sections are encoded once by the template; minting only rewrites the
+ * characters of the header fields that change:
+ *
+ * <pre>
+ * ConsentTemplate template = ConsentTemplate.of(acceptAll);
+ * ConsentTemplate.Minter minter = template.newMinter();
+ * String consentString = minter.mint(created, lastUpdated);
+ * </pre>
+ */
+public final class ConsentTemplate {
+    private static final int BITS_PER_CHAR = 6;
+    private static final char[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_"
+            .toCharArray();
+
+    private final char[] encoded;
+
+    private ConsentTemplate(char[] encoded) {
+        this.encoded = encoded;
+    }
+
+    /**
+     * @param prototype:
+     *            the consent every minted consent is a copy of, apart from the fields set when minting
+     */
+    public static ConsentTemplate of(VendorConsent prototype) {
+        return new ConsentTemplate(prototype.getConsentString().toCharArray());
+    }
+
+    /**
+     * @return the length of the minted consent strings
+     */
+    public int length() {
+        return encoded.length;
+    }
+
+    /**
+     * @return a new minter. Minters are cheap, use one per thread.
+     */
+    public Minter newMinter() {
+        return new Minter(encoded.clone());
+    }
+
+    @Override
+    public String toString() {
+        return "ConsentTemplate{" + "consentString='" + new String(encoded) + '\'' + '}';
+    }
+
+    /**
+     * Mints consent strings from a template. Keeps the consent string in a buffer of its own and rewrites the header
+     * characters in place for each mint.
+     *
+     * Not thread safe.
+     */
+    public static final class Minter {
+        private final char[] chars;
+
+        private Minter(char[] chars) {
+            this.chars = chars;
+        }
+
+        /**
+         * Sets the CMP id of the following mints.
+         */
+        public Minter withCmpId(int cmpId) {
+            writeField(CMP_ID_OFFSET, CMP_ID_SIZE, cmpId, "CMP id");
+            return this;
+        }
+
+        /**
+         * Sets the CMP version of the following mints.
+         */
+        public Minter withCmpVersion(int cmpVersion) {
+            writeField(CMP_VERSION_OFFSET, CMP_VERSION_SIZE, cmpVersion, "CMP version");
+            return this;
+        }
+
+        /**
+         * Sets the consent screen of the following mints.
+         */
+        public Minter withConsentScreenId(int consentScreenId) {
+            writeField(CONSENT_SCREEN_SIZE_OFFSET, CONSENT_SCREEN_SIZE, consentScreenId, "consent screen id");
+            return this;
+        }
+
+        /**
+         * @return the consent string of the template with the given timestamps
+         * @throws VendorConsentCreateException
+         *             if a timestamp is before the epoch or too far in the future for the consent string
+         */
+        public String mint(Instant created, Instant lastUpdated) {
+            return mint(created.toEpochMilli(), lastUpdated.toEpochMilli());
+        }
+
+        /**
+         * @return the consent string of the template with the given timestamps, in milliseconds since the epoch
+         * @throws VendorConsentCreateException
+         *             if a timestamp is before the epoch or too far in the future for the consent string
+         */
+        public String mint(long createdEpochMilli, long lastUpdatedEpochMilli) {
+            writeTimestamps(createdEpochMilli, lastUpdatedEpochMilli);
+            return new String(chars);
+        }
+
+        /**
+         * Writes the consent string of the template with the given timestamps as ASCII bytes.
+         *
+         * @return the number of bytes written, {@link ConsentTemplate#length()}
+         * @throws IndexOutOfBoundsException
+         *             if the consent string does not fit into dst
+         */
+        public int mintTo(long createdEpochMilli, long lastUpdatedEpochMilli, byte[] dst, int offset) {
+            if (offset < 0 || offset > dst.length - chars.length) {
+                throw new IndexOutOfBoundsException("consent string of " + chars.length + " characters does not fit");
+            }
+            writeTimestamps(createdEpochMilli, lastUpdatedEpochMilli);
+            for (int i = 0; i < chars.length; i++) {
+                dst[offset + i] = (byte) chars[i];
+            }
+            return chars.length;
+        }
+
+        private void writeTimestamps(long createdEpochMilli, long lastUpdatedEpochMilli) {
+            writeField(CREATED_BIT_OFFSET, CREATED_BIT_SIZE, deciseconds(createdEpochMilli), "created timestamp");
+            writeField(UPDATED_BIT_OFFSET, UPDATED_BIT_SIZE, deciseconds(lastUpdatedEpochMilli), "updated timestamp");
+        }
+
+        private static long deciseconds(long epochMilli) {
+            return epochMilli / 100;
+        }
+
+        // the field must cover whole characters
+        private void writeField(int offset, int size, long value, String name) {
+            if (value < 0 || value >>> size != 0) {
+                throw new VendorConsentCreateException(name + " " + value + " does not fit into " + size + " bits");
+            }
+            int first = offset / BITS_PER_CHAR;
+            for (int i = first + size / BITS_PER_CHAR - 1; i >= first; i--) {
+                chars[i] = ALPHABET[(int) value & 0x3f];
+                value >>>= BITS_PER_CHAR;
+            }
+        }
+    }
+}
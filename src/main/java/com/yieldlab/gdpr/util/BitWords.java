@@ -0,0 +1,138 @@
+package com.yieldlab.gdpr.util;
+
+/**
+ * Static helpers for bit sets held in a plain {@code long[]}, using the same layout as
+ * {@link java.util.BitSet#toLongArray()}: bit n is bit {@code n & 63} of word {@code n >>> 6}.
+ *
+ * Vendor bit sets in this library use the vendor id as bit index, so bit 0 is never set.
+ */
+public final class BitWords {
+    private static final long WORD_MASK = 0xffffffffffffffffL;
+
+    private BitWords() {
+    }
+
+    /**
+     * @return the number of words needed to hold bits 0 to maxBit inclusive
+     */
+    public static int wordsFor(int maxBit) {
+        return (maxBit >>> 6) + 1;
+    }
+
+    public static boolean get(long[] words, int bit) {
+        int wordIndex = bit >>> 6;
+        return wordIndex < words.length && (words[wordIndex] & (1L << bit)) != 0;
+    }
+
+    public static void set(long[] words, int bit) {
+        words[bit >>> 6] |= 1L << bit;
+    }
+
+    /**
+     * Sets the bits fromInclusive to toInclusive. Bits past the end of the array are ignored.
+     */
+    public static void setRange(long[] words, int fromInclusive, int toInclusive) {
+        int lastBit = Math.min(toInclusive, words.length * 64 - 1);
+        if (fromInclusive > lastBit) {
+            return;
+        }
+        int startWord = fromInclusive >>> 6;
+        int endWord = lastBit >>> 6;
+        long firstMask = WORD_MASK << fromInclusive;
+        long lastMask = WORD_MASK >>> -(lastBit + 1);
+        if (startWord == endWord) {
+            words[startWord] |= firstMask & lastMask;
+            return;
+        }
+        words[startWord] |= firstMask;
+        for (int i = startWord + 1; i < endWord; i++) {
+            words[i] = WORD_MASK;
+        }
+        words[endWord] |= lastMask;
+    }
+
+    /**
+     * Clears the bits fromInclusive to toInclusive. Bits past the end of the array are ignored.
+     */
+    public static void clearRange(long[] words, int fromInclusive, int toInclusive) {
+        int lastBit = Math.min(toInclusive, words.length * 64 - 1);
+        if (fromInclusive > lastBit) {
+            return;
+        }
+        int startWord = fromInclusive >>> 6;
+        int endWord = lastBit >>> 6;
+        long firstMask = WORD_MASK << fromInclusive;
+        long lastMask = WORD_MASK >>> -(lastBit + 1);
+        if (startWord == endWord) {
+            words[startWord] &= ~(firstMask & lastMask);
+            return;
+        }
+        words[startWord] &= ~firstMask;
+        for (int i = startWord + 1; i < endWord; i++) {
+            words[i] = 0;
+        }
+        words[endWord] &= ~lastMask;
+    }
+
+    /**
+     * @return the lowest clear bit from fromInclusive to toInclusive, -1 if they are all set. Bits past the end of the
+     *         array count as clear.
+     */
+    public static int nextClearBit(long[] words, int fromInclusive, int toInclusive) {
+        if (fromInclusive > toInclusive) {
+            return -1;
+        }
+        int wordIndex = fromInclusive >>> 6;
+        long clear = ~(wordIndex < words.length ? words[wordIndex] : 0L) & (WORD_MASK << fromInclusive);
+        while (clear == 0) {
+            wordIndex++;
+            if (wordIndex > toInclusive >>> 6) {
+                return -1;
+            }
+            clear = ~(wordIndex < words.length ? words[wordIndex] : 0L);
+        }
+        int bit = wordIndex << 6 | Long.numberOfTrailingZeros(clear);
+        return bit <= toInclusive ? bit : -1;
+    }
+
+    /**
+     * @return the lowest set bit from fromInclusive to toInclusive, -1 if they are all clear
+     */
+    public static int nextSetBit(long[] words, int fromInclusive, int toInclusive) {
+        int lastWord = Math.min(toInclusive >>> 6, words.length - 1);
+        int wordIndex = fromInclusive >>> 6;
+        if (fromInclusive > toInclusive || wordIndex > lastWord) {
+            return -1;
+        }
+        long set = words[wordIndex] & (WORD_MASK << fromInclusive);
+        while (set == 0) {
+            wordIndex++;
+            if (wordIndex > lastWord) {
+                return -1;
+            }
+            set = words[wordIndex];
+        }
+        int bit = wordIndex << 6 | Long.numberOfTrailingZeros(set);
+        return bit <= toInclusive ? bit : -1;
+    }
+
+    /**
+     * @return the highest set bit, -1 if no bit is set
+     */
+    public static int highestSetBit(long[] words) {
+        for (int w = words.length - 1; w >= 0; w--) {
+            if (words[w] != 0) {
+                return (w << 6) + 63 - Long.numberOfLeadingZeros(words[w]);
+            }
+        }
+        return -1;
+    }
+
+    public static int cardinality(long[] words) {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+}
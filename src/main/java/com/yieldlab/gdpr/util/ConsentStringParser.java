@@ -34,6 +34,7 @@ import java.util.List;
 
 import com.yieldlab.gdpr.Bits;
 import com.yieldlab.gdpr.GdprConstants;
+import com.yieldlab.gdpr.ParseLimits;
 import com.yieldlab.gdpr.VendorConsent;
 import com.yieldlab.gdpr.exception.VendorConsentParseException;
 
@@ -45,12 +46,29 @@ import com.yieldlab.gdpr.exception.VendorConsentParseException;
  */
 public class ConsentStringParser {
     private Bits bits;
+    private final ParseLimits limits;
+    private int parsedBitLength;
 
     public ConsentStringParser(byte[] consent) {
-        this.bits = new Bits(consent);
+        this(new Bits(consent), ParseLimits.DEFAULT);
+    }
+
+    public ConsentStringParser(Bits consent) {
+        this(consent, ParseLimits.DEFAULT);
+    }
+
+    public ConsentStringParser(Bits consent, ParseLimits limits) {
+        this.bits = consent;
+        this.limits = limits;
     }
 
     public VendorConsent parse() {
+        // each section is checked against the input length before it is decoded
+        if (bits.length() > limits.getMaxInputLength() * 8) {
+            throw new VendorConsentParseException(
+                    "Consent of " + bits.length() / 8 + " bytes exceeds the limit of " + limits.getMaxInputLength());
+        }
+        requireBits(VENDOR_BITFIELD_OFFSET, "header");
         VendorConsent.Builder builder = new VendorConsent.Builder();
 
         builder.withVersion(bits.getInt(VERSION_BIT_OFFSET, VERSION_BIT_SIZE));
@@ -64,25 +82,31 @@ public class ConsentStringParser {
 
         builder.withVendorListVersion(bits.getInt(VENDOR_LIST_VERSION_OFFSET, VENDOR_LIST_VERSION_SIZE));
 
-        List<Integer> allowedPurposes = new ArrayList<>();
-        for (int i = PURPOSES_OFFSET, ii = PURPOSES_OFFSET + PURPOSES_SIZE; i < ii; i++) {
-            if (bits.getBit(i)) {
-                allowedPurposes.add(i - PURPOSES_OFFSET + 1);
-            }
-        }
-        builder.withAllowedPurposes(allowedPurposes);
+        builder.withAllowedPurposesBits(bits.getInt(PURPOSES_OFFSET, PURPOSES_SIZE));
 
         int maxVendorId = bits.getInt(MAX_VENDOR_ID_OFFSET, MAX_VENDOR_ID_SIZE);
+        if (maxVendorId > limits.getMaxVendorId()) {
+            throw new VendorConsentParseException(
+                    "Max VendorId " + maxVendorId + " exceeds the limit of " + limits.getMaxVendorId());
+        }
         builder.withMaxVendorId(maxVendorId);
         int vendorEncodingType = bits.getInt(ENCODING_TYPE_OFFSET, ENCODING_TYPE_SIZE);
         builder.withVendorEncodingType(vendorEncodingType);
 
         if (vendorEncodingType == VENDOR_ENCODING_RANGE) {
             builder.withDefaultConsent(bits.getBit(DEFAULT_CONSENT_OFFSET));
+            requireBits(RANGE_ENTRY_OFFSET, "range section");
             int numEntries = bits.getInt(NUM_ENTRIES_OFFSET, NUM_ENTRIES_SIZE);
+            if (numEntries > limits.getMaxRangeEntries()) {
+                throw new VendorConsentParseException(
+                        numEntries + " range entries exceed the limit of " + limits.getMaxRangeEntries());
+            }
+            // every entry takes at least a flag and one vendor id
+            requireBits(RANGE_ENTRY_OFFSET + numEntries * (1 + VENDOR_ID_SIZE), "range entries");
             List<VendorConsent.RangeEntry> rangeEntries = new ArrayList<>(numEntries);
 
-            for (int i = 0, currentOffset = RANGE_ENTRY_OFFSET + 1; i < numEntries; i++, currentOffset++) {
+            int currentOffset = RANGE_ENTRY_OFFSET + 1;
+            for (int i = 0; i < numEntries; i++, currentOffset++) {
                 boolean range = bits.getBit(currentOffset - 1);
                 if (range) {
                     int startVendorId = bits.getInt(currentOffset, VENDOR_ID_SIZE);
@@ -108,20 +132,32 @@ public class ConsentStringParser {
                 }
             }
             builder.withRangeEntries(rangeEntries);
+            // the offset is one past the flag of the next entry
+            parsedBitLength = currentOffset - 1;
         } else {
-            List<Integer> bitField = new ArrayList<>(maxVendorId);
-            for (int i = VENDOR_BITFIELD_OFFSET; i < VENDOR_BITFIELD_OFFSET + maxVendorId; i++) {
-                if (bits.getBit(i)) {
-                    if ((i - GdprConstants.VENDOR_BITFIELD_OFFSET + 1) > maxVendorId) {
-                        throw new VendorConsentParseException(
-                                "VendorId provided in the bit field must not be greater than Max VendorId");
-                    }
-                    bitField.add(i - GdprConstants.VENDOR_BITFIELD_OFFSET);
-                }
-            }
-            builder.withBitField(bitField);
+            requireBits(VENDOR_BITFIELD_OFFSET + maxVendorId, "bit field");
+            // bit n of the vendor bits is vendor n, the bit field starts with vendor 1
+            long[] vendorBits = new long[BitWords.wordsFor(maxVendorId)];
+            bits.copyToWords(VENDOR_BITFIELD_OFFSET, maxVendorId, vendorBits, 1);
+            builder.withVendorBits(vendorBits);
+            parsedBitLength = VENDOR_BITFIELD_OFFSET + maxVendorId;
         }
 
-        return builder.build();
+        return builder.buildDecoded();
+    }
+
+    /**
+     * @return the number of bits the last call of {@link #parse()} read. Can be more than the encoded length of the
+     *         parsed consent, as range entries flagged as a range of one vendor are encoded as a single vendor.
+     */
+    public int getParsedBitLength() {
+        return parsedBitLength;
+    }
+
+    private void requireBits(int size, String section) {
+        if (bits.length() < size) {
+            throw new VendorConsentParseException("Consent is truncated, the " + section + " needs " + size
+                    + " bits but only " + bits.length() + " are present");
+        }
     }
 }
\ No newline at end of file
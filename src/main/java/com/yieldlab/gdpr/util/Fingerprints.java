@@ -0,0 +1,51 @@
+package com.yieldlab.gdpr.util;
+
+/**
+ * 64 bit hashes of raw consent bytes. The hashes are well mixed, so any subset of their bits can be used as a hash
+ * on its own, e.g. as register index of a HyperLogLog sketch. They are not cryptographic.
+ */
+public final class Fingerprints {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private Fingerprints() {
+    }
+
+    /**
+     * @return the fingerprint of length bytes starting at offset
+     */
+    public static long of(byte[] bytes, int offset, int length) {
+        long hash = FNV_OFFSET_BASIS ^ length;
+        for (int i = offset; i < offset + length; i++) {
+            hash = (hash ^ (bytes[i] & 0xff)) * FNV_PRIME;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * @return the fingerprint of length characters starting at offset. ASCII text has the fingerprint of its bytes.
+     */
+    public static long of(CharSequence chars, int offset, int length) {
+        long hash = FNV_OFFSET_BASIS ^ length;
+        for (int i = offset; i < offset + length; i++) {
+            char c = chars.charAt(i);
+            if (c > 0xff) {
+                hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+            }
+            hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * The finalizer of MurmurHash3, spreads every input bit over all output bits.
+     */
+    public static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
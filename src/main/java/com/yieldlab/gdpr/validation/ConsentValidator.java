@@ -0,0 +1,190 @@
+package com.yieldlab.gdpr.validation;
+
+import static com.yieldlab.gdpr.GdprConstants.VENDOR_LIST_VERSION_SIZE;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import com.yieldlab.gdpr.PurposeRequirement;
+import com.yieldlab.gdpr.VendorConsent;
+import com.yieldlab.gdpr.util.BitWords;
+import com.yieldlab.gdpr.vendor.Purpose;
+import com.yieldlab.gdpr.vendor.Vendor;
+import com.yieldlab.gdpr.vendor.VendorList;
+import com.yieldlab.gdpr.vendor.VendorListHistory;
+import com.yieldlab.gdpr.vendor.VendorListSnapshot;
+
+/**
+ * Checks that consents only refer to what the vendor list version they reference defines: a {@code maxVendorId} not
+ * above the highest vendor id, allowed vendors that are part of the list and allowed purposes that the list defines.
+ *
+ * Each vendor list version is compiled once into a vendor bit set and a purpose mask, so a consent is checked with a
+ * few word operations, independent of the number of vendors. Valid consents are checked without allocating.
+ *
+ * Instances are immutable and thread safe.
+ */
+public final class ConsentValidator {
+    private static final ConsentViolation[] VIOLATIONS = ConsentViolation.values();
+
+    // indexed by vendor list version, null for unknown versions
+    private final CompiledVersion[] versions;
+
+    private ConsentValidator(CompiledVersion[] versions) {
+        this.versions = versions;
+    }
+
+    /**
+     * Compiles every version of the history.
+     */
+    public static ConsentValidator of(VendorListHistory history) {
+        Builder builder = new Builder();
+        for (int vendorListVersion : history.getVersions()) {
+            builder.withVendorList(history.get(vendorListVersion));
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return true if the consent has no violations
+     */
+    public boolean isValid(VendorConsent consent) {
+        return violations(consent) == 0;
+    }
+
+    /**
+     * @return the violations of the consent, an empty set if it is valid. The set of a valid consent is shared and
+     *         immutable.
+     */
+    public Set<ConsentViolation> validate(VendorConsent consent) {
+        int violations = violations(consent);
+        if (violations == 0) {
+            return Collections.emptySet();
+        }
+        Set<ConsentViolation> result = EnumSet.noneOf(ConsentViolation.class);
+        for (ConsentViolation violation : VIOLATIONS) {
+            if ((violations & 1 << violation.ordinal()) != 0) {
+                result.add(violation);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the lowest vendor id the consent allows although it is not part of the referenced vendor list, 0 if there
+     *         is none or the vendor list version is unknown
+     */
+    public int firstUnknownVendor(VendorConsent consent) {
+        CompiledVersion version = version(consent.getVendorListVersion());
+        return version == null ? 0 : consent.firstAllowedVendorNotIn(version.vendors);
+    }
+
+    private int violations(VendorConsent consent) {
+        CompiledVersion version = version(consent.getVendorListVersion());
+        if (version == null) {
+            return 1 << ConsentViolation.UNKNOWN_VENDOR_LIST_VERSION.ordinal();
+        }
+        int violations = 0;
+        if (consent.getMaxVendorId() > version.maxVendorId) {
+            violations |= 1 << ConsentViolation.MAX_VENDOR_ID_EXCEEDED.ordinal();
+        }
+        if (consent.firstAllowedVendorNotIn(version.vendors) != 0) {
+            violations |= 1 << ConsentViolation.UNKNOWN_VENDOR_ALLOWED.ordinal();
+        }
+        if ((consent.getAllowedPurposesBits() & ~version.purposeMask) != 0) {
+            violations |= 1 << ConsentViolation.UNDEFINED_PURPOSE_ALLOWED.ordinal();
+        }
+        return violations;
+    }
+
+    private CompiledVersion version(int vendorListVersion) {
+        return vendorListVersion >= 0 && vendorListVersion < versions.length ? versions[vendorListVersion] : null;
+    }
+
+    /**
+     * @return true if a vendor list of the given version was compiled
+     */
+    public boolean hasVendorListVersion(int vendorListVersion) {
+        return version(vendorListVersion) != null;
+    }
+
+    /**
+     * @return the compiled vendor list versions in ascending order
+     */
+    public List<Integer> getVendorListVersions() {
+        List<Integer> compiled = new ArrayList<>();
+        for (int i = 0; i < versions.length; i++) {
+            if (versions[i] != null) {
+                compiled.add(i);
+            }
+        }
+        return compiled;
+    }
+
+    private static final class CompiledVersion {
+        final int maxVendorId;
+        final long[] vendors;
+        final int purposeMask;
+
+        CompiledVersion(List<Vendor> vendorList, List<Purpose> purposes) {
+            int max = 0;
+            for (Vendor vendor : vendorList) {
+                if (vendor.getId() < 0) {
+                    throw new IllegalArgumentException("vendor id must not be negative: " + vendor.getId());
+                }
+                max = Math.max(max, vendor.getId());
+            }
+            this.maxVendorId = max;
+            this.vendors = new long[BitWords.wordsFor(max)];
+            for (Vendor vendor : vendorList) {
+                BitWords.set(vendors, vendor.getId());
+            }
+            int[] purposeIds = new int[purposes.size()];
+            for (int i = 0; i < purposeIds.length; i++) {
+                purposeIds[i] = purposes.get(i).getId();
+            }
+            this.purposeMask = PurposeRequirement.of(purposeIds).getMask();
+        }
+    }
+
+    public static class Builder {
+        private final CompiledVersion[] versions = new CompiledVersion[1 << VENDOR_LIST_VERSION_SIZE];
+
+        /**
+         * Compiles a vendor list, replacing a list of the same version.
+         *
+         * @throws IllegalArgumentException
+         *             if the version does not fit into a consent string, a vendor has a negative id or a purpose id
+         *             is outside of 1 to 24
+         */
+        public Builder withVendorList(VendorList vendorList) {
+            return with(vendorList.getVendorListVersion(), vendorList.getVendors(), vendorList.getPurposes());
+        }
+
+        /**
+         * Compiles a vendor list version, replacing a list of the same version.
+         *
+         * @throws IllegalArgumentException
+         *             if the version does not fit into a consent string, a vendor has a negative id or a purpose id
+         *             is outside of 1 to 24
+         */
+        public Builder withVendorList(VendorListSnapshot vendorList) {
+            return with(vendorList.getVendorListVersion(), vendorList.getVendors(), vendorList.getPurposes());
+        }
+
+        private Builder with(int vendorListVersion, List<Vendor> vendors, List<Purpose> purposes) {
+            if (vendorListVersion < 0 || vendorListVersion >= versions.length) {
+                throw new IllegalArgumentException("vendor list version must fit in " + VENDOR_LIST_VERSION_SIZE
+                        + " bits: " + vendorListVersion);
+            }
+            versions[vendorListVersion] = new CompiledVersion(vendors, purposes);
+            return this;
+        }
+
+        public ConsentValidator build() {
+            return new ConsentValidator(versions.clone());
+        }
+    }
+}
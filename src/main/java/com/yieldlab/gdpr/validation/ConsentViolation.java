@@ -0,0 +1,23 @@
+package com.yieldlab.gdpr.validation;
+
+/**
+ * A way in which a consent does not match the vendor list version it references.
+ */
+public enum ConsentViolation {
+    /**
+     * The validator knows no vendor list of the consent's {@code vendorListVersion}.
+     */
+    UNKNOWN_VENDOR_LIST_VERSION,
+    /**
+     * The consent's {@code maxVendorId} is above the highest vendor id of the vendor list.
+     */
+    MAX_VENDOR_ID_EXCEEDED,
+    /**
+     * The consent allows a vendor that is not part of the vendor list.
+     */
+    UNKNOWN_VENDOR_ALLOWED,
+    /**
+     * The consent allows a purpose that the vendor list does not define.
+     */
+    UNDEFINED_PURPOSE_ALLOWED
+}
@@ -0,0 +1,55 @@
+package com.yieldlab.gdpr.jfr;
+
+import com.yieldlab.gdpr.VendorConsent;
+
+/*
+ * Hooks for JDK Flight Recorder events, Java 11 variant of the multi-release jar. Runtime images without the jdk.jfr
+ * module get the behaviour of the Java 8 variant; JfrEvents, the only class touching jdk.jfr, is then never loaded.
+ */
+public final class ConsentEvents {
+    private static final boolean AVAILABLE = ModuleLayer.boot().findModule("jdk.jfr").isPresent();
+
+    private ConsentEvents() {
+    }
+
+    public static Object beginDecode() {
+        return AVAILABLE ? JfrEvents.beginDecode() : null;
+    }
+
+    public static void endDecode(Object token, VendorConsent consent, int inputLength, Throwable failure) {
+        if (token != null) {
+            JfrEvents.endDecode(token, consent, inputLength, failure);
+        }
+    }
+
+    public static Object beginEncode() {
+        return AVAILABLE ? JfrEvents.beginEncode() : null;
+    }
+
+    public static void endEncode(Object token, int vendorEncodingType, int maxVendorId, int rangeEntryCount,
+            int outputLength, Throwable failure) {
+        if (token != null) {
+            JfrEvents.endEncode(token, vendorEncodingType, maxVendorId, rangeEntryCount, outputLength, failure);
+        }
+    }
+
+    public static Object beginCacheLookup() {
+        return AVAILABLE ? JfrEvents.beginCacheLookup() : null;
+    }
+
+    public static void endCacheLookup(Object token, String cache, boolean hit) {
+        if (token != null) {
+            JfrEvents.endCacheLookup(token, cache, hit);
+        }
+    }
+
+    public static Object beginVendorListReload() {
+        return AVAILABLE ? JfrEvents.beginVendorListReload() : null;
+    }
+
+    public static void endVendorListReload(Object token, int vendorListVersion, int vendorCount, Throwable failure) {
+        if (token != null) {
+            JfrEvents.endVendorListReload(token, vendorListVersion, vendorCount, failure);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.yieldlab.gdpr.jfr;
+
+import java.util.List;
+
+import com.yieldlab.gdpr.VendorConsent;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/*
+ * The JDK Flight Recorder events behind ConsentEvents. A disabled event costs an allocation the JIT removes and a
+ * flag check; enabled events are timed and committed if they take longer than their threshold.
+ */
+final class JfrEvents {
+    private JfrEvents() {
+    }
+
+    static Object beginDecode() {
+        DecodeEvent event = new DecodeEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    static void endDecode(Object token, VendorConsent consent, int inputLength, Throwable failure) {
+        DecodeEvent event = (DecodeEvent) token;
+        event.end();
+        if (event.shouldCommit()) {
+            if (consent != null) {
+                event.vendorEncodingType = consent.getVendorEncodingType();
+                event.maxVendorId = consent.getMaxVendorId();
+                List<VendorConsent.RangeEntry> rangeEntries = consent.getRangeEntries();
+                event.rangeEntryCount = rangeEntries == null ? 0 : rangeEntries.size();
+            }
+            event.inputLength = inputLength;
+            event.failure = reason(failure);
+            event.commit();
+        }
+    }
+
+    static Object beginEncode() {
+        EncodeEvent event = new EncodeEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    static void endEncode(Object token, int vendorEncodingType, int maxVendorId, int rangeEntryCount,
+            int outputLength, Throwable failure) {
+        EncodeEvent event = (EncodeEvent) token;
+        event.end();
+        if (event.shouldCommit()) {
+            event.vendorEncodingType = vendorEncodingType;
+            event.maxVendorId = maxVendorId;
+            event.rangeEntryCount = rangeEntryCount;
+            event.outputLength = outputLength;
+            event.failure = reason(failure);
+            event.commit();
+        }
+    }
+
+    static Object beginCacheLookup() {
+        CacheLookupEvent event = new CacheLookupEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    static void endCacheLookup(Object token, String cache, boolean hit) {
+        CacheLookupEvent event = (CacheLookupEvent) token;
+        event.end();
+        if (event.shouldCommit()) {
+            event.cache = cache;
+            event.hit = hit;
+            event.commit();
+        }
+    }
+
+    static Object beginVendorListReload() {
+        VendorListReloadEvent event = new VendorListReloadEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    static void endVendorListReload(Object token, int vendorListVersion, int vendorCount, Throwable failure) {
+        VendorListReloadEvent event = (VendorListReloadEvent) token;
+        event.end();
+        if (event.shouldCommit()) {
+            event.vendorListVersion = vendorListVersion;
+            event.vendorCount = vendorCount;
+            event.failure = reason(failure);
+            event.commit();
+        }
+    }
+
+    private static String reason(Throwable failure) {
+        if (failure == null) {
+            return null;
+        }
+        // the parse exception wrapped by GdprException tells what was wrong with the input
+        Throwable cause = failure.getCause() != null ? failure.getCause() : failure;
+        return cause.getClass().getSimpleName() + ": " + cause.getMessage();
+    }
+
+    @Name("com.yieldlab.gdpr.Decode")
+    @Label("Consent Decode")
+    @Description("Parsing of a consent string or binary consent")
+    @Category({ "GDPR Consent" })
+    @Enabled(false)
+    @Threshold("1 ms")
+    @StackTrace(false)
+    static final class DecodeEvent extends Event {
+        @Label("Vendor Encoding Type")
+        int vendorEncodingType;
+        @Label("Max Vendor Id")
+        int maxVendorId;
+        @Label("Range Entry Count")
+        int rangeEntryCount;
+        @Label("Input Length")
+        int inputLength;
+        @Label("Failure")
+        String failure;
+    }
+
+    @Name("com.yieldlab.gdpr.Encode")
+    @Label("Consent Encode")
+    @Description("Encoding of a consent into its binary form")
+    @Category({ "GDPR Consent" })
+    @Enabled(false)
+    @Threshold("1 ms")
+    @StackTrace(false)
+    static final class EncodeEvent extends Event {
+        @Label("Vendor Encoding Type")
+        int vendorEncodingType;
+        @Label("Max Vendor Id")
+        int maxVendorId;
+        @Label("Range Entry Count")
+        int rangeEntryCount;
+        @Label("Output Length")
+        @DataAmount
+        int outputLength;
+        @Label("Failure")
+        String failure;
+    }
+
+    @Name("com.yieldlab.gdpr.CacheLookup")
+    @Label("Consent Cache Lookup")
+    @Category({ "GDPR Consent" })
+    @Enabled(false)
+    @Threshold("1 ms")
+    @StackTrace(false)
+    static final class CacheLookupEvent extends Event {
+        @Label("Cache")
+        String cache;
+        @Label("Hit")
+        boolean hit;
+    }
+
+    @Name("com.yieldlab.gdpr.VendorListReload")
+    @Label("Vendor List Reload")
+    @Category({ "GDPR Consent" })
+    @Enabled(false)
+    @Threshold("1 ms")
+    static final class VendorListReloadEvent extends Event {
+        @Label("Vendor List Version")
+        int vendorListVersion;
+        @Label("Vendor Count")
+        int vendorCount;
+        @Label("Failure")
+        String failure;
+    }
+}
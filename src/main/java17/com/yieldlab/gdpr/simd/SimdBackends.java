@@ -0,0 +1,22 @@
+package com.yieldlab.gdpr.simd;
+
+/*
+ * Picks the backend of VectorizedOps, Java 17 variant of the multi-release jar. The Vector API is an incubator module
+ * that is only resolved with --add-modules jdk.incubator.vector; without it loading VectorApiBackend fails and the
+ * scalar backend is used.
+ */
+final class SimdBackends {
+    private SimdBackends() {
+    }
+
+    static SimdBackend load() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return ScalarBackend.INSTANCE;
+        }
+        try {
+            return new VectorApiBackend();
+        } catch (LinkageError | RuntimeException e) {
+            return ScalarBackend.INSTANCE;
+        }
+    }
+}
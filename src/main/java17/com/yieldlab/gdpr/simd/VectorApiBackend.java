@@ -0,0 +1,137 @@
+package com.yieldlab.gdpr.simd;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/*
+ * Vector API backend, only part of the Java 17 classes of the multi-release jar.
+ *
+ * Base64url decoding maps a full vector of characters to their six bit values with range compares and blends, then
+ * packs every four values into 24 bits in int lanes. Only writing the three bytes per lane is scalar. Input that
+ * contains an illegal character is handed to the scalar backend, which reports it.
+ */
+final class VectorApiBackend implements SimdBackend {
+    private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+
+    private final ThreadLocal<int[]> packed = ThreadLocal.withInitial(() -> new int[BYTES.length() / 4]);
+
+    VectorApiBackend() {
+        // fail early if the module is missing or the species cannot be used
+        ByteVector.zero(BYTES).reinterpretAsInts();
+        LongVector.zero(LONGS);
+    }
+
+    @Override
+    public String name() {
+        return "vector-api-" + BYTES.vectorBitSize();
+    }
+
+    @Override
+    public int decodeBase64Url(byte[] src, int off, int len, byte[] dst, int dstOff) {
+        int step = BYTES.length();
+        int[] lanes = packed.get();
+        int i = 0;
+        int o = dstOff;
+        // a trailing partial unit is left to the scalar tail
+        int fullUnits = len & ~3;
+        while (i + step <= fullUnits) {
+            ByteVector c = ByteVector.fromArray(BYTES, src, off + i);
+            VectorMask<Byte> upper = c.compare(VectorOperators.GE, (byte) 'A').and(c.compare(VectorOperators.LE,
+                    (byte) 'Z'));
+            VectorMask<Byte> lower = c.compare(VectorOperators.GE, (byte) 'a').and(c.compare(VectorOperators.LE,
+                    (byte) 'z'));
+            VectorMask<Byte> digit = c.compare(VectorOperators.GE, (byte) '0').and(c.compare(VectorOperators.LE,
+                    (byte) '9'));
+            VectorMask<Byte> dash = c.compare(VectorOperators.EQ, (byte) '-');
+            VectorMask<Byte> underscore = c.compare(VectorOperators.EQ, (byte) '_');
+            if (!upper.or(lower).or(digit).or(dash).or(underscore).allTrue()) {
+                break;
+            }
+            ByteVector sextets = c.sub((byte) 'A', upper)
+                    .sub((byte) ('a' - 26), lower)
+                    .add((byte) (52 - '0'), digit)
+                    .blend((byte) 62, dash)
+                    .blend((byte) 63, underscore);
+
+            // four sextets per int lane, the first one in the lowest byte
+            IntVector units = sextets.reinterpretAsInts();
+            IntVector bits = units.and(0xff).lanewise(VectorOperators.LSHL, 18)
+                    .or(units.lanewise(VectorOperators.LSHR, 8).and(0xff).lanewise(VectorOperators.LSHL, 12))
+                    .or(units.lanewise(VectorOperators.LSHR, 16).and(0xff).lanewise(VectorOperators.LSHL, 6))
+                    .or(units.lanewise(VectorOperators.LSHR, 24));
+            bits.intoArray(lanes, 0);
+            for (int lane : lanes) {
+                dst[o++] = (byte) (lane >>> 16);
+                dst[o++] = (byte) (lane >>> 8);
+                dst[o++] = (byte) lane;
+            }
+            i += step;
+        }
+        return o - dstOff + ScalarBackend.INSTANCE.decodeBase64Url(src, off + i, len - i, dst, o);
+    }
+
+    @Override
+    public void or(long[] accumulator, long[] words, int length) {
+        int i = 0;
+        for (int bound = LONGS.loopBound(length); i < bound; i += LONGS.length()) {
+            LongVector.fromArray(LONGS, accumulator, i).or(LongVector.fromArray(LONGS, words, i))
+                    .intoArray(accumulator, i);
+        }
+        for (; i < length; i++) {
+            accumulator[i] |= words[i];
+        }
+    }
+
+    @Override
+    public void and(long[] accumulator, long[] words, int length) {
+        int i = 0;
+        for (int bound = LONGS.loopBound(length); i < bound; i += LONGS.length()) {
+            LongVector.fromArray(LONGS, accumulator, i).and(LongVector.fromArray(LONGS, words, i))
+                    .intoArray(accumulator, i);
+        }
+        for (; i < length; i++) {
+            accumulator[i] &= words[i];
+        }
+    }
+
+    @Override
+    public long cardinality(long[] words, int length) {
+        LongVector sum = LongVector.zero(LONGS);
+        int i = 0;
+        for (int bound = LONGS.loopBound(length); i < bound; i += LONGS.length()) {
+            sum = sum.add(bitCount(LongVector.fromArray(LONGS, words, i)));
+        }
+        long count = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            count += Long.bitCount(words[i]);
+        }
+        return count;
+    }
+
+    @Override
+    public long andCardinality(long[] a, long[] b, int length) {
+        LongVector sum = LongVector.zero(LONGS);
+        int i = 0;
+        for (int bound = LONGS.loopBound(length); i < bound; i += LONGS.length()) {
+            sum = sum.add(bitCount(LongVector.fromArray(LONGS, a, i).and(LongVector.fromArray(LONGS, b, i))));
+        }
+        long count = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            count += Long.bitCount(a[i] & b[i]);
+        }
+        return count;
+    }
+
+    // lane wise population count, the incubator API of Java 17 has no BIT_COUNT operator
+    private static LongVector bitCount(LongVector v) {
+        LongVector x = v.sub(v.lanewise(VectorOperators.LSHR, 1).and(0x5555555555555555L));
+        x = x.and(0x3333333333333333L).add(x.lanewise(VectorOperators.LSHR, 2).and(0x3333333333333333L));
+        x = x.add(x.lanewise(VectorOperators.LSHR, 4)).and(0x0f0f0f0f0f0f0f0fL);
+        return x.mul(0x0101010101010101L).lanewise(VectorOperators.LSHR, 56);
+    }
+}
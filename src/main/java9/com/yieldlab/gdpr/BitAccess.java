@@ -0,0 +1,56 @@
+package com.yieldlab.gdpr;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/*
+ * Bit extraction primitives used by Bits, Java 9 variant of the multi-release jar. Reads an unaligned big endian
+ * long view of the byte array and extracts the requested bits with two shifts. Reads in the last eight bytes use the
+ * view ending at the last byte, and 64 bit values that span nine bytes take their last bits from one more byte load,
+ * so only arrays shorter than eight bytes fall back to ScalarBitAccess.
+ */
+final class BitAccess {
+    private static final VarHandle LONG_VIEW = MethodHandles.byteArrayViewVarHandle(long[].class,
+            ByteOrder.BIG_ENDIAN);
+
+    private BitAccess() {
+    }
+
+    static long read(byte[] bytes, int startInclusive, int size) {
+        if (!readsLongView(bytes.length, size)) {
+            return ScalarBitAccess.read(bytes, startInclusive, size);
+        }
+        int firstByte = Math.min(startInclusive >>> 3, bytes.length - Long.BYTES);
+        int shift = startInclusive - firstByte * 8;
+        long window = (long) LONG_VIEW.get(bytes, firstByte) << shift;
+        if (shift + size > Long.SIZE) {
+            // an unaligned 64 bit value, its last bits are in the ninth byte
+            window |= (bytes[firstByte + Long.BYTES] & 0xff) >>> (8 - shift);
+        }
+        return window >>> (Long.SIZE - size);
+    }
+
+    /**
+     * @return whether {@link #read(byte[], int, int)} uses the long view for reads of size bits from an array of
+     *         byteLength bytes
+     */
+    static boolean readsLongView(int byteLength, int size) {
+        return size > 0 && byteLength >= Long.BYTES;
+    }
+
+    static void copyToWords(byte[] bytes, int startInclusive, int size, long[] words, int toBit) {
+        int src = startInclusive;
+        int dst = toBit;
+        int remaining = size;
+        while (remaining > 0) {
+            int bitInWord = dst & 63;
+            int n = Math.min(Long.SIZE - bitInWord, remaining);
+            long reversed = Long.reverse(read(bytes, src, n)) >>> (Long.SIZE - n);
+            words[dst >>> 6] |= reversed << bitInWord;
+            src += n;
+            dst += n;
+            remaining -= n;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.yieldlab.gdpr;
+
+import static org.junit.Assert.assertThat;
+
+import java.util.Random;
+
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import com.yieldlab.gdpr.exception.VendorConsentParseException;
+import com.yieldlab.gdpr.util.BitWords;
+
+public class BitsTest {
+    @Test
+    public void testGetLongMatchesBitByBitRead() {
+        Random random = new Random(30);
+        for (int length = 1; length <= 20; length++) {
+            byte[] bytes = new byte[length];
+            random.nextBytes(bytes);
+            Bits bits = new Bits(bytes);
+            for (int start = 0; start < bits.length(); start++) {
+                for (int size = 0; size <= Math.min(Long.SIZE, bits.length() - start); size++) {
+                    long expected = bitByBit(bits, start, size);
+                    assertThat("start " + start + " size " + size, bits.getLong(start, size), Matchers.is(expected));
+                    assertThat(BitAccess.read(bytes, start, size), Matchers.is(expected));
+                    assertThat(ScalarBitAccess.read(bytes, start, size), Matchers.is(expected));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testGetIntMatchesBitByBitRead() {
+        byte[] bytes = { (byte) 0xde, (byte) 0xad, (byte) 0xbe, (byte) 0xef, 0x01 };
+        Bits bits = new Bits(bytes);
+
+        assertThat(bits.getInt(0, 32), Matchers.is(0xdeadbeef));
+        assertThat(bits.getInt(4, 12), Matchers.is(0xead));
+        assertThat(bits.getInt(39, 1), Matchers.is(1));
+    }
+
+    @Test(expected = VendorConsentParseException.class)
+    public void testReadPastEnd() {
+        new Bits(new byte[9]).getLong(10, 64);
+    }
+
+    @Test
+    public void testRangeView() {
+        byte[] bytes = { 0x7f, (byte) 0xde, (byte) 0xad, 0x00 };
+        Bits bits = new Bits(bytes, 1, 2);
+
+        assertThat(bits.length(), Matchers.is(16));
+        assertThat(bits.getInt(0, 16), Matchers.is(0xdead));
+        assertThat(bits.toByteArray(), Matchers.is(new byte[] { (byte) 0xde, (byte) 0xad }));
+
+        bits.unsetBit(0);
+        assertThat(bytes[1], Matchers.is((byte) 0x5e));
+        assertThat(bytes[0], Matchers.is((byte) 0x7f));
+    }
+
+    @Test(expected = VendorConsentParseException.class)
+    public void testRangeViewReadPastEnd() {
+        new Bits(new byte[4], 1, 2).getInt(8, 9);
+    }
+
+    @Test
+    public void testCopyToWords() {
+        Random random = new Random(31);
+        byte[] bytes = new byte[300];
+        random.nextBytes(bytes);
+        Bits bits = new Bits(bytes);
+        for (int start : new int[] { 0, 5, 173, 1000 }) {
+            for (int toBit : new int[] { 0, 1, 63, 64, 100 }) {
+                int size = bits.length() - start;
+                long[] words = new long[BitWords.wordsFor(toBit + size)];
+
+                bits.copyToWords(start, size, words, toBit);
+
+                for (int i = 0; i < size; i++) {
+                    assertThat(BitWords.get(words, toBit + i), Matchers.is(bits.getBit(start + i)));
+                }
+                assertThat(BitWords.cardinality(words), Matchers.is(cardinality(bits, start, size)));
+            }
+        }
+    }
+
+    private static long bitByBit(Bits bits, int start, int size) {
+        long value = 0;
+        for (int i = 0; i < size; i++) {
+            value = value << 1 | (bits.getBit(start + i) ? 1 : 0);
+        }
+        return value;
+    }
+
+    private static int cardinality(Bits bits, int start, int size) {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            count += bits.getBit(start + i) ? 1 : 0;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,120 @@
+package com.yieldlab.gdpr;
+
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import com.yieldlab.gdpr.exception.GdprException;
+import com.yieldlab.gdpr.exception.VendorConsentParseException;
+
+public class ParseLimitsTest {
+    private static final String BIT_FIELD_CONSENT = "BN5lERiOMYEdiAOAWeFRAAYAAaAAptQ";
+    private static final String RANGE_CONSENT = "BONZt-1ONZt-1AHABBENAO-AAAAHCAEAASABmADYAOAAeA";
+
+    @Test
+    public void testDefaultLimitsAcceptFormatMaximum() {
+        VendorConsent consent = new VendorConsent.Builder().withConsentRecordCreatedOn(Instant.now())
+                .withConsentRecordLastUpdatedOn(Instant.now())
+                .withConsentLanguage("EN")
+                .withMaxVendorId(65535)
+                .withBitField(Collections.singletonList(65534))
+                .build();
+
+        VendorConsent parsed = VendorConsent.fromBase64String(consent.getConsentString());
+
+        assertThat(parsed.isVendorAllowed(65535), Matchers.is(true));
+        assertThat(ParseLimits.DEFAULT.getMaxVendorId(), Matchers.is(65535));
+        assertThat(ParseLimits.DEFAULT.getMaxRangeEntries(), Matchers.is(4095));
+    }
+
+    @Test
+    public void testMaxVendorId() {
+        VendorConsent consent = VendorConsent.fromBase64String(BIT_FIELD_CONSENT);
+        ParseLimits limits = new ParseLimits.Builder().withMaxVendorId(consent.getMaxVendorId()).build();
+
+        assertThat(VendorConsent.fromBase64String(BIT_FIELD_CONSENT, limits).getConsentString(),
+                Matchers.is(BIT_FIELD_CONSENT));
+        assertRejected(BIT_FIELD_CONSENT,
+                new ParseLimits.Builder().withMaxVendorId(consent.getMaxVendorId() - 1).build(), "Max VendorId");
+    }
+
+    @Test
+    public void testMaxRangeEntries() {
+        VendorConsent consent = VendorConsent.fromBase64String(RANGE_CONSENT);
+        int entries = consent.getRangeEntries().size();
+
+        VendorConsent.fromBase64String(RANGE_CONSENT, new ParseLimits.Builder().withMaxRangeEntries(entries).build());
+        assertRejected(RANGE_CONSENT, new ParseLimits.Builder().withMaxRangeEntries(entries - 1).build(),
+                "range entries exceed");
+    }
+
+    @Test
+    public void testMaxInputLength() {
+        byte[] bytes = VendorConsent.fromBase64String(BIT_FIELD_CONSENT).toBytes();
+        ParseLimits limits = new ParseLimits.Builder().withMaxInputLength(bytes.length - 1).build();
+
+        assertRejected(BIT_FIELD_CONSENT, limits, "exceeds the limit");
+        assertRejected(BIT_FIELD_CONSENT + "==", limits, "exceeds the limit");
+        try {
+            VendorConsent.fromBytes(bytes, 0, bytes.length, limits);
+            fail("limit not enforced");
+        } catch (GdprException e) {
+            assertThat(e.getCause().getMessage(), Matchers.containsString("exceeds the limit"));
+        }
+    }
+
+    @Test
+    public void testByteBufferOnlyReadsUpToLimit() {
+        byte[] consent = VendorConsent.fromBase64String(RANGE_CONSENT).toBytes();
+        ByteBuffer buffer = ByteBuffer.allocate(consent.length + 1000);
+        buffer.put(consent).rewind();
+        ParseLimits limits = new ParseLimits.Builder().withMaxInputLength(consent.length).build();
+
+        VendorConsent parsed = VendorConsent.fromByteBuffer(buffer, limits);
+
+        assertThat(parsed.getConsentString(), Matchers.is(RANGE_CONSENT));
+        assertThat(buffer.position(), Matchers.is(consent.length));
+    }
+
+    @Test
+    public void testTruncatedSectionsRejectedBeforeDecoding() {
+        byte[] bitField = VendorConsent.fromBase64String(BIT_FIELD_CONSENT).toBytes();
+        byte[] range = VendorConsent.fromBase64String(RANGE_CONSENT).toBytes();
+
+        assertRejected(Arrays.copyOf(bitField, 20), "header");
+        assertRejected(Arrays.copyOf(bitField, bitField.length - 1), "bit field");
+        assertRejected(Arrays.copyOf(range, 23), "range section");
+        assertRejected(Arrays.copyOf(range, 26), "range entries");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLimitAboveFormatMaximum() {
+        new ParseLimits.Builder().withMaxRangeEntries(4096);
+    }
+
+    private static void assertRejected(String consentString, ParseLimits limits, String reason) {
+        try {
+            VendorConsent.fromBase64String(consentString, limits);
+            fail("limit not enforced: " + limits);
+        } catch (GdprException e) {
+            assertThat(e.getCause(), Matchers.instanceOf(VendorConsentParseException.class));
+            assertThat(e.getCause().getMessage(), Matchers.containsString(reason));
+        }
+    }
+
+    private static void assertRejected(byte[] bytes, String section) {
+        try {
+            VendorConsent.fromBytes(bytes);
+            fail("truncated " + section + " not detected");
+        } catch (GdprException e) {
+            assertThat(e.getCause().getMessage(), Matchers.containsString("the " + section + " needs"));
+        }
+    }
+}
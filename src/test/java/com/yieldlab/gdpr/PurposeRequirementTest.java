@@ -0,0 +1,38 @@
+package com.yieldlab.gdpr;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+public class PurposeRequirementTest {
+    @Test
+    public void testMaskLayout() {
+        assertThat(PurposeRequirement.of(1).getMask(), Matchers.is(1 << 23));
+        assertThat(PurposeRequirement.of(24).getMask(), Matchers.is(1));
+        assertThat(PurposeRequirement.of(Arrays.asList(1, 24)), Matchers.is(PurposeRequirement.of(24, 1)));
+        assertTrue(PurposeRequirement.of().isEmpty());
+    }
+
+    @Test
+    public void testAllAnyNone() {
+        int allowed = PurposeRequirement.of(1, 3, 5).getMask();
+
+        assertTrue(PurposeRequirement.of(1, 3).isAllOf(allowed));
+        assertFalse(PurposeRequirement.of(1, 2).isAllOf(allowed));
+        assertTrue(PurposeRequirement.of(1, 2).isAnyOf(allowed));
+        assertFalse(PurposeRequirement.of(2, 4).isAnyOf(allowed));
+        assertTrue(PurposeRequirement.of(2, 4).isNoneOf(allowed));
+        assertFalse(PurposeRequirement.of(4, 5).isNoneOf(allowed));
+        assertTrue(PurposeRequirement.NONE.isAllOf(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPurposeIdOutOfRange() {
+        PurposeRequirement.of(25);
+    }
+}
@@ -0,0 +1,129 @@
+package com.yieldlab.gdpr;
+
+import static org.junit.Assert.assertThat;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import com.yieldlab.gdpr.corpus.ConsentCorpusGenerator;
+import com.yieldlab.gdpr.exception.GdprException;
+
+public class VendorConsentBytesTest {
+    private static final String CONSENT_STRING = "BN5lERiOMYEdiAKAWXEND1HoSBE6CAFAApAMgBkIDIgM0AgOJxAnQA";
+
+    @Test
+    public void testToBytesMatchesDecodedConsentString() {
+        VendorConsent consent = VendorConsent.fromBase64String(CONSENT_STRING);
+
+        byte[] bytes = consent.toBytes();
+
+        assertThat(bytes, Matchers.is(Base64.getUrlDecoder().decode(CONSENT_STRING)));
+        assertThat(consent.getByteLength(), Matchers.is(bytes.length));
+        bytes[0] = 0;
+        assertThat(consent.toBytes()[0], Matchers.not((byte) 0));
+    }
+
+    @Test
+    public void testGeneratedConsentsRoundTrip() {
+        ConsentCorpusGenerator generator = new ConsentCorpusGenerator.Builder().withSeed(32)
+                .withRangeEncodingShare(0.5)
+                .withMaxVendorIdBetween(1, 2000)
+                .build();
+        for (String consentString : generator.generate(500)) {
+            VendorConsent expected = VendorConsent.fromBase64String(consentString);
+
+            VendorConsent consent = VendorConsent.fromBytes(expected.toBytes());
+
+            assertSameConsent(consent, expected);
+            assertThat(consent.getConsentString(), Matchers.is(consentString));
+        }
+    }
+
+    @Test
+    public void testFromBytesReadsRangeOfArray() {
+        VendorConsent expected = VendorConsent.fromBase64String(CONSENT_STRING);
+        byte[] consentBytes = expected.toBytes();
+        byte[] message = new byte[consentBytes.length + 10];
+        System.arraycopy(consentBytes, 0, message, 3, consentBytes.length);
+
+        VendorConsent consent = VendorConsent.fromBytes(message, 3, consentBytes.length);
+
+        assertSameConsent(consent, expected);
+    }
+
+    @Test
+    public void testByteBufferRoundTrip() {
+        VendorConsent first = VendorConsent.fromBase64String(CONSENT_STRING);
+        VendorConsent second = VendorConsent.fromBase64String("BONZt-1ONZt-1AHABBENAO-AAAAHCAEAASABmADYAOAAeA");
+        for (ByteBuffer buffer : new ByteBuffer[] { ByteBuffer.allocate(200), ByteBuffer.allocateDirect(200) }) {
+            first.writeTo(buffer);
+            second.writeTo(buffer);
+            assertThat(buffer.position(), Matchers.is(first.getByteLength() + second.getByteLength()));
+            buffer.flip();
+
+            assertSameConsent(VendorConsent.fromByteBuffer(buffer), first);
+            assertThat(buffer.position(), Matchers.is(first.getByteLength()));
+            assertSameConsent(VendorConsent.fromByteBuffer(buffer), second);
+            assertThat(buffer.hasRemaining(), Matchers.is(false));
+        }
+    }
+
+    @Test
+    public void testByteBufferAdvancesByBytesRead() {
+        // a range entry flagged as a range from vendor 5 to 5, which is encoded in 17 instead of 33 bits
+        Bits header = new Bits(VendorConsent.fromBase64String("BONZt-1ONZt-1AHABBENAO-AAAAHCAEAASABmADYAOAAeA")
+                .toBytes());
+        Bits nonCanonical = new Bits(new byte[(GdprConstants.RANGE_ENTRY_OFFSET + 33 + 7) / 8]);
+        for (int i = 0; i < GdprConstants.NUM_ENTRIES_OFFSET; i++) {
+            if (header.getBit(i)) {
+                nonCanonical.setBit(i);
+            }
+        }
+        nonCanonical.setInt(GdprConstants.NUM_ENTRIES_OFFSET, GdprConstants.NUM_ENTRIES_SIZE, 1);
+        nonCanonical.setBit(GdprConstants.RANGE_ENTRY_OFFSET);
+        nonCanonical.setInt(GdprConstants.RANGE_ENTRY_OFFSET + 1, GdprConstants.VENDOR_ID_SIZE, 5);
+        nonCanonical.setInt(GdprConstants.RANGE_ENTRY_OFFSET + 17, GdprConstants.VENDOR_ID_SIZE, 5);
+        byte[] first = nonCanonical.toByteArray();
+        VendorConsent second = VendorConsent.fromBase64String(CONSENT_STRING);
+        for (ByteBuffer buffer : new ByteBuffer[] { ByteBuffer.allocate(200), ByteBuffer.allocateDirect(200) }) {
+            buffer.put(first);
+            second.writeTo(buffer);
+            buffer.flip();
+
+            VendorConsent consent = VendorConsent.fromByteBuffer(buffer);
+
+            assertThat(consent.getByteLength(), Matchers.lessThan(first.length));
+            assertThat(consent.getRangeEntries().size(), Matchers.is(1));
+            assertThat(consent.isVendorAllowed(5), Matchers.not(consent.isDefaultConsent()));
+            assertThat(buffer.position(), Matchers.is(first.length));
+            assertSameConsent(VendorConsent.fromByteBuffer(buffer), second);
+            assertThat(buffer.hasRemaining(), Matchers.is(false));
+        }
+    }
+
+    @Test(expected = GdprException.class)
+    public void testTruncatedBytes() {
+        byte[] bytes = VendorConsent.fromBase64String(CONSENT_STRING).toBytes();
+
+        VendorConsent.fromBytes(bytes, 0, 20);
+    }
+
+    @Test(expected = GdprException.class)
+    public void testEmptyBytes() {
+        VendorConsent.fromBytes(new byte[0]);
+    }
+
+    private static void assertSameConsent(VendorConsent consent, VendorConsent expected) {
+        assertThat(consent.toBytes(), Matchers.is(expected.toBytes()));
+        assertThat(consent.getCmpId(), Matchers.is(expected.getCmpId()));
+        assertThat(consent.getConsentRecordCreated(), Matchers.is(expected.getConsentRecordCreated()));
+        assertThat(consent.getMaxVendorId(), Matchers.is(expected.getMaxVendorId()));
+        assertThat(consent.getAllowedPurposesBits(), Matchers.is(expected.getAllowedPurposesBits()));
+        for (int vendorId = 1; vendorId <= expected.getMaxVendorId(); vendorId++) {
+            assertThat(consent.isVendorAllowed(vendorId), Matchers.is(expected.isVendorAllowed(vendorId)));
+        }
+    }
+}
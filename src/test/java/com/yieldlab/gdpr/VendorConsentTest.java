@@ -5,11 +5,17 @@ import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.stream.IntStream;
 
 import org.hamcrest.Matchers;
 import org.junit.Test;
 
 import com.yieldlab.gdpr.exception.VendorConsentException;
+import com.yieldlab.gdpr.util.BitWords;
 
 public class VendorConsentTest {
     @Test
@@ -132,4 +138,112 @@ public class VendorConsentTest {
         assertFalse(consent.isVendorAllowed(3));
         assertTrue(consent.isVendorAllowed(27));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testAllowedPurposesBits() {
+        String consentString = "BN5lERiOMYEdiAOAWeFRAAYAAaAAptQ";
+        VendorConsent consent = VendorConsent.fromBase64String(consentString);
+
+        int purposesBits = consent.getAllowedPurposesBits();
+        assertThat(Integer.bitCount(purposesBits), Matchers.is(consent.getAllowedPurposes().size()));
+        for (int purposeId = 1; purposeId <= GdprConstants.PURPOSES_SIZE; purposeId++) {
+            boolean bitSet = (purposesBits & (1 << (GdprConstants.PURPOSES_SIZE - purposeId))) != 0;
+            assertThat(consent.isPurposeAllowed(purposeId), Matchers.is(bitSet));
+        }
+        assertTrue(consent.arePurposesAllowed(Arrays.asList(2, 21)));
+        assertFalse(consent.arePurposesAllowed(Arrays.asList(1, 2)));
+        assertTrue(consent.arePurposesAllowed(PurposeRequirement.of(2, 21)));
+        assertFalse(consent.arePurposesAllowed(PurposeRequirement.of(1, 2)));
+    }
+
+    @Test
+    public void testCreationWithAllowedPurposesBits() {
+        String consentString = "BN5lERiOMYEdiAKAWXEND1HoSBE6CAFAApAMgBkIDIgM0AgOJxAnQA";
+        VendorConsent consent = VendorConsent.fromBase64String(consentString);
+
+        VendorConsent underTest = new VendorConsent.Builder()
+                .withVersion(consent.getVersion())
+                .withConsentRecordCreatedOn(consent.getConsentRecordCreated())
+                .withConsentRecordLastUpdatedOn(consent.getConsentRecordLastUpdated())
+                .withCmpID(consent.getCmpId())
+                .withCmpVersion(consent.getCmpVersion())
+                .withConsentScreenID(consent.getConsentScreen())
+                .withConsentLanguage(consent.getConsentLanguage())
+                .withVendorListVersion(consent.getVendorListVersion())
+                .withAllowedPurposesBits(consent.getAllowedPurposesBits())
+                .withMaxVendorId(consent.getMaxVendorId())
+                .withVendorEncodingType(consent.getVendorEncodingType())
+                .withDefaultConsent(consent.isDefaultConsent())
+                .withRangeEntries(consent.getRangeEntries())
+                .build();
+
+        assertThat(underTest.getConsentString(), Matchers.is(consentString));
+        assertThat(underTest.getAllowedPurposes(), Matchers.is(consent.getAllowedPurposes()));
+    }
+
+    @Test
+    public void testCopyVendorBits() {
+        for (String consentString : Arrays.asList("BN5lERiOMYEdiAOAWeFRAAYAAaAAptQ",
+                "BN5lERiOMYEdiAKAWXEND1HoSBE6CAFAApAMgBkIDIgM0AgOJxAnQA", "BONZt-1ONZt-1AHABBENAO-AAAAHCAEAASABmADYAOAAeA")) {
+            VendorConsent consent = VendorConsent.fromBase64String(consentString);
+            long[] words = new long[BitWords.wordsFor(consent.getMaxVendorId() + 64)];
+            Arrays.fill(words, -1L);
+
+            consent.copyVendorBits(words);
+
+            for (int vendorId = 0; vendorId < words.length * 64; vendorId++) {
+                assertThat(consentString + " vendor " + vendorId, BitWords.get(words, vendorId),
+                        Matchers.is(consent.isVendorAllowed(vendorId)));
+            }
+        }
+    }
+
+    @Test
+    public void testAllowedVendors() {
+        for (String consentString : Arrays.asList("BN5lERiOMYEdiAOAWeFRAAYAAaAAptQ",
+                "BN5lERiOMYEdiAKAWXEND1HoSBE6CAFAApAMgBkIDIgM0AgOJxAnQA", "BONZt-1ONZt-1AHABBENAO-AAAAHCAEAASABmADYAOAAeA")) {
+            assertAllowedVendors(VendorConsent.fromBase64String(consentString));
+        }
+    }
+
+    @Test
+    public void testAllowedVendorsOfUnsortedOverlappingRanges() {
+        for (boolean defaultConsent : new boolean[] { false, true }) {
+            VendorConsent consent = new VendorConsent.Builder().withConsentRecordCreatedOn(Instant.now())
+                    .withConsentRecordLastUpdatedOn(Instant.now())
+                    .withConsentLanguage("EN")
+                    .withMaxVendorId(40)
+                    .withVendorEncodingType(GdprConstants.VENDOR_ENCODING_RANGE)
+                    .withDefaultConsent(defaultConsent)
+                    .withRangeEntries(Arrays.asList(new VendorConsent.RangeEntry(20, 25),
+                            new VendorConsent.RangeEntry(1), new VendorConsent.RangeEntry(22, 30),
+                            new VendorConsent.RangeEntry(31), new VendorConsent.RangeEntry(5, 6),
+                            new VendorConsent.RangeEntry(40)))
+                    .build();
+
+            int[] expected = defaultConsent ? new int[] { 2, 3, 4, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 32,
+                    33, 34, 35, 36, 37, 38, 39 }
+                    : new int[] { 1, 5, 6, 20, 21, 22, 23, 24, 25, 26, 27, 28, 29, 30, 31, 40 };
+            assertThat(consent.allowedVendors().toArray(), Matchers.is(expected));
+            assertAllowedVendors(consent);
+        }
+    }
+
+    private static void assertAllowedVendors(VendorConsent consent) {
+        int[] expected = IntStream.rangeClosed(1, consent.getMaxVendorId())
+                .filter(consent::isVendorAllowed)
+                .toArray();
+        List<Integer> visited = new ArrayList<>();
+
+        consent.forEachAllowedVendor(visited::add);
+        PrimitiveIterator.OfInt iterator = consent.allowedVendorsIterator();
+        for (int vendorId : expected) {
+            assertTrue(iterator.hasNext());
+            assertThat(iterator.nextInt(), Matchers.is(vendorId));
+        }
+
+        assertFalse(iterator.hasNext());
+        assertThat(consent.allowedVendors().toArray(), Matchers.is(expected));
+        assertThat(visited.stream().mapToInt(Integer::intValue).toArray(), Matchers.is(expected));
+    }
+}
@@ -0,0 +1,138 @@
+package com.yieldlab.gdpr;
+
+import static org.junit.Assert.assertThat;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import com.yieldlab.gdpr.corpus.ConsentCorpusGenerator;
+import com.yieldlab.gdpr.util.Fingerprints;
+
+public class VendorSectionPoolTest {
+    @Test
+    public void testSharesEqualBitFields() {
+        VendorSectionPool pool = new VendorSectionPool();
+        VendorConsent first = VendorConsent.fromBase64String(bitField(1000, 2, 3, 300).getConsentString());
+        VendorConsent second = VendorConsent.fromBase64String(bitField(2000, 2, 3, 300).getConsentString());
+        VendorConsent other = VendorConsent.fromBase64String(bitField(1000, 2, 4, 300).getConsentString());
+
+        VendorConsent internedFirst = pool.intern(first);
+        VendorConsent internedSecond = pool.intern(second);
+        VendorConsent internedOther = pool.intern(other);
+
+        assertThat(internedSecond.getVendorSection(), Matchers.sameInstance(internedFirst.getVendorSection()));
+        assertThat(internedOther.getVendorSection(), Matchers.not(Matchers.sameInstance(first.getVendorSection())));
+        assertThat(pool.size(), Matchers.is(2));
+        assertInterned(internedFirst, first);
+        assertInterned(internedSecond, second);
+        assertInterned(internedOther, other);
+    }
+
+    @Test
+    public void testSharesEqualRangeEntries() {
+        VendorSectionPool pool = new VendorSectionPool();
+        VendorConsent first = range(1000, new VendorConsent.RangeEntry(5, 90), new VendorConsent.RangeEntry(200));
+        VendorConsent second = range(3000, new VendorConsent.RangeEntry(5, 90), new VendorConsent.RangeEntry(200));
+        VendorConsent reordered = range(3000, new VendorConsent.RangeEntry(200), new VendorConsent.RangeEntry(5, 90));
+
+        VendorConsent internedFirst = pool.intern(first);
+        VendorConsent internedSecond = pool.intern(second);
+        VendorConsent internedReordered = pool.intern(reordered);
+
+        assertThat(internedSecond.getVendorSection(), Matchers.sameInstance(internedFirst.getVendorSection()));
+        // a different encoding of the same vendors
+        assertThat(internedReordered.getVendorSection(),
+                Matchers.not(Matchers.sameInstance(internedFirst.getVendorSection())));
+        assertInterned(internedSecond, second);
+        assertInterned(internedReordered, reordered);
+    }
+
+    @Test
+    public void testInterningTwice() {
+        VendorSectionPool pool = new VendorSectionPool();
+        VendorConsent interned = pool.intern(bitField(1000, 7));
+
+        assertThat(pool.intern(interned), Matchers.sameInstance(interned));
+    }
+
+    @Test
+    public void testCorpus() {
+        List<String> corpus = new ConsentCorpusGenerator.Builder().withSeed(41)
+                .withRangeEncodingShare(0.3)
+                .withAcceptAllRejectAllShares(0.4, 0.3)
+                .withMaxVendorIdBetween(400, 420)
+                .build()
+                .generate(2000);
+        VendorSectionPool pool = new VendorSectionPool();
+
+        for (String consentString : corpus) {
+            VendorConsent consent = VendorConsent.fromBase64String(consentString);
+            assertInterned(pool.intern(consent), consent);
+        }
+        assertThat(pool.size(), Matchers.lessThan(corpus.size()));
+    }
+
+    @Test
+    public void testConcurrentInterning() throws Exception {
+        VendorSectionPool pool = new VendorSectionPool();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<VendorConsent>> futures = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                int created = 1000 + i;
+                futures.add(executor.submit(() -> pool.intern(bitField(created, 1, 64, 65, 128))));
+            }
+            VendorConsent first = futures.get(0).get();
+            for (Future<VendorConsent> future : futures) {
+                assertThat(future.get().getVendorSection(), Matchers.sameInstance(first.getVendorSection()));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void assertInterned(VendorConsent interned, VendorConsent consent) {
+        assertThat(interned, Matchers.is(consent));
+        assertThat(interned.getConsentString(), Matchers.is(consent.getConsentString()));
+        assertThat(interned.toBytes(), Matchers.is(consent.toBytes()));
+        // kept by the interned consent instead of its encoded form
+        assertThat(interned.getFingerprint(), Matchers.is(consent.getFingerprint()));
+        assertThat(interned.getByteLength(), Matchers.is(consent.getByteLength()));
+        byte[] bytes = consent.toBytes();
+        assertThat(consent.getFingerprint(), Matchers.is(Fingerprints.of(bytes, 0, bytes.length)));
+        for (int vendorId = 0; vendorId <= consent.getMaxVendorId() + 1; vendorId++) {
+            assertThat(interned.isVendorAllowed(vendorId), Matchers.is(consent.isVendorAllowed(vendorId)));
+        }
+    }
+
+    private static VendorConsent bitField(long createdDeciseconds, Integer... vendorIds) {
+        List<Integer> bitField = new ArrayList<>();
+        for (int vendorId : vendorIds) {
+            bitField.add(vendorId - 1);
+        }
+        return header(createdDeciseconds).withMaxVendorId(300).withBitField(bitField).build();
+    }
+
+    private static VendorConsent range(long createdDeciseconds, VendorConsent.RangeEntry... entries) {
+        return header(createdDeciseconds).withMaxVendorId(300)
+                .withVendorEncodingType(GdprConstants.VENDOR_ENCODING_RANGE)
+                .withRangeEntries(Arrays.asList(entries))
+                .build();
+    }
+
+    private static VendorConsent.Builder header(long createdDeciseconds) {
+        Instant created = Instant.ofEpochMilli(createdDeciseconds * 100);
+        return new VendorConsent.Builder().withConsentRecordCreatedOn(created)
+                .withConsentRecordLastUpdatedOn(created)
+                .withConsentLanguage("EN")
+                .withVendorListVersion(12);
+    }
+}
@@ -0,0 +1,213 @@
+package com.yieldlab.gdpr.cache;
+
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import com.yieldlab.gdpr.VendorConsent;
+import com.yieldlab.gdpr.corpus.ConsentCorpusGenerator;
+import com.yieldlab.gdpr.exception.GdprException;
+
+public class TwoTierConsentCacheTest {
+    private static final String RANGE_CONSENT = "BONZt-1ONZt-1AHABBENAO-AAAAHCAEAASABmADYAOAAeA";
+    private static final String BIT_FIELD_CONSENT = "BN5lERiOMYEdiAOAWeFRAAYAAaAAptQ";
+
+    @Test
+    public void testTiers() {
+        InMemoryConsentStore store = new InMemoryConsentStore();
+        TwoTierConsentCache cache = new TwoTierConsentCache.Builder().withStore(store).build();
+
+        VendorConsent decoded = cache.get(RANGE_CONSENT);
+        VendorConsent cached = cache.get(RANGE_CONSENT);
+        TwoTierConsentCache otherNode = new TwoTierConsentCache.Builder().withStore(store).build();
+        VendorConsent stored = otherNode.get(RANGE_CONSENT + "==");
+
+        assertThat(decoded.getConsentString(), Matchers.is(RANGE_CONSENT));
+        assertThat(cached, Matchers.sameInstance(decoded));
+        assertThat(stored, Matchers.is(decoded));
+        assertThat(cache.getDecodeCount(), Matchers.is(1L));
+        assertThat(cache.getNearCacheHitCount(), Matchers.is(1L));
+        assertThat(otherNode.getStoreHitCount(), Matchers.is(1L));
+        assertThat(otherNode.getDecodeCount(), Matchers.is(0L));
+        assertThat(store.size(), Matchers.is(1));
+    }
+
+    @Test
+    public void testConcurrentMissesLoadOnce() throws Exception {
+        ManualExecutor storeExecutor = new ManualExecutor();
+        InMemoryConsentStore store = new InMemoryConsentStore(storeExecutor);
+        TwoTierConsentCache cache = new TwoTierConsentCache.Builder().withStore(store).build();
+
+        List<CompletableFuture<VendorConsent>> futures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            futures.add(cache.getAsync(RANGE_CONSENT));
+        }
+        storeExecutor.runAll();
+
+        for (CompletableFuture<VendorConsent> future : futures) {
+            assertThat(future.get(), Matchers.sameInstance(futures.get(0).get()));
+        }
+        assertThat(store.getGetAllCount(), Matchers.is(1L));
+        assertThat(cache.getDecodeCount(), Matchers.is(1L));
+        assertThat(store.getPutCount(), Matchers.is(1L));
+    }
+
+    @Test
+    public void testMissesAreBatched() throws Exception {
+        List<String> corpus = new ConsentCorpusGenerator.Builder().withSeed(42).build().generate(26);
+        ManualExecutor storeExecutor = new ManualExecutor();
+        InMemoryConsentStore store = new InMemoryConsentStore(storeExecutor);
+        TwoTierConsentCache cache = new TwoTierConsentCache.Builder().withStore(store)
+                .withBatchSize(10)
+                .withMaxConcurrentBatches(1)
+                .build();
+
+        List<CompletableFuture<VendorConsent>> futures = new ArrayList<>();
+        for (String consentString : corpus) {
+            futures.add(cache.getAsync(consentString));
+        }
+        // the first miss is looked up alone, the others queue up behind it
+        assertThat(store.getGetAllCount(), Matchers.is(1L));
+        while (storeExecutor.runAll() > 0) {
+        }
+
+        for (int i = 0; i < corpus.size(); i++) {
+            assertThat(futures.get(i).get().getConsentString(),
+                    Matchers.is(VendorConsent.fromBase64String(corpus.get(i)).getConsentString()));
+        }
+        // 1 + 10 + 10 + 5
+        assertThat(store.getGetAllCount(), Matchers.is(4L));
+    }
+
+    @Test
+    public void testInvalidConsentStringIsNotCached() throws Exception {
+        TwoTierConsentCache cache = new TwoTierConsentCache.Builder().withStore(new InMemoryConsentStore()).build();
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                cache.get(RANGE_CONSENT.substring(0, 20));
+                fail("invalid consent string decoded");
+            } catch (GdprException e) {
+                assertThat(e.getMessage(), Matchers.containsString("Error parsing"));
+            }
+        }
+        assertThat(cache.getNearCacheSize(), Matchers.is(0L));
+    }
+
+    @Test
+    public void testFailingStoreFallsBackToDecoding() throws ExecutionException, InterruptedException {
+        ConsentStore failing = new ConsentStore() {
+            @Override
+            public CompletableFuture<Map<Long, byte[]>> getAll(long[] fingerprints) {
+                CompletableFuture<Map<Long, byte[]>> future = new CompletableFuture<>();
+                future.completeExceptionally(new IllegalStateException("store down"));
+                return future;
+            }
+
+            @Override
+            public CompletableFuture<Void> put(long fingerprint, byte[] entry) {
+                throw new IllegalStateException("store down");
+            }
+        };
+        TwoTierConsentCache cache = new TwoTierConsentCache.Builder().withStore(failing).build();
+
+        assertThat(cache.getAsync(RANGE_CONSENT).get().getConsentString(), Matchers.is(RANGE_CONSENT));
+        assertThat(cache.getDecodeCount(), Matchers.is(1L));
+    }
+
+    @Test
+    public void testCollidingFingerprintsDoNotShareConsents() {
+        // every fingerprint collides: the store keeps a single entry
+        AtomicReference<byte[]> stored = new AtomicReference<>();
+        ConsentStore colliding = new ConsentStore() {
+            @Override
+            public CompletableFuture<Map<Long, byte[]>> getAll(long[] fingerprints) {
+                Map<Long, byte[]> found = new HashMap<>();
+                if (stored.get() != null) {
+                    for (long fingerprint : fingerprints) {
+                        found.put(fingerprint, stored.get());
+                    }
+                }
+                return CompletableFuture.completedFuture(found);
+            }
+
+            @Override
+            public CompletableFuture<Void> put(long fingerprint, byte[] entry) {
+                stored.set(entry);
+                return CompletableFuture.completedFuture(null);
+            }
+        };
+        TwoTierConsentCache popular = new TwoTierConsentCache.Builder().withStore(colliding).build();
+        TwoTierConsentCache crafted = new TwoTierConsentCache.Builder().withStore(colliding).build();
+        TwoTierConsentCache other = new TwoTierConsentCache.Builder().withStore(colliding).build();
+
+        popular.get(RANGE_CONSENT);
+        byte[] entry = stored.get();
+        VendorConsent bitField = crafted.get(BIT_FIELD_CONSENT);
+        VendorConsent range = other.get(RANGE_CONSENT);
+
+        assertThat(bitField.getConsentString(), Matchers.is(BIT_FIELD_CONSENT));
+        assertThat(crafted.getCollisionCount(), Matchers.is(1L));
+        assertThat(crafted.getStoreHitCount(), Matchers.is(0L));
+        assertThat(crafted.getDecodeCount(), Matchers.is(1L));
+        assertThat(stored.get(), Matchers.sameInstance(entry));
+        assertThat(range.getConsentString(), Matchers.is(RANGE_CONSENT));
+        assertThat(other.getStoreHitCount(), Matchers.is(1L));
+    }
+
+    @Test
+    public void testEntry() {
+        VendorConsent consent = VendorConsent.fromBase64String(RANGE_CONSENT);
+        byte[] consentBytes = consent.toBytes();
+
+        byte[] entry = TwoTierConsentCache.entry(RANGE_CONSENT + "==", consent);
+
+        int offset = TwoTierConsentCache.consentOffset(entry, RANGE_CONSENT);
+        assertThat(offset, Matchers.is(4 + RANGE_CONSENT.length()));
+        assertThat(Arrays.copyOfRange(entry, offset, entry.length), Matchers.is(consentBytes));
+        assertThat(TwoTierConsentCache.consentOffset(entry, RANGE_CONSENT + "="), Matchers.is(offset));
+        assertThat(TwoTierConsentCache.consentOffset(entry, RANGE_CONSENT.substring(1)), Matchers.is(-1));
+        assertThat(TwoTierConsentCache.consentOffset(entry, BIT_FIELD_CONSENT), Matchers.is(-1));
+        assertThat(TwoTierConsentCache.consentOffset(consentBytes, RANGE_CONSENT), Matchers.is(-1));
+    }
+
+    @Test
+    public void testFingerprintIgnoresPadding() {
+        assertThat(TwoTierConsentCache.fingerprint(RANGE_CONSENT + "="),
+                Matchers.is(TwoTierConsentCache.fingerprint(RANGE_CONSENT)));
+        assertThat(TwoTierConsentCache.fingerprint(RANGE_CONSENT.substring(1)),
+                Matchers.not(TwoTierConsentCache.fingerprint(RANGE_CONSENT)));
+    }
+
+    // runs the submitted tasks when asked to
+    private static class ManualExecutor implements Executor {
+        private final List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public synchronized void execute(Runnable task) {
+            tasks.add(task);
+        }
+
+        int runAll() {
+            List<Runnable> run;
+            synchronized (this) {
+                run = new ArrayList<>(tasks);
+                tasks.clear();
+            }
+            run.forEach(Runnable::run);
+            return run.size();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.yieldlab.gdpr.cache;
+
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.hamcrest.Matchers;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.yieldlab.gdpr.VendorConsent;
+
+public class WarmStartTest {
+    private static final String RANGE_CONSENT = "BONZt-1ONZt-1AHABBENAO-AAAAHCAEAASABmADYAOAAeA";
+    private static final String BIT_FIELD_CONSENT = "BN5lERiOMYEdiAOAWeFRAAYAAaAAptQ";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSnapshotRoundTrip() throws IOException {
+        Path path = new File(folder.getRoot(), "consents.snapshot").toPath();
+        Map<String, VendorConsent> consents = new LinkedHashMap<>();
+        consents.put(RANGE_CONSENT, VendorConsent.fromBase64String(RANGE_CONSENT));
+        consents.put(BIT_FIELD_CONSENT, VendorConsent.fromBase64String(BIT_FIELD_CONSENT));
+
+        assertThat(WarmStartSnapshot.write(path, consents), Matchers.is(2));
+        Map<String, VendorConsent> read = new LinkedHashMap<>();
+        assertThat(WarmStartSnapshot.read(path, read::put), Matchers.is(2));
+
+        assertThat(read.keySet(), Matchers.contains(RANGE_CONSENT, BIT_FIELD_CONSENT));
+        assertThat(read.get(RANGE_CONSENT), Matchers.is(consents.get(RANGE_CONSENT)));
+        assertThat(read.get(BIT_FIELD_CONSENT), Matchers.is(consents.get(BIT_FIELD_CONSENT)));
+        assertThat(folder.getRoot().list(), Matchers.arrayWithSize(1));
+    }
+
+    @Test
+    public void testTruncatedSnapshot() throws IOException {
+        Path path = new File(folder.getRoot(), "consents.snapshot").toPath();
+        Map<String, VendorConsent> consents = new LinkedHashMap<>();
+        consents.put(RANGE_CONSENT, VendorConsent.fromBase64String(RANGE_CONSENT));
+        WarmStartSnapshot.write(path, consents);
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 3));
+
+        try {
+            WarmStartSnapshot.read(path, (consentString, consent) -> fail());
+            fail();
+        } catch (IOException e) {
+            assertThat(e.getMessage(), Matchers.endsWith("is truncated"));
+        }
+    }
+
+    @Test
+    public void testHottest() {
+        TwoTierConsentCache cache = new TwoTierConsentCache.Builder().withStore(new InMemoryConsentStore()).build();
+        cache.get(RANGE_CONSENT);
+        for (int i = 0; i < 3; i++) {
+            cache.get(BIT_FIELD_CONSENT);
+        }
+
+        assertThat(cache.hottest(2).keySet(), Matchers.contains(BIT_FIELD_CONSENT, RANGE_CONSENT));
+        assertThat(cache.hottest(1).keySet(), Matchers.contains(BIT_FIELD_CONSENT));
+    }
+
+    @Test
+    public void testSaveAndPreload() throws IOException {
+        Path path = new File(folder.getRoot(), "consents.snapshot").toPath();
+        TwoTierConsentCache cache = new TwoTierConsentCache.Builder().withStore(new InMemoryConsentStore()).build();
+        cache.get(RANGE_CONSENT);
+        cache.get(BIT_FIELD_CONSENT);
+        WarmStart previous = new WarmStart.Builder().withCache(cache).withSnapshot(path).build();
+        assertThat(previous.save(), Matchers.is(2));
+
+        InMemoryConsentStore store = new InMemoryConsentStore();
+        TwoTierConsentCache restarted = new TwoTierConsentCache.Builder().withStore(store).build();
+        WarmStart warmStart = new WarmStart.Builder().withCache(restarted)
+                .withSnapshot(path)
+                .withWarmUpDuration(Duration.ofMillis(50))
+                .build();
+        assertThat(warmStart.isReady(), Matchers.is(false));
+        warmStart.run();
+
+        assertThat(warmStart.isReady(), Matchers.is(true));
+        assertThat(warmStart.getPreloadedCount(), Matchers.is(2));
+        assertThat(restarted.getNearCacheSize(), Matchers.is(2L));
+        assertThat(restarted.get(RANGE_CONSENT).getConsentString(), Matchers.is(RANGE_CONSENT));
+        assertThat(restarted.getNearCacheHitCount(), Matchers.is(1L));
+        assertThat(store.getGetAllCount(), Matchers.is(0L));
+    }
+
+    @Test
+    public void testStartWithoutSnapshot() {
+        Path path = new File(folder.getRoot(), "missing.snapshot").toPath();
+        TwoTierConsentCache cache = new TwoTierConsentCache.Builder().withStore(new InMemoryConsentStore()).build();
+        WarmStart warmStart = new WarmStart.Builder().withCache(cache)
+                .withSnapshot(path)
+                .withWarmUpDuration(Duration.ofMillis(50))
+                .build();
+
+        warmStart.start(Runnable::run).join();
+
+        assertThat(warmStart.isReady(), Matchers.is(true));
+        assertThat(warmStart.getPreloadedCount(), Matchers.is(0));
+        assertThat(warmStart.getLastFailure(), Matchers.nullValue());
+        assertThat(cache.getNearCacheSize(), Matchers.is(0L));
+    }
+
+    @Test
+    public void testStartWithCorruptSnapshot() throws IOException {
+        Path path = new File(folder.getRoot(), "corrupt.snapshot").toPath();
+        Files.write(path, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+        TwoTierConsentCache cache = new TwoTierConsentCache.Builder().withStore(new InMemoryConsentStore()).build();
+        WarmStart warmStart = new WarmStart.Builder().withCache(cache)
+                .withSnapshot(path)
+                .withWarmUpDuration(Duration.ZERO)
+                .build();
+
+        warmStart.run();
+
+        assertThat(warmStart.isReady(), Matchers.is(true));
+        assertThat(warmStart.getLastFailure().getMessage(), Matchers.endsWith("is not a warm start snapshot"));
+    }
+}
@@ -0,0 +1,76 @@
+package com.yieldlab.gdpr.corpus;
+
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.StringWriter;
+import java.util.List;
+
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import com.yieldlab.gdpr.GdprConstants;
+import com.yieldlab.gdpr.VendorConsent;
+
+public class ConsentCorpusGeneratorTest {
+    @Test
+    public void testSameSeedSameCorpus() throws Exception {
+        List<String> corpus = generator(7).withMalformedShare(0.1).build().generate(200);
+        StringWriter writer = new StringWriter();
+
+        generator(7).withMalformedShare(0.1).build().writeTo(writer, 200);
+
+        assertThat(writer.toString(), Matchers.is(String.join("\n", corpus) + "\n"));
+        assertThat(generator(8).build().generate(200), Matchers.not(corpus));
+    }
+
+    @Test
+    public void testGeneratedConsentsRoundTrip() {
+        ConsentCorpusGenerator generator = generator(1).withRangeEncodingShare(0.5)
+                .withMaxVendorIdBetween(1, 3000)
+                .withMeanRunLength(8)
+                .build();
+        int range = 0;
+        for (String consentString : generator.generate(2000)) {
+            VendorConsent consent = VendorConsent.fromBase64String(consentString);
+            assertThat(consent.getConsentString(), Matchers.is(consentString));
+            if (consent.getVendorEncodingType() == GdprConstants.VENDOR_ENCODING_RANGE) {
+                range++;
+            }
+        }
+        assertThat(range, Matchers.greaterThan(800));
+        assertThat(range, Matchers.lessThan(2000));
+    }
+
+    @Test
+    public void testVendorDensity() {
+        ConsentCorpusGenerator generator = generator(3).withAcceptAllRejectAllShares(0, 0)
+                .withVendorDensity(0.25)
+                .withMaxVendorIdBetween(1000, 1000)
+                .build();
+        long allowed = 0;
+        for (int i = 0; i < 200; i++) {
+            VendorConsent consent = generator.nextConsent();
+            for (int vendorId = 1; vendorId <= 1000; vendorId++) {
+                allowed += consent.isVendorAllowed(vendorId) ? 1 : 0;
+            }
+        }
+        assertThat(allowed / 200.0 / 1000, Matchers.closeTo(0.25, 0.05));
+    }
+
+    @Test
+    public void testMalformedStringsDoNotParse() {
+        for (String consentString : generator(5).withMalformedShare(1.0).build().generate(500)) {
+            try {
+                VendorConsent.fromBase64String(consentString);
+                fail("parsed malformed consent string " + consentString);
+            } catch (RuntimeException expected) {
+                // truncated or invalid input
+            }
+        }
+    }
+
+    private static ConsentCorpusGenerator.Builder generator(long seed) {
+        return new ConsentCorpusGenerator.Builder().withSeed(seed);
+    }
+}
@@ -0,0 +1,138 @@
+package com.yieldlab.gdpr.evaluation;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import com.yieldlab.gdpr.VendorConsent;
+import com.yieldlab.gdpr.vendor.Vendor;
+import com.yieldlab.gdpr.vendor.VendorList;
+
+public class ConsentEvaluatorTest {
+    private static final String BIT_FIELD_CONSENT = "BN5lERiOMYEdiAOAWeFRAAYAAaAAptQ";
+    private static final String RANGE_CONSENT = "BN5lERiOMYEdiAKAWXEND1HoSBE6CAFAApAMgBkIDIgM0AgOJxAnQA";
+
+    @Test
+    public void testMatchesPerVendorEvaluation() {
+        VendorList vendorList = vendorList(600);
+        ConsentEvaluator evaluator = ConsentEvaluator.compile(vendorList);
+        ConsentEvaluation evaluation = evaluator.newEvaluation();
+
+        for (String consentString : Arrays.asList(BIT_FIELD_CONSENT, RANGE_CONSENT)) {
+            VendorConsent consent = VendorConsent.fromBase64String(consentString);
+            evaluation.evaluate(consent);
+
+            int expectedCount = 0;
+            for (Vendor vendor : vendorList.getVendors()) {
+                boolean expected = hasLegalBasis(consent, vendor);
+                assertThat("vendor " + vendor.getId(), evaluation.isVendorAllowed(vendor.getId()),
+                        Matchers.is(expected));
+                expectedCount += expected ? 1 : 0;
+            }
+            assertThat(evaluation.cardinality(), Matchers.is(expectedCount));
+            assertThat(evaluation.toBitSet().cardinality(), Matchers.is(expectedCount));
+        }
+    }
+
+    @Test
+    public void testSubsetOfVendors() {
+        VendorList vendorList = vendorList(600);
+        // 11 and 220 declare legitimate interest purposes only, 225 and 515 have consent but miss purpose 2
+        List<Integer> subset = Arrays.asList(11, 220, 225, 515, 411, 9999);
+        ConsentEvaluator evaluator = ConsentEvaluator.compile(vendorList, subset);
+        VendorConsent consent = VendorConsent.fromBase64String(RANGE_CONSENT);
+
+        ConsentEvaluation evaluation = evaluator.evaluate(consent);
+
+        assertThat(evaluator.getMaxVendorId(), Matchers.is(515));
+        assertTrue(evaluator.isCompiled(411));
+        assertFalse(evaluator.isCompiled(9999));
+        List<Integer> expected = new ArrayList<>();
+        for (Vendor vendor : vendorList.getVendors()) {
+            if (subset.contains(vendor.getId()) && hasLegalBasis(consent, vendor)) {
+                expected.add(vendor.getId());
+            }
+        }
+        List<Integer> allowed = new ArrayList<>();
+        evaluation.forEachAllowedVendor(allowed::add);
+        assertThat(expected, Matchers.contains(11, 220));
+        assertThat(allowed, Matchers.is(expected));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsVendorIdZero() {
+        VendorList vendorList = new VendorList();
+        vendorList.setVendors(Arrays.asList(vendor(0, Arrays.asList(1), Collections.emptyList())));
+
+        ConsentEvaluator.compile(vendorList);
+    }
+
+    @Test
+    public void testLegitimateInterestOnlyVendorNeedsNoConsent() {
+        VendorList vendorList = new VendorList();
+        vendorList.setVendors(Arrays.asList(vendor(3, Collections.emptyList(), Arrays.asList(1, 2)),
+                vendor(4, Arrays.asList(1), Arrays.asList(2))));
+        VendorConsent consent = VendorConsent.fromBase64String(RANGE_CONSENT);
+
+        ConsentEvaluation evaluation = ConsentEvaluator.compile(vendorList).evaluate(consent);
+
+        assertFalse(consent.isVendorAllowed(3));
+        assertTrue(evaluation.isVendorAllowed(3));
+        assertFalse(evaluation.isVendorAllowed(4));
+    }
+
+    private static boolean hasLegalBasis(VendorConsent consent, Vendor vendor) {
+        if (vendor.getPurposeIds().isEmpty() && !vendor.getLegIntPurposeIds().isEmpty()) {
+            return true;
+        }
+        if (!consent.isVendorAllowed(vendor.getId())) {
+            return false;
+        }
+        for (int purposeId : vendor.getPurposeIds()) {
+            if (!consent.isPurposeAllowed(purposeId)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static VendorList vendorList(int vendorCount) {
+        List<Vendor> vendors = new ArrayList<>();
+        for (int id = 1; id <= vendorCount; id++) {
+            List<Integer> purposeIds = new ArrayList<>();
+            List<Integer> legIntPurposeIds = new ArrayList<>();
+            for (int purposeId = 1; purposeId <= 5; purposeId++) {
+                int choice = (id * 7 + purposeId * 13) % 5;
+                if (choice < 2) {
+                    purposeIds.add(purposeId);
+                } else if (choice == 2 || id % 11 == 0) {
+                    legIntPurposeIds.add(purposeId);
+                }
+            }
+            if (id % 11 == 0) {
+                purposeIds.clear();
+            }
+            vendors.add(vendor(id, purposeIds, legIntPurposeIds));
+        }
+        VendorList vendorList = new VendorList();
+        vendorList.setVendorListVersion(42);
+        vendorList.setVendors(vendors);
+        return vendorList;
+    }
+
+    private static Vendor vendor(int id, List<Integer> purposeIds, List<Integer> legIntPurposeIds) {
+        Vendor vendor = new Vendor();
+        vendor.setId(id);
+        vendor.setPurposeIds(purposeIds);
+        vendor.setLegIntPurposeIds(legIntPurposeIds);
+        return vendor;
+    }
+}
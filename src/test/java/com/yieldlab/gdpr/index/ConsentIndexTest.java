@@ -0,0 +1,123 @@
+package com.yieldlab.gdpr.index;
+
+import static org.junit.Assert.assertThat;
+
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+import org.hamcrest.Matchers;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.yieldlab.gdpr.VendorConsent;
+import com.yieldlab.gdpr.corpus.ConsentCorpusGenerator;
+
+public class ConsentIndexTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testQueriesMatchScan() {
+        List<VendorConsent> consents = consents(2000);
+        ConsentIndex index = new ConsentIndex();
+        index.addAll(IntStream.range(0, consents.size())
+                .mapToObj(user -> new AbstractMap.SimpleImmutableEntry<>(user * 3, consents.get(user))));
+
+        assertThat(index.size(), Matchers.is(2000L));
+        assertQuery(index, consents, 3, IndexQuery.vendor(8), consent -> consent.isVendorAllowed(8));
+        assertQuery(index, consents, 3, IndexQuery.vendor(8).and(IndexQuery.purpose(1)),
+                consent -> consent.isVendorAllowed(8) && consent.isPurposeAllowed(1));
+        assertQuery(index, consents, 3,
+                IndexQuery.allOf(IndexQuery.vendor(2), IndexQuery.vendor(30), IndexQuery.purpose(3)),
+                consent -> consent.isVendorAllowed(2) && consent.isVendorAllowed(30) && consent.isPurposeAllowed(3));
+        assertQuery(index, consents, 3, IndexQuery.vendor(10).or(IndexQuery.vendor(500).and(IndexQuery.purpose(5))),
+                consent -> consent.isVendorAllowed(10) || consent.isVendorAllowed(500) && consent.isPurposeAllowed(5));
+        assertQuery(index, consents, 3, IndexQuery.vendor(60000), consent -> false);
+    }
+
+    @Test
+    public void testUpdateAndRemove() {
+        List<VendorConsent> consents = consents(300);
+        ConsentIndex index = new ConsentIndex();
+        for (int user = 0; user < 200; user++) {
+            index.add(user, consents.get(user));
+        }
+        List<VendorConsent> expected = new ArrayList<>(consents.subList(0, 200));
+        for (int user = 0; user < 200; user += 2) {
+            index.update(user, consents.get(200 + user / 2));
+            expected.set(user, consents.get(200 + user / 2));
+        }
+        for (int user = 1; user < 200; user += 4) {
+            assertThat(index.remove(user), Matchers.is(true));
+            expected.set(user, null);
+        }
+
+        assertThat(index.remove(1), Matchers.is(false));
+        assertThat(index.contains(1), Matchers.is(false));
+        assertThat(index.size(), Matchers.is(150L));
+        assertQuery(index, expected, 1, IndexQuery.vendor(8).or(IndexQuery.purpose(2)),
+                consent -> consent != null && (consent.isVendorAllowed(8) || consent.isPurposeAllowed(2)));
+    }
+
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        List<VendorConsent> consents = consents(500);
+        ConsentIndex index = new ConsentIndex();
+        for (int user = 0; user < consents.size(); user++) {
+            index.add(user + 100000, consents.get(user));
+        }
+        Path file = folder.getRoot().toPath().resolve("consents.index");
+        index.save(file);
+        index.save(file);
+
+        ConsentIndex loaded = ConsentIndex.load(file);
+
+        assertThat(loaded.size(), Matchers.is(index.size()));
+        for (int vendorId = 1; vendorId < 1000; vendorId += 7) {
+            IndexQuery query = IndexQuery.vendor(vendorId).and(IndexQuery.purpose(vendorId % 24 + 1));
+            assertThat(loaded.evaluate(query), Matchers.is(index.evaluate(query)));
+        }
+        assertThat(folder.getRoot().list(), Matchers.arrayContaining("consents.index"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddTwice() {
+        VendorConsent consent = consents(1).get(0);
+        ConsentIndex index = new ConsentIndex();
+        index.add(1, consent);
+        index.add(1, consent);
+    }
+
+    // consent i was indexed as user i * stride
+    private static void assertQuery(ConsentIndex index, List<VendorConsent> consents, int stride, IndexQuery query,
+            Predicate<VendorConsent> predicate) {
+        OrdinalBitmap result = index.evaluate(query);
+        long expected = 0;
+        for (int user = 0; user < consents.size(); user++) {
+            boolean matches = predicate.test(consents.get(user));
+            assertThat(query + " user " + user, result.contains(user * stride), Matchers.is(matches));
+            if (matches) {
+                expected++;
+            }
+        }
+        assertThat(index.count(query), Matchers.is(expected));
+        assertThat(result.cardinality(), Matchers.is(expected));
+    }
+
+    private static List<VendorConsent> consents(int count) {
+        ConsentCorpusGenerator generator = new ConsentCorpusGenerator.Builder().withSeed(33)
+                .withRangeEncodingShare(0.4)
+                .withMaxVendorIdBetween(50, 700)
+                .build();
+        List<VendorConsent> consents = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            consents.add(generator.nextConsent());
+        }
+        return consents;
+    }
+}
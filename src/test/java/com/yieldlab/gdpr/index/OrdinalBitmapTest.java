@@ -0,0 +1,106 @@
+package com.yieldlab.gdpr.index;
+
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+public class OrdinalBitmapTest {
+    @Test
+    public void testMatchesTreeSet() {
+        Random random = new Random(33);
+        OrdinalBitmap bitmap = new OrdinalBitmap();
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int i = 0; i < 50000; i++) {
+            // dense first chunk, sparse chunks further up
+            int ordinal = random.nextBoolean() ? random.nextInt(8000) : random.nextInt(1 << 20);
+            if (random.nextInt(4) == 0) {
+                assertThat(bitmap.remove(ordinal), Matchers.is(expected.remove(ordinal)));
+            } else {
+                assertThat(bitmap.add(ordinal), Matchers.is(expected.add(ordinal)));
+            }
+        }
+
+        assertThat(bitmap.cardinality(), Matchers.is((long) expected.size()));
+        assertThat(bitmap.toArray(), Matchers.is(expected.stream().mapToInt(Integer::intValue).toArray()));
+        for (int ordinal = 0; ordinal < 10000; ordinal++) {
+            assertThat(bitmap.contains(ordinal), Matchers.is(expected.contains(ordinal)));
+        }
+    }
+
+    @Test
+    public void testDenseChunkShrinksBackToArray() {
+        OrdinalBitmap bitmap = new OrdinalBitmap();
+        for (int ordinal = 0; ordinal <= OrdinalBitmap.ARRAY_MAX; ordinal++) {
+            bitmap.add(ordinal * 2);
+        }
+        for (int ordinal = 0; ordinal <= OrdinalBitmap.ARRAY_MAX; ordinal++) {
+            assertThat(bitmap.remove(ordinal * 2), Matchers.is(true));
+        }
+
+        assertThat(bitmap.isEmpty(), Matchers.is(true));
+        assertThat(bitmap.remove(0), Matchers.is(false));
+    }
+
+    @Test
+    public void testAndOr() {
+        Random random = new Random(34);
+        for (int round = 0; round < 20; round++) {
+            OrdinalBitmap a = new OrdinalBitmap();
+            OrdinalBitmap b = new OrdinalBitmap();
+            TreeSet<Integer> left = new TreeSet<>();
+            TreeSet<Integer> right = new TreeSet<>();
+            int bound = round % 2 == 0 ? 200000 : 20000;
+            for (int i = 0; i < 6000 * (round % 4 + 1); i++) {
+                int x = random.nextInt(bound);
+                int y = random.nextInt(bound);
+                a.add(x);
+                left.add(x);
+                b.add(y);
+                right.add(y);
+            }
+            TreeSet<Integer> intersection = new TreeSet<>(left);
+            intersection.retainAll(right);
+            TreeSet<Integer> union = new TreeSet<>(left);
+            union.addAll(right);
+
+            assertThat(OrdinalBitmap.and(a, b).toArray(), Matchers.is(toArray(intersection)));
+            assertThat(OrdinalBitmap.andCardinality(a, b), Matchers.is((long) intersection.size()));
+            assertThat(OrdinalBitmap.or(a, b).toArray(), Matchers.is(toArray(union)));
+            assertThat(OrdinalBitmap.or(a, b), Matchers.is(OrdinalBitmap.or(b, a)));
+        }
+    }
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+        Random random = new Random(35);
+        OrdinalBitmap bitmap = new OrdinalBitmap();
+        for (int i = 0; i < 30000; i++) {
+            bitmap.add(random.nextInt(100000));
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bitmap.writeTo(new DataOutputStream(bytes));
+
+        OrdinalBitmap read = OrdinalBitmap.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertThat(read, Matchers.is(bitmap));
+        assertThat(read.toArray(), Matchers.is(bitmap.toArray()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeOrdinal() {
+        new OrdinalBitmap().add(-1);
+    }
+
+    private static int[] toArray(TreeSet<Integer> set) {
+        return set.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -0,0 +1,126 @@
+package com.yieldlab.gdpr.jackson;
+
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yieldlab.gdpr.ParseLimits;
+import com.yieldlab.gdpr.VendorConsent;
+import com.yieldlab.gdpr.corpus.ConsentCorpusGenerator;
+
+public class VendorConsentModuleTest {
+    private static final String RANGE_CONSENT = "BONZt-1ONZt-1AHABBENAO-AAAAHCAEAASABmADYAOAAeA";
+
+    private final ObjectMapper mapper = new ObjectMapper().registerModule(new VendorConsentModule());
+
+    public static class User {
+        public String id;
+        public VendorConsent consent;
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        User user = mapper.readValue("{\"id\":\"u1\",\"consent\":\"" + RANGE_CONSENT + "\"}", User.class);
+
+        assertThat(user.consent.getConsentString(), Matchers.is(RANGE_CONSENT));
+        assertThat(user.consent.isVendorAllowed(27), Matchers.is(true));
+        assertThat(user.consent.isVendorAllowed(29), Matchers.is(false));
+        assertThat(mapper.writeValueAsString(user),
+                Matchers.is("{\"id\":\"u1\",\"consent\":\"" + RANGE_CONSENT + "\"}"));
+    }
+
+    @Test
+    public void testNull() throws Exception {
+        User user = mapper.readValue("{\"id\":\"u1\",\"consent\":null}", User.class);
+
+        assertThat(user.consent, Matchers.nullValue());
+        assertThat(mapper.writeValueAsString(user), Matchers.is("{\"id\":\"u1\",\"consent\":null}"));
+    }
+
+    @Test
+    public void testPaddedConsentString() throws Exception {
+        String padded = "BN5lERiOMYEdiAOAWeFRAAYAAaAAptQ=";
+
+        assertThat(mapper.readValue('"' + padded + '"', VendorConsent.class).getConsentString(),
+                Matchers.is(VendorConsent.fromBase64String(padded).getConsentString()));
+    }
+
+    @Test
+    public void testInvalidConsentString() throws Exception {
+        assertFails("\"BONZt-1ONZt-1A!HABBENAO\"", "Cannot deserialize VendorConsent");
+        assertFails("\"BONZ\"", "Cannot deserialize VendorConsent");
+        assertFails("\"\"", "Cannot deserialize VendorConsent");
+        assertFails("42", "VendorConsent");
+    }
+
+    @Test
+    public void testMessageHoldsPrefixOfConsentString() throws Exception {
+        StringBuilder overlong = new StringBuilder(RANGE_CONSENT);
+        while (overlong.length() < 100_000) {
+            overlong.append('A');
+        }
+
+        try {
+            mapper.readValue(('"' + overlong.toString() + '"').getBytes(StandardCharsets.US_ASCII),
+                    VendorConsent.class);
+            fail("overlong consent string deserialized");
+        } catch (JsonMappingException e) {
+            assertThat(e.getMessage(), Matchers.containsString(
+                    "consent string of 100000 characters starting with \"" + RANGE_CONSENT.substring(0, 16) + "\""));
+            assertThat(e.getMessage(), Matchers.not(Matchers.containsString(RANGE_CONSENT.substring(0, 17))));
+        }
+    }
+
+    @Test
+    public void testLimits() throws Exception {
+        ObjectMapper limited = new ObjectMapper().registerModule(
+                new VendorConsentModule(new ParseLimits.Builder().withMaxRangeEntries(1).build()));
+
+        try {
+            limited.readValue('"' + RANGE_CONSENT + '"', VendorConsent.class);
+            fail("limit not enforced");
+        } catch (JsonMappingException e) {
+            assertThat(e.getCause().getCause().getMessage(), Matchers.containsString("range entries exceed"));
+        }
+    }
+
+    @Test
+    public void testMatchesStringDecoding() throws Exception {
+        List<String> corpus = new ConsentCorpusGenerator.Builder().withSeed(40)
+                .withRangeEncodingShare(0.5)
+                .withMalformedShare(0.2)
+                .build()
+                .generate(2000);
+
+        for (String consentString : corpus) {
+            String expected;
+            try {
+                expected = VendorConsent.fromBase64String(consentString).getConsentString();
+            } catch (RuntimeException e) {
+                expected = null;
+            }
+            try {
+                VendorConsent consent = mapper.readValue('"' + consentString + '"', VendorConsent.class);
+                assertThat(consentString, consent.getConsentString(), Matchers.is(expected));
+            } catch (JsonMappingException e) {
+                assertThat(consentString, expected, Matchers.nullValue());
+            }
+        }
+    }
+
+    private void assertFails(String json, String message) throws Exception {
+        try {
+            mapper.readValue(json, VendorConsent.class);
+            fail("deserialized " + json);
+        } catch (JsonMappingException e) {
+            assertThat(e.getMessage(), Matchers.containsString(message));
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.yieldlab.gdpr.migration;
+
+import static org.junit.Assert.assertThat;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import com.yieldlab.gdpr.VendorConsent;
+import com.yieldlab.gdpr.corpus.ConsentCorpusGenerator;
+import com.yieldlab.gdpr.vendor.Vendor;
+import com.yieldlab.gdpr.vendor.VendorList;
+
+public class ConsentMigrationTest {
+    private static final String RANGE_CONSENT = "BONZt-1ONZt-1AHABBENAO-AAAAHCAEAASABmADYAOAAeA";
+    private static final String BIT_FIELD_CONSENT = "BN5lERiOMYEdiAOAWeFRAAYAAaAAptQ";
+
+    @Test
+    public void testMatchesRecordByRecordRebuild() throws Exception {
+        VendorList vendorList = vendorList(300, 700);
+        List<String> consentStrings = new ConsentCorpusGenerator.Builder().withSeed(46)
+                .withMaxVendorIdBetween(1, 600)
+                .build()
+                .generate(1000);
+        Instant lastUpdated = Instant.ofEpochSecond(1540000000);
+        List<MigrationPolicy> policies = Arrays.asList(MigrationPolicy.DEFAULT,
+                new MigrationPolicy.Builder().withNewVendorsAllowed(true)
+                        .withConsentRecordLastUpdated(lastUpdated)
+                        .build(),
+                new MigrationPolicy.Builder().withRemovedVendorsDropped(false)
+                        .withVendorListVersionBumped(false)
+                        .build());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (MigrationPolicy policy : policies) {
+                ConsentMigration migration = new ConsentMigration.Builder().withVendorList(vendorList)
+                        .withPolicy(policy)
+                        .withExecutor(executor)
+                        .withChunkSize(7)
+                        .withMaxChunksInFlight(3)
+                        .build();
+
+                List<String> migrated = migration.migrateAll(consentStrings);
+
+                assertThat(migrated.size(), Matchers.is(consentStrings.size()));
+                for (int i = 0; i < consentStrings.size(); i++) {
+                    VendorConsent expected = rebuild(VendorConsent.fromBase64String(consentStrings.get(i)), vendorList,
+                            policy);
+                    assertMigrated(VendorConsent.fromBase64String(migrated.get(i)), expected);
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testSmallestForm() {
+        VendorList vendorList = new VendorList();
+        vendorList.setVendorListVersion(300);
+        for (int id = 1; id <= 600; id++) {
+            // vendors 100 to 199 left the list
+            if (id < 100 || id >= 200) {
+                Vendor vendor = new Vendor();
+                vendor.setId(id);
+                vendorList.getVendors().add(vendor);
+            }
+        }
+        VendorConsent acceptAll = new VendorConsent.Builder().withConsentRecordCreatedOn(Instant.EPOCH)
+                .withConsentRecordLastUpdatedOn(Instant.EPOCH)
+                .withConsentLanguage("EN")
+                .withVendorListVersion(200)
+                .withMaxVendorId(400)
+                .withVendorEncodingType(1)
+                .withDefaultConsent(true)
+                .withRangeEntries(new ArrayList<>())
+                .build();
+        ConsentMigrator migrator = new ConsentMigration.Builder().withVendorList(vendorList)
+                .withPolicy(new MigrationPolicy.Builder().withNewVendorsAllowed(true).build())
+                .build()
+                .newMigrator();
+
+        VendorConsent migrated = migrator.migrate(acceptAll);
+        VendorConsent expected = rebuild(acceptAll, vendorList,
+                new MigrationPolicy.Builder().withNewVendorsAllowed(true).build());
+
+        assertMigrated(migrated, expected);
+        // the removed vendors are the one range entry of a default consent
+        assertThat(migrated.getVendorEncodingType(), Matchers.is(1));
+        assertThat(migrated.isDefaultConsent(), Matchers.is(true));
+        assertThat(migrated.getRangeEntries().size(), Matchers.is(1));
+        assertThat(migrated.getByteLength(), Matchers.lessThan(expected.getByteLength()));
+    }
+
+    @Test
+    public void testMigrateLines() throws IOException {
+        ConsentMigration migration = new ConsentMigration.Builder().withVendorList(vendorList(300, 600))
+                .withFailureHandler((consentString, e) -> failures.add(consentString))
+                .withChunkSize(1)
+                .build();
+        String input = RANGE_CONSENT + "\nnot a consent\n" + BIT_FIELD_CONSENT + "\n";
+
+        StringWriter out = new StringWriter();
+        long count = migration.migrate(new BufferedReader(new StringReader(input)), out);
+
+        String[] lines = out.toString().split("\n");
+        assertThat(count, Matchers.is(3L));
+        assertThat(lines.length, Matchers.is(3));
+        assertThat(lines[0], Matchers.is(migration.newMigrator().migrate(RANGE_CONSENT)));
+        assertThat(lines[1], Matchers.is("not a consent"));
+        assertThat(lines[2], Matchers.is(migration.newMigrator().migrate(BIT_FIELD_CONSENT)));
+        assertThat(VendorConsent.fromBase64String(lines[2]).getVendorListVersion(), Matchers.is(300));
+        assertThat(failures, Matchers.contains("not a consent"));
+    }
+
+    private final List<String> failures = new ArrayList<>();
+
+    // the straightforward migration: vendor by vendor, always encoded as a bit field
+    private static VendorConsent rebuild(VendorConsent consent, VendorList vendorList, MigrationPolicy policy) {
+        Set<Integer> listed = new HashSet<>();
+        int listMax = 0;
+        for (Vendor vendor : vendorList.getVendors()) {
+            listed.add(vendor.getId());
+            listMax = Math.max(listMax, vendor.getId());
+        }
+        Set<Integer> allowed = new HashSet<>();
+        for (int vendorId = 1; vendorId <= consent.getMaxVendorId(); vendorId++) {
+            if (consent.isVendorAllowed(vendorId)) {
+                allowed.add(vendorId);
+            }
+        }
+        if (policy.isNewVendorsAllowed()) {
+            for (int vendorId : listed) {
+                if (vendorId > consent.getMaxVendorId()) {
+                    allowed.add(vendorId);
+                }
+            }
+        }
+        if (policy.isRemovedVendorsDropped()) {
+            allowed.retainAll(listed);
+        }
+        int maxVendorId = listMax;
+        List<Integer> bitField = new ArrayList<>();
+        for (int vendorId : allowed) {
+            maxVendorId = Math.max(maxVendorId, vendorId);
+            bitField.add(vendorId - 1);
+        }
+        return new VendorConsent.Builder().withVersion(consent.getVersion())
+                .withConsentRecordCreatedOn(consent.getConsentRecordCreated())
+                .withConsentRecordLastUpdatedOn(policy.getConsentRecordLastUpdated() != null
+                        ? policy.getConsentRecordLastUpdated() : consent.getConsentRecordLastUpdated())
+                .withCmpID(consent.getCmpId())
+                .withCmpVersion(consent.getCmpVersion())
+                .withConsentScreenID(consent.getConsentScreen())
+                .withConsentLanguage(consent.getConsentLanguage())
+                .withVendorListVersion(policy.isVendorListVersionBumped() ? vendorList.getVendorListVersion()
+                        : consent.getVendorListVersion())
+                .withAllowedPurposesBits(consent.getAllowedPurposesBits())
+                .withMaxVendorId(maxVendorId)
+                .withVendorEncodingType(0)
+                .withBitField(bitField)
+                .build();
+    }
+
+    private static void assertMigrated(VendorConsent migrated, VendorConsent expected) {
+        assertThat(migrated.getVersion(), Matchers.is(expected.getVersion()));
+        assertThat(migrated.getConsentRecordCreated(), Matchers.is(expected.getConsentRecordCreated()));
+        assertThat(migrated.getConsentRecordLastUpdated(), Matchers.is(expected.getConsentRecordLastUpdated()));
+        assertThat(migrated.getCmpId(), Matchers.is(expected.getCmpId()));
+        assertThat(migrated.getCmpVersion(), Matchers.is(expected.getCmpVersion()));
+        assertThat(migrated.getConsentScreen(), Matchers.is(expected.getConsentScreen()));
+        assertThat(migrated.getConsentLanguage(), Matchers.is(expected.getConsentLanguage()));
+        assertThat(migrated.getVendorListVersion(), Matchers.is(expected.getVendorListVersion()));
+        assertThat(migrated.getAllowedPurposesBits(), Matchers.is(expected.getAllowedPurposesBits()));
+        assertThat(migrated.getMaxVendorId(), Matchers.is(expected.getMaxVendorId()));
+        for (int vendorId = 1; vendorId <= expected.getMaxVendorId(); vendorId++) {
+            assertThat("vendor " + vendorId, migrated.isVendorAllowed(vendorId),
+                    Matchers.is(expected.isVendorAllowed(vendorId)));
+        }
+        assertThat(migrated.getByteLength(), Matchers.lessThanOrEqualTo(expected.getByteLength()));
+    }
+
+    // vendors 1 to maxVendorId, without every 13th, which left the list
+    private static VendorList vendorList(int version, int maxVendorId) {
+        List<Vendor> vendors = new ArrayList<>();
+        for (int id = 1; id <= maxVendorId; id++) {
+            if (id % 13 != 0) {
+                Vendor vendor = new Vendor();
+                vendor.setId(id);
+                vendors.add(vendor);
+            }
+        }
+        VendorList vendorList = new VendorList();
+        vendorList.setVendorListVersion(version);
+        vendorList.setVendors(vendors);
+        return vendorList;
+    }
+}
@@ -0,0 +1,226 @@
+package com.yieldlab.gdpr.server;
+
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hamcrest.Matchers;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yieldlab.gdpr.ParseLimits;
+import com.yieldlab.gdpr.VendorConsent;
+
+public class ConsentDecisionServerTest {
+    private static final String RANGE_CONSENT = "BONZt-1ONZt-1AHABBENAO-AAAAHCAEAASABmADYAOAAeA";
+    private static final String BIT_FIELD_CONSENT = "BN5lERiOMYEdiAOAWeFRAAYAAaAAptQ";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private ConsentDecisionServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new ConsentDecisionServer.Builder().withPort(0)
+                .withMaxBatchSize(10)
+                .withMaxIdsPerRequest(10)
+                .withMaxRequestBytes(4096)
+                .withLimits(new ParseLimits.Builder().withMaxInputLength(64).build())
+                .build()
+                .start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testDecisions() throws Exception {
+        String body = "[{\"consent\":\"" + RANGE_CONSENT + "\",\"vendorIds\":[1,2,3],\"purposeIds\":[1,4]},"
+                + "{\"purposeIds\":[2],\"consent\":\"" + BIT_FIELD_CONSENT + "\",\"ignored\":{\"a\":[1]}},"
+                + "{\"consent\":\"not a consent\",\"vendorIds\":[1]},"
+                + "{\"consent\":\"" + RANGE_CONSENT + "\",\"vendorIds\":[]}]";
+
+        Response response = post(ConsentDecisionServer.DECISIONS_PATH, body);
+
+        VendorConsent range = VendorConsent.fromBase64String(RANGE_CONSENT);
+        VendorConsent bitField = VendorConsent.fromBase64String(BIT_FIELD_CONSENT);
+        assertThat(response.status, Matchers.is(200));
+        JsonNode decisions = mapper.readTree(response.body);
+        assertThat(decisions.size(), Matchers.is(4));
+        assertThat(booleans(decisions.get(0).get("vendors")), Matchers.contains(range.isVendorAllowed(1),
+                range.isVendorAllowed(2), range.isVendorAllowed(3)));
+        assertThat(booleans(decisions.get(0).get("purposes")),
+                Matchers.contains(range.isPurposeAllowed(1), range.isPurposeAllowed(4)));
+        assertThat(decisions.get(1).get("vendors").size(), Matchers.is(0));
+        assertThat(booleans(decisions.get(1).get("purposes")), Matchers.contains(bitField.isPurposeAllowed(2)));
+        assertThat(decisions.get(2).get("error").asText(), Matchers.not(Matchers.emptyString()));
+        assertThat(decisions.get(3).get("vendors").size(), Matchers.is(0));
+
+        assertThat(server.getRequestCount(), Matchers.is(1L));
+        assertThat(server.getDecisionCount(), Matchers.is(4L));
+        assertThat(server.getFailedDecisionCount(), Matchers.is(1L));
+        assertThat(server.getDecodeCount(), Matchers.is(2L));
+        assertThat(server.getCacheHitCount(), Matchers.is(1L));
+        // the latency is recorded once the response is sent, possibly after the client read it
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (server.getMaxLatencyNanos() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertThat(server.getMaxLatencyNanos(), Matchers.greaterThan(0L));
+    }
+
+    @Test
+    public void testBadRequests() throws Exception {
+        StringBuilder tooLarge = new StringBuilder("[");
+        for (int i = 0; i < 11; i++) {
+            tooLarge.append(i == 0 ? "" : ",").append("{\"consent\":\"").append(RANGE_CONSENT).append("\"}");
+        }
+        tooLarge.append(']');
+
+        for (String body : Arrays.asList("", "{}", "[{\"vendorIds\":[1]}]", "[{\"consent\":1}]",
+                "[{\"consent\":\"" + RANGE_CONSENT + "\",\"vendorIds\":[\"1\"]}]", "[{\"consent\":",
+                tooLarge.toString(),
+                "[{\"consent\":\"" + RANGE_CONSENT + "\",\"purposeIds\":[1,2,3,4,5,6,7,8,9,10,11]}]")) {
+            Response response = post(ConsentDecisionServer.DECISIONS_PATH, body);
+            assertThat(body, response.status, Matchers.is(400));
+            assertThat(mapper.readTree(response.body).get("error").asText(), Matchers.not(Matchers.emptyString()));
+        }
+
+        assertThat(server.getBadRequestCount(), Matchers.is(8L));
+    }
+
+    @Test
+    public void testOversizedBody() throws Exception {
+        StringBuilder body = new StringBuilder("[");
+        while (body.length() <= 4096) {
+            body.append(' ');
+        }
+        body.append("{\"consent\":\"").append(RANGE_CONSENT).append("\"}]");
+
+        for (boolean chunked : new boolean[] { false, true }) {
+            Response response = post(ConsentDecisionServer.DECISIONS_PATH, body.toString(), chunked);
+            assertThat(response.status, Matchers.is(413));
+            assertThat(mapper.readTree(response.body).get("error").asText(), Matchers.containsString("4096"));
+        }
+
+        assertThat(server.getBadRequestCount(), Matchers.is(2L));
+        assertThat(server.getDecisionCount(), Matchers.is(0L));
+    }
+
+    @Test
+    public void testOverlongConsent() throws Exception {
+        char[] overlong = new char[200];
+        Arrays.fill(overlong, 'A');
+
+        Response response = post(ConsentDecisionServer.DECISIONS_PATH,
+                "[{\"consent\":\"" + new String(overlong) + "\",\"vendorIds\":[1]}]");
+
+        assertThat(response.status, Matchers.is(200));
+        JsonNode decisions = mapper.readTree(response.body);
+        assertThat(decisions.get(0).get("error").asText(), Matchers.not(Matchers.emptyString()));
+        assertThat(server.getFailedDecisionCount(), Matchers.is(1L));
+        assertThat(server.getDecodeCount(), Matchers.is(0L));
+    }
+
+    @Test
+    public void testStats() throws Exception {
+        post(ConsentDecisionServer.DECISIONS_PATH, "[{\"consent\":\"" + RANGE_CONSENT + "\"}]");
+
+        HttpURLConnection connection = (HttpURLConnection) uri(ConsentDecisionServer.STATS_PATH).toURL()
+                .openConnection();
+        JsonNode stats;
+        try (InputStream in = connection.getInputStream()) {
+            stats = mapper.readTree(in);
+        }
+
+        assertThat(stats.get("requests").asLong(), Matchers.is(1L));
+        assertThat(stats.get("decisions").asLong(), Matchers.is(1L));
+        assertThat(stats.get("decodes").asLong(), Matchers.is(1L));
+        assertThat(stats.get("cacheSize").asLong(), Matchers.is(1L));
+    }
+
+    @Test
+    public void testLoadTest() throws Exception {
+        DecisionLoadGenerator.Result result = new DecisionLoadGenerator.Builder()
+                .withUri(uri(ConsentDecisionServer.DECISIONS_PATH))
+                .withCorpus(Arrays.asList(RANGE_CONSENT, BIT_FIELD_CONSENT))
+                .withClients(2)
+                .withBatchSize(10)
+                .withDuration(Duration.ofMillis(300))
+                .build()
+                .run();
+
+        assertThat(result.getRequestCount(), Matchers.greaterThan(0L));
+        assertThat(result.getFailedRequestCount(), Matchers.is(0L));
+        assertThat(result.getDecisionCount(), Matchers.is(result.getRequestCount() * 10));
+        assertThat(server.getDecisionCount(), Matchers.is(result.getDecisionCount()));
+        assertThat(server.getDecodeCount(), Matchers.is(2L));
+        assertThat(result.getLatencyNanos(50), Matchers.lessThanOrEqualTo(result.getLatencyNanos(100)));
+    }
+
+    private URI uri(String path) throws URISyntaxException {
+        InetSocketAddress address = server.getAddress();
+        return new URI("http", null, address.getHostString(), address.getPort(), path, null, null);
+    }
+
+    private Response post(String path, String body) throws IOException, URISyntaxException {
+        return post(path, body, false);
+    }
+
+    private Response post(String path, String body, boolean chunked) throws IOException, URISyntaxException {
+        HttpURLConnection connection = (HttpURLConnection) uri(path).toURL().openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        if (chunked) {
+            connection.setChunkedStreamingMode(1024);
+        }
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        int status = connection.getResponseCode();
+        ByteArrayOutputStream responseBody = new ByteArrayOutputStream();
+        try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                responseBody.write(buffer, 0, read);
+            }
+        }
+        return new Response(status, responseBody.toByteArray());
+    }
+
+    private static List<Boolean> booleans(JsonNode array) {
+        List<Boolean> values = new ArrayList<>();
+        for (JsonNode value : array) {
+            values.add(value.asBoolean());
+        }
+        return values;
+    }
+
+    private static final class Response {
+        final int status;
+        final byte[] body;
+
+        Response(int status, byte[] body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package com.yieldlab.gdpr.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URL;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.yieldlab.gdpr.corpus.ConsentCorpusGenerator;
+
+/**
+ * Sends batches of decision requests to a {@link ConsentDecisionServer} from several client threads for a fixed time
+ * and reports throughput and latency percentiles. Each client keeps one HTTP connection alive.
+ *
+ * {@link #main(String[])} starts a server on a free localhost port, with {@code TCP_NODELAY} unless configured
+ * otherwise, and runs against it, e.g.
+ *
+ * <pre>
+ * java -cp ... com.yieldlab.gdpr.server.DecisionLoadGenerator [clients] [batchSize] [seconds]
+ * </pre>
+ */
+public class DecisionLoadGenerator {
+    private final URI uri;
+    private final List<String> corpus;
+    private final int clients;
+    private final int batchSize;
+    private final int[] vendorIds;
+    private final int[] purposeIds;
+    private final Duration duration;
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    private DecisionLoadGenerator(Builder builder) {
+        this.uri = builder.uri;
+        this.corpus = builder.corpus != null ? builder.corpus
+                : new ConsentCorpusGenerator.Builder().withSeed(45).build().generate(10_000);
+        this.clients = builder.clients;
+        this.batchSize = builder.batchSize;
+        this.vendorIds = builder.vendorIds;
+        this.purposeIds = builder.purposeIds;
+        this.duration = builder.duration;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int batchSize = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        if (System.getProperty(ConsentDecisionServer.NODELAY_PROPERTY) == null) {
+            System.setProperty(ConsentDecisionServer.NODELAY_PROPERTY, "true");
+        }
+
+        ConsentDecisionServer server = new ConsentDecisionServer.Builder().withPort(0).build().start();
+        try {
+            InetSocketAddress address = server.getAddress();
+            URI uri = new URI("http", null, address.getHostString(), address.getPort(),
+                    ConsentDecisionServer.DECISIONS_PATH, null, null);
+            Result result = new Builder().withUri(uri)
+                    .withClients(clients)
+                    .withBatchSize(batchSize)
+                    .withDuration(Duration.ofSeconds(seconds))
+                    .build()
+                    .run();
+            System.out.println(result);
+            System.out.println("server: " + server.getDecodeCount() + " decodes, " + server.getCacheHitCount()
+                    + " cache hits, max latency " + server.getMaxLatencyNanos() / 1000 + " us");
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    /**
+     * Runs the clients until the duration is over.
+     *
+     * @throws IOException
+     *             if a client cannot reach the server
+     */
+    public Result run() throws IOException, InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        long start = System.nanoTime();
+        long deadline = start + duration.toNanos();
+        try {
+            List<Future<Client>> futures = new ArrayList<>();
+            for (int i = 0; i < clients; i++) {
+                Client client = new Client(new Random(i));
+                futures.add(executor.submit((Callable<Client>) () -> client.runUntil(deadline)));
+            }
+            List<Client> finished = new ArrayList<>();
+            for (Future<Client> future : futures) {
+                try {
+                    finished.add(future.get());
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException) {
+                        throw (IOException) e.getCause();
+                    }
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+            return new Result(finished, batchSize, System.nanoTime() - start);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private final class Client {
+        final Random random;
+        final ByteArrayOutputStream body = new ByteArrayOutputStream(8192);
+        final byte[] readBuffer = new byte[8192];
+        long[] latencies = new long[1024];
+        int requests;
+        int failedRequests;
+
+        Client(Random random) {
+            this.random = random;
+        }
+
+        Client runUntil(long deadline) throws IOException {
+            URL url = uri.toURL();
+            while (System.nanoTime() < deadline) {
+                writeBatch();
+                long start = System.nanoTime();
+                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+                connection.setRequestMethod("POST");
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", "application/json");
+                try (OutputStream out = connection.getOutputStream()) {
+                    body.writeTo(out);
+                }
+                int status = connection.getResponseCode();
+                // reading the response fully lets the connection be reused
+                try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                    while (in != null && in.read(readBuffer) >= 0) {
+                        // discard
+                    }
+                }
+                record(System.nanoTime() - start, status == 200);
+            }
+            return this;
+        }
+
+        private void writeBatch() throws IOException {
+            body.reset();
+            try (JsonGenerator generator = jsonFactory.createGenerator(body)) {
+                generator.writeStartArray();
+                for (int i = 0; i < batchSize; i++) {
+                    generator.writeStartObject();
+                    generator.writeStringField("consent", corpus.get(random.nextInt(corpus.size())));
+                    generator.writeFieldName("vendorIds");
+                    generator.writeArray(vendorIds, 0, vendorIds.length);
+                    generator.writeFieldName("purposeIds");
+                    generator.writeArray(purposeIds, 0, purposeIds.length);
+                    generator.writeEndObject();
+                }
+                generator.writeEndArray();
+            }
+        }
+
+        private void record(long latency, boolean ok) {
+            if (requests == latencies.length) {
+                latencies = Arrays.copyOf(latencies, requests * 2);
+            }
+            latencies[requests++] = latency;
+            if (!ok) {
+                failedRequests++;
+            }
+        }
+    }
+
+    /**
+     * The outcome of a load test run.
+     */
+    public static final class Result {
+        private final long requests;
+        private final long failedRequests;
+        private final long decisions;
+        private final long elapsedNanos;
+        private final long[] sortedLatencies;
+
+        private Result(List<Client> clients, int batchSize, long elapsedNanos) {
+            int total = 0;
+            int failed = 0;
+            for (Client client : clients) {
+                total += client.requests;
+                failed += client.failedRequests;
+            }
+            this.sortedLatencies = new long[total];
+            int offset = 0;
+            for (Client client : clients) {
+                System.arraycopy(client.latencies, 0, sortedLatencies, offset, client.requests);
+                offset += client.requests;
+            }
+            Arrays.sort(sortedLatencies);
+            this.requests = total;
+            this.failedRequests = failed;
+            this.decisions = (long) (total - failed) * batchSize;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public long getRequestCount() {
+            return requests;
+        }
+
+        /**
+         * @return the number of requests not answered with status 200
+         */
+        public long getFailedRequestCount() {
+            return failedRequests;
+        }
+
+        /**
+         * @return the number of decisions answered by successful requests
+         */
+        public long getDecisionCount() {
+            return decisions;
+        }
+
+        public double getDecisionsPerSecond() {
+            return decisions * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * @param percentile:
+         *            between 0 and 100
+         * @return the request latency below which the given percentage of requests completed, 0 without requests
+         */
+        public long getLatencyNanos(double percentile) {
+            if (sortedLatencies.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile / 100 * sortedLatencies.length) - 1;
+            return sortedLatencies[Math.max(0, Math.min(index, sortedLatencies.length - 1))];
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d requests (%d failed), %.0f decisions/s, latency p50 %d us, p99 %d us, max %d us",
+                    requests, failedRequests, getDecisionsPerSecond(), getLatencyNanos(50) / 1000,
+                    getLatencyNanos(99) / 1000, getLatencyNanos(100) / 1000);
+        }
+    }
+
+    public static class Builder {
+        private URI uri;
+        private List<String> corpus;
+        private int clients = 4;
+        private int batchSize = 50;
+        private int[] vendorIds = { 1, 2, 3, 8, 25, 32, 52, 76, 91, 150 };
+        private int[] purposeIds = { 1, 2, 3, 4, 5 };
+        private Duration duration = Duration.ofSeconds(10);
+
+        /**
+         * @param uri:
+         *            the decisions endpoint of the server, required
+         */
+        public Builder withUri(URI uri) {
+            this.uri = uri;
+            return this;
+        }
+
+        /**
+         * @param corpus:
+         *            the consent strings to send, picked at random. 10000 generated consent strings by default.
+         */
+        public Builder withCorpus(List<String> corpus) {
+            if (corpus.isEmpty()) {
+                throw new IllegalArgumentException("corpus must not be empty");
+            }
+            this.corpus = corpus;
+            return this;
+        }
+
+        /**
+         * @param clients:
+         *            the number of concurrent clients, 4 by default
+         */
+        public Builder withClients(int clients) {
+            if (clients < 1) {
+                throw new IllegalArgumentException("clients must be positive: " + clients);
+            }
+            this.clients = clients;
+            return this;
+        }
+
+        /**
+         * @param batchSize:
+         *            the decision requests per request body, 50 by default
+         */
+        public Builder withBatchSize(int batchSize) {
+            if (batchSize < 1) {
+                throw new IllegalArgumentException("batch size must be positive: " + batchSize);
+            }
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * @param vendorIds:
+         *            the vendors asked for in every decision request
+         */
+        public Builder withVendorIds(int... vendorIds) {
+            this.vendorIds = vendorIds.clone();
+            return this;
+        }
+
+        /**
+         * @param purposeIds:
+         *            the purposes asked for in every decision request
+         */
+        public Builder withPurposeIds(int... purposeIds) {
+            this.purposeIds = purposeIds.clone();
+            return this;
+        }
+
+        /**
+         * @param duration:
+         *            how long the clients send requests, 10 seconds by default
+         */
+        public Builder withDuration(Duration duration) {
+            this.duration = Objects.requireNonNull(duration, "duration");
+            return this;
+        }
+
+        public DecisionLoadGenerator build() {
+            Objects.requireNonNull(uri, "uri");
+            return new DecisionLoadGenerator(this);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.yieldlab.gdpr.simd;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import com.yieldlab.gdpr.corpus.ConsentCorpusGenerator;
+import com.yieldlab.gdpr.util.BitWords;
+
+/**
+ * Checks the backend in use against java.util.Base64 and plain loops. The multi-release test run exercises the
+ * Vector API backend.
+ */
+public class VectorizedOpsTest {
+    private static final Base64.Decoder REFERENCE = Base64.getUrlDecoder();
+
+    @Test
+    public void testDecodeMatchesBase64UrlDecoder() {
+        ConsentCorpusGenerator generator = new ConsentCorpusGenerator.Builder().withSeed(31)
+                .withRangeEncodingShare(0.5)
+                .withMaxVendorIdBetween(1, 2000)
+                .build();
+        for (String consentString : generator.generate(500)) {
+            assertArrayEquals(consentString, REFERENCE.decode(consentString),
+                    VectorizedOps.decodeBase64Url(consentString));
+        }
+    }
+
+    @Test
+    public void testDecodeAllLengthsAndPadding() {
+        Random random = new Random(31);
+        Base64.Encoder encoder = Base64.getUrlEncoder();
+        for (int length = 0; length < 300; length++) {
+            byte[] bytes = new byte[length];
+            random.nextBytes(bytes);
+            String padded = encoder.encodeToString(bytes);
+            String unpadded = encoder.withoutPadding().encodeToString(bytes);
+
+            assertArrayEquals(bytes, VectorizedOps.decodeBase64Url(padded));
+            assertArrayEquals(bytes, VectorizedOps.decodeBase64Url(unpadded));
+        }
+    }
+
+    @Test
+    public void testDecodeRejectsWhatTheReferenceRejects() {
+        String valid = "BN5lERiOMYEdiAKAWXEND1HoSBE6CAFAApAMgBkIDIgM0AgOJxAnQA";
+        List<String> invalid = new ArrayList<>(Arrays.asList("A", "ABCDE", "AB=", "ABC=D", "A===", "AB+/"));
+        for (int i = 0; i < valid.length(); i++) {
+            invalid.add(valid.substring(0, i) + '*' + valid.substring(i + 1));
+            invalid.add(valid.substring(0, i) + '\u00e9' + valid.substring(i + 1));
+        }
+        for (String input : invalid) {
+            try {
+                REFERENCE.decode(input);
+                fail("reference accepted " + input);
+            } catch (IllegalArgumentException expected) {
+                // reference rejects it
+            }
+            try {
+                VectorizedOps.decodeBase64Url(input);
+                fail("accepted " + input + " with backend " + VectorizedOps.backendName());
+            } catch (IllegalArgumentException expected) {
+                // as the reference
+            }
+        }
+    }
+
+    @Test
+    public void testAggregation() {
+        Random random = new Random(32);
+        for (int length : new int[] { 0, 1, 3, 8, 11, 64, 1025 }) {
+            long[] a = randomWords(random, length);
+            long[] b = randomWords(random, length);
+            long[] or = a.clone();
+            long[] and = a.clone();
+
+            VectorizedOps.or(or, b);
+            VectorizedOps.and(and, b);
+
+            long expectedAndCardinality = 0;
+            for (int i = 0; i < length; i++) {
+                assertThat(or[i], Matchers.is(a[i] | b[i]));
+                assertThat(and[i], Matchers.is(a[i] & b[i]));
+                expectedAndCardinality += Long.bitCount(a[i] & b[i]);
+            }
+            assertThat(VectorizedOps.cardinality(a), Matchers.is((long) BitWords.cardinality(a)));
+            assertThat(VectorizedOps.andCardinality(a, b), Matchers.is(expectedAndCardinality));
+        }
+    }
+
+    @Test
+    public void testAndClearsMissingWords() {
+        long[] accumulator = { -1L, -1L, -1L };
+
+        VectorizedOps.andAll(accumulator, Arrays.asList(new long[] { 6L, -1L }, new long[] { 3L }));
+
+        assertArrayEquals(new long[] { 2L, 0L, 0L }, accumulator);
+    }
+
+    private static long[] randomWords(Random random, int length) {
+        long[] words = new long[length];
+        for (int i = 0; i < length; i++) {
+            words[i] = random.nextLong();
+        }
+        return words;
+    }
+}
@@ -0,0 +1,158 @@
+package com.yieldlab.gdpr.stats;
+
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import com.yieldlab.gdpr.VendorConsent;
+import com.yieldlab.gdpr.corpus.ConsentCorpusGenerator;
+
+public class ConsentStatisticsTest {
+    @Test
+    public void testCounts() {
+        List<VendorConsent> consents = consents(1000);
+        ConsentStatistics statistics = new ConsentStatistics.Builder().withMaxVendorId(500).build();
+
+        consents.forEach(statistics::add);
+
+        assertThat(statistics.getConsentCount(), Matchers.is(1000L));
+        for (int vendorId = 1; vendorId <= 600; vendorId += 13) {
+            int id = vendorId;
+            long expected = vendorId > 500 ? 0 : consents.stream().filter(c -> c.isVendorAllowed(id)).count();
+            assertThat("vendor " + vendorId, statistics.getVendorCount(vendorId), Matchers.is(expected));
+        }
+        for (int purposeId = 1; purposeId <= 24; purposeId++) {
+            int id = purposeId;
+            assertThat(statistics.getPurposeCount(purposeId),
+                    Matchers.is(consents.stream().filter(c -> c.isPurposeAllowed(id)).count()));
+        }
+        VendorConsent first = consents.get(0);
+        assertThat(statistics.getCmpIdCount(first.getCmpId()),
+                Matchers.is(consents.stream().filter(c -> c.getCmpId() == first.getCmpId()).count()));
+        assertThat(statistics.getVendorListVersionCount(first.getVendorListVersion()), Matchers.is(consents.stream()
+                .filter(c -> c.getVendorListVersion() == first.getVendorListVersion())
+                .count()));
+    }
+
+    @Test
+    public void testMergeMatchesSingleAggregation() {
+        List<VendorConsent> consents = consents(900);
+        ConsentStatistics all = new ConsentStatistics.Builder().build();
+        List<ConsentStatistics> parts = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            parts.add(new ConsentStatistics.Builder().build());
+        }
+        for (int i = 0; i < consents.size(); i++) {
+            all.add(consents.get(i));
+            parts.get(i % 3).add(consents.get(i));
+        }
+
+        ConsentStatistics leftFirst = new ConsentStatistics.Builder().build()
+                .merge(parts.get(0))
+                .merge(parts.get(1))
+                .merge(parts.get(2));
+        ConsentStatistics rightFirst = new ConsentStatistics.Builder().build()
+                .merge(parts.get(2))
+                .merge(new ConsentStatistics.Builder().build().merge(parts.get(1)).merge(parts.get(0)));
+
+        assertThat(leftFirst, Matchers.is(all));
+        assertThat(rightFirst, Matchers.is(all));
+        assertThat(leftFirst.estimateDistinctConsents(), Matchers.is(all.estimateDistinctConsents()));
+    }
+
+    @Test
+    public void testEncodingRoundTrip() {
+        ConsentStatistics statistics = new ConsentStatistics.Builder().withPrecision(10).build();
+        consents(300).forEach(statistics::add);
+
+        byte[] bytes = statistics.toBytes();
+        ConsentStatistics decoded = ConsentStatistics.fromBytes(bytes);
+
+        assertThat(decoded, Matchers.is(statistics));
+        assertThat(decoded.getPrecision(), Matchers.is(10));
+        assertThat(decoded.getVendorCount(8), Matchers.is(statistics.getVendorCount(8)));
+        assertThat(ConsentStatistics.fromBytes(new ConsentStatistics.Builder().build().toBytes()).getConsentCount(),
+                Matchers.is(0L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTruncatedEncoding() {
+        ConsentStatistics statistics = new ConsentStatistics.Builder().build();
+        consents(10).forEach(statistics::add);
+        byte[] bytes = statistics.toBytes();
+
+        ConsentStatistics.fromBytes(Arrays.copyOf(bytes, bytes.length - 3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMergeDifferentSettings() {
+        new ConsentStatistics.Builder().build().merge(new ConsentStatistics.Builder().withPrecision(14).build());
+    }
+
+    @Test
+    public void testDistinctEstimate() {
+        SplittableRandom random = new SplittableRandom(34);
+        for (int distinct : new int[] { 10, 1000, 200000 }) {
+            ConsentStatistics statistics = new ConsentStatistics.Builder().withPrecision(14).build();
+            long[] fingerprints = new long[distinct];
+            for (int i = 0; i < distinct; i++) {
+                fingerprints[i] = random.nextLong();
+            }
+            // every fingerprint twice
+            for (int round = 0; round < 2; round++) {
+                for (long fingerprint : fingerprints) {
+                    statistics.addFingerprint(fingerprint);
+                }
+            }
+
+            double error = Math.abs(statistics.estimateDistinctConsents() - distinct) / (double) distinct;
+            assertThat("distinct " + distinct, error, Matchers.lessThan(0.03));
+        }
+    }
+
+    @Test
+    public void testConcurrentAdds() throws Exception {
+        List<VendorConsent> consents = consents(400);
+        ConsentStatistics expected = new ConsentStatistics.Builder().build();
+        ConsentStatistics statistics = new ConsentStatistics.Builder().build();
+        for (int i = 0; i < 4; i++) {
+            consents.forEach(expected::add);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(executor.submit(() -> consents.forEach(statistics::add)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(statistics, Matchers.is(expected));
+        assertThat(statistics.estimateDistinctConsents(), Matchers.is(expected.estimateDistinctConsents()));
+    }
+
+    private static List<VendorConsent> consents(int count) {
+        ConsentCorpusGenerator generator = new ConsentCorpusGenerator.Builder().withSeed(34)
+                .withRangeEncodingShare(0.4)
+                .withMaxVendorIdBetween(50, 700)
+                .build();
+        List<VendorConsent> consents = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            consents.add(generator.nextConsent());
+        }
+        return consents;
+    }
+}
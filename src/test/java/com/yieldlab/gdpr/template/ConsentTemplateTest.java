@@ -0,0 +1,82 @@
+package com.yieldlab.gdpr.template;
+
+import static org.junit.Assert.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import com.yieldlab.gdpr.VendorConsent;
+import com.yieldlab.gdpr.corpus.ConsentCorpusGenerator;
+import com.yieldlab.gdpr.exception.VendorConsentCreateException;
+import com.yieldlab.gdpr.util.BitWords;
+
+public class ConsentTemplateTest {
+    @Test
+    public void testMintMatchesBuilder() {
+        ConsentCorpusGenerator generator = new ConsentCorpusGenerator.Builder().withSeed(37)
+                .withRangeEncodingShare(0.5)
+                .build();
+        for (int i = 0; i < 200; i++) {
+            VendorConsent prototype = generator.nextConsent();
+            ConsentTemplate.Minter minter = ConsentTemplate.of(prototype).newMinter();
+            Instant created = Instant.ofEpochMilli(1_500_000_000_000L + i * 987_654_321L);
+            Instant lastUpdated = created.plusMillis(i * 12_345L);
+
+            String minted = minter.withCmpVersion(i).withConsentScreenId(i % 64).mint(created, lastUpdated);
+
+            assertThat(minted, Matchers.is(rebuild(prototype, created, lastUpdated, i, i % 64)));
+            VendorConsent parsed = VendorConsent.fromBase64String(minted);
+            assertThat(parsed.getConsentRecordCreated(), Matchers.is(created.minusMillis(created.toEpochMilli() % 100)));
+            assertThat(parsed.getCmpVersion(), Matchers.is(i));
+            assertThat(parsed.getCmpId(), Matchers.is(prototype.getCmpId()));
+        }
+    }
+
+    @Test
+    public void testMintToBuffer() {
+        VendorConsent prototype = VendorConsent.fromBase64String("BN5lERiOMYEdiAOAWeFRAAYAAaAAptQ");
+        ConsentTemplate template = ConsentTemplate.of(prototype);
+        ConsentTemplate.Minter minter = template.newMinter().withCmpId(42);
+        byte[] buffer = new byte[template.length() + 4];
+
+        int length = minter.mintTo(1_600_000_000_000L, 1_600_000_000_500L, buffer, 4);
+
+        assertThat(length, Matchers.is(template.length()));
+        String minted = new String(buffer, 4, length, StandardCharsets.US_ASCII);
+        assertThat(minted, Matchers.is(minter.mint(1_600_000_000_000L, 1_600_000_000_500L)));
+        assertThat(VendorConsent.fromBase64String(minted).getCmpId(), Matchers.is(42));
+    }
+
+    @Test(expected = VendorConsentCreateException.class)
+    public void testCmpVersionTooLarge() {
+        ConsentTemplate.of(VendorConsent.fromBase64String("BN5lERiOMYEdiAOAWeFRAAYAAaAAptQ"))
+                .newMinter()
+                .withCmpVersion(1 << 12);
+    }
+
+    private static String rebuild(VendorConsent prototype, Instant created, Instant lastUpdated, int cmpVersion,
+            int consentScreen) {
+        VendorConsent.Builder builder = new VendorConsent.Builder().withVersion(prototype.getVersion())
+                .withConsentRecordCreatedOn(created)
+                .withConsentRecordLastUpdatedOn(lastUpdated)
+                .withCmpID(prototype.getCmpId())
+                .withCmpVersion(cmpVersion)
+                .withConsentScreenID(consentScreen)
+                .withConsentLanguage(prototype.getConsentLanguage())
+                .withVendorListVersion(prototype.getVendorListVersion())
+                .withAllowedPurposesBits(prototype.getAllowedPurposesBits())
+                .withMaxVendorId(prototype.getMaxVendorId())
+                .withVendorEncodingType(prototype.getVendorEncodingType());
+        if (prototype.getRangeEntries() != null) {
+            builder.withDefaultConsent(prototype.isDefaultConsent()).withRangeEntries(prototype.getRangeEntries());
+        } else {
+            long[] words = new long[BitWords.wordsFor(prototype.getMaxVendorId())];
+            prototype.copyVendorBits(words);
+            builder.withVendorBits(words);
+        }
+        return builder.build().getConsentString();
+    }
+}
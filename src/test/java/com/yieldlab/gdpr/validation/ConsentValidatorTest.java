@@ -0,0 +1,181 @@
+package com.yieldlab.gdpr.validation;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import com.yieldlab.gdpr.VendorConsent;
+import com.yieldlab.gdpr.corpus.ConsentCorpusGenerator;
+import com.yieldlab.gdpr.vendor.Purpose;
+import com.yieldlab.gdpr.vendor.Vendor;
+import com.yieldlab.gdpr.vendor.VendorList;
+import com.yieldlab.gdpr.vendor.VendorListHistory;
+
+public class ConsentValidatorTest {
+    private static final int VERSION = 150;
+
+    @Test
+    public void testValidConsents() {
+        ConsentValidator validator = new ConsentValidator.Builder().withVendorList(vendorList(VERSION, 100, 5))
+                .build();
+        VendorConsent bitField = consent(VERSION, 100).withVendorEncodingType(0)
+                .withBitField(Arrays.asList(0, 9, 99))
+                .build();
+        VendorConsent range = consent(VERSION, 90).withVendorEncodingType(1)
+                .withDefaultConsent(true)
+                .withRangeEntries(Collections.singletonList(new VendorConsent.RangeEntry(3, 80)))
+                .build();
+
+        for (VendorConsent consent : Arrays.asList(bitField, range)) {
+            assertTrue(validator.isValid(consent));
+            assertThat(validator.validate(consent), Matchers.empty());
+            assertThat(validator.firstUnknownVendor(consent), Matchers.is(0));
+        }
+    }
+
+    @Test
+    public void testUnknownVendorListVersion() {
+        ConsentValidator validator = new ConsentValidator.Builder().withVendorList(vendorList(VERSION, 100, 5))
+                .build();
+        VendorConsent consent = consent(VERSION + 1, 10).withVendorEncodingType(0).build();
+
+        assertFalse(validator.isValid(consent));
+        assertThat(validator.validate(consent), Matchers.contains(ConsentViolation.UNKNOWN_VENDOR_LIST_VERSION));
+        assertTrue(validator.hasVendorListVersion(VERSION));
+        assertFalse(validator.hasVendorListVersion(VERSION + 1));
+    }
+
+    @Test
+    public void testMaxVendorIdAndUnknownVendors() {
+        VendorList vendorList = vendorList(VERSION, 100, 5);
+        // vendor 42 left the list
+        vendorList.getVendors().remove(41);
+        ConsentValidator validator = new ConsentValidator.Builder().withVendorList(vendorList).build();
+
+        VendorConsent beyondMax = consent(VERSION, 120).withVendorEncodingType(0)
+                .withBitField(Arrays.asList(0, 109))
+                .build();
+        VendorConsent beyondMaxNotAllowed = consent(VERSION, 120).withVendorEncodingType(0)
+                .withBitField(Arrays.asList(0))
+                .build();
+        VendorConsent removedInRange = consent(VERSION, 100).withVendorEncodingType(1)
+                .withRangeEntries(Collections.singletonList(new VendorConsent.RangeEntry(40, 45)))
+                .build();
+        VendorConsent removedByDefault = consent(VERSION, 100).withVendorEncodingType(1)
+                .withDefaultConsent(true)
+                .withRangeEntries(Collections.singletonList(new VendorConsent.RangeEntry(1, 30)))
+                .build();
+        VendorConsent removedExcluded = consent(VERSION, 100).withVendorEncodingType(1)
+                .withDefaultConsent(true)
+                .withRangeEntries(Collections.singletonList(new VendorConsent.RangeEntry(42, 42)))
+                .build();
+
+        assertThat(validator.validate(beyondMax),
+                Matchers.contains(ConsentViolation.MAX_VENDOR_ID_EXCEEDED, ConsentViolation.UNKNOWN_VENDOR_ALLOWED));
+        assertThat(validator.firstUnknownVendor(beyondMax), Matchers.is(110));
+        assertThat(validator.validate(beyondMaxNotAllowed),
+                Matchers.contains(ConsentViolation.MAX_VENDOR_ID_EXCEEDED));
+        assertThat(validator.validate(removedInRange), Matchers.contains(ConsentViolation.UNKNOWN_VENDOR_ALLOWED));
+        assertThat(validator.firstUnknownVendor(removedInRange), Matchers.is(42));
+        assertThat(validator.firstUnknownVendor(removedByDefault), Matchers.is(42));
+        assertTrue(validator.isValid(removedExcluded));
+    }
+
+    @Test
+    public void testUndefinedPurpose() {
+        ConsentValidator validator = new ConsentValidator.Builder().withVendorList(vendorList(VERSION, 100, 5))
+                .build();
+        VendorConsent consent = consent(VERSION, 10).withVendorEncodingType(0)
+                .withAllowedPurposes(Arrays.asList(1, 6))
+                .build();
+
+        assertThat(validator.validate(consent), Matchers.contains(ConsentViolation.UNDEFINED_PURPOSE_ALLOWED));
+    }
+
+    @Test
+    public void testMatchesPerVendorCheck() {
+        VendorListHistory history = new VendorListHistory();
+        List<VendorList> vendorLists = new ArrayList<>();
+        for (int version = 1; version <= 20; version++) {
+            VendorList vendorList = vendorList(version, 40 * version, 5);
+            // every version drops a different set of vendors
+            vendorList.getVendors().removeIf(vendor -> vendor.getId() % 7 == vendorList.getVendorListVersion() % 7);
+            history.add(vendorList);
+            vendorLists.add(vendorList);
+        }
+        ConsentValidator validator = ConsentValidator.of(history);
+        List<String> consentStrings = new ConsentCorpusGenerator.Builder().withSeed(44)
+                .withMaxVendorIdBetween(1, 900)
+                .withVendorListVersionBetween(1, 21)
+                .build()
+                .generate(500);
+
+        assertThat(validator.getVendorListVersions().size(), Matchers.is(20));
+        for (String consentString : consentStrings) {
+            VendorConsent consent = VendorConsent.fromBase64String(consentString);
+            int version = consent.getVendorListVersion();
+            if (version < 1 || version > 20) {
+                assertThat(validator.validate(consent),
+                        Matchers.contains(ConsentViolation.UNKNOWN_VENDOR_LIST_VERSION));
+                continue;
+            }
+            Set<Integer> listed = new HashSet<>();
+            for (Vendor vendor : vendorLists.get(version - 1).getVendors()) {
+                listed.add(vendor.getId());
+            }
+            int expected = 0;
+            for (int vendorId = 1; vendorId <= consent.getMaxVendorId(); vendorId++) {
+                if (consent.isVendorAllowed(vendorId) && !listed.contains(vendorId)) {
+                    expected = vendorId;
+                    break;
+                }
+            }
+            assertThat(consentString, validator.firstUnknownVendor(consent), Matchers.is(expected));
+            assertThat(consentString, validator.validate(consent).contains(ConsentViolation.UNKNOWN_VENDOR_ALLOWED),
+                    Matchers.is(expected != 0));
+        }
+    }
+
+    private static VendorList vendorList(int version, int vendorCount, int purposeCount) {
+        List<Vendor> vendors = new ArrayList<>();
+        for (int id = 1; id <= vendorCount; id++) {
+            Vendor vendor = new Vendor();
+            vendor.setId(id);
+            vendors.add(vendor);
+        }
+        List<Purpose> purposes = new ArrayList<>();
+        for (int id = 1; id <= purposeCount; id++) {
+            Purpose purpose = new Purpose();
+            purpose.setId(id);
+            purposes.add(purpose);
+        }
+        VendorList vendorList = new VendorList();
+        vendorList.setVendorListVersion(version);
+        vendorList.setVendors(vendors);
+        vendorList.setPurposes(purposes);
+        return vendorList;
+    }
+
+    private static VendorConsent.Builder consent(int vendorListVersion, int maxVendorId) {
+        return new VendorConsent.Builder().withVersion(1)
+                .withConsentRecordCreatedOn(Instant.ofEpochSecond(1525000000))
+                .withConsentRecordLastUpdatedOn(Instant.ofEpochSecond(1525000000))
+                .withCmpID(10)
+                .withCmpVersion(1)
+                .withConsentLanguage("EN")
+                .withVendorListVersion(vendorListVersion)
+                .withAllowedPurposes(Arrays.asList(1, 2, 3))
+                .withMaxVendorId(maxVendorId);
+    }
+}
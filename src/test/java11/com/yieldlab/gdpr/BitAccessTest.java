@@ -0,0 +1,46 @@
+package com.yieldlab.gdpr;
+
+import static com.yieldlab.gdpr.GdprConstants.VENDOR_BITFIELD_OFFSET;
+import static org.junit.Assert.assertThat;
+
+import java.util.Random;
+
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+// runs against the VarHandle variant of BitAccess from src/main/java9
+public class BitAccessTest {
+    @Test
+    public void testVendorBitFieldCopyReadsLongView() {
+        Random random = new Random(30);
+        for (int maxVendorId : new int[] { 1, 63, 64, 65, 650, 2000 }) {
+            byte[] bytes = new byte[(VENDOR_BITFIELD_OFFSET + maxVendorId + 7) / 8];
+            random.nextBytes(bytes);
+            // the chunks BitAccess.copyToWords reads when decoding a bit field into vendor id words
+            int src = VENDOR_BITFIELD_OFFSET;
+            int dst = 1;
+            int remaining = maxVendorId;
+            while (remaining > 0) {
+                int n = Math.min(Long.SIZE - (dst & 63), remaining);
+                assertThat("start " + src + " size " + n, BitAccess.readsLongView(bytes.length, n),
+                        Matchers.is(true));
+                assertThat(BitAccess.read(bytes, src, n), Matchers.is(ScalarBitAccess.read(bytes, src, n)));
+                src += n;
+                dst += n;
+                remaining -= n;
+            }
+        }
+    }
+
+    @Test
+    public void testUnalignedLongs() {
+        Random random = new Random(31);
+        byte[] bytes = new byte[17];
+        random.nextBytes(bytes);
+        for (int start = 0; start <= bytes.length * 8 - Long.SIZE; start++) {
+            assertThat(BitAccess.readsLongView(bytes.length, Long.SIZE), Matchers.is(true));
+            assertThat("start " + start, BitAccess.read(bytes, start, Long.SIZE),
+                    Matchers.is(ScalarBitAccess.read(bytes, start, Long.SIZE)));
+        }
+    }
+}
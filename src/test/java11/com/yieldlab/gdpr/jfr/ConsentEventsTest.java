@@ -0,0 +1,99 @@
+package com.yieldlab.gdpr.jfr;
+
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.nio.file.Files;
+import java.time.Duration;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import com.yieldlab.gdpr.VendorConsent;
+import com.yieldlab.gdpr.corpus.ConsentCorpusGenerator;
+import com.yieldlab.gdpr.exception.GdprException;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class ConsentEventsTest {
+    private static final String RANGE_CONSENT = "BONZt-1ONZt-1AHABBENAO-AAAAHCAEAASABmADYAOAAeA";
+
+    @Test
+    public void testDisabledByDefault() {
+        assertThat(ConsentEvents.beginDecode(), Matchers.nullValue());
+        assertThat(ConsentEvents.beginEncode(), Matchers.nullValue());
+        assertThat(ConsentEvents.beginCacheLookup(), Matchers.nullValue());
+        assertThat(ConsentEvents.beginVendorListReload(), Matchers.nullValue());
+    }
+
+    @Test
+    public void testDecodeEvents() throws Exception {
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable("com.yieldlab.gdpr.Decode").withThreshold(Duration.ZERO);
+            recording.start();
+            VendorConsent.fromBase64String(RANGE_CONSENT);
+            try {
+                VendorConsent.fromBase64String(RANGE_CONSENT.substring(0, 30));
+                fail("truncated consent parsed");
+            } catch (GdprException expected) {
+            }
+            recording.stop();
+            Path file = Files.createTempFile("consent-events", ".jfr");
+            try {
+                recording.dump(file);
+                events = RecordingFile.readAllEvents(file)
+                        .stream()
+                        .filter(event -> event.getEventType().getName().equals("com.yieldlab.gdpr.Decode"))
+                        .collect(Collectors.toList());
+            } finally {
+                Files.delete(file);
+            }
+        }
+
+        assertThat(events.size(), Matchers.is(2));
+        RecordedEvent decoded = events.get(0);
+        assertThat(decoded.getInt("vendorEncodingType"), Matchers.is(1));
+        assertThat(decoded.getInt("maxVendorId"), Matchers.is(VendorConsent.fromBase64String(RANGE_CONSENT)
+                .getMaxVendorId()));
+        assertThat(decoded.getInt("rangeEntryCount"), Matchers.greaterThan(0));
+        assertThat(decoded.getInt("inputLength"), Matchers.is(RANGE_CONSENT.length()));
+        assertThat(decoded.getString("failure"), Matchers.nullValue());
+        RecordedEvent failed = events.get(1);
+        assertThat(failed.getInt("inputLength"), Matchers.is(30));
+        assertThat(failed.getString("failure"), Matchers.containsString("truncated"));
+    }
+
+    @Test
+    public void testDecodingEmitsNoEncodeEvents() throws Exception {
+        byte[] consentBytes = VendorConsent.fromBase64String(RANGE_CONSENT).toBytes();
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable("com.yieldlab.gdpr.Encode").withThreshold(Duration.ZERO);
+            recording.start();
+            VendorConsent.fromBase64String(RANGE_CONSENT);
+            VendorConsent.fromBytes(consentBytes);
+            // builds one consent through VendorConsent.Builder#build()
+            new ConsentCorpusGenerator.Builder().withSeed(38).build().nextConsent();
+            recording.stop();
+            Path file = Files.createTempFile("consent-events", ".jfr");
+            try {
+                recording.dump(file);
+                events = RecordingFile.readAllEvents(file)
+                        .stream()
+                        .filter(event -> event.getEventType().getName().equals("com.yieldlab.gdpr.Encode"))
+                        .collect(Collectors.toList());
+            } finally {
+                Files.delete(file);
+            }
+        }
+
+        assertThat(events.size(), Matchers.is(1));
+        assertThat(events.get(0).getInt("outputLength"), Matchers.greaterThan(0));
+    }
+}
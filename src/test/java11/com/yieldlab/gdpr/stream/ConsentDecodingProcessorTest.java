@@ -0,0 +1,226 @@
+package com.yieldlab.gdpr.stream;
+
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.hamcrest.Matchers;
+import org.junit.After;
+import org.junit.Test;
+
+import com.yieldlab.gdpr.VendorConsent;
+import com.yieldlab.gdpr.corpus.ConsentCorpusGenerator;
+
+public class ConsentDecodingProcessorTest {
+    private static final String RANGE_CONSENT = "BONZt-1ONZt-1AHABBENAO-AAAAHCAEAASABmADYAOAAeA";
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testKeepsOrderAndRoutesFailures() throws Exception {
+        List<String> consentStrings = new ConsentCorpusGenerator.Builder().withSeed(39)
+                .withMalformedShare(0.1)
+                .build()
+                .generate(5000);
+        List<String> failures = Collections.synchronizedList(new ArrayList<>());
+        ConsentDecodingProcessor processor = new ConsentDecodingProcessor.Builder().withExecutor(executor)
+                .withBatchSize(16)
+                .withMaxBatchesInFlight(4)
+                .withFailureHandler((consentString, e) -> failures.add(consentString))
+                .build();
+        ListPublisher publisher = new ListPublisher(consentStrings);
+        CollectingSubscriber subscriber = new CollectingSubscriber(Long.MAX_VALUE);
+
+        publisher.subscribe(processor);
+        processor.subscribe(subscriber);
+
+        subscriber.await();
+        List<String> expected = new ArrayList<>();
+        List<String> expectedFailures = new ArrayList<>();
+        for (String consentString : consentStrings) {
+            try {
+                expected.add(VendorConsent.fromBase64String(consentString).getConsentString());
+            } catch (RuntimeException e) {
+                expectedFailures.add(consentString);
+            }
+        }
+        assertThat(expectedFailures.isEmpty(), Matchers.is(false));
+        assertThat(subscriber.consents.stream().map(VendorConsent::getConsentString).collect(Collectors.toList()),
+                Matchers.is(expected));
+        assertThat(failures, Matchers.is(expectedFailures));
+        assertThat(subscriber.error, Matchers.nullValue());
+    }
+
+    @Test
+    public void testRespectsBackpressure() throws Exception {
+        ConsentDecodingProcessor processor = new ConsentDecodingProcessor.Builder().withExecutor(executor)
+                .withBatchSize(8)
+                .withMaxBatchesInFlight(2)
+                .build();
+        ListPublisher publisher = new ListPublisher(Collections.nCopies(1000, RANGE_CONSENT));
+        CollectingSubscriber subscriber = new CollectingSubscriber(5);
+
+        publisher.subscribe(processor);
+        processor.subscribe(subscriber);
+
+        waitFor(() -> subscriber.consents.size() == 5);
+        // the delivered consents plus a buffer of batch size times batches in flight. The buffer is refilled in batch
+        // sized steps while a request is outstanding, so less than a batch of it may stay unrequested.
+        waitFor(() -> publisher.requested.get() > 5 + 16 - 8);
+        Thread.sleep(50);
+        assertThat(subscriber.consents.size(), Matchers.is(5));
+        assertThat(publisher.requested.get(), Matchers.lessThanOrEqualTo(5L + 16));
+
+        subscriber.subscription.request(995);
+        subscriber.await();
+        assertThat(subscriber.consents.size(), Matchers.is(1000));
+        assertThat(publisher.requested.get(), Matchers.lessThanOrEqualTo(1000L + 16));
+    }
+
+    @Test
+    public void testUsesCache() throws Exception {
+        Map<String, VendorConsent> cache = new ConcurrentHashMap<>();
+        ConsentDecodingProcessor processor = new ConsentDecodingProcessor.Builder().withExecutor(executor)
+                .withCache(cache)
+                .build();
+        ListPublisher publisher = new ListPublisher(Collections.nCopies(100, RANGE_CONSENT));
+        CollectingSubscriber subscriber = new CollectingSubscriber(Long.MAX_VALUE);
+
+        publisher.subscribe(processor);
+        processor.subscribe(subscriber);
+
+        subscriber.await();
+        assertThat(cache.keySet(), Matchers.contains(RANGE_CONSENT));
+        assertThat(subscriber.consents.get(99), Matchers.sameInstance(cache.get(RANGE_CONSENT)));
+    }
+
+    @Test
+    public void testUpstreamErrorAfterDecodedConsents() throws Exception {
+        ConsentDecodingProcessor processor = new ConsentDecodingProcessor.Builder().withExecutor(executor).build();
+        IllegalStateException error = new IllegalStateException("publisher failed");
+        ListPublisher publisher = new ListPublisher(Collections.nCopies(10, RANGE_CONSENT), error);
+        CollectingSubscriber subscriber = new CollectingSubscriber(Long.MAX_VALUE);
+
+        publisher.subscribe(processor);
+        processor.subscribe(subscriber);
+
+        subscriber.await();
+        assertThat(subscriber.consents.size(), Matchers.is(10));
+        assertThat(subscriber.error, Matchers.sameInstance(error));
+    }
+
+    private static void waitFor(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("condition not met");
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    // emits the items as they are requested, on the requesting thread
+    private static class ListPublisher implements Flow.Publisher<String> {
+        private final List<String> items;
+        private final Throwable error;
+        private final AtomicLong requested = new AtomicLong();
+
+        ListPublisher(List<String> items) {
+            this(items, null);
+        }
+
+        ListPublisher(List<String> items, Throwable error) {
+            this.items = items;
+            this.error = error;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super String> subscriber) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                private int next;
+                private boolean emitting;
+
+                @Override
+                public synchronized void request(long n) {
+                    requested.addAndGet(n);
+                    if (emitting) {
+                        return;
+                    }
+                    emitting = true;
+                    while (next < Math.min(items.size(), requested.get())) {
+                        subscriber.onNext(items.get(next++));
+                    }
+                    if (next == items.size()) {
+                        next++;
+                        if (error != null) {
+                            subscriber.onError(error);
+                        } else {
+                            subscriber.onComplete();
+                        }
+                    }
+                    emitting = false;
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+        }
+    }
+
+    private static class CollectingSubscriber implements Flow.Subscriber<VendorConsent> {
+        private final long initialRequest;
+        private final List<VendorConsent> consents = Collections.synchronizedList(new ArrayList<>());
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile Flow.Subscription subscription;
+        private volatile Throwable error;
+
+        CollectingSubscriber(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(initialRequest);
+        }
+
+        @Override
+        public void onNext(VendorConsent consent) {
+            consents.add(consent);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            done.countDown();
+        }
+
+        void await() throws InterruptedException {
+            if (!done.await(10, TimeUnit.SECONDS)) {
+                throw new AssertionError("stream did not terminate");
+            }
+        }
+    }
+}